@@ -0,0 +1,18 @@
+LOCAL_PATH := $(call my-dir)
+
+# Binary tables mapped from /system/etc at runtime. Regenerate them with
+# tools/gen_etc_assets.sh whenever their sources change.
+
+include $(CLEAR_VARS)
+LOCAL_MODULE := timezone_grid.bin
+LOCAL_MODULE_CLASS := ETC
+LOCAL_MODULE_PATH := $(TARGET_OUT_ETC)
+LOCAL_SRC_FILES := $(LOCAL_MODULE)
+include $(BUILD_PREBUILT)
+
+include $(CLEAR_VARS)
+LOCAL_MODULE := imonitor_schema.bin
+LOCAL_MODULE_CLASS := ETC
+LOCAL_MODULE_PATH := $(TARGET_OUT_ETC)
+LOCAL_SRC_FILES := $(LOCAL_MODULE)
+include $(BUILD_PREBUILT)
@@ -0,0 +1,114 @@
+package android.app.servertransaction;
+
+import android.app.ClientTransactionHandler;
+import android.content.IIntentReceiver;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.RemoteException;
+import android.util.Slog;
+
+/**
+ * Delivers a broadcast to a registered receiver, the same way
+ * {@link android.app.IApplicationThread#scheduleRegisteredReceiver} does, so that several
+ * deliveries to one process can travel in a single {@link ClientTransaction}.
+ *
+ * The receiver is called from {@link #preExecute}, which runs on the binder thread like the
+ * direct call, and not from the main thread.
+ */
+public class RegisteredReceiverItem extends ClientTransactionItem {
+    public static final Parcelable.Creator<RegisteredReceiverItem> CREATOR = new Parcelable.Creator<RegisteredReceiverItem>() {
+        public RegisteredReceiverItem createFromParcel(Parcel in) {
+            return new RegisteredReceiverItem(in);
+        }
+
+        public RegisteredReceiverItem[] newArray(int size) {
+            return new RegisteredReceiverItem[size];
+        }
+    };
+    private static final String TAG = "RegisteredReceiverItem";
+    private String mData;
+    private Bundle mExtras;
+    private Intent mIntent;
+    private boolean mOrdered;
+    private int mProcessState;
+    private IIntentReceiver mReceiver;
+    private int mResultCode;
+    private int mSendingUser;
+    private boolean mSticky;
+
+    public void preExecute(ClientTransactionHandler client, IBinder token) {
+        client.updateProcessState(this.mProcessState, false);
+        try {
+            this.mReceiver.performReceive(this.mIntent, this.mResultCode, this.mData, this.mExtras, this.mOrdered, this.mSticky, this.mSendingUser);
+        } catch (RemoteException e) {
+            Slog.w(TAG, "Failed to deliver " + this.mIntent, e);
+        }
+    }
+
+    public void execute(ClientTransactionHandler client, IBinder token, PendingTransactionActions pendingActions) {
+    }
+
+    private RegisteredReceiverItem() {
+    }
+
+    public static RegisteredReceiverItem obtain(IIntentReceiver receiver, Intent intent, int resultCode, String data, Bundle extras, boolean ordered, boolean sticky, int sendingUser, int processState) {
+        RegisteredReceiverItem instance = (RegisteredReceiverItem) ObjectPool.obtain(RegisteredReceiverItem.class);
+        if (instance == null) {
+            instance = new RegisteredReceiverItem();
+        }
+        instance.mReceiver = receiver;
+        instance.mIntent = intent;
+        instance.mResultCode = resultCode;
+        instance.mData = data;
+        instance.mExtras = extras;
+        instance.mOrdered = ordered;
+        instance.mSticky = sticky;
+        instance.mSendingUser = sendingUser;
+        instance.mProcessState = processState;
+        return instance;
+    }
+
+    public void recycle() {
+        this.mReceiver = null;
+        this.mIntent = null;
+        this.mResultCode = 0;
+        this.mData = null;
+        this.mExtras = null;
+        this.mOrdered = false;
+        this.mSticky = false;
+        this.mSendingUser = 0;
+        this.mProcessState = 0;
+        ObjectPool.recycle(this);
+    }
+
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeStrongBinder(this.mReceiver.asBinder());
+        dest.writeTypedObject(this.mIntent, flags);
+        dest.writeInt(this.mResultCode);
+        dest.writeString(this.mData);
+        dest.writeBundle(this.mExtras);
+        dest.writeBoolean(this.mOrdered);
+        dest.writeBoolean(this.mSticky);
+        dest.writeInt(this.mSendingUser);
+        dest.writeInt(this.mProcessState);
+    }
+
+    private RegisteredReceiverItem(Parcel in) {
+        this.mReceiver = IIntentReceiver.Stub.asInterface(in.readStrongBinder());
+        this.mIntent = (Intent) in.readTypedObject(Intent.CREATOR);
+        this.mResultCode = in.readInt();
+        this.mData = in.readString();
+        this.mExtras = in.readBundle();
+        this.mOrdered = in.readBoolean();
+        this.mSticky = in.readBoolean();
+        this.mSendingUser = in.readInt();
+        this.mProcessState = in.readInt();
+    }
+
+    public String toString() {
+        return "RegisteredReceiverItem{intent=" + this.mIntent + ",ordered=" + this.mOrdered + "}";
+    }
+}
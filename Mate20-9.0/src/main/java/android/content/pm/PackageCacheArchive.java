@@ -0,0 +1,374 @@
+package android.content.pm;
+
+import android.os.FileUtils;
+import android.util.ArrayMap;
+import android.util.Slog;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Single file package cache of {@link PackageParser}, replacing one cache file per package.
+ *
+ * The archive is a header followed by append only records, each holding the parcelled package
+ * of one (path, flags) pair together with the mtime the package had when it was parsed:
+ *
+ * <pre>
+ * int length, int crc, int flags, long apkMtime, long writeTime, int pathLength, byte[] path,
+ * int dataLength, byte[] data
+ * </pre>
+ *
+ * On open the whole file is mapped read only and only the record headers are walked to build
+ * the offset index, so boot opens one file and a lookup costs a map access plus one copy of the
+ * entry out of the mapping. The crc of an entry is checked when it is read. A record for a key
+ * that already exists supersedes the earlier one; the archive is rewritten without superseded
+ * records and records of packages that no longer exist once they take more room than the live
+ * ones.
+ *
+ * One archive is shared by every parser using the same cache directory. Thread safe.
+ */
+final class PackageCacheArchive {
+    private static final String ARCHIVE_NAME = "package-cache.archive";
+    private static final int COMPACT_MIN_BYTES = 1048576;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAGIC = 1346584914;
+    private static final int MAX_ARCHIVE_SIZE = 268435456;
+    private static final int RECORD_FIXED_SIZE = 28;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String TAG = "PackageCacheArchive";
+    private static final int VERSION = 1;
+    private static final ArrayMap<String, PackageCacheArchive> sArchives = new ArrayMap<>();
+    private FileChannel mChannel;
+    private long mEnd;
+    private final ArrayMap<String, Entry> mEntries = new ArrayMap<>();
+    private final File mFile;
+    private MappedByteBuffer mMapped;
+    private long mMappedSize;
+    private RandomAccessFile mRaf;
+
+    static final class Entry {
+        final long apkMtime;
+        final int dataLength;
+        final long dataOffset;
+        final String path;
+        final int recordLength;
+        final long recordOffset;
+        final long writeTime;
+
+        Entry(String path2, long apkMtime2, long writeTime2, long recordOffset2, int recordLength2, long dataOffset2, int dataLength2) {
+            this.path = path2;
+            this.apkMtime = apkMtime2;
+            this.writeTime = writeTime2;
+            this.recordOffset = recordOffset2;
+            this.recordLength = recordLength2;
+            this.dataOffset = dataOffset2;
+            this.dataLength = dataLength2;
+        }
+    }
+
+    private PackageCacheArchive(File cacheDir) {
+        this.mFile = new File(cacheDir, ARCHIVE_NAME);
+    }
+
+    /**
+     * Returns the archive of {@code cacheDir}, opening it on first use.
+     */
+    static PackageCacheArchive get(File cacheDir) {
+        PackageCacheArchive archive;
+        synchronized (sArchives) {
+            String key = cacheDir.getAbsolutePath();
+            archive = sArchives.get(key);
+            if (archive == null) {
+                archive = new PackageCacheArchive(cacheDir);
+                archive.open();
+                sArchives.put(key, archive);
+            }
+        }
+        return archive;
+    }
+
+    private static String keyOf(String path, int flags) {
+        return path + '-' + flags;
+    }
+
+    private synchronized void open() {
+        try {
+            openLocked();
+        } catch (IOException e) {
+            Slog.w(TAG, "Unable to open package cache archive, starting over", e);
+            closeLocked();
+            this.mFile.delete();
+            try {
+                openLocked();
+            } catch (IOException e2) {
+                Slog.e(TAG, "Unable to create package cache archive", e2);
+                closeLocked();
+            }
+        }
+    }
+
+    private void openLocked() throws IOException {
+        this.mEntries.clear();
+        this.mRaf = new RandomAccessFile(this.mFile, "rw");
+        this.mChannel = this.mRaf.getChannel();
+        long size = this.mChannel.size();
+        if (size > MAX_ARCHIVE_SIZE) {
+            Slog.w(TAG, "Package cache archive too large, starting over");
+            this.mChannel.truncate(0);
+            size = 0;
+        }
+        if (size < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.flip();
+            this.mChannel.truncate(0);
+            writeFully(header, 0);
+            this.mMapped = null;
+            this.mMappedSize = 0;
+            this.mEnd = HEADER_SIZE;
+            FileUtils.setPermissions(this.mFile.getPath(), 416, -1, -1);
+            return;
+        }
+        this.mMapped = this.mChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        this.mMappedSize = size;
+        if (this.mMapped.getInt(0) != MAGIC || this.mMapped.getInt(4) != VERSION) {
+            throw new IOException("Bad package cache archive header");
+        }
+        long liveBytes = 0;
+        long deadBytes = 0;
+        long pos = HEADER_SIZE;
+        while (((long) RECORD_HEADER_SIZE) + pos <= size) {
+            int length = this.mMapped.getInt((int) pos);
+            if (length < RECORD_FIXED_SIZE || ((long) length) + pos + RECORD_HEADER_SIZE > size) {
+                break;
+            }
+            int body = ((int) pos) + RECORD_HEADER_SIZE;
+            int flags = this.mMapped.getInt(body);
+            long apkMtime = this.mMapped.getLong(body + 4);
+            long writeTime = this.mMapped.getLong(body + 12);
+            int pathLength = this.mMapped.getInt(body + 20);
+            if (pathLength < 0 || pathLength > length - RECORD_FIXED_SIZE) {
+                break;
+            }
+            int dataLength = this.mMapped.getInt(body + 24 + pathLength);
+            if (dataLength < 0 || dataLength != (length - RECORD_FIXED_SIZE) - pathLength) {
+                break;
+            }
+            byte[] pathBytes = new byte[pathLength];
+            ByteBuffer buf = this.mMapped.duplicate();
+            buf.position(body + 24);
+            buf.get(pathBytes);
+            String path = new String(pathBytes, StandardCharsets.UTF_8);
+            Entry old = this.mEntries.put(keyOf(path, flags), new Entry(path, apkMtime, writeTime, pos, length, (long) (body + RECORD_FIXED_SIZE + pathLength), dataLength));
+            if (old != null) {
+                liveBytes -= (long) (old.recordLength + RECORD_HEADER_SIZE);
+                deadBytes += (long) (old.recordLength + RECORD_HEADER_SIZE);
+            }
+            liveBytes += (long) (length + RECORD_HEADER_SIZE);
+            pos += (long) (length + RECORD_HEADER_SIZE);
+        }
+        this.mEnd = pos;
+        if (pos < size) {
+            Slog.w(TAG, "Dropping " + (size - pos) + " trailing bytes of package cache archive");
+            this.mChannel.truncate(pos);
+            this.mMappedSize = pos;
+        }
+        if (deadBytes > liveBytes && deadBytes > COMPACT_MIN_BYTES) {
+            compactLocked();
+        }
+    }
+
+    /**
+     * Rewrites the archive with only the latest record of every package that still exists.
+     */
+    private void compactLocked() throws IOException {
+        File tmp = new File(this.mFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            out.write(header.array());
+            FileChannel channel = out.getChannel();
+            int size = this.mEntries.size();
+            for (int i = 0; i < size; i++) {
+                Entry entry = this.mEntries.valueAt(i);
+                if (new File(entry.path).exists()) {
+                    ByteBuffer record = this.mMapped.duplicate();
+                    record.position((int) entry.recordOffset);
+                    record.limit(((int) entry.recordOffset) + RECORD_HEADER_SIZE + entry.recordLength);
+                    while (record.hasRemaining()) {
+                        channel.write(record);
+                    }
+                }
+            }
+            out.flush();
+            FileUtils.sync(out);
+            out.close();
+            FileUtils.setPermissions(tmp.getPath(), 416, -1, -1);
+            closeLocked();
+            if (tmp.renameTo(this.mFile)) {
+                openLocked();
+                Slog.i(TAG, "Compacted package cache archive to " + this.mEnd + " bytes");
+                return;
+            }
+            throw new IOException("Unable to replace " + this.mFile);
+        } catch (Throwable th) {
+            out.close();
+            tmp.delete();
+            throw th;
+        }
+    }
+
+    private void closeLocked() {
+        this.mEntries.clear();
+        this.mMapped = null;
+        this.mMappedSize = 0;
+        this.mChannel = null;
+        if (this.mRaf != null) {
+            try {
+                this.mRaf.close();
+            } catch (IOException e) {
+            }
+            this.mRaf = null;
+        }
+    }
+
+    private void writeFully(ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            pos += (long) this.mChannel.write(buf, pos);
+        }
+    }
+
+    /**
+     * Returns the entry of ({@code path}, {@code flags}) if it was cached while the package had
+     * mtime {@code apkMtime}, or null.
+     */
+    synchronized Entry getEntry(String path, int flags, long apkMtime) {
+        Entry entry = this.mEntries.get(keyOf(path, flags));
+        if (entry == null || entry.apkMtime != apkMtime) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Copies the parcelled package of {@code entry} out of the archive, or returns null and drops
+     * the entry if its record is damaged.
+     */
+    synchronized byte[] readData(Entry entry) throws IOException {
+        ByteBuffer body;
+        if (this.mChannel == null) {
+            return null;
+        }
+        long bodyOffset = entry.recordOffset + RECORD_HEADER_SIZE;
+        if (((long) entry.recordLength) + bodyOffset <= this.mMappedSize) {
+            body = this.mMapped.duplicate();
+            body.position((int) bodyOffset);
+            body.limit(((int) bodyOffset) + entry.recordLength);
+        } else {
+            body = ByteBuffer.allocate(entry.recordLength);
+            long pos = bodyOffset;
+            while (body.hasRemaining()) {
+                int read = this.mChannel.read(body, pos);
+                if (read < 0) {
+                    throw new IOException("Truncated package cache archive");
+                }
+                pos += (long) read;
+            }
+            body.flip();
+        }
+        int start = body.position();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if (((int) crc.getValue()) != readStoredCrc(entry)) {
+            Slog.w(TAG, "Bad crc for " + entry.path + " in package cache archive");
+            removeEntry(entry);
+            return null;
+        }
+        byte[] data = new byte[entry.dataLength];
+        body.position(((int) (entry.dataOffset - bodyOffset)) + start);
+        body.get(data);
+        return data;
+    }
+
+    private int readStoredCrc(Entry entry) throws IOException {
+        if (entry.recordOffset + RECORD_HEADER_SIZE <= this.mMappedSize) {
+            return this.mMapped.getInt(((int) entry.recordOffset) + 4);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        long pos = entry.recordOffset + 4;
+        while (buf.hasRemaining()) {
+            int read = this.mChannel.read(buf, pos);
+            if (read < 0) {
+                throw new IOException("Truncated package cache archive");
+            }
+            pos += (long) read;
+        }
+        return buf.getInt(0);
+    }
+
+    private void removeEntry(Entry entry) {
+        int size = this.mEntries.size();
+        for (int i = 0; i < size; i++) {
+            if (this.mEntries.valueAt(i) == entry) {
+                this.mEntries.removeAt(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops the entry of ({@code path}, {@code flags}) after it failed to unparcel.
+     */
+    synchronized void remove(String path, int flags) {
+        this.mEntries.remove(keyOf(path, flags));
+    }
+
+    /**
+     * Appends the parcelled package {@code data} of ({@code path}, {@code flags}), parsed while
+     * the package had mtime {@code apkMtime}.
+     */
+    synchronized void put(String path, int flags, long apkMtime, byte[] data) throws IOException {
+        if (this.mChannel != null) {
+            byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+            int length = pathBytes.length + RECORD_FIXED_SIZE + data.length;
+            if (this.mEnd + RECORD_HEADER_SIZE + ((long) length) > MAX_ARCHIVE_SIZE) {
+                Slog.w(TAG, "Package cache archive full, not caching " + path);
+                return;
+            }
+            long writeTime = System.currentTimeMillis() / 1000;
+            ByteBuffer buf = ByteBuffer.allocate(length + RECORD_HEADER_SIZE);
+            buf.putInt(length);
+            buf.putInt(0);
+            buf.putInt(flags);
+            buf.putLong(apkMtime);
+            buf.putLong(writeTime);
+            buf.putInt(pathBytes.length);
+            buf.put(pathBytes);
+            buf.putInt(data.length);
+            buf.put(data);
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), RECORD_HEADER_SIZE, length);
+            buf.putInt(4, (int) crc.getValue());
+            buf.flip();
+            long offset = this.mEnd;
+            try {
+                writeFully(buf, offset);
+                this.mEnd = ((long) (length + RECORD_HEADER_SIZE)) + offset;
+                this.mEntries.put(keyOf(path, flags), new Entry(path, apkMtime, writeTime, offset, length, ((long) (pathBytes.length + RECORD_FIXED_SIZE + RECORD_HEADER_SIZE)) + offset, data.length));
+            } catch (IOException e) {
+                this.mChannel.truncate(offset);
+                throw e;
+            }
+        }
+    }
+}
@@ -161,6 +161,7 @@ public class PackageParser {
     private static final String TAG_USES_PERMISSION_SDK_M = "uses-permission-sdk-m";
     private static final String TAG_USES_SDK = "uses-sdk";
     private static final String TAG_USES_SPLIT = "uses-split";
+    private static final boolean USE_CACHE_ARCHIVE = SystemProperties.getBoolean("persist.sys.pm.cache_archive", false);
     private static float mDefaultMaxAspectRatio = 1.86f;
     /* access modifiers changed from: private */
     public static float mExclusionNavBar = 0.0f;
@@ -175,6 +176,7 @@ public class PackageParser {
     private static final Comparator<String> sSplitNameComparator = new SplitNameComparator();
     @Deprecated
     private String mArchiveSourcePath;
+    private PackageCacheArchive mCacheArchive;
     private File mCacheDir;
     private Callback mCallback;
     private DisplayMetrics mMetrics = new DisplayMetrics();
@@ -2211,6 +2213,7 @@ public class PackageParser {
 
     public void setCacheDir(File cacheDir) {
         this.mCacheDir = cacheDir;
+        this.mCacheArchive = (cacheDir == null || !USE_CACHE_ARCHIVE) ? null : PackageCacheArchive.get(cacheDir);
     }
 
     public void setCallback(Callback cb) {
@@ -2616,6 +2619,9 @@ public class PackageParser {
         if (this.mCacheDir == null) {
             return null;
         }
+        if (this.mCacheArchive != null) {
+            return getArchivedResult(packageFile, flags);
+        }
         File cacheFile = new File(this.mCacheDir, getCacheKey(packageFile, flags));
         try {
             if (!isCacheUpToDate(packageFile, cacheFile)) {
@@ -2640,9 +2646,55 @@ public class PackageParser {
         }
     }
 
+    private Package getArchivedResult(File packageFile, int flags) {
+        String path = packageFile.getAbsolutePath();
+        try {
+            PackageCacheArchive.Entry entry = this.mCacheArchive.getEntry(path, flags, Os.stat(path).st_mtime);
+            if (entry == null) {
+                return null;
+            }
+            byte[] bytes = this.mCacheArchive.readData(entry);
+            if (bytes == null) {
+                return null;
+            }
+            Package p = fromCacheEntry(bytes);
+            if (this.mCallback != null) {
+                String[] overlayApks = this.mCallback.getOverlayApks(p.packageName);
+                if (overlayApks != null && overlayApks.length > 0) {
+                    for (String overlayApk : overlayApks) {
+                        if (Os.stat(overlayApk).st_mtime >= entry.writeTime) {
+                            return null;
+                        }
+                    }
+                }
+            }
+            return p;
+        } catch (ErrnoException ee) {
+            if (ee.errno != OsConstants.ENOENT) {
+                Slog.w("Error while stating package cache : ", ee);
+            }
+            return null;
+        } catch (Throwable e) {
+            Slog.w(TAG, "Error reading package cache archive: ", e);
+            this.mCacheArchive.remove(path, flags);
+            return null;
+        }
+    }
+
     private void cacheResult(File packageFile, int flags, Package parsed) {
         FileOutputStream fos;
-        if (this.mCacheDir != null) {
+        if (this.mCacheArchive != null) {
+            try {
+                String path = packageFile.getAbsolutePath();
+                byte[] cacheEntry = toCacheEntry(parsed);
+                if (cacheEntry != null) {
+                    this.mCacheArchive.put(path, flags, Os.stat(path).st_mtime, cacheEntry);
+                }
+            } catch (Throwable e) {
+                Slog.w(TAG, "Error saving package cache.", e);
+            }
+            return;
+        } else if (this.mCacheDir != null) {
             try {
                 File cacheFile = new File(this.mCacheDir, getCacheKey(packageFile, flags));
                 if (cacheFile.exists() && !cacheFile.delete()) {
@@ -0,0 +1,318 @@
+package android.database;
+
+import android.os.Parcel;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Column major storage for a {@link CursorWindow} holding only numeric and null cells.
+ *
+ * The window lives in a single ashmem region so it crosses binder as a file descriptor and the
+ * receiver maps it read only instead of copying rows. Every column has a null bitmap and a typed
+ * array of 8 byte values; a column is typed by its first non-null value and nulls read as zero,
+ * so a whole column can be read with one bulk copy.
+ *
+ * Region layout (native byte order):
+ * <pre>
+ *   int magic, int maxColumns, int capacity, int numColumns, int numRows, int reserved
+ *   byte[maxColumns] column types, padded to 8 bytes
+ *   long[maxColumns][(capacity + 63) / 64] null bitmaps, bit set when the cell has a value
+ *   long[maxColumns][capacity] values, doubles stored as raw bits
+ * </pre>
+ */
+final class ColumnarWindow {
+    private static final int HEADER_SIZE = 24;
+    private static final int MAGIC = 1129792332;
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_MAX_COLUMNS = 4;
+    private static final int OFFSET_NUM_COLUMNS = 12;
+    private static final int OFFSET_NUM_ROWS = 16;
+    private static final int TYPE_FLOAT = 2;
+    private static final int TYPE_INTEGER = 1;
+    private static final int TYPE_NULL = 0;
+    private final int mBitmapBase;
+    private final ByteBuffer mBuffer;
+    private final int mCapacity;
+    private final int mMaxColumns;
+    private final SharedMemory mMemory;
+    private final boolean mReadOnly;
+    private final int mValueBase;
+    private final int mWordsPerColumn;
+
+    private ColumnarWindow(SharedMemory memory, ByteBuffer buffer, int maxColumns, int capacity, boolean readOnly) {
+        this.mMemory = memory;
+        this.mBuffer = buffer.order(ByteOrder.nativeOrder());
+        this.mMaxColumns = maxColumns;
+        this.mCapacity = capacity;
+        this.mReadOnly = readOnly;
+        this.mWordsPerColumn = (capacity + 63) / 64;
+        this.mBitmapBase = align8(maxColumns) + HEADER_SIZE;
+        this.mValueBase = (this.mWordsPerColumn * maxColumns * 8) + this.mBitmapBase;
+    }
+
+    private static int align8(int value) {
+        return (value + 7) & -8;
+    }
+
+    private static long regionSize(int maxColumns, int capacity) {
+        return ((long) HEADER_SIZE) + ((long) align8(maxColumns)) + (((long) maxColumns) * ((long) ((capacity + 63) / 64)) * 8) + (((long) maxColumns) * ((long) capacity) * 8);
+    }
+
+    static ColumnarWindow create(String name, int maxColumns, int capacity) throws ErrnoException {
+        if (maxColumns <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("maxColumns and capacity must be positive");
+        }
+        long size = regionSize(maxColumns, capacity);
+        if (size <= 2147483647L) {
+            SharedMemory memory = SharedMemory.create(name, (int) size);
+            try {
+                ColumnarWindow window = new ColumnarWindow(memory, memory.mapReadWrite(), maxColumns, capacity, false);
+                window.mBuffer.putInt(0, MAGIC);
+                window.mBuffer.putInt(OFFSET_MAX_COLUMNS, maxColumns);
+                window.mBuffer.putInt(OFFSET_CAPACITY, capacity);
+                window.mBuffer.putInt(OFFSET_NUM_COLUMNS, maxColumns);
+                return window;
+            } catch (ErrnoException | RuntimeException e) {
+                memory.close();
+                throw e;
+            }
+        }
+        throw new IllegalArgumentException("Columnar window of " + maxColumns + "x" + capacity + " is too large");
+    }
+
+    static ColumnarWindow createFromParcel(Parcel source) {
+        SharedMemory memory = SharedMemory.CREATOR.createFromParcel(source);
+        try {
+            ByteBuffer buffer = memory.mapReadOnly().order(ByteOrder.nativeOrder());
+            int maxColumns = buffer.getInt(OFFSET_MAX_COLUMNS);
+            int capacity = buffer.getInt(OFFSET_CAPACITY);
+            if (buffer.getInt(0) == MAGIC && maxColumns > 0 && capacity > 0 && regionSize(maxColumns, capacity) <= ((long) buffer.limit())) {
+                ColumnarWindow window = new ColumnarWindow(memory, buffer, maxColumns, capacity, true);
+                int numColumns = window.getNumColumns();
+                int numRows = window.getNumRows();
+                if (numColumns >= 0 && numColumns <= maxColumns && numRows >= 0 && numRows <= capacity) {
+                    return window;
+                }
+            }
+        } catch (ErrnoException | RuntimeException e) {
+        }
+        memory.close();
+        throw new CursorWindowAllocationException("Columnar cursor window could not be created from binder.");
+    }
+
+    void writeToParcel(Parcel dest) {
+        this.mMemory.writeToParcel(dest, 0);
+    }
+
+    void close() {
+        SharedMemory.unmap(this.mBuffer);
+        this.mMemory.close();
+    }
+
+    int getNumColumns() {
+        return this.mBuffer.getInt(OFFSET_NUM_COLUMNS);
+    }
+
+    int getNumRows() {
+        return this.mBuffer.getInt(OFFSET_NUM_ROWS);
+    }
+
+    boolean setNumColumns(int numColumns) {
+        int current = getNumColumns();
+        if (numColumns == current) {
+            return true;
+        }
+        if (this.mReadOnly || numColumns <= 0 || numColumns > this.mMaxColumns || getNumRows() != 0) {
+            return false;
+        }
+        this.mBuffer.putInt(OFFSET_NUM_COLUMNS, numColumns);
+        for (int column = 0; column < this.mMaxColumns; column++) {
+            this.mBuffer.put(HEADER_SIZE + column, (byte) 0);
+        }
+        return true;
+    }
+
+    boolean allocRow() {
+        int row = getNumRows();
+        if (this.mReadOnly || row >= this.mCapacity) {
+            return false;
+        }
+        int numColumns = getNumColumns();
+        for (int column = 0; column < numColumns; column++) {
+            setPresent(row, column, false);
+            this.mBuffer.putLong(valueOffset(row, column), 0);
+        }
+        this.mBuffer.putInt(OFFSET_NUM_ROWS, row + 1);
+        return true;
+    }
+
+    void freeLastRow() {
+        checkWritable();
+        int numRows = getNumRows();
+        if (numRows > 0) {
+            this.mBuffer.putInt(OFFSET_NUM_ROWS, numRows - 1);
+        }
+    }
+
+    void clear() {
+        checkWritable();
+        this.mBuffer.putInt(OFFSET_NUM_ROWS, 0);
+        for (int column = 0; column < this.mMaxColumns; column++) {
+            this.mBuffer.put(HEADER_SIZE + column, (byte) 0);
+        }
+    }
+
+    /**
+     * Returns whether a cell of {@code type} can be stored in {@code column} without converting
+     * the window back to rows. Cells outside the window are accepted so the put itself fails.
+     */
+    boolean accepts(int column, int type) {
+        if (this.mReadOnly) {
+            return false;
+        }
+        if (type == TYPE_NULL || column < 0 || column >= getNumColumns()) {
+            return true;
+        }
+        if (type != TYPE_INTEGER && type != TYPE_FLOAT) {
+            return false;
+        }
+        int columnType = columnType(column);
+        return columnType == TYPE_NULL || columnType == type;
+    }
+
+    boolean putLong(long value, int row, int column) {
+        if (!isValid(row, column)) {
+            return false;
+        }
+        this.mBuffer.put(HEADER_SIZE + column, (byte) TYPE_INTEGER);
+        this.mBuffer.putLong(valueOffset(row, column), value);
+        setPresent(row, column, true);
+        return true;
+    }
+
+    boolean putDouble(double value, int row, int column) {
+        if (!isValid(row, column)) {
+            return false;
+        }
+        this.mBuffer.put(HEADER_SIZE + column, (byte) TYPE_FLOAT);
+        this.mBuffer.putLong(valueOffset(row, column), Double.doubleToRawLongBits(value));
+        setPresent(row, column, true);
+        return true;
+    }
+
+    boolean putNull(int row, int column) {
+        if (!isValid(row, column)) {
+            return false;
+        }
+        this.mBuffer.putLong(valueOffset(row, column), 0);
+        setPresent(row, column, false);
+        return true;
+    }
+
+    int getType(int row, int column) {
+        checkCell(row, column);
+        if (isPresent(row, column)) {
+            return columnType(column);
+        }
+        return 0;
+    }
+
+    long getLong(int row, int column) {
+        checkCell(row, column);
+        long bits = this.mBuffer.getLong(valueOffset(row, column));
+        if (columnType(column) == TYPE_FLOAT && isPresent(row, column)) {
+            return (long) Double.longBitsToDouble(bits);
+        }
+        return bits;
+    }
+
+    double getDouble(int row, int column) {
+        checkCell(row, column);
+        long bits = this.mBuffer.getLong(valueOffset(row, column));
+        if (!isPresent(row, column)) {
+            return 0.0d;
+        }
+        if (columnType(column) == TYPE_FLOAT) {
+            return Double.longBitsToDouble(bits);
+        }
+        return (double) bits;
+    }
+
+    void getLongs(int column, int row, long[] dst, int offset, int count) {
+        checkRange(column, row, count);
+        ByteBuffer values = this.mBuffer.duplicate().order(this.mBuffer.order());
+        values.position(valueOffset(row, column));
+        values.asLongBuffer().get(dst, offset, count);
+        if (columnType(column) == TYPE_FLOAT) {
+            for (int i = 0; i < count; i++) {
+                if (isPresent(row + i, column)) {
+                    dst[offset + i] = (long) Double.longBitsToDouble(dst[offset + i]);
+                }
+            }
+        }
+    }
+
+    void getDoubles(int column, int row, double[] dst, int offset, int count) {
+        checkRange(column, row, count);
+        if (columnType(column) == TYPE_FLOAT) {
+            ByteBuffer values = this.mBuffer.duplicate().order(this.mBuffer.order());
+            values.position(valueOffset(row, column));
+            values.asDoubleBuffer().get(dst, offset, count);
+            for (int i = 0; i < count; i++) {
+                if (!isPresent(row + i, column)) {
+                    dst[offset + i] = 0.0d;
+                }
+            }
+            return;
+        }
+        for (int i2 = 0; i2 < count; i2++) {
+            dst[offset + i2] = (double) this.mBuffer.getLong(valueOffset(row + i2, column));
+        }
+    }
+
+    private int columnType(int column) {
+        return this.mBuffer.get(HEADER_SIZE + column);
+    }
+
+    /**
+     * A window received from another process maps the region read only, the same as a native
+     * window read from a parcel, so it must not be reset or shrunk.
+     */
+    private void checkWritable() {
+        if (this.mReadOnly) {
+            throw new IllegalStateException("Cannot modify a read only columnar CursorWindow.");
+        }
+    }
+
+    private boolean isValid(int row, int column) {
+        return !this.mReadOnly && row >= 0 && row < getNumRows() && column >= 0 && column < getNumColumns();
+    }
+
+    private void checkCell(int row, int column) {
+        if (row < 0 || row >= getNumRows() || column < 0 || column >= getNumColumns()) {
+            throw new IllegalStateException("Couldn't read row " + row + ", col " + column + " from CursorWindow.  Make sure the Cursor is initialized correctly before accessing data from it.");
+        }
+    }
+
+    private void checkRange(int column, int row, int count) {
+        if (count < 0 || row < 0 || row + count > getNumRows() || column < 0 || column >= getNumColumns()) {
+            throw new IllegalStateException("Couldn't read rows " + row + ".." + (row + count) + ", col " + column + " from CursorWindow.  Make sure the Cursor is initialized correctly before accessing data from it.");
+        }
+    }
+
+    private int valueOffset(int row, int column) {
+        return ((this.mCapacity * column) + row) * 8 + this.mValueBase;
+    }
+
+    private boolean isPresent(int row, int column) {
+        return (this.mBuffer.getLong(((this.mWordsPerColumn * column) + (row >>> 6)) * 8 + this.mBitmapBase) & (1L << row)) != 0;
+    }
+
+    private void setPresent(int row, int column, boolean present) {
+        int offset = ((this.mWordsPerColumn * column) + (row >>> 6)) * 8 + this.mBitmapBase;
+        long word = this.mBuffer.getLong(offset);
+        this.mBuffer.putLong(offset, present ? (1L << row) | word : (~(1L << row)) & word);
+    }
+}
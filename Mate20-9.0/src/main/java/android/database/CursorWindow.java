@@ -2,10 +2,12 @@ package android.database;
 
 import android.content.res.Resources;
 import android.database.sqlite.SQLiteClosable;
+import android.database.sqlite.SQLiteException;
 import android.os.Binder;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.os.Process;
+import android.system.ErrnoException;
 import android.util.Log;
 import android.util.LongSparseArray;
 import android.util.SparseIntArray;
@@ -29,6 +31,7 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     private static int sCursorWindowSize = -1;
     private static final LongSparseArray<Integer> sWindowToPidMap = new LongSparseArray<>();
     private final CloseGuard mCloseGuard;
+    private ColumnarWindow mColumnar;
     private final String mName;
     private int mStartPos;
     public long mWindowPtr;
@@ -97,9 +100,50 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
         this((String) null);
     }
 
+    /**
+     * Creates a window that stores numeric and null cells column by column in shared memory, for
+     * wide numeric queries. Such a window is sent across processes as a file descriptor and mapped
+     * by the receiver, and whole columns can be read with {@link #getLongs} and {@link #getDoubles}.
+     * Storing a string or blob, or mixing integers and floats in one column, converts the window to
+     * the regular row layout. The window must be filled through its put methods; it cannot be
+     * handed to SQLite to fill.
+     *
+     * @param name The name of the window.
+     * @param numColumns The most columns the window will hold.
+     * @param numRows The most rows the window will hold.
+     */
+    public static CursorWindow newColumnarWindow(String name, int numColumns, int numRows) {
+        String windowName = (name == null || name.length() == 0) ? "<unnamed>" : name;
+        try {
+            return new CursorWindow(windowName, ColumnarWindow.create(windowName, numColumns, numRows));
+        } catch (ErrnoException e) {
+            throw new CursorWindowAllocationException("Columnar cursor window allocation of " + numColumns + "x" + numRows + " cells failed: " + e.getMessage());
+        }
+    }
+
+    private CursorWindow(String name, ColumnarWindow columnar) {
+        this.mCloseGuard = CloseGuard.get();
+        this.mStartPos = 0;
+        this.mName = name;
+        this.mColumnar = columnar;
+        this.mCloseGuard.open("close");
+    }
+
+    /**
+     * A columnar window is sent with a negative start position, which a row window never has, so
+     * row windows keep the parcel layout of the native window.
+     */
     private CursorWindow(Parcel source) {
         this.mCloseGuard = CloseGuard.get();
-        this.mStartPos = source.readInt();
+        int startPos = source.readInt();
+        if (startPos < 0) {
+            this.mStartPos = -1 - startPos;
+            this.mName = source.readString();
+            this.mColumnar = ColumnarWindow.createFromParcel(source);
+            this.mCloseGuard.open("close");
+            return;
+        }
+        this.mStartPos = startPos;
         this.mWindowPtr = nativeCreateFromParcel(source);
         if (this.mWindowPtr != 0) {
             this.mName = nativeGetName(this.mWindowPtr);
@@ -125,6 +169,10 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
         if (this.mCloseGuard != null) {
             this.mCloseGuard.close();
         }
+        if (this.mColumnar != null) {
+            this.mColumnar.close();
+            this.mColumnar = null;
+        }
         if (this.mWindowPtr != 0) {
             recordClosingOfWindow(this.mWindowPtr);
             nativeDispose(this.mWindowPtr);
@@ -132,6 +180,46 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
         }
     }
 
+    /**
+     * Copies a columnar window into a regular native window, for cells the columnar layout cannot
+     * hold or when the window has been received read only.
+     */
+    private void convertToRowWindow() {
+        ColumnarWindow columnar = this.mColumnar;
+        long windowPtr = nativeCreate(this.mName, getCursorWindowSize());
+        if (windowPtr != 0) {
+            int numColumns = columnar.getNumColumns();
+            int numRows = columnar.getNumRows();
+            nativeSetNumColumns(windowPtr, numColumns);
+            for (int row = 0; row < numRows; row++) {
+                if (nativeAllocRow(windowPtr)) {
+                    for (int column = 0; column < numColumns; column++) {
+                        switch (columnar.getType(row, column)) {
+                            case 1:
+                                nativePutLong(windowPtr, columnar.getLong(row, column), row, column);
+                                break;
+                            case 2:
+                                nativePutDouble(windowPtr, columnar.getDouble(row, column), row, column);
+                                break;
+                            default:
+                                nativePutNull(windowPtr, row, column);
+                                break;
+                        }
+                    }
+                } else {
+                    nativeDispose(windowPtr);
+                    throw new CursorWindowAllocationException("Cursor window too small for " + numRows + " columnar rows");
+                }
+            }
+            this.mWindowPtr = windowPtr;
+            recordNewWindow(Binder.getCallingPid(), windowPtr);
+            this.mColumnar = null;
+            columnar.close();
+            return;
+        }
+        throw new CursorWindowAllocationException("Cursor window allocation failed while converting columnar window. " + printStats());
+    }
+
     public String getName() {
         return this.mName;
     }
@@ -140,7 +228,11 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
         acquireReference();
         try {
             this.mStartPos = 0;
-            nativeClear(this.mWindowPtr);
+            if (this.mColumnar != null) {
+                this.mColumnar.clear();
+            } else {
+                nativeClear(this.mWindowPtr);
+            }
         } finally {
             releaseReference();
         }
@@ -157,6 +249,9 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public int getNumRows() {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                return this.mColumnar.getNumRows();
+            }
             return nativeGetNumRows(this.mWindowPtr);
         } finally {
             releaseReference();
@@ -166,6 +261,12 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public boolean setNumColumns(int columnNum) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                if (this.mColumnar.setNumColumns(columnNum)) {
+                    return true;
+                }
+                convertToRowWindow();
+            }
             return nativeSetNumColumns(this.mWindowPtr, columnNum);
         } finally {
             releaseReference();
@@ -175,6 +276,9 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public boolean allocRow() {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                return this.mColumnar.allocRow();
+            }
             return nativeAllocRow(this.mWindowPtr);
         } finally {
             releaseReference();
@@ -184,7 +288,11 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public void freeLastRow() {
         acquireReference();
         try {
-            nativeFreeLastRow(this.mWindowPtr);
+            if (this.mColumnar != null) {
+                this.mColumnar.freeLastRow();
+            } else {
+                nativeFreeLastRow(this.mWindowPtr);
+            }
         } finally {
             releaseReference();
         }
@@ -220,6 +328,9 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public int getType(int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                return this.mColumnar.getType(row - this.mStartPos, column);
+            }
             return nativeGetType(this.mWindowPtr, row - this.mStartPos, column);
         } finally {
             releaseReference();
@@ -229,7 +340,14 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public byte[] getBlob(int row, int column) {
         acquireReference();
         try {
-            return nativeGetBlob(this.mWindowPtr, row - this.mStartPos, column);
+            if (this.mColumnar == null) {
+                return nativeGetBlob(this.mWindowPtr, row - this.mStartPos, column);
+            }
+            int type = this.mColumnar.getType(row - this.mStartPos, column);
+            if (type == 0) {
+                return null;
+            }
+            throw new SQLiteException(type == 1 ? "INTEGER data in nativeGetBlob " : "FLOAT data in nativeGetBlob ");
         } finally {
             releaseReference();
         }
@@ -238,6 +356,9 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public String getString(int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                return getColumnarString(row - this.mStartPos, column);
+            }
             return nativeGetString(this.mWindowPtr, row - this.mStartPos, column);
         } finally {
             releaseReference();
@@ -248,7 +369,19 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
         if (buffer != null) {
             acquireReference();
             try {
-                nativeCopyStringToBuffer(this.mWindowPtr, row - this.mStartPos, column, buffer);
+                if (this.mColumnar != null) {
+                    String value = getColumnarString(row - this.mStartPos, column);
+                    int length = value != null ? value.length() : 0;
+                    if (buffer.data == null || buffer.data.length < length) {
+                        buffer.data = new char[length];
+                    }
+                    if (length > 0) {
+                        value.getChars(0, length, buffer.data, 0);
+                    }
+                    buffer.sizeCopied = length;
+                } else {
+                    nativeCopyStringToBuffer(this.mWindowPtr, row - this.mStartPos, column, buffer);
+                }
             } finally {
                 releaseReference();
             }
@@ -260,6 +393,9 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public long getLong(int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                return this.mColumnar.getLong(row - this.mStartPos, column);
+            }
             return nativeGetLong(this.mWindowPtr, row - this.mStartPos, column);
         } finally {
             releaseReference();
@@ -269,12 +405,77 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public double getDouble(int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                return this.mColumnar.getDouble(row - this.mStartPos, column);
+            }
             return nativeGetDouble(this.mWindowPtr, row - this.mStartPos, column);
         } finally {
             releaseReference();
         }
     }
 
+    /**
+     * Copies {@code count} values of a column, starting at row {@code row}, into {@code dst} as
+     * longs. Columnar windows copy the column in bulk.
+     */
+    public void getLongs(int column, int row, long[] dst, int offset, int count) {
+        if (dst == null || offset < 0 || count < 0 || offset + count > dst.length) {
+            throw new IllegalArgumentException("dst is too small");
+        }
+        acquireReference();
+        try {
+            if (this.mColumnar != null) {
+                this.mColumnar.getLongs(column, row - this.mStartPos, dst, offset, count);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                dst[offset + i] = nativeGetLong(this.mWindowPtr, (row + i) - this.mStartPos, column);
+            }
+        } finally {
+            releaseReference();
+        }
+    }
+
+    /**
+     * Copies {@code count} values of a column, starting at row {@code row}, into {@code dst} as
+     * doubles. Columnar windows copy the column in bulk.
+     */
+    public void getDoubles(int column, int row, double[] dst, int offset, int count) {
+        if (dst == null || offset < 0 || count < 0 || offset + count > dst.length) {
+            throw new IllegalArgumentException("dst is too small");
+        }
+        acquireReference();
+        try {
+            if (this.mColumnar != null) {
+                this.mColumnar.getDoubles(column, row - this.mStartPos, dst, offset, count);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                dst[offset + i] = nativeGetDouble(this.mWindowPtr, (row + i) - this.mStartPos, column);
+            }
+        } finally {
+            releaseReference();
+        }
+    }
+
+    private String getColumnarString(int row, int column) {
+        switch (this.mColumnar.getType(row, column)) {
+            case 1:
+                return Long.toString(this.mColumnar.getLong(row, column));
+            case 2:
+                return Double.toString(this.mColumnar.getDouble(row, column));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Whether this window stores its cells column by column in shared memory.
+     */
+    public boolean isColumnar() {
+        return this.mColumnar != null;
+    }
+
     public short getShort(int row, int column) {
         return (short) ((int) getLong(row, column));
     }
@@ -290,6 +491,9 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public boolean putBlob(byte[] value, int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                convertToRowWindow();
+            }
             return nativePutBlob(this.mWindowPtr, value, row - this.mStartPos, column);
         } finally {
             releaseReference();
@@ -299,6 +503,9 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public boolean putString(String value, int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                convertToRowWindow();
+            }
             return nativePutString(this.mWindowPtr, value, row - this.mStartPos, column);
         } finally {
             releaseReference();
@@ -308,6 +515,12 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public boolean putLong(long value, int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                if (this.mColumnar.accepts(column, 1)) {
+                    return this.mColumnar.putLong(value, row - this.mStartPos, column);
+                }
+                convertToRowWindow();
+            }
             return nativePutLong(this.mWindowPtr, value, row - this.mStartPos, column);
         } finally {
             releaseReference();
@@ -317,6 +530,12 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public boolean putDouble(double value, int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                if (this.mColumnar.accepts(column, 2)) {
+                    return this.mColumnar.putDouble(value, row - this.mStartPos, column);
+                }
+                convertToRowWindow();
+            }
             return nativePutDouble(this.mWindowPtr, value, row - this.mStartPos, column);
         } finally {
             releaseReference();
@@ -326,6 +545,12 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     public boolean putNull(int row, int column) {
         acquireReference();
         try {
+            if (this.mColumnar != null) {
+                if (this.mColumnar.accepts(column, 0)) {
+                    return this.mColumnar.putNull(row - this.mStartPos, column);
+                }
+                convertToRowWindow();
+            }
             return nativePutNull(this.mWindowPtr, row - this.mStartPos, column);
         } finally {
             releaseReference();
@@ -337,15 +562,21 @@ public class CursorWindow extends SQLiteClosable implements Parcelable {
     }
 
     public int describeContents() {
-        return 0;
+        return this.mColumnar != null ? 1 : 0;
     }
 
     /* JADX INFO: finally extract failed */
     public void writeToParcel(Parcel dest, int flags) {
         acquireReference();
         try {
-            dest.writeInt(this.mStartPos);
-            nativeWriteToParcel(this.mWindowPtr, dest);
+            if (this.mColumnar != null) {
+                dest.writeInt(-1 - this.mStartPos);
+                dest.writeString(this.mName);
+                this.mColumnar.writeToParcel(dest);
+            } else {
+                dest.writeInt(this.mStartPos);
+                nativeWriteToParcel(this.mWindowPtr, dest);
+            }
             releaseReference();
             if ((flags & 1) != 0) {
                 releaseReference();
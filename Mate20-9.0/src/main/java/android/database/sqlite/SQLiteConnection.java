@@ -933,6 +933,8 @@ public final class SQLiteConnection implements CancellationSignal.OnCancelListen
         CancellationSignal cancellationSignal2 = cancellationSignal;
         if (str == null) {
             throw new IllegalArgumentException("sql must not be null.");
+        } else if (cursorWindow != null && cursorWindow.isColumnar()) {
+            throw new IllegalArgumentException("window must not be columnar, SQLite can only fill row windows.");
         } else if (cursorWindow != null) {
             window.acquireReference();
             int actualPos2 = -1;
@@ -43,6 +43,8 @@ public class NetworkStatsHistory implements Parcelable {
     public static final int FIELD_TX_PACKETS = 16;
     public static final int FIELD_TX_PACKETS_MP = 512;
     private static final int HW_VERSION_ADD_MULTIPATH = 11;
+    private static final int HW_VERSION_DELTA_COLUMNS = 12;
+    private static final int MAX_DELTA_BUCKETS = 131072;
     private static final int VERSION_ADD_ACTIVE = 3;
     private static final int VERSION_ADD_PACKETS = 2;
     private static final int VERSION_INIT = 1;
@@ -263,7 +265,9 @@ public class NetworkStatsHistory implements Parcelable {
     public NetworkStatsHistory(DataInputStream in) throws IOException {
         long[] jArr;
         int version = in.readInt();
-        if (version != 11) {
+        if (version == 12) {
+            readDeltaColumns(in);
+        } else if (version != 11) {
             switch (version) {
                 case 1:
                     this.bucketDuration = in.readLong();
@@ -342,6 +346,81 @@ public class NetworkStatsHistory implements Parcelable {
         DataStreamUtils.writeVarLongArray(out, this.txPackets_mp, this.bucketCount);
     }
 
+    /**
+     * Writes this history in the compact stream format: bucket starts are stored as varint deltas
+     * from the previous bucket, followed by one varint column per field; a bitmask records which
+     * optional columns are present.
+     */
+    public void writeDeltaColumnsToStream(DataOutputStream out) throws IOException {
+        long[][] columns = {this.activeTime, this.rxBytes, this.rxPackets, this.txBytes, this.txPackets, this.operations, this.rxBytes_mp, this.rxPackets_mp, this.txBytes_mp, this.txPackets_mp};
+        out.writeInt(12);
+        DataStreamUtils.writeVarLong(out, this.bucketDuration);
+        DataStreamUtils.writeVarLong(out, (long) this.bucketCount);
+        long last = 0;
+        for (int i = 0; i < this.bucketCount; i++) {
+            DataStreamUtils.writeVarLong(out, this.bucketStart[i] - last);
+            last = this.bucketStart[i];
+        }
+        int mask = 0;
+        for (int c = 0; c < columns.length; c++) {
+            if (columns[c] != null) {
+                mask |= 1 << c;
+            }
+        }
+        DataStreamUtils.writeVarLong(out, (long) mask);
+        for (long[] column : columns) {
+            if (column != null) {
+                for (int i2 = 0; i2 < this.bucketCount; i2++) {
+                    DataStreamUtils.writeVarLong(out, column[i2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The bucket count sizes every column before any value is read, so it is capped well above
+     * any real history to keep a corrupt count from allocating gigabytes.
+     */
+    private void readDeltaColumns(DataInputStream in) throws IOException {
+        this.bucketDuration = DataStreamUtils.readVarLong(in);
+        long count = DataStreamUtils.readVarLong(in);
+        if (count < 0 || count > MAX_DELTA_BUCKETS) {
+            throw new ProtocolException("bad bucket count " + count);
+        }
+        this.bucketCount = (int) count;
+        this.bucketStart = new long[this.bucketCount];
+        long last = 0;
+        for (int i = 0; i < this.bucketCount; i++) {
+            last += DataStreamUtils.readVarLong(in);
+            this.bucketStart[i] = last;
+        }
+        int mask = (int) DataStreamUtils.readVarLong(in);
+        long[][] columns = new long[10][];
+        for (int c = 0; c < columns.length; c++) {
+            if (((1 << c) & mask) != 0) {
+                columns[c] = new long[this.bucketCount];
+                for (int i2 = 0; i2 < this.bucketCount; i2++) {
+                    columns[c][i2] = DataStreamUtils.readVarLong(in);
+                }
+            }
+        }
+        this.activeTime = columns[0];
+        this.rxBytes = columns[1];
+        this.rxPackets = columns[2];
+        this.txBytes = columns[3];
+        this.txPackets = columns[4];
+        this.operations = columns[5];
+        this.rxBytes_mp = columns[6];
+        this.rxPackets_mp = columns[7];
+        this.txBytes_mp = columns[8];
+        this.txPackets_mp = columns[9];
+        if (this.rxBytes != null && this.txBytes != null) {
+            this.totalRxBytes = ArrayUtils.total(this.rxBytes);
+            this.totalTxBytes = ArrayUtils.total(this.txBytes);
+            this.totalBytes = this.totalRxBytes + this.totalTxBytes;
+        }
+    }
+
     public int describeContents() {
         return 0;
     }
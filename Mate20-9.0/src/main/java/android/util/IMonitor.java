@@ -106,7 +106,16 @@ public class IMonitor {
         } catch (UnsatisfiedLinkError e) {
             Log.e(TAG, "openEventStream failed for no implementation of native");
         }
-        return new IMonitorEventStreamImpl(handle);
+        return new IMonitorEventStreamImpl(handle, eventID);
+    }
+
+    /**
+     * Returns the parameter id of field {@code name} of event {@code eventID} from the shared
+     * schema table, or -1 if it is unknown. Use instead of the generated IMonitorKeys constants
+     * when the field is only known by name.
+     */
+    public static short getParamId(int eventID, String name) {
+        return IMonitorSchema.lookup(eventID, name);
     }
 
     public static void closeEventStream(EventStream eStream) {
@@ -8,9 +8,15 @@ import java.util.Locale;
 
 final class IMonitorEventStreamImpl extends IMonitor.EventStream {
     private long mEventHandle = 0;
+    private final int mEventId;
 
     protected IMonitorEventStreamImpl(long eventHandle) {
+        this(eventHandle, -1);
+    }
+
+    IMonitorEventStreamImpl(long eventHandle, int eventId) {
         this.mEventHandle = eventHandle;
+        this.mEventId = eventId;
     }
 
     /* access modifiers changed from: protected */
@@ -162,21 +168,36 @@ final class IMonitorEventStreamImpl extends IMonitor.EventStream {
 
     public IMonitor.EventStream setParam(String param, long value) {
         if (isHandleValid()) {
-            IMonitorNative.setParam(this.mEventHandle, param, value);
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.setParam(this.mEventHandle, paramID, value);
+            } else {
+                IMonitorNative.setParam(this.mEventHandle, param, value);
+            }
         }
         return this;
     }
 
     public IMonitor.EventStream setParam(String param, float value) {
         if (isHandleValid()) {
-            IMonitorNative.setParamFloat(this.mEventHandle, param, value);
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.setParamFloat(this.mEventHandle, paramID, value);
+            } else {
+                IMonitorNative.setParamFloat(this.mEventHandle, param, value);
+            }
         }
         return this;
     }
 
     public IMonitor.EventStream setParam(String param, String value) {
         if (value != null && isHandleValid()) {
-            IMonitorNative.setParamString(this.mEventHandle, param, value);
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.setParamString(this.mEventHandle, paramID, value);
+            } else {
+                IMonitorNative.setParamString(this.mEventHandle, param, value);
+            }
         }
         return this;
     }
@@ -193,7 +214,12 @@ final class IMonitorEventStreamImpl extends IMonitor.EventStream {
 
     public IMonitor.EventStream setParam(String param, IMonitor.EventStream value) {
         if (value != null && isHandleValid()) {
-            IMonitorNative.setParamClass(this.mEventHandle, param, value.getHandle());
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.setParamClass(this.mEventHandle, paramID, value.getHandle());
+            } else {
+                IMonitorNative.setParamClass(this.mEventHandle, param, value.getHandle());
+            }
         }
         return this;
     }
@@ -220,21 +246,36 @@ final class IMonitorEventStreamImpl extends IMonitor.EventStream {
 
     public IMonitor.EventStream fillArrayParam(String param, long value) {
         if (isHandleValid()) {
-            IMonitorNative.fillArrayParam(this.mEventHandle, param, value);
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.fillArrayParam(this.mEventHandle, paramID, value);
+            } else {
+                IMonitorNative.fillArrayParam(this.mEventHandle, param, value);
+            }
         }
         return this;
     }
 
     public IMonitor.EventStream fillArrayParam(String param, float value) {
         if (isHandleValid()) {
-            IMonitorNative.fillArrayParamFloat(this.mEventHandle, param, value);
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.fillArrayParamFloat(this.mEventHandle, paramID, value);
+            } else {
+                IMonitorNative.fillArrayParamFloat(this.mEventHandle, param, value);
+            }
         }
         return this;
     }
 
     public IMonitor.EventStream fillArrayParam(String param, String value) {
         if (value != null && isHandleValid()) {
-            IMonitorNative.fillArrayParamString(this.mEventHandle, param, value);
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.fillArrayParamString(this.mEventHandle, paramID, value);
+            } else {
+                IMonitorNative.fillArrayParamString(this.mEventHandle, param, value);
+            }
         }
         return this;
     }
@@ -251,7 +292,12 @@ final class IMonitorEventStreamImpl extends IMonitor.EventStream {
 
     public IMonitor.EventStream fillArrayParam(String param, IMonitor.EventStream value) {
         if (value != null && isHandleValid()) {
-            IMonitorNative.fillArrayParamClass(this.mEventHandle, param, value.getHandle());
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.fillArrayParamClass(this.mEventHandle, paramID, value.getHandle());
+            } else {
+                IMonitorNative.fillArrayParamClass(this.mEventHandle, param, value.getHandle());
+            }
         }
         return this;
     }
@@ -265,7 +311,12 @@ final class IMonitorEventStreamImpl extends IMonitor.EventStream {
 
     public IMonitor.EventStream unsetParam(String param) {
         if (isHandleValid()) {
-            IMonitorNative.unsetParam(this.mEventHandle, param);
+            short paramID = resolveParam(param);
+            if (paramID >= 0) {
+                IMonitorNative.unsetParam(this.mEventHandle, paramID);
+            } else {
+                IMonitorNative.unsetParam(this.mEventHandle, param);
+            }
         }
         return this;
     }
@@ -305,6 +356,13 @@ final class IMonitorEventStreamImpl extends IMonitor.EventStream {
         }
     }
 
+    private short resolveParam(String param) {
+        if (this.mEventId < 0) {
+            return -1;
+        }
+        return IMonitorSchema.lookup(this.mEventId, param);
+    }
+
     private boolean isHandleValid() {
         return 0 != this.mEventHandle;
     }
@@ -0,0 +1,135 @@
+package android.util;
+
+import com.android.internal.util.MappedAsset;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary table of IMonitor event fields, memory mapped on first use and shared by every process.
+ *
+ * Resolves a field name of an event to the same short parameter id the generated
+ * {@link IMonitorKeys} constants carry, so string keyed parameters can be sent through the id
+ * based native calls. Lookups are two binary searches over the mapping and do not allocate.
+ *
+ * Table layout (big endian):
+ * <pre>
+ *   int magic, int version, int eventCount, int fieldCount, int nameBytes
+ *   { int eventId, int firstField, int fieldCount } * eventCount   (sorted by eventId)
+ *   { int nameOffset, short nameLength, short paramId } * fieldCount   (sorted by name per event)
+ *   byte[nameBytes] ascii names
+ * </pre>
+ *
+ * The table is built from {@link IMonitorKeys} by IMonitorSchemaGenerator under
+ * tools/imonitorschema, so it has to be regenerated whenever the keys change.
+ */
+final class IMonitorSchema {
+    static final int EVENT_STRIDE = 12;
+    static final int FIELD_STRIDE = 8;
+    static final int HEADER_SIZE = 20;
+    static final int MAGIC = 1229804355;
+    private static final String SCHEMA_FILE = "/system/etc/imonitor_schema.bin";
+    private static final String TAG = "IMonitorSchema";
+    static final int VERSION = 1;
+    private static final MappedAsset<IMonitorSchema> sAsset = new MappedAsset<IMonitorSchema>(TAG, SCHEMA_FILE) {
+        protected IMonitorSchema parse(ByteBuffer buffer) throws IOException {
+            return new IMonitorSchema(buffer);
+        }
+    };
+    private final ByteBuffer mBuffer;
+    private final int mEventCount;
+    private final int mFieldBase;
+    private final int mNameBase;
+
+    IMonitorSchema(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("bad imonitor schema header");
+        }
+        this.mEventCount = buffer.getInt(8);
+        int fieldCount = buffer.getInt(12);
+        int nameBytes = buffer.getInt(16);
+        this.mFieldBase = (this.mEventCount * EVENT_STRIDE) + HEADER_SIZE;
+        this.mNameBase = (fieldCount * FIELD_STRIDE) + this.mFieldBase;
+        if (this.mEventCount < 0 || fieldCount < 0 || nameBytes < 0 || this.mNameBase + nameBytes > buffer.limit()) {
+            throw new IOException("truncated imonitor schema");
+        }
+        this.mBuffer = buffer;
+    }
+
+    /**
+     * Returns the parameter id of {@code name} in event {@code eventId}, or -1 if the schema is
+     * missing or does not know the field.
+     */
+    static short lookup(int eventId, String name) {
+        IMonitorSchema schema = sAsset.get();
+        if (schema == null || name == null) {
+            return -1;
+        }
+        try {
+            return schema.find(eventId, name);
+        } catch (IndexOutOfBoundsException e) {
+            Log.e(TAG, "corrupt imonitor schema entry for event " + eventId);
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the parameter id of {@code name} in event {@code eventId}, or -1.
+     */
+    short find(int eventId, String name) {
+        int low = 0;
+        int high = this.mEventCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int event = (mid * EVENT_STRIDE) + HEADER_SIZE;
+            int midId = this.mBuffer.getInt(event);
+            if (midId < eventId) {
+                low = mid + 1;
+            } else if (midId > eventId) {
+                high = mid - 1;
+            } else {
+                return findField(this.mBuffer.getInt(event + 4), this.mBuffer.getInt(event + 8), name);
+            }
+        }
+        return -1;
+    }
+
+    private short findField(int firstField, int fieldCount, String name) {
+        int low = firstField;
+        int high = (firstField + fieldCount) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int field = (mid * FIELD_STRIDE) + this.mFieldBase;
+            int cmp = compareName(this.mBuffer.getInt(field) + this.mNameBase, this.mBuffer.getShort(field + 4) & 65535, name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return this.mBuffer.getShort(field + 6);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Names are stored upper case, the way {@link IMonitorKeys} spells them, while callers pass
+     * the camel case names of the event definitions, so ASCII letters of {@code name} are upper
+     * cased before comparing.
+     */
+    private int compareName(int offset, int length, String name) {
+        int count = Math.min(length, name.length());
+        for (int i = 0; i < count; i++) {
+            char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                c = (char) (c - ' ');
+            }
+            int diff = (this.mBuffer.get(offset + i) & 255) - c;
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - name.length();
+    }
+}
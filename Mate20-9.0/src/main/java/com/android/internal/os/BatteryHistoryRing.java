@@ -0,0 +1,303 @@
+package com.android.internal.os;
+
+import android.os.FileUtils;
+import android.os.Parcel;
+import android.util.Slog;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * Ring of sealed battery history segments kept on disk.
+ *
+ * {@link BatteryStatsImpl} fills its in-memory history buffer as before; once the buffer is full
+ * it is handed to {@link #seal} and a new segment is started, so RAM stays bounded by a single
+ * segment while the ring keeps days of history. Sealing only copies the bytes; the file write
+ * happens on the background thread, outside the stats lock. The oldest segment file is deleted
+ * once the ring holds more than the configured number of segments.
+ *
+ * Every segment starts with an absolute history record, so a segment can be decoded without the
+ * ones before it. Readers take a snapshot of the ring and map one segment at a time.
+ *
+ * Segment file layout: {@code int magic, int length, int crc, byte[length] parcel data}.
+ */
+final class BatteryHistoryRing {
+    private static final String DIR_NAME = "battery-history";
+    private static final int HEADER_SIZE = 12;
+    private static final int MAGIC = 1112036178;
+    private static final String SUFFIX = ".bh";
+    private static final String TAG = "BatteryHistoryRing";
+    private final File mDir;
+    private final Object mLock = new Object();
+    private final int mMaxSegments;
+    private long mNextSeq;
+    private final ArrayList<Segment> mSegments = new ArrayList<>();
+    private long mTotalBytes;
+
+    private static final class Segment {
+        byte[] data;
+        final File file;
+        final int length;
+        final long seq;
+
+        Segment(long seq2, File file2, int length2, byte[] data2) {
+            this.seq = seq2;
+            this.file = file2;
+            this.length = length2;
+            this.data = data2;
+        }
+    }
+
+    /**
+     * Streams the segments of a ring snapshot, oldest first.
+     */
+    final class Reader {
+        private int mIndex;
+        private Parcel mParcel;
+        private final Segment[] mSnapshot;
+
+        Reader(Segment[] snapshot) {
+            this.mSnapshot = snapshot;
+        }
+
+        /**
+         * Returns the parcel holding the next unread record, loading the following segment when
+         * the current one is exhausted, or null once every segment has been read.
+         */
+        Parcel next() {
+            while (true) {
+                if (this.mParcel != null) {
+                    if (this.mParcel.dataPosition() < this.mParcel.dataSize()) {
+                        return this.mParcel;
+                    }
+                    this.mParcel.recycle();
+                    this.mParcel = null;
+                }
+                if (this.mIndex >= this.mSnapshot.length) {
+                    return null;
+                }
+                Segment[] segmentArr = this.mSnapshot;
+                int i = this.mIndex;
+                this.mIndex = i + 1;
+                byte[] data = BatteryHistoryRing.this.load(segmentArr[i]);
+                if (data != null) {
+                    this.mParcel = Parcel.obtain();
+                    this.mParcel.unmarshall(data, 0, data.length);
+                    this.mParcel.setDataPosition(0);
+                }
+            }
+        }
+
+        void close() {
+            if (this.mParcel != null) {
+                this.mParcel.recycle();
+                this.mParcel = null;
+            }
+            this.mIndex = this.mSnapshot.length;
+        }
+    }
+
+    BatteryHistoryRing(File systemDir, int maxSegments) {
+        this.mDir = new File(systemDir, DIR_NAME);
+        this.mMaxSegments = maxSegments;
+        this.mDir.mkdirs();
+        File[] files = this.mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(SUFFIX)) {
+                    try {
+                        long seq = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                        int length = (int) file.length() - HEADER_SIZE;
+                        if (length > 0) {
+                            this.mSegments.add(new Segment(seq, file, length, null));
+                            this.mTotalBytes += (long) length;
+                            this.mNextSeq = Math.max(this.mNextSeq, seq + 1);
+                        }
+                    } catch (NumberFormatException e) {
+                    }
+                }
+            }
+        }
+        this.mSegments.sort(new Comparator<Segment>() {
+            public int compare(Segment s1, Segment s2) {
+                return Long.compare(s1.seq, s2.seq);
+            }
+        });
+        trimLocked();
+    }
+
+    /**
+     * Queues the contents of {@code buffer} as the newest segment. Only copies the data; the file
+     * is written on the background thread.
+     */
+    void seal(Parcel buffer) {
+        byte[] data = buffer.marshall();
+        if (data.length != 0) {
+            final Segment segment;
+            synchronized (this.mLock) {
+                long j = this.mNextSeq;
+                this.mNextSeq = 1 + j;
+                segment = new Segment(j, new File(this.mDir, j + SUFFIX), data.length, data);
+                this.mSegments.add(segment);
+                this.mTotalBytes += (long) data.length;
+                trimLocked();
+            }
+            BackgroundThread.getHandler().post(new Runnable() {
+                public void run() {
+                    BatteryHistoryRing.this.persist(segment);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops every segment, for a history reset.
+     */
+    void reset() {
+        final Segment[] dropped;
+        synchronized (this.mLock) {
+            dropped = (Segment[]) this.mSegments.toArray(new Segment[this.mSegments.size()]);
+            this.mSegments.clear();
+            this.mTotalBytes = 0;
+        }
+        if (dropped.length != 0) {
+            BackgroundThread.getHandler().post(new Runnable() {
+                public void run() {
+                    for (Segment segment : dropped) {
+                        segment.file.delete();
+                    }
+                }
+            });
+        }
+    }
+
+    Reader openReader() {
+        Segment[] segmentArr;
+        synchronized (this.mLock) {
+            segmentArr = (Segment[]) this.mSegments.toArray(new Segment[this.mSegments.size()]);
+        }
+        return new Reader(segmentArr);
+    }
+
+    int getSegmentCount() {
+        int size;
+        synchronized (this.mLock) {
+            size = this.mSegments.size();
+        }
+        return size;
+    }
+
+    int getMaxSegments() {
+        return this.mMaxSegments;
+    }
+
+    long getTotalBytes() {
+        long j;
+        synchronized (this.mLock) {
+            j = this.mTotalBytes;
+        }
+        return j;
+    }
+
+    private void trimLocked() {
+        while (this.mSegments.size() > this.mMaxSegments) {
+            final Segment oldest = this.mSegments.remove(0);
+            this.mTotalBytes -= (long) oldest.length;
+            BackgroundThread.getHandler().post(new Runnable() {
+                public void run() {
+                    oldest.file.delete();
+                }
+            });
+        }
+    }
+
+    private void persist(Segment segment) {
+        byte[] data;
+        synchronized (this.mLock) {
+            data = segment.data;
+            if (data == null || !this.mSegments.contains(segment)) {
+                return;
+            }
+        }
+        File tmp = new File(this.mDir, segment.seq + SUFFIX + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC);
+                header.putInt(data.length);
+                header.putInt(crcOf(data, 0, data.length));
+                out.write(header.array());
+                out.write(data);
+                out.flush();
+                FileUtils.sync(out);
+                out.close();
+                if (!tmp.renameTo(segment.file)) {
+                    throw new IOException("rename failed");
+                }
+                synchronized (this.mLock) {
+                    if (this.mSegments.contains(segment)) {
+                        segment.data = null;
+                    } else {
+                        segment.file.delete();
+                    }
+                }
+            } catch (Throwable th) {
+                out.close();
+                throw th;
+            }
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to write battery history segment " + segment.seq, e);
+            tmp.delete();
+        }
+    }
+
+    private byte[] load(Segment segment) {
+        synchronized (this.mLock) {
+            if (segment.data != null) {
+                return segment.data;
+            }
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(segment.file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (mapped.remaining() >= HEADER_SIZE && mapped.getInt(0) == MAGIC) {
+                    int length = mapped.getInt(4);
+                    if (length > 0 && length <= mapped.remaining() - HEADER_SIZE) {
+                        byte[] data = new byte[length];
+                        mapped.position(HEADER_SIZE);
+                        mapped.get(data);
+                        if (crcOf(data, 0, length) == mapped.getInt(8)) {
+                            raf.close();
+                            return data;
+                        }
+                    }
+                }
+                Slog.w(TAG, "Skipping corrupt battery history segment " + segment.file);
+                raf.close();
+                return null;
+            } catch (Throwable th) {
+                raf.close();
+                throw th;
+            }
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to read battery history segment " + segment.file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static int crcOf(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+}
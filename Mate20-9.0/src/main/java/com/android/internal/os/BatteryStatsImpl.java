@@ -28,6 +28,7 @@ import android.os.Process;
 import android.os.RemoteException;
 import android.os.ServiceManager;
 import android.os.SystemClock;
+import android.os.SystemProperties;
 import android.os.UserHandle;
 import android.os.WorkSource;
 import android.os.connectivity.CellularBatteryStats;
@@ -131,6 +132,7 @@ public class BatteryStatsImpl extends BatteryStats {
     static final int DELTA_TIME_LONG = 524287;
     static final int DELTA_TIME_MASK = 524287;
     static final int DELTA_WAKELOCK_FLAG = 4194304;
+    private static final String HISTORY_SEGMENTS_PROPERTY = "persist.sys.batterystats.history_segments";
     private static final int MAGIC = -1166707595;
     static final int MAX_DAILY_ITEMS = 10;
     static final int MAX_HISTORY_BUFFER;
@@ -274,6 +276,8 @@ public class BatteryStatsImpl extends BatteryStats {
     final BatteryStats.HistoryItem mHistoryLastWritten;
     boolean mHistoryOverflow;
     final BatteryStats.HistoryItem mHistoryReadTmp;
+    private final BatteryHistoryRing mHistoryRing;
+    private BatteryHistoryRing.Reader mHistoryRingReader;
     final HashMap<BatteryStats.HistoryTag, Integer> mHistoryTagPool;
     int mInitStepMode;
     private String mInitialAcquireWakeName;
@@ -5798,6 +5802,7 @@ public class BatteryStatsImpl extends BatteryStats {
         this.mPlatformIdleStateCallback = null;
         this.mUserInfoProvider = null;
         this.mConstants = new Constants(this.mHandler);
+        this.mHistoryRing = null;
         clearHistoryLocked();
     }
 
@@ -6225,7 +6230,10 @@ public class BatteryStatsImpl extends BatteryStats {
             }
             boolean recordResetDueToOverflow = false;
             int dataSize = this.mHistoryBuffer.dataSize();
-            if (dataSize >= MAX_MAX_HISTORY_BUFFER * 3) {
+            if (this.mHistoryRing != null && dataSize >= MAX_HISTORY_BUFFER) {
+                startNextHistorySegmentLocked(elapsedRealtimeMs2, historyItem);
+                return;
+            } else if (dataSize >= MAX_MAX_HISTORY_BUFFER * 3) {
                 resetAllStatsLocked();
                 recordResetDueToOverflow = true;
                 long j = timeDiff;
@@ -6267,6 +6275,21 @@ public class BatteryStatsImpl extends BatteryStats {
         }
     }
 
+    private void startNextHistorySegmentLocked(long elapsedRealtimeMs, BatteryStats.HistoryItem cur) {
+        if (!this.mIteratingHistory) {
+            this.mHistoryRing.seal(this.mHistoryBuffer);
+            this.mHistoryBuffer.setDataSize(0);
+            this.mHistoryBuffer.setDataPosition(0);
+            this.mHistoryBuffer.setDataCapacity(MAX_HISTORY_BUFFER / 2);
+            this.mHistoryBufferLastPos = -1;
+            cur.currentTime = System.currentTimeMillis();
+            addHistoryBufferLocked(elapsedRealtimeMs, (byte) 5, cur);
+            addHistoryBufferLocked(elapsedRealtimeMs, (byte) 0, cur);
+            return;
+        }
+        throw new IllegalStateException("Can't do this while iterating history!");
+    }
+
     private void addHistoryBufferLocked(long elapsedRealtimeMs, byte cmd, BatteryStats.HistoryItem cur) {
         if (!this.mIteratingHistory) {
             this.mHistoryBufferLastPos = this.mHistoryBuffer.dataPosition();
@@ -6353,6 +6376,9 @@ public class BatteryStatsImpl extends BatteryStats {
         this.mHistoryBuffer.setDataSize(0);
         this.mHistoryBuffer.setDataPosition(0);
         this.mHistoryBuffer.setDataCapacity(MAX_HISTORY_BUFFER / 2);
+        if (this.mHistoryRing != null) {
+            this.mHistoryRing.reset();
+        }
         this.mHistoryLastLastWritten.clear();
         this.mHistoryLastWritten.clear();
         this.mHistoryTagPool.clear();
@@ -9039,6 +9065,8 @@ public class BatteryStatsImpl extends BatteryStats {
         this.mCurrentBatteryLevel = 0;
         initDischarge();
         clearHistoryLocked();
+        int historySegments = SystemProperties.getInt(HISTORY_SEGMENTS_PROPERTY, 0);
+        this.mHistoryRing = (file == null || historySegments <= 0) ? null : new BatteryHistoryRing(file, historySegments);
         updateDailyDeadlineLocked();
         this.mPlatformIdleStateCallback = cb;
         this.mUserInfoProvider = userInfoProvider;
@@ -9185,6 +9213,7 @@ public class BatteryStatsImpl extends BatteryStats {
         this.mHandler = null;
         this.mExternalSync = null;
         this.mConstants = new Constants(this.mHandler);
+        this.mHistoryRing = null;
         clearHistoryLocked();
         readFromParcel(p);
         this.mPlatformIdleStateCallback = null;
@@ -9596,17 +9625,27 @@ public class BatteryStatsImpl extends BatteryStats {
     }
 
     public int getHistoryTotalSize() {
+        if (this.mHistoryRing != null) {
+            return (int) Math.min(((long) (this.mHistoryRing.getMaxSegments() + 1)) * ((long) MAX_HISTORY_BUFFER), 2147483647L);
+        }
         return MAX_HISTORY_BUFFER;
     }
 
     public int getHistoryUsedSize() {
+        if (this.mHistoryRing != null) {
+            return (int) Math.min(this.mHistoryRing.getTotalBytes() + ((long) this.mHistoryBuffer.dataSize()), 2147483647L);
+        }
         return this.mHistoryBuffer.dataSize();
     }
 
     public boolean startIteratingHistoryLocked() {
-        if (this.mHistoryBuffer.dataSize() <= 0) {
+        boolean hasSegments = this.mHistoryRing != null && this.mHistoryRing.getSegmentCount() > 0;
+        if (this.mHistoryBuffer.dataSize() <= 0 && !hasSegments) {
             return false;
         }
+        if (hasSegments) {
+            this.mHistoryRingReader = this.mHistoryRing.openReader();
+        }
         this.mHistoryBuffer.setDataPosition(0);
         this.mReadOverflow = false;
         this.mIteratingHistory = true;
@@ -9640,16 +9679,26 @@ public class BatteryStatsImpl extends BatteryStats {
     }
 
     public boolean getNextHistoryLocked(BatteryStats.HistoryItem out) {
-        int pos = this.mHistoryBuffer.dataPosition();
+        Parcel src = this.mHistoryBuffer;
+        if (this.mHistoryRingReader != null) {
+            Parcel segment = this.mHistoryRingReader.next();
+            if (segment != null) {
+                src = segment;
+            } else {
+                this.mHistoryRingReader.close();
+                this.mHistoryRingReader = null;
+            }
+        }
+        int pos = src.dataPosition();
         if (pos == 0) {
             out.clear();
         }
-        if (pos >= this.mHistoryBuffer.dataSize()) {
+        if (pos >= src.dataSize()) {
             return false;
         }
         long lastRealtime = out.time;
         long lastWalltime = out.currentTime;
-        readHistoryDelta(this.mHistoryBuffer, out);
+        readHistoryDelta(src, out);
         if (!(out.cmd == 5 || out.cmd == 7 || lastWalltime == 0)) {
             out.currentTime = (out.time - lastRealtime) + lastWalltime;
         }
@@ -9657,6 +9706,10 @@ public class BatteryStatsImpl extends BatteryStats {
     }
 
     public void finishIteratingHistoryLocked() {
+        if (this.mHistoryRingReader != null) {
+            this.mHistoryRingReader.close();
+            this.mHistoryRingReader = null;
+        }
         this.mIteratingHistory = false;
         this.mHistoryBuffer.setDataPosition(this.mHistoryBuffer.dataSize());
         this.mReadHistoryStrings = null;
@@ -13993,5 +14046,17 @@ public class BatteryStatsImpl extends BatteryStats {
         pw.println(this.mNumAllUidCpuTimeReads);
         pw.print("UIDs removed since the later of device start or stats reset: ");
         pw.println(this.mNumUidsRemoved);
+        pw.println("Kernel stats reads:");
+        this.mKernelUidCpuTimeReader.getReadStats().dump(pw, "  ");
+        this.mKernelWakelockReader.getReadStats().dump(pw, "  ");
+        this.mKernelMemoryBandwidthStats.getReadStats().dump(pw, "  ");
+        if (this.mKernelCpuSpeedReaders != null) {
+            for (KernelCpuSpeedReader reader : this.mKernelCpuSpeedReaders) {
+                reader.getReadStats().dump(pw, "  ");
+            }
+        }
+        KernelCpuProcReader.getFreqTimeReaderInstance().getReadStats().dump(pw, "  ");
+        KernelCpuProcReader.getActiveTimeReaderInstance().getReadStats().dump(pw, "  ");
+        KernelCpuProcReader.getClusterTimeReaderInstance().getReadStats().dump(pw, "  ");
     }
 }
@@ -21,6 +21,7 @@ public class BinderCallsStats {
     private static final BinderCallsStats sInstance = new BinderCallsStats();
     private final Queue<CallSession> mCallSessionsPool = new ConcurrentLinkedQueue();
     private volatile boolean mDetailedTracking = false;
+    private final BinderLatencyTracker mLatencyTracker = new BinderLatencyTracker();
     private final Object mLock = new Object();
     private long mStartTime = System.currentTimeMillis();
     @GuardedBy("mLock")
@@ -29,6 +30,8 @@ public class BinderCallsStats {
     public static class CallSession {
         CallStat mCallStat = new CallStat();
         int mCallingUId;
+        final BinderLatencyTracker.Key mLatencyKey = new BinderLatencyTracker.Key();
+        long mLatencyStarted;
         long mStarted;
     }
 
@@ -117,6 +120,7 @@ public class BinderCallsStats {
         s.mCallStat.className = className;
         s.mCallStat.msg = code;
         s.mStarted = getThreadTimeMicro();
+        s.mLatencyStarted = this.mLatencyTracker.sampleStart();
         return s;
     }
 
@@ -142,6 +146,12 @@ public class BinderCallsStats {
             uidEntry.time += duration;
             uidEntry.callCount++;
         }
+        if (s.mLatencyStarted != 0) {
+            s.mLatencyKey.uid = s.mCallingUId;
+            s.mLatencyKey.className = s.mCallStat.className;
+            s.mLatencyKey.code = s.mCallStat.msg;
+            this.mLatencyTracker.record(s.mLatencyKey, s.mLatencyStarted);
+        }
         if (this.mCallSessionsPool.size() < 100) {
             this.mCallSessionsPool.add(s);
         }
@@ -372,10 +382,23 @@ public class BinderCallsStats {
         }
     }
 
+    public void setLatencySamplingPeriod(int period) {
+        this.mLatencyTracker.setSamplingPeriod(period);
+    }
+
+    public int getLatencySamplingPeriod() {
+        return this.mLatencyTracker.getSamplingPeriod();
+    }
+
+    public void dumpLatency(PrintWriter pw, int topN) {
+        this.mLatencyTracker.dump(pw, topN);
+    }
+
     public void reset() {
         synchronized (this.mLock) {
             this.mUidEntries.clear();
             this.mStartTime = System.currentTimeMillis();
         }
+        this.mLatencyTracker.reset();
     }
 }
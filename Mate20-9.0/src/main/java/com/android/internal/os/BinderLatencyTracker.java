@@ -0,0 +1,269 @@
+package com.android.internal.os;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sampled binder call latency histograms keyed by (uid, binder class, transaction code).
+ *
+ * Every histogram is a fixed size log-linear array of counters (four sub-buckets per power of two
+ * microseconds, roughly 19% precision up to about a minute) split into a few stripes picked by
+ * the recording thread, so recording is a single atomic add and never takes a lock. The number of
+ * histograms is capped; calls for keys beyond the cap are only counted as dropped.
+ */
+public class BinderLatencyTracker {
+    private static final int BUCKET_COUNT = 104;
+    private static final int[] HEATMAP_BOUNDS_MS = {1, 4, 16, 64, 256, 1000};
+    private static final int MAX_EXPONENT = 26;
+    private static final int MAX_HISTOGRAMS = 2048;
+    private static final int STRIPES = 2;
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 4;
+    private static final Comparator<Summary> TAIL_ORDER = new Comparator<Summary>() {
+        public int compare(Summary o1, Summary o2) {
+            if (o1.p999 != o2.p999) {
+                return Long.compare(o2.p999, o1.p999);
+            }
+            return Long.compare(o2.max, o1.max);
+        }
+    };
+    private final AtomicLong mDropped = new AtomicLong();
+    private final ConcurrentHashMap<Key, Histogram> mHistograms = new ConcurrentHashMap<>();
+    private volatile int mSamplingPeriod = 0;
+
+    static final class Key {
+        String className;
+        int code;
+        int uid;
+
+        Key() {
+        }
+
+        Key(int uid2, String className2, int code2) {
+            this.uid = uid2;
+            this.className = className2;
+            this.code = code2;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return this.uid == key.uid && this.code == key.code && this.className.equals(key.className);
+        }
+
+        public int hashCode() {
+            return (((this.uid * 31) + this.className.hashCode()) * 31) + this.code;
+        }
+
+        public String toString() {
+            return this.uid + "," + this.className + "/" + this.code;
+        }
+    }
+
+    static final class Histogram {
+        private final AtomicLongArray mCounts = new AtomicLongArray(STRIPES * BUCKET_COUNT);
+        private final AtomicLong mMaxMicros = new AtomicLong();
+
+        Histogram() {
+        }
+
+        void record(long micros) {
+            int stripe = ((int) Thread.currentThread().getId()) & (STRIPES - 1);
+            this.mCounts.incrementAndGet((stripe * BUCKET_COUNT) + bucketOf(micros));
+            long max = this.mMaxMicros.get();
+            while (micros > max && !this.mMaxMicros.compareAndSet(max, micros)) {
+                max = this.mMaxMicros.get();
+            }
+        }
+
+        long[] snapshot() {
+            long[] counts = new long[BUCKET_COUNT];
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    counts[i] = counts[i] + this.mCounts.get((stripe * BUCKET_COUNT) + i);
+                }
+            }
+            return counts;
+        }
+
+        long getMaxMicros() {
+            return this.mMaxMicros.get();
+        }
+    }
+
+    private static final class Summary {
+        long count;
+        final Key key;
+        long max;
+        long p50;
+        long p99;
+        long p999;
+
+        Summary(Key key2, Histogram histogram) {
+            this.key = key2;
+            long[] counts = histogram.snapshot();
+            for (long c : counts) {
+                this.count += c;
+            }
+            this.p50 = percentile(counts, this.count, 0.5d);
+            this.p99 = percentile(counts, this.count, 0.99d);
+            this.p999 = percentile(counts, this.count, 0.999d);
+            this.max = histogram.getMaxMicros();
+        }
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < ((long) SUB_BUCKETS)) {
+            if (micros < 0) {
+                return 0;
+            }
+            return (int) micros;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT && micros >= (1 << (MAX_EXPONENT + 1))) {
+            return BUCKET_COUNT - 1;
+        }
+        return (((exponent - SUB_BUCKET_BITS) + 1) * SUB_BUCKETS) + ((int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & ((long) (SUB_BUCKETS - 1))));
+    }
+
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return (long) bucket;
+        }
+        int shift = (bucket / SUB_BUCKETS) - 1;
+        return ((((long) ((bucket % SUB_BUCKETS) + SUB_BUCKETS)) << shift) + (1L << shift)) - 1;
+    }
+
+    static long percentile(long[] counts, long total, double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(((double) total) * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(counts.length - 1);
+    }
+
+    public void setSamplingPeriod(int period) {
+        this.mSamplingPeriod = Math.max(period, 0);
+    }
+
+    public int getSamplingPeriod() {
+        return this.mSamplingPeriod;
+    }
+
+    /**
+     * Returns the start timestamp for a sampled call, or 0 if this call is not sampled.
+     */
+    public long sampleStart() {
+        int period = this.mSamplingPeriod;
+        if (period <= 0) {
+            return 0;
+        }
+        if (period == 1 || ThreadLocalRandom.current().nextInt(period) == 0) {
+            return System.nanoTime();
+        }
+        return 0;
+    }
+
+    void record(Key lookupKey, long startNanos) {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        Histogram histogram = this.mHistograms.get(lookupKey);
+        if (histogram == null) {
+            if (this.mHistograms.size() >= MAX_HISTOGRAMS) {
+                this.mDropped.incrementAndGet();
+                return;
+            }
+            Histogram created = new Histogram();
+            histogram = this.mHistograms.putIfAbsent(new Key(lookupKey.uid, lookupKey.className, lookupKey.code), created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.record(micros);
+    }
+
+    public void reset() {
+        this.mHistograms.clear();
+        this.mDropped.set(0);
+    }
+
+    public void dump(PrintWriter pw, int topN) {
+        List<Summary> summaries = new ArrayList<>(this.mHistograms.size());
+        for (Map.Entry<Key, Histogram> entry : this.mHistograms.entrySet()) {
+            Summary summary = new Summary(entry.getKey(), entry.getValue());
+            if (summary.count > 0) {
+                summaries.add(summary);
+            }
+        }
+        pw.println("Latency sampling: 1/" + this.mSamplingPeriod + ", histograms=" + summaries.size() + ", dropped=" + this.mDropped.get());
+        summaries.sort(TAIL_ORDER);
+        pw.println("Top " + topN + " by p99.9 latency (uid,call_desc: samples p50 p99 p99.9 max, us):");
+        int shown = Math.min(topN, summaries.size());
+        for (int i = 0; i < shown; i++) {
+            Summary s = summaries.get(i);
+            pw.println(String.format("  %s: %d %d %d %d %d", new Object[]{s.key, Long.valueOf(s.count), Long.valueOf(s.p50), Long.valueOf(s.p99), Long.valueOf(s.p999), Long.valueOf(s.max)}));
+        }
+        pw.println();
+        dumpHeatmap(pw);
+    }
+
+    private void dumpHeatmap(PrintWriter pw) {
+        Map<String, long[]> rows = new TreeMap<>();
+        for (Map.Entry<Key, Histogram> entry : this.mHistograms.entrySet()) {
+            long[] row = rows.get(entry.getKey().className);
+            if (row == null) {
+                row = new long[(HEATMAP_BOUNDS_MS.length + 1)];
+                rows.put(entry.getKey().className, row);
+            }
+            long[] counts = entry.getValue().snapshot();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    int column = 0;
+                    long upperMs = bucketUpperBound(i) / 1000;
+                    while (column < HEATMAP_BOUNDS_MS.length && upperMs >= ((long) HEATMAP_BOUNDS_MS[column])) {
+                        column++;
+                    }
+                    row[column] = row[column] + counts[i];
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder("Per interface heatmap (calls by latency, ms):");
+        for (int bound : HEATMAP_BOUNDS_MS) {
+            sb.append(" <");
+            sb.append(bound);
+        }
+        sb.append(" >=");
+        sb.append(HEATMAP_BOUNDS_MS[HEATMAP_BOUNDS_MS.length - 1]);
+        pw.println(sb);
+        for (Map.Entry<String, long[]> row2 : rows.entrySet()) {
+            sb.setLength(0);
+            sb.append("  ");
+            sb.append(row2.getKey());
+            sb.append(':');
+            for (long count : row2.getValue()) {
+                sb.append(' ');
+                sb.append(count);
+            }
+            pw.println(sb);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.android.internal.os;
+
+import java.util.Arrays;
+
+/**
+ * Last values read from a kernel file, keyed by uid, with a fixed number of long columns per uid.
+ *
+ * Works like a {@link android.util.SparseLongArray} whose rows are stored side by side in one
+ * primitive array, so a reader looks a uid up once and then reads and updates all of its
+ * columns by index.
+ */
+final class KernelDeltaStore {
+    private int[] mKeys = new int[16];
+    private int mSize;
+    private long[] mValues;
+    private final int mWidth;
+
+    KernelDeltaStore(int width) {
+        this.mWidth = width;
+        this.mValues = new long[(16 * width)];
+    }
+
+    int size() {
+        return this.mSize;
+    }
+
+    int keyAt(int index) {
+        return this.mKeys[index];
+    }
+
+    /**
+     * Returns the index of {@code key}, or a negative number if it is not present.
+     */
+    int indexOfKey(int key) {
+        int low = 0;
+        int high = this.mSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = this.mKeys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return ~low;
+    }
+
+    /**
+     * Returns the index of {@code key}, adding a row of zeros for it first if it is missing.
+     */
+    int obtain(int key) {
+        int index = indexOfKey(key);
+        if (index >= 0) {
+            return index;
+        }
+        int index2 = ~index;
+        if (this.mSize == this.mKeys.length) {
+            int capacity = this.mKeys.length * 2;
+            this.mKeys = Arrays.copyOf(this.mKeys, capacity);
+            this.mValues = Arrays.copyOf(this.mValues, this.mWidth * capacity);
+        }
+        System.arraycopy(this.mKeys, index2, this.mKeys, index2 + 1, this.mSize - index2);
+        System.arraycopy(this.mValues, this.mWidth * index2, this.mValues, (index2 + 1) * this.mWidth, (this.mSize - index2) * this.mWidth);
+        this.mKeys[index2] = key;
+        Arrays.fill(this.mValues, this.mWidth * index2, (index2 + 1) * this.mWidth, 0);
+        this.mSize++;
+        return index2;
+    }
+
+    long get(int index, int column) {
+        return this.mValues[(this.mWidth * index) + column];
+    }
+
+    void set(int index, int column, long value) {
+        this.mValues[(this.mWidth * index) + column] = value;
+    }
+
+    void remove(int key) {
+        int index = indexOfKey(key);
+        if (index >= 0) {
+            removeRows(index, index + 1);
+        }
+    }
+
+    /**
+     * Removes every key in {@code [startKey, endKey]}.
+     */
+    void removeRange(int startKey, int endKey) {
+        if (endKey >= startKey) {
+            int start = indexOfKey(startKey);
+            if (start < 0) {
+                start = ~start;
+            }
+            int end = indexOfKey(endKey);
+            removeRows(start, end >= 0 ? end + 1 : ~end);
+        }
+    }
+
+    void clear() {
+        this.mSize = 0;
+    }
+
+    private void removeRows(int start, int end) {
+        if (end > start) {
+            System.arraycopy(this.mKeys, end, this.mKeys, start, this.mSize - end);
+            System.arraycopy(this.mValues, this.mWidth * end, this.mValues, this.mWidth * start, (this.mSize - end) * this.mWidth);
+            this.mSize -= end - start;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.android.internal.os;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import libcore.io.IoUtils;
+
+/**
+ * Line scanner over a whole kernel stats file held in one reused buffer.
+ *
+ * {@link #read} pulls the file in with plain read calls, growing the buffer only when a file
+ * outgrows it, and the caller then walks the lines and parses space separated numbers in place.
+ * Nothing is allocated on the success path; a String is built only for logging a bad line.
+ * Every read is timed into the scanner's {@link KernelReadStats}.
+ *
+ * Not thread safe; each reader owns its own scanner.
+ */
+final class KernelLineScanner {
+    private static final int MAX_BUFFER_SIZE = 1048576;
+    private byte[] mBuffer;
+    private int mLength;
+    private int mLineEnd;
+    private int mLineStart;
+    private int mNextLine;
+    private int mPos;
+    private final KernelReadStats mStats;
+    private boolean mTruncated;
+
+    KernelLineScanner(String name, int initialSize) {
+        this.mBuffer = new byte[initialSize];
+        this.mStats = new KernelReadStats(name);
+    }
+
+    /**
+     * Reads the whole file at {@code path} and rewinds to before its first line.
+     *
+     * @return the number of bytes read
+     * @throws FileNotFoundException if the file does not exist
+     */
+    int read(String path) throws IOException {
+        long startNanos = System.nanoTime();
+        this.mLength = 0;
+        this.mNextLine = 0;
+        this.mLineStart = 0;
+        this.mLineEnd = 0;
+        this.mPos = 0;
+        this.mTruncated = false;
+        try {
+            FileDescriptor fd = Os.open(path, OsConstants.O_RDONLY, 0);
+            while (true) {
+                try {
+                    if (this.mLength == this.mBuffer.length) {
+                        if (this.mBuffer.length >= MAX_BUFFER_SIZE) {
+                            this.mTruncated = true;
+                            break;
+                        }
+                        this.mBuffer = Arrays.copyOf(this.mBuffer, Math.min(this.mBuffer.length * 2, MAX_BUFFER_SIZE));
+                    }
+                    int count = Os.read(fd, this.mBuffer, this.mLength, this.mBuffer.length - this.mLength);
+                    if (count <= 0) {
+                        break;
+                    }
+                    this.mLength += count;
+                } catch (Throwable th) {
+                    IoUtils.closeQuietly(fd);
+                    throw th;
+                }
+            }
+            IoUtils.closeQuietly(fd);
+            this.mStats.noteRead(startNanos, this.mLength);
+            return this.mLength;
+        } catch (ErrnoException e) {
+            this.mLength = 0;
+            this.mStats.noteFailure();
+            if (e.errno == OsConstants.ENOENT) {
+                throw new FileNotFoundException(path);
+            }
+            throw e.rethrowAsIOException();
+        }
+    }
+
+    byte[] getBuffer() {
+        return this.mBuffer;
+    }
+
+    int getLength() {
+        return this.mLength;
+    }
+
+    /**
+     * Returns true if the last file did not fit into the largest allowed buffer.
+     */
+    boolean isTruncated() {
+        return this.mTruncated;
+    }
+
+    KernelReadStats getStats() {
+        return this.mStats;
+    }
+
+    /**
+     * Moves to the next line, returning false at the end of the file.
+     */
+    boolean nextLine() {
+        if (this.mNextLine >= this.mLength) {
+            return false;
+        }
+        this.mLineStart = this.mNextLine;
+        int end = this.mLineStart;
+        while (end < this.mLength && this.mBuffer[end] != 10) {
+            end++;
+        }
+        this.mLineEnd = end;
+        this.mNextLine = end + 1;
+        this.mPos = this.mLineStart;
+        return true;
+    }
+
+    /**
+     * Returns true if the current line has another field.
+     */
+    boolean hasNextField() {
+        skipSpaces();
+        return this.mPos < this.mLineEnd;
+    }
+
+    void skipField() {
+        skipSpaces();
+        while (this.mPos < this.mLineEnd && !isSpace(this.mBuffer[this.mPos])) {
+            this.mPos++;
+        }
+    }
+
+    int nextInt() {
+        return (int) nextLong();
+    }
+
+    /**
+     * Parses the leading decimal number of the next field and skips the rest of the field, so a
+     * key such as {@code "1000:"} reads as 1000.
+     *
+     * @throws NumberFormatException if the field does not start with a number
+     */
+    long nextLong() {
+        skipSpaces();
+        boolean negative = false;
+        if (this.mPos < this.mLineEnd && this.mBuffer[this.mPos] == 45) {
+            negative = true;
+            this.mPos++;
+        }
+        int start = this.mPos;
+        long value = 0;
+        while (this.mPos < this.mLineEnd) {
+            int digit = this.mBuffer[this.mPos] - 48;
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = (10 * value) + ((long) digit);
+            this.mPos++;
+        }
+        if (this.mPos == start) {
+            throw new NumberFormatException("Expected a number in line: " + getLine());
+        }
+        while (this.mPos < this.mLineEnd && !isSpace(this.mBuffer[this.mPos])) {
+            this.mPos++;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the current line as a String, for logging.
+     */
+    String getLine() {
+        return new String(this.mBuffer, this.mLineStart, this.mLineEnd - this.mLineStart);
+    }
+
+    private void skipSpaces() {
+        while (this.mPos < this.mLineEnd && isSpace(this.mBuffer[this.mPos])) {
+            this.mPos++;
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == 32 || b == 9 || b == 13;
+    }
+}
@@ -8,7 +8,6 @@ import android.util.Slog;
 import com.android.internal.annotations.VisibleForTesting;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
 public class KernelMemoryBandwidthStats {
@@ -16,22 +15,21 @@ public class KernelMemoryBandwidthStats {
     private static final String TAG = "KernelMemoryBandwidthStats";
     private static final String mSysfsFile = "/sys/kernel/memory_state_time/show_stat";
     protected final LongSparseLongArray mBandwidthEntries = new LongSparseLongArray();
+    private final KernelLineScanner mScanner = new KernelLineScanner("memory_state_time", 4096);
     private boolean mStatsDoNotExist = false;
 
     public void updateStats() {
-        BufferedReader reader;
         if (!this.mStatsDoNotExist) {
             long startTime = SystemClock.uptimeMillis();
             StrictMode.ThreadPolicy policy = StrictMode.allowThreadDiskReads();
             try {
-                reader = new BufferedReader(new FileReader(mSysfsFile));
-                parseStats(reader);
-                reader.close();
+                this.mScanner.read(mSysfsFile);
+                parseStats(this.mScanner);
             } catch (FileNotFoundException e) {
                 Slog.w(TAG, "No kernel memory bandwidth stats available");
                 this.mBandwidthEntries.clear();
                 this.mStatsDoNotExist = true;
-            } catch (IOException e2) {
+            } catch (IOException | NumberFormatException e2) {
                 try {
                     Slog.e(TAG, "Failed to read memory bandwidth: " + e2.getMessage());
                     this.mBandwidthEntries.clear();
@@ -40,17 +38,33 @@ public class KernelMemoryBandwidthStats {
                     throw th;
                 }
             } catch (Throwable th2) {
-                r4.addSuppressed(th2);
+                StrictMode.setThreadPolicy(policy);
+                throw th2;
             }
             StrictMode.setThreadPolicy(policy);
             long readTime = SystemClock.uptimeMillis() - startTime;
             if (readTime > 100) {
                 Slog.w(TAG, "Reading memory bandwidth file took " + readTime + "ms");
             }
-            return;
         }
-        return;
-        throw th;
+    }
+
+    private void parseStats(KernelLineScanner scanner) {
+        this.mBandwidthEntries.clear();
+        while (scanner.nextLine()) {
+            scanner.skipField();
+            int bandwidth = 0;
+            while (scanner.hasNextField()) {
+                long value = scanner.nextLong() / 1000000;
+                int index = this.mBandwidthEntries.indexOfKey((long) bandwidth);
+                if (index >= 0) {
+                    this.mBandwidthEntries.put((long) bandwidth, this.mBandwidthEntries.valueAt(index) + value);
+                } else {
+                    this.mBandwidthEntries.put((long) bandwidth, value);
+                }
+                bandwidth++;
+            }
+        }
     }
 
     @VisibleForTesting
@@ -83,4 +97,8 @@ public class KernelMemoryBandwidthStats {
     public LongSparseLongArray getBandwidthEntries() {
         return this.mBandwidthEntries;
     }
+
+    public KernelReadStats getReadStats() {
+        return this.mScanner.getStats();
+    }
 }
@@ -0,0 +1,73 @@
+package com.android.internal.os;
+
+import java.io.PrintWriter;
+
+/**
+ * Timing of the reads of a single kernel stats file, for the batterystats dump.
+ */
+public final class KernelReadStats {
+    private long mBytes;
+    private int mCount;
+    private int mFailures;
+    private long mLastMicros;
+    private long mMaxMicros;
+    private final String mName;
+    private long mTotalMicros;
+
+    KernelReadStats(String name) {
+        this.mName = name;
+    }
+
+    synchronized void noteRead(long startNanos, int bytes) {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        this.mCount++;
+        this.mBytes += (long) bytes;
+        this.mLastMicros = micros;
+        this.mTotalMicros += micros;
+        if (micros > this.mMaxMicros) {
+            this.mMaxMicros = micros;
+        }
+    }
+
+    synchronized void noteFailure() {
+        this.mFailures++;
+    }
+
+    public synchronized int getCount() {
+        return this.mCount;
+    }
+
+    public synchronized int getFailures() {
+        return this.mFailures;
+    }
+
+    public synchronized long getLastMicros() {
+        return this.mLastMicros;
+    }
+
+    public synchronized long getMaxMicros() {
+        return this.mMaxMicros;
+    }
+
+    public synchronized long getTotalMicros() {
+        return this.mTotalMicros;
+    }
+
+    public synchronized void dump(PrintWriter pw, String prefix) {
+        pw.print(prefix);
+        pw.print(this.mName);
+        pw.print(": reads=");
+        pw.print(this.mCount);
+        pw.print(" failed=");
+        pw.print(this.mFailures);
+        pw.print(" bytes=");
+        pw.print(this.mBytes);
+        pw.print(" last=");
+        pw.print(this.mLastMicros);
+        pw.print("us avg=");
+        pw.print(this.mCount > 0 ? this.mTotalMicros / ((long) this.mCount) : 0);
+        pw.print("us max=");
+        pw.print(this.mMaxMicros);
+        pw.println("us");
+    }
+}
@@ -8,7 +8,6 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.logging.nano.MetricsProto;
 import com.android.internal.midi.MidiConstants;
 import com.android.internal.os.KernelWakelockStats;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Iterator;
@@ -22,60 +21,62 @@ public class KernelWakelockReader {
     private static final String sWakeupSourceFile = "/d/wakeup_sources";
     private final long[] mProcWakelocksData = new long[3];
     private final String[] mProcWakelocksName = new String[3];
+    private final KernelLineScanner mScanner = new KernelLineScanner("wakelocks", 32768);
 
     public final KernelWakelockStats readKernelWakelockStats(KernelWakelockStats staleStats) {
         boolean wakeup_sources;
-        FileInputStream is;
-        byte[] buffer = new byte[32768];
+        int len;
         long startTime = SystemClock.uptimeMillis();
         int oldMask = StrictMode.allowThreadDiskReadsMask();
         try {
-            is = new FileInputStream(sWakelockFile);
-            wakeup_sources = false;
             try {
-                int len = is.read(buffer);
-                is.close();
-                StrictMode.setThreadPolicyMask(oldMask);
-                if (SystemClock.uptimeMillis() - startTime > 100) {
-                    Slog.w(TAG, "Reading wakelock stats took " + readTime + "ms");
-                }
-                if (len > 0) {
-                    if (len >= buffer.length) {
-                        Slog.wtf(TAG, "Kernel wake locks exceeded buffer size " + buffer.length);
-                    }
-                    int i = 0;
-                    while (true) {
-                        if (i >= len) {
-                            break;
-                        } else if (buffer[i] == 0) {
-                            len = i;
-                            break;
-                        } else {
-                            i++;
-                        }
-                    }
+                len = this.mScanner.read(sWakelockFile);
+                wakeup_sources = false;
+            } catch (FileNotFoundException e) {
+                try {
+                    len = this.mScanner.read(sWakeupSourceFile);
+                    wakeup_sources = true;
+                } catch (FileNotFoundException e2) {
+                    Slog.wtf(TAG, "neither /proc/wakelocks nor /d/wakeup_sources exists");
+                    StrictMode.setThreadPolicyMask(oldMask);
+                    return null;
                 }
-                return parseProcWakelocks(buffer, len, wakeup_sources, staleStats);
-            } catch (IOException e) {
-                Slog.wtf(TAG, "failed to read kernel wakelocks", e);
-                StrictMode.setThreadPolicyMask(oldMask);
-                return null;
-            } catch (Throwable th) {
-                StrictMode.setThreadPolicyMask(oldMask);
-                throw th;
             }
-        } catch (FileNotFoundException e2) {
-            try {
-                is = new FileInputStream(sWakeupSourceFile);
-                wakeup_sources = true;
-            } catch (FileNotFoundException e3) {
-                Slog.wtf(TAG, "neither /proc/wakelocks nor /d/wakeup_sources exists");
-                StrictMode.setThreadPolicyMask(oldMask);
-                return null;
+            StrictMode.setThreadPolicyMask(oldMask);
+            long readTime = SystemClock.uptimeMillis() - startTime;
+            if (readTime > 100) {
+                Slog.w(TAG, "Reading wakelock stats took " + readTime + "ms");
+            }
+            byte[] buffer = this.mScanner.getBuffer();
+            if (this.mScanner.isTruncated()) {
+                Slog.wtf(TAG, "Kernel wake locks exceeded buffer size " + buffer.length);
+            }
+            int i = 0;
+            while (true) {
+                if (i >= len) {
+                    break;
+                } else if (buffer[i] == 0) {
+                    len = i;
+                    break;
+                } else {
+                    i++;
+                }
             }
+            return parseProcWakelocks(buffer, len, wakeup_sources, staleStats);
+        } catch (IOException e3) {
+            Slog.wtf(TAG, "failed to read kernel wakelocks", e3);
+            StrictMode.setThreadPolicyMask(oldMask);
+            return null;
+        } catch (Throwable th) {
+            StrictMode.setThreadPolicyMask(oldMask);
+            throw th;
         }
     }
 
+    public KernelReadStats getReadStats() {
+        return this.mScanner.getStats();
+    }
+
     @VisibleForTesting
     public KernelWakelockStats parseProcWakelocks(byte[] wlBuffer, int len, boolean wakeup_sources, KernelWakelockStats staleStats) {
         int i;
@@ -0,0 +1,216 @@
+package com.android.internal.os;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import java.io.FileDescriptor;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import libcore.io.IoUtils;
+
+/**
+ * Reads {@code /proc} stat files for {@link ProcessCpuTracker} without per-read garbage.
+ *
+ * Every file is read into one reused direct buffer and the wanted fields are parsed in place into
+ * the caller's primitive arrays; the only object created on the hot path is the file descriptor.
+ * Process names are decoded into a String only when a process is seen for the first time.
+ *
+ * Not thread safe; each tracker owns its own sampler.
+ */
+final class ProcStatSampler {
+    private static final int BUFFER_SIZE = 4096;
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean mError;
+    private int mLength;
+    private final byte[] mNameBytes = new byte[256];
+    private int mPos;
+
+    ProcStatSampler() {
+    }
+
+    /**
+     * Reads /proc/stat and fills {@code out} with the user, nice, system, idle, iowait, irq and
+     * softirq jiffies of the aggregate cpu line.
+     */
+    boolean readSystemCpu(long[] out) {
+        if (!readFile("/proc/stat")) {
+            return false;
+        }
+        this.mPos = 0;
+        this.mError = false;
+        skipFields(1);
+        for (int i = 0; i < 7; i++) {
+            out[i] = nextLong();
+        }
+        return !this.mError;
+    }
+
+    /**
+     * Reads /proc/loadavg and fills {@code out} with the 1, 5 and 15 minute load averages.
+     */
+    boolean readLoadAverage(float[] out) {
+        if (!readFile("/proc/loadavg")) {
+            return false;
+        }
+        this.mPos = 0;
+        this.mError = false;
+        for (int i = 0; i < 3; i++) {
+            out[i] = nextFloat();
+        }
+        return !this.mError;
+    }
+
+    /**
+     * Reads a process or thread stat file and fills {@code out} with minflt, majflt, utime and
+     * stime, the same layout {@code Process.readProcFile} produces for the short stats format.
+     */
+    boolean readProcessStats(String path, long[] out) {
+        if (!readFile(path) || !seekPastName()) {
+            return false;
+        }
+        skipFields(7);
+        out[0] = nextLong();
+        skipFields(1);
+        out[1] = nextLong();
+        skipFields(1);
+        out[2] = nextLong();
+        out[3] = nextLong();
+        return !this.mError;
+    }
+
+    /**
+     * Like {@link #readProcessStats} but also reads the name into {@code outName[0]} and fills
+     * {@code out[1..5]} with minflt, majflt, utime, stime and vsize, matching the full stats format.
+     */
+    boolean readProcessFullStats(String path, String[] outName, long[] out) {
+        if (!readFile(path) || !seekPastName()) {
+            return false;
+        }
+        int nameEnd = this.mPos - 1;
+        skipFields(7);
+        out[1] = nextLong();
+        skipFields(1);
+        out[2] = nextLong();
+        skipFields(1);
+        out[3] = nextLong();
+        out[4] = nextLong();
+        skipFields(7);
+        out[5] = nextLong();
+        if (this.mError) {
+            return false;
+        }
+        int nameStart = 0;
+        while (nameStart < nameEnd && this.mBuffer.get(nameStart) != 40) {
+            nameStart++;
+        }
+        int length = Math.min((nameEnd - nameStart) - 1, this.mNameBytes.length);
+        if (length < 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            this.mNameBytes[i] = this.mBuffer.get(nameStart + 1 + i);
+        }
+        outName[0] = new String(this.mNameBytes, 0, length, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    private boolean readFile(String path) {
+        FileDescriptor fd = null;
+        try {
+            fd = Os.open(path, OsConstants.O_RDONLY, 0);
+            this.mBuffer.clear();
+            while (this.mBuffer.hasRemaining() && Os.read(fd, this.mBuffer) > 0) {
+            }
+            this.mLength = this.mBuffer.position();
+            return this.mLength > 0;
+        } catch (ErrnoException | InterruptedIOException e) {
+            return false;
+        } finally {
+            IoUtils.closeQuietly(fd);
+        }
+    }
+
+    /**
+     * Moves past the parenthesised name. The name may itself contain spaces and parentheses, so
+     * the last closing parenthesis is the one that ends it.
+     */
+    private boolean seekPastName() {
+        this.mError = false;
+        for (int i = this.mLength - 1; i >= 0; i--) {
+            if (this.mBuffer.get(i) == 41) {
+                this.mPos = i + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipSpaces() {
+        while (this.mPos < this.mLength) {
+            byte b = this.mBuffer.get(this.mPos);
+            if (b != 32 && b != 10) {
+                return;
+            }
+            this.mPos++;
+        }
+    }
+
+    private void skipFields(int count) {
+        for (int i = 0; i < count; i++) {
+            skipSpaces();
+            if (this.mPos >= this.mLength) {
+                this.mError = true;
+                return;
+            }
+            while (this.mPos < this.mLength) {
+                byte b = this.mBuffer.get(this.mPos);
+                if (b == 32 || b == 10) {
+                    break;
+                }
+                this.mPos++;
+            }
+        }
+    }
+
+    private long nextLong() {
+        skipSpaces();
+        boolean negative = false;
+        if (this.mPos < this.mLength && this.mBuffer.get(this.mPos) == 45) {
+            negative = true;
+            this.mPos++;
+        }
+        int start = this.mPos;
+        long value = 0;
+        while (this.mPos < this.mLength) {
+            int digit = this.mBuffer.get(this.mPos) - 48;
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = (10 * value) + ((long) digit);
+            this.mPos++;
+        }
+        if (this.mPos == start) {
+            this.mError = true;
+        }
+        return negative ? -value : value;
+    }
+
+    private float nextFloat() {
+        float value = (float) nextLong();
+        if (this.mPos < this.mLength && this.mBuffer.get(this.mPos) == 46) {
+            this.mPos++;
+            float scale = 0.1f;
+            while (this.mPos < this.mLength) {
+                int digit = this.mBuffer.get(this.mPos) - 48;
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value += ((float) digit) * scale;
+                scale /= 10.0f;
+                this.mPos++;
+            }
+        }
+        return value;
+    }
+}
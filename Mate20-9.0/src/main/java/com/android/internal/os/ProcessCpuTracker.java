@@ -27,8 +27,6 @@ import libcore.io.IoUtils;
 
 public class ProcessCpuTracker {
     private static final boolean DEBUG = false;
-    private static final int[] LOAD_AVERAGE_FORMAT = {16416, 16416, 16416};
-    private static final int[] PROCESS_FULL_STATS_FORMAT = {32, 4640, 32, 32, 32, 32, 32, 32, 32, 8224, 32, 8224, 32, 8224, 8224, 32, 32, 32, 32, 32, 32, 32, 8224};
     static final int PROCESS_FULL_STAT_MAJOR_FAULTS = 2;
     static final int PROCESS_FULL_STAT_MINOR_FAULTS = 1;
     static final int PROCESS_FULL_STAT_STIME = 4;
@@ -39,7 +37,6 @@ public class ProcessCpuTracker {
     static final int PROCESS_STAT_MINOR_FAULTS = 0;
     static final int PROCESS_STAT_STIME = 3;
     static final int PROCESS_STAT_UTIME = 2;
-    private static final int[] SYSTEM_CPU_FORMAT = {MetricsProto.MetricsEvent.OVERVIEW_SELECT_TIMEOUT, 8224, 8224, 8224, 8224, 8224, 8224, 8224};
     private static final String TAG = "ProcessCpuTracker";
     private static final boolean localLOGV = false;
     private static final Comparator<Stats> sLoadComparator = new Comparator<Stats>() {
@@ -100,6 +97,7 @@ public class ProcessCpuTracker {
     private boolean mRelStatsAreGood;
     private int mRelSystemTime;
     private int mRelUserTime;
+    private final ProcStatSampler mSampler = new ProcStatSampler();
     private final long[] mSinglePidStatsData = new long[4];
     private final long[] mSystemCpuData = new long[7];
     private final ArrayList<Stats> mWorkingProcs = new ArrayList<>();
@@ -180,26 +178,71 @@ public class ProcessCpuTracker {
         update();
     }
 
-    /* JADX INFO: finally extract failed */
     public void update() {
-        long nowUptime;
-        long nowRealtime;
-        long nowWallTime;
-        long nowUptime2 = SystemClock.uptimeMillis();
-        long nowRealtime2 = SystemClock.elapsedRealtime();
-        long nowWallTime2 = System.currentTimeMillis();
+        updateSystemTimes();
+        StrictMode.ThreadPolicy savedPolicy = StrictMode.allowThreadDiskReads();
+        try {
+            this.mCurPids = collectStats("/proc", -1, this.mFirst, this.mCurPids, this.mProcStats);
+            StrictMode.setThreadPolicy(savedPolicy);
+            updateLoadAverage();
+            this.mWorkingProcsSorted = false;
+            this.mFirst = false;
+        } catch (Throwable th) {
+            StrictMode.setThreadPolicy(savedPolicy);
+            throw th;
+        }
+    }
+
+    /**
+     * Partial sample: refreshes the system totals and only the given, already tracked pids,
+     * without listing /proc or visiting threads. Every other process reports no change for this
+     * interval; its time is picked up by the next full {@link #update()}. Falls back to a full
+     * update when nothing has been sampled yet.
+     */
+    public void update(int[] pids) {
+        if (this.mFirst) {
+            update();
+            return;
+        }
+        updateSystemTimes();
+        StrictMode.ThreadPolicy savedPolicy = StrictMode.allowThreadDiskReads();
+        try {
+            int NS = this.mProcStats.size();
+            for (int i = 0; i < NS; i++) {
+                Stats st = this.mProcStats.get(i);
+                st.added = false;
+                st.working = false;
+                st.rel_utime = 0;
+                st.rel_stime = 0;
+                st.rel_minfaults = 0;
+                st.rel_majfaults = 0;
+            }
+            for (int pid : pids) {
+                int index = indexOfPid(pid);
+                if (index >= 0) {
+                    sampleProcess(this.mProcStats.get(index));
+                }
+            }
+            StrictMode.setThreadPolicy(savedPolicy);
+            updateLoadAverage();
+            this.mWorkingProcsSorted = false;
+        } catch (Throwable th) {
+            StrictMode.setThreadPolicy(savedPolicy);
+            throw th;
+        }
+    }
+
+    private void updateSystemTimes() {
+        long nowUptime = SystemClock.uptimeMillis();
+        long nowRealtime = SystemClock.elapsedRealtime();
+        long nowWallTime = System.currentTimeMillis();
         long[] sysCpu = this.mSystemCpuData;
-        boolean z = true;
-        if (Process.readProcFile("/proc/stat", SYSTEM_CPU_FORMAT, null, sysCpu, null)) {
+        if (this.mSampler.readSystemCpu(sysCpu)) {
             long usertime = (sysCpu[0] + sysCpu[1]) * this.mJiffyMillis;
             long systemtime = sysCpu[2] * this.mJiffyMillis;
-            nowWallTime = nowWallTime2;
             long idletime = sysCpu[3] * this.mJiffyMillis;
-            nowRealtime = nowRealtime2;
             long iowaittime = sysCpu[4] * this.mJiffyMillis;
-            nowUptime = nowUptime2;
             long irqtime = sysCpu[5] * this.mJiffyMillis;
-            long[] jArr = sysCpu;
             long softirqtime = sysCpu[6] * this.mJiffyMillis;
             this.mRelUserTime = (int) (usertime - this.mBaseUserTime);
             this.mRelSystemTime = (int) (systemtime - this.mBaseSystemTime);
@@ -207,7 +250,6 @@ public class ProcessCpuTracker {
             this.mRelIrqTime = (int) (irqtime - this.mBaseIrqTime);
             this.mRelSoftIrqTime = (int) (softirqtime - this.mBaseSoftIrqTime);
             this.mRelIdleTime = (int) (idletime - this.mBaseIdleTime);
-            z = true;
             this.mRelStatsAreGood = true;
             this.mBaseUserTime = usertime;
             this.mBaseSystemTime = systemtime;
@@ -215,11 +257,6 @@ public class ProcessCpuTracker {
             this.mBaseIrqTime = irqtime;
             this.mBaseSoftIrqTime = softirqtime;
             this.mBaseIdleTime = idletime;
-        } else {
-            nowUptime = nowUptime2;
-            nowRealtime = nowRealtime2;
-            nowWallTime = nowWallTime2;
-            long[] jArr2 = sysCpu;
         }
         this.mLastSampleTime = this.mCurrentSampleTime;
         this.mCurrentSampleTime = nowUptime;
@@ -227,28 +264,66 @@ public class ProcessCpuTracker {
         this.mCurrentSampleRealTime = nowRealtime;
         this.mLastSampleWallTime = this.mCurrentSampleWallTime;
         this.mCurrentSampleWallTime = nowWallTime;
-        StrictMode.ThreadPolicy savedPolicy = StrictMode.allowThreadDiskReads();
-        try {
-            char c = z;
-            this.mCurPids = collectStats("/proc", -1, this.mFirst, this.mCurPids, this.mProcStats);
-            StrictMode.setThreadPolicy(savedPolicy);
-            float[] loadAverages = this.mLoadAverageData;
-            if (Process.readProcFile("/proc/loadavg", LOAD_AVERAGE_FORMAT, null, null, loadAverages)) {
-                float load1 = loadAverages[0];
-                float load5 = loadAverages[c];
-                float load15 = loadAverages[2];
-                if (!(load1 == this.mLoad1 && load5 == this.mLoad5 && load15 == this.mLoad15)) {
-                    this.mLoad1 = load1;
-                    this.mLoad5 = load5;
-                    this.mLoad15 = load15;
-                    onLoadChanged(load1, load5, load15);
+    }
+
+    private void updateLoadAverage() {
+        float[] loadAverages = this.mLoadAverageData;
+        if (this.mSampler.readLoadAverage(loadAverages)) {
+            float load1 = loadAverages[0];
+            float load5 = loadAverages[1];
+            float load15 = loadAverages[2];
+            if (load1 != this.mLoad1 || load5 != this.mLoad5 || load15 != this.mLoad15) {
+                this.mLoad1 = load1;
+                this.mLoad5 = load5;
+                this.mLoad15 = load15;
+                onLoadChanged(load1, load5, load15);
+            }
+        }
+    }
+
+    private int indexOfPid(int pid) {
+        int low = 0;
+        int high = this.mProcStats.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midPid = this.mProcStats.get(mid).pid;
+            if (midPid < pid) {
+                low = mid + 1;
+            } else if (midPid > pid) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void sampleProcess(Stats st) {
+        if (st.interesting) {
+            long uptime = SystemClock.uptimeMillis();
+            long[] procStats = this.mProcessStatsData;
+            if (this.mSampler.readProcessStats(st.statFile, procStats)) {
+                long minfaults = procStats[0];
+                long majfaults = procStats[1];
+                long utime = procStats[2] * this.mJiffyMillis;
+                long stime = procStats[3] * this.mJiffyMillis;
+                if (utime == st.base_utime && stime == st.base_stime) {
+                    st.active = false;
+                    return;
                 }
+                st.active = true;
+                st.rel_uptime = uptime - st.base_uptime;
+                st.base_uptime = uptime;
+                st.rel_utime = (int) (utime - st.base_utime);
+                st.rel_stime = (int) (stime - st.base_stime);
+                st.base_utime = utime;
+                st.base_stime = stime;
+                st.rel_minfaults = (int) (minfaults - st.base_minfaults);
+                st.rel_majfaults = (int) (majfaults - st.base_majfaults);
+                st.base_minfaults = minfaults;
+                st.base_majfaults = majfaults;
+                st.working = true;
             }
-            this.mWorkingProcsSorted = false;
-            this.mFirst = false;
-        } catch (Throwable th) {
-            StrictMode.setThreadPolicy(savedPolicy);
-            throw th;
         }
     }
 
@@ -333,7 +408,7 @@ public class ProcessCpuTracker {
                 long[] procStats = this.mProcessFullStatsData;
                 st4.base_uptime = SystemClock.uptimeMillis();
                 String path = st4.statFile.toString();
-                if (Process.readProcFile(path, PROCESS_FULL_STATS_FORMAT, procStatsString, procStats, null)) {
+                if (this.mSampler.readProcessFullStats(path, procStatsString, procStats)) {
                     st4.vsize = procStats[5];
                     st4.interesting = true;
                     st4.baseName = procStatsString[0];
@@ -385,7 +460,7 @@ public class ProcessCpuTracker {
                     long uptime2 = SystemClock.uptimeMillis();
                     long[] procStats2 = this.mProcessStatsData;
                     long uptime3 = uptime2;
-                    if (!Process.readProcFile(st2.statFile.toString(), PROCESS_STATS_FORMAT, null, procStats2, null)) {
+                    if (!this.mSampler.readProcessStats(st2.statFile, procStats2)) {
                         pids2 = pids4;
                         NP = NP2;
                         NS = NS2;
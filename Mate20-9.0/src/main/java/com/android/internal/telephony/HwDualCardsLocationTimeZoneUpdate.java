@@ -23,7 +23,7 @@ import android.telephony.TelephonyManager;
 import android.text.TextUtils;
 import com.android.internal.telephony.HwLocationBasedTimeZoneUpdater;
 import com.android.internal.telephony.TimeServiceHelper;
-import com.android.internal.telephony.latlongtotimezone.TimezoneMapper;
+import com.android.internal.telephony.latlongtotimezone.TimezoneGridIndex;
 import com.android.internal.telephony.uicc.IccCardStatus;
 import com.android.internal.telephony.uicc.UiccController;
 import com.android.internal.telephony.vsim.HwVSimUtils;
@@ -320,7 +320,7 @@ public class HwDualCardsLocationTimeZoneUpdate extends Handler {
         if (this.mCurrentLocation != null) {
             this.mLastGetLocTime = SystemClock.elapsedRealtime();
             if (getAutoTimeZone()) {
-                String newZoneId = TimezoneMapper.latLngToTimezoneString(this.mCurrentLocation.getLatitude(), this.mCurrentLocation.getLongitude());
+                String newZoneId = TimezoneGridIndex.latLngToTimezoneString(this.mCurrentLocation.getLatitude(), this.mCurrentLocation.getLongitude());
                 if (isVaildZoneId(newZoneId)) {
                     String currentZoneId = TimeZone.getDefault().getID();
                     log("updateTimeZoneByLocation, current time zone: " + currentZoneId + "  new zone: " + newZoneId);
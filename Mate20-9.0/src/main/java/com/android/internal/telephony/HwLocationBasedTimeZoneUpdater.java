@@ -33,7 +33,7 @@ import android.telephony.TelephonyManager;
 import android.telephony.gsm.GsmCellLocation;
 import android.text.TextUtils;
 import android.util.Log;
-import com.android.internal.telephony.latlongtotimezone.TimezoneMapper;
+import com.android.internal.telephony.latlongtotimezone.TimezoneGridIndex;
 import com.android.internal.telephony.vsim.HwVSimConstants;
 import com.android.internal.util.State;
 import com.android.internal.util.StateMachine;
@@ -399,7 +399,7 @@ public class HwLocationBasedTimeZoneUpdater extends StateMachine {
             if (!HwLocationBasedTimeZoneUpdater.this.getAutoTimeZone()) {
                 HwLocationBasedTimeZoneUpdater.this.loge("Auto time zone disabled!");
             } else if (HwLocationBasedTimeZoneUpdater.this.mCurrentLocation != null) {
-                String newZoneId = TimezoneMapper.latLngToTimezoneString(HwLocationBasedTimeZoneUpdater.this.mCurrentLocation.getLatitude(), HwLocationBasedTimeZoneUpdater.this.mCurrentLocation.getLongitude());
+                String newZoneId = TimezoneGridIndex.latLngToTimezoneString(HwLocationBasedTimeZoneUpdater.this.mCurrentLocation.getLatitude(), HwLocationBasedTimeZoneUpdater.this.mCurrentLocation.getLongitude());
                 HwLocationBasedTimeZoneUpdater hwLocationBasedTimeZoneUpdater = HwLocationBasedTimeZoneUpdater.this;
                 hwLocationBasedTimeZoneUpdater.log("LocationTzUpdatedState, time zone after conversion: " + newZoneId);
                 boolean isValidZoneId = HwLocationBasedTimeZoneUpdater.this.isValidTimeZone(newZoneId);
@@ -408,7 +408,7 @@ public class HwLocationBasedTimeZoneUpdater extends StateMachine {
                 hwLocationBasedTimeZoneUpdater2.log("LocationTzUpdatedState, current time zone: " + currentZoneId);
                 if (isValidZoneId) {
                     if (!newZoneId.equals(currentZoneId)) {
-                        List<String> affiliatedIslands = TimezoneMapper.getAffiliatedIslands();
+                        List<String> affiliatedIslands = TimezoneGridIndex.getAffiliatedIslands();
                         if (affiliatedIslands == null || affiliatedIslands.contains(newZoneId) || HwLocationBasedTimeZoneUpdater.this.isZoneIdMatchIso(newZoneId)) {
                             HwLocationBasedTimeZoneUpdater.this.setTimeZone(newZoneId, HwLocationBasedTimeZoneUpdater.SOURCE_LOCATION);
                             if (HwLocationBasedTimeZoneUpdater.this.mMyHandler.hasMessages(7)) {
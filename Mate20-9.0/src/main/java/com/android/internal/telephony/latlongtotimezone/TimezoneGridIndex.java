@@ -0,0 +1,213 @@
+package com.android.internal.telephony.latlongtotimezone;
+
+import com.android.internal.util.MappedAsset;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spatial grid index over the lat/long time zone polygons.
+ *
+ * The index is a precomputed binary asset which is memory mapped on first use. The world is
+ * split into fixed size cells; every cell either resolves directly to a zone or points to a
+ * bucket holding the part of the {@link TimezoneMapper} decision tree that still varies inside
+ * the cell, with the candidate polygons it tests clipped to the cell and packed into the same
+ * mapping. Lookups therefore never touch the static polygon tables of {@link TimezoneMapper}
+ * unless the asset is missing.
+ *
+ * Asset layout (big endian):
+ * <pre>
+ *   int magic, int version
+ *   float minLat, float minLng, float cellSize, int rows, int cols
+ *   int zoneCount, { short len, byte[len] utf8 } * zoneCount
+ *   int polyCount, { int coordOffset, int edgeCount } * polyCount
+ *   int cellCount, int[cellCount] cells
+ *   int bucketWords, int[bucketWords] buckets   ({ int op, int arg, int ifTrue, int ifFalse } nodes)
+ *   int coordCount, float[coordCount] coords    ({ lat, lng, prevLat, prevLng } edges)
+ * </pre>
+ * A cell value {@code >= 0} is a zone index, {@link #CELL_DEFER} defers to the legacy mapper
+ * and any other negative value {@code v} is a bucket whose first node is at word offset
+ * {@code -(v + 2)}. A node tests {@code lat < arg} or {@code lng < arg} with {@code arg} as
+ * float bits, or whether the point is inside poly {@code arg}, and continues at the zone index
+ * {@code next >= 0} or the node at word offset {@code -(next + 1)}, which always follows it.
+ *
+ * A clipped polygon keeps the edges that come near its cell and replaces the others east of it
+ * by edges further east spanning the same latitudes, so the even-odd test gives the same
+ * answer as on the whole polygon anywhere in the cell.
+ *
+ * The asset is built by TimezoneGridGenerator under tools/timezonegrid from the decision tree
+ * and polygons of {@link TimezoneMapper}, so it has to be regenerated whenever they change.
+ */
+public final class TimezoneGridIndex {
+    private static final String[] AFFILIATED_ISLANDS = {"Pacific/Guam", "Pacific/Saipan"};
+    static final int CELL_DEFER = -1;
+    static final String[] DEPENDENCY_ZONES = {"unknown", "unusedtimezone", "Pacific/Wallis", "Pacific/Pago_Pago", "America/Miquelon", "Arctic/Longyearbyen", "America/Kralendijk", "America/St_Barthelemy", "America/Guadeloupe", "America/Martinique", "America/St_Thomas", "Indian/Mayotte", "America/Cayenne", "Pacific/Noumea", "America/Puerto_Rico", "America/Marigot"};
+    private static final String INDEX_FILE = "/system/etc/timezone_grid.bin";
+    static final int EDGE_STRIDE = 4;
+    static final int MAGIC = 1415202633;
+    static final int NODE_LAT_BELOW = 0;
+    static final int NODE_LNG_BELOW = 1;
+    static final int NODE_POLY = 2;
+    static final int NODE_STRIDE = 4;
+    static final int POLY_STRIDE = 2;
+    private static final String TAG = "TimezoneGridIndex";
+    static final int VERSION = 2;
+    private static final MappedAsset<TimezoneGridIndex> sAsset = new MappedAsset<TimezoneGridIndex>(TAG, INDEX_FILE) {
+        protected TimezoneGridIndex parse(ByteBuffer buffer) throws IOException {
+            return new TimezoneGridIndex(buffer);
+        }
+    };
+    private final IntBuffer mBuckets;
+    private final float mCellSize;
+    private final IntBuffer mCells;
+    private final int mCols;
+    private final FloatBuffer mCoords;
+    private final float mMinLat;
+    private final float mMinLng;
+    private final IntBuffer mPolys;
+    private final int mRows;
+    private final String[] mZones;
+
+    TimezoneGridIndex(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("bad timezone grid header");
+        }
+        this.mMinLat = buffer.getFloat();
+        this.mMinLng = buffer.getFloat();
+        this.mCellSize = buffer.getFloat();
+        this.mRows = buffer.getInt();
+        this.mCols = buffer.getInt();
+        if (this.mCellSize <= 0.0f || this.mRows <= 0 || this.mCols <= 0) {
+            throw new IOException("bad timezone grid dimensions");
+        }
+        this.mZones = new String[buffer.getInt()];
+        for (int i = 0; i < this.mZones.length; i++) {
+            byte[] name = new byte[buffer.getShort() & 65535];
+            buffer.get(name);
+            this.mZones[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        this.mPolys = slice(buffer, buffer.getInt() * POLY_STRIDE).asIntBuffer();
+        int cellCount = buffer.getInt();
+        if (cellCount != this.mRows * this.mCols) {
+            throw new IOException("cell count mismatch: " + cellCount);
+        }
+        this.mCells = slice(buffer, cellCount).asIntBuffer();
+        this.mBuckets = slice(buffer, buffer.getInt()).asIntBuffer();
+        this.mCoords = slice(buffer, buffer.getInt()).asFloatBuffer();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int words) throws IOException {
+        int bytes = words * 4;
+        if (words < 0 || bytes > buffer.remaining()) {
+            throw new IOException("truncated timezone grid");
+        }
+        ByteBuffer section = buffer.slice();
+        section.limit(bytes);
+        section.order(ByteOrder.BIG_ENDIAN);
+        buffer.position(buffer.position() + bytes);
+        return section;
+    }
+
+    private static TimezoneGridIndex getInstance() {
+        return sAsset.get();
+    }
+
+    public static String latLngToTimezoneString(double lat, double lng) {
+        TimezoneGridIndex index = getInstance();
+        if (index != null) {
+            String zone = index.lookupZone((float) lat, (float) lng);
+            if (zone != null) {
+                return zone;
+            }
+        }
+        return TimezoneMapper.latLngToTimezoneString(lat, lng);
+    }
+
+    /**
+     * Zones that are accepted even if they do not match the country of the network, the
+     * overseas territories resolved by the dependency table of {@link TimezoneMapper} among them.
+     * Kept here so callers do not have to initialise the polygon tables to get them.
+     */
+    public static List<String> getAffiliatedIslands() {
+        ArrayList<String> affiliatedIslands = new ArrayList<>(Arrays.asList(DEPENDENCY_ZONES));
+        affiliatedIslands.addAll(Arrays.asList(AFFILIATED_ISLANDS));
+        return affiliatedIslands;
+    }
+
+    /**
+     * Returns the zone of the point, or null if its cell defers to {@link TimezoneMapper}.
+     */
+    String lookupZone(float lat, float lng) {
+        int zone = lookup(lat, lng);
+        if (zone < 0 || zone >= this.mZones.length) {
+            return null;
+        }
+        return this.mZones[zone];
+    }
+
+    private int lookup(float lat, float lng) {
+        float y = (lat - this.mMinLat) / this.mCellSize;
+        float x = (lng - this.mMinLng) / this.mCellSize;
+        if (!(y >= 0.0f && x >= 0.0f && y <= ((float) this.mRows) && x <= ((float) this.mCols))) {
+            return CELL_DEFER;
+        }
+        int cell = this.mCells.get((this.mCols * Math.min((int) y, this.mRows - 1)) + Math.min((int) x, this.mCols - 1));
+        if (cell >= 0 || cell == CELL_DEFER) {
+            return cell;
+        }
+        int node = -(cell + 2);
+        while (true) {
+            boolean test;
+            int arg = this.mBuckets.get(node + 1);
+            switch (this.mBuckets.get(node)) {
+                case NODE_LAT_BELOW:
+                    test = lat < Float.intBitsToFloat(arg);
+                    break;
+                case NODE_LNG_BELOW:
+                    test = lng < Float.intBitsToFloat(arg);
+                    break;
+                case NODE_POLY:
+                    test = contains(arg, lat, lng);
+                    break;
+                default:
+                    return CELL_DEFER;
+            }
+            int next = this.mBuckets.get(node + (test ? 2 : 3));
+            if (next >= 0) {
+                return next;
+            }
+            int child = -(next + 1);
+            if (child <= node) {
+                return CELL_DEFER;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Even-odd test of a clipped polygon, with the same arithmetic as TzPolygon.contains so
+     * points on or next to an edge resolve the way {@link TimezoneMapper} resolves them.
+     */
+    private boolean contains(int poly, float testy, float testx) {
+        int start = this.mPolys.get(poly * POLY_STRIDE);
+        int end = (this.mPolys.get((poly * POLY_STRIDE) + 1) * EDGE_STRIDE) + start;
+        boolean inside = false;
+        for (int i = start; i < end; i += EDGE_STRIDE) {
+            float yi = this.mCoords.get(i);
+            float xi = this.mCoords.get(i + 1);
+            float yj = this.mCoords.get(i + 2);
+            float xj = this.mCoords.get(i + 3);
+            if ((yi > testy) != (yj > testy) && testx < ((((xj - xi) * (testy - yi)) / (yj - yi)) + xi) - 1.0E-4f) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
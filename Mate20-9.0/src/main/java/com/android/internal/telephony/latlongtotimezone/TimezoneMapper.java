@@ -2,8 +2,6 @@ package com.android.internal.telephony.latlongtotimezone;
 
 import com.android.internal.telephony.HwCallManagerReference;
 import com.android.internal.telephony.HwHiCureDetection;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 public class TimezoneMapper {
@@ -1533,7 +1531,7 @@ public class TimezoneMapper {
     private static class TimezoneMapperDependencies {
         /* access modifiers changed from: private */
         public static TzPolygon[] poly = initPolyArray();
-        static String[] timezoneStrings = {"unknown", "unusedtimezone", "Pacific/Wallis", "Pacific/Pago_Pago", "America/Miquelon", "Arctic/Longyearbyen", "America/Kralendijk", "America/St_Barthelemy", "America/Guadeloupe", "America/Martinique", "America/St_Thomas", "Indian/Mayotte", "America/Cayenne", "Pacific/Noumea", "America/Puerto_Rico", "America/Marigot"};
+        static String[] timezoneStrings = TimezoneGridIndex.DEPENDENCY_ZONES;
 
         private static class Initializer1 {
             private Initializer1() {
@@ -1555,7 +1553,7 @@ public class TimezoneMapper {
             }
 
             public boolean contains(float testy, float testx) {
-                int n;
+                int n = this.pts.length;
                 float yj = this.pts[this.pts.length - 2];
                 float xj = this.pts[n - 1];
                 float yj2 = yj;
@@ -1749,7 +1747,7 @@ public class TimezoneMapper {
         }
 
         public boolean contains(float testy, float testx) {
-            int n;
+            int n = this.pts.length;
             float yj = this.pts[this.pts.length - 2];
             float xj = this.pts[n - 1];
             float yj2 = yj;
@@ -6677,9 +6675,35 @@ public class TimezoneMapper {
     }
 
     public static List<String> getAffiliatedIslands() {
-        ArrayList<String> affiliatedIslands = new ArrayList<>(Arrays.asList(TimezoneMapperDependencies.timezoneStrings));
-        affiliatedIslands.add("Pacific/Guam");
-        affiliatedIslands.add("Pacific/Saipan");
-        return affiliatedIslands;
+        return TimezoneGridIndex.getAffiliatedIslands();
+    }
+
+    /**
+     * Returns the points of the polygons the lookup tests, indexed like {@link #poly}, for
+     * building the grid index.
+     */
+    static float[][] getPolygonPoints() {
+        float[][] points = new float[poly.length][];
+        for (int i = 0; i < poly.length; i++) {
+            if (poly[i] != null) {
+                points[i] = poly[i].pts;
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Returns the points of the polygons the dependency table tests, indexed like its poly
+     * array, for building the grid index.
+     */
+    static float[][] getDependencyPolygonPoints() {
+        TimezoneMapperDependencies.TzPolygon[] polygons = TimezoneMapperDependencies.poly;
+        float[][] points = new float[polygons.length][];
+        for (int i = 0; i < polygons.length; i++) {
+            if (polygons[i] != null) {
+                points[i] = polygons[i].pts;
+            }
+        }
+        return points;
     }
 }
@@ -152,6 +152,41 @@ public class FileRotator {
         rewriteSingle(rewriter, getActiveName(currentTimeMillis));
     }
 
+    /**
+     * Appends to the active file without reading it back. {@code expectedLength} is the length
+     * {@link #getActiveLength} returned after the last successful write. If the file does not
+     * have exactly that length, because an append failed half way, the file rotated or something
+     * else rewrote it, nothing is written and false is returned, so the caller rewrites the file
+     * through {@link #rewriteActive} instead of appending after a torn tail.
+     */
+    public boolean appendActive(Writer writer, long currentTimeMillis, long expectedLength) throws IOException {
+        File file = new File(this.mBasePath, getActiveName(currentTimeMillis));
+        if (expectedLength <= 0 || file.length() != expectedLength) {
+            return false;
+        }
+        FileOutputStream fos = new FileOutputStream(file, true);
+        BufferedOutputStream bos = new BufferedOutputStream(fos);
+        try {
+            writer.write(bos);
+            bos.flush();
+            return true;
+        } finally {
+            FileUtils.sync(fos);
+            IoUtils.closeQuietly(bos);
+        }
+    }
+
+    /**
+     * Returns the length of the active file, or -1 if there is none yet.
+     */
+    public long getActiveLength(long currentTimeMillis) {
+        File file = new File(this.mBasePath, getActiveName(currentTimeMillis));
+        if (file.exists()) {
+            return file.length();
+        }
+        return -1;
+    }
+
     @Deprecated
     public void combineActive(final Reader reader, final Writer writer, long currentTimeMillis) throws IOException {
         rewriteActive(new Rewriter() {
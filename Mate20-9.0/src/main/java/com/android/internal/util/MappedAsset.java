@@ -0,0 +1,69 @@
+package com.android.internal.util;
+
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lazily memory maps a prebuilt binary table, usually one under /system/etc, and parses it once.
+ *
+ * The first {@link #get()} maps the file read only and hands the mapping to {@link #parse}.
+ * The result, or the failure to produce one, is kept for the lifetime of the process, so callers
+ * fall back to their slow path once and never retry a missing or corrupt asset.
+ */
+public abstract class MappedAsset<T> {
+    private final File mFile;
+    private volatile boolean mLoadAttempted = false;
+    private final Object mLock = new Object();
+    private final String mTag;
+    private volatile T mValue;
+
+    protected MappedAsset(String tag, String path) {
+        this.mTag = tag;
+        this.mFile = new File(path);
+    }
+
+    /**
+     * Parses the mapped asset. The buffer stays valid for as long as the returned object is
+     * referenced. Throws {@link IOException} if the content is not usable.
+     */
+    protected abstract T parse(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Returns the parsed asset, or null if it is missing or could not be parsed.
+     */
+    public final T get() {
+        if (this.mLoadAttempted) {
+            return this.mValue;
+        }
+        synchronized (this.mLock) {
+            if (!this.mLoadAttempted) {
+                this.mValue = load();
+                this.mLoadAttempted = true;
+            }
+        }
+        return this.mValue;
+    }
+
+    private T load() {
+        if (!this.mFile.exists()) {
+            Log.d(this.mTag, "no " + this.mFile + ", using fallback");
+            return null;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(this.mFile, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } finally {
+                raf.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(this.mTag, "failed to load " + this.mFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
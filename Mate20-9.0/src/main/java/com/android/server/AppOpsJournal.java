@@ -0,0 +1,362 @@
+package com.android.server;
+
+import android.os.FileUtils;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Slog;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import libcore.util.EmptyArray;
+
+/**
+ * Binary, append-only journal of {@link AppOpsService} state.
+ *
+ * Every record holds the complete state of a single uid as {@code int uid, int length, int crc,
+ * byte[length]}; a zero length record means the uid has no persisted state any more. AppOpsService
+ * marks a uid dirty when it changes its state, and on write only the dirty uids are encoded and
+ * appended, and the file is rewritten as a plain snapshot once the stale records outweigh the live
+ * ones. Replay streams the records in order, later records replacing earlier ones, and stops at
+ * the first torn record.
+ *
+ * Once the journal has been written the appops XML file is deleted, and if the journal is turned
+ * off again it is read one last time and exported back to XML.
+ */
+final class AppOpsJournal {
+    private static final int COMPACT_MIN_BYTES = 65536;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final String JOURNAL_NAME = "appops.journal";
+    private static final int MAGIC = 1095782218;
+    private static final int MAX_RECORD_SIZE = 1048576;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final String TAG = "AppOps";
+    private static final int TIME_SLOTS = 6;
+    private static final int VERSION = 1;
+    private final AtomicFile mFile;
+    private long mJournalBytes;
+    private long mLiveBytes;
+    private boolean mNeedsCompaction = true;
+    private final SparseBooleanArray mDirtyUids = new SparseBooleanArray();
+    private final SparseIntArray mWrittenSizes = new SparseIntArray();
+
+    static final class Batch {
+        final boolean compact;
+        final SparseArray<byte[]> records = new SparseArray<>();
+
+        Batch(boolean compact2) {
+            this.compact = compact2;
+        }
+    }
+
+    AppOpsJournal(File dir) {
+        this.mFile = new AtomicFile(new File(dir, JOURNAL_NAME));
+    }
+
+    boolean exists() {
+        return this.mFile.exists();
+    }
+
+    void delete() {
+        this.mFile.delete();
+    }
+
+    /**
+     * Marks the state of the uid as changed since the last write. Called with the AppOpsService
+     * lock held.
+     */
+    void markDirtyLocked(int uid) {
+        this.mDirtyUids.put(uid, true);
+    }
+
+    boolean replayLocked(SparseArray<AppOpsService.UidState> uidStates) {
+        try {
+            FileInputStream stream = this.mFile.openRead();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            try {
+                if (in.readInt() == MAGIC) {
+                    if (in.readInt() == VERSION) {
+                        uidStates.clear();
+                        resetLocked();
+                        this.mJournalBytes = (long) FILE_HEADER_SIZE;
+                        this.mNeedsCompaction = false;
+                        byte[] buffer = new byte[256];
+                        while (true) {
+                            try {
+                                int uid = in.readInt();
+                                int length = in.readInt();
+                                int crc = in.readInt();
+                                if (length < 0 || length > MAX_RECORD_SIZE) {
+                                    Slog.w(TAG, "Bad app ops journal record for uid " + uid + "; truncating");
+                                    this.mNeedsCompaction = true;
+                                    break;
+                                }
+                                if (buffer.length < length) {
+                                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                                }
+                                in.readFully(buffer, 0, length);
+                                if (crcOf(buffer, length) != crc) {
+                                    Slog.w(TAG, "Corrupt app ops journal record for uid " + uid + "; truncating");
+                                    this.mNeedsCompaction = true;
+                                    break;
+                                }
+                                uidStates.remove(uid);
+                                if (length > 0) {
+                                    uidStates.put(uid, decodeUid(uid, new DataInputStream(new ByteArrayInputStream(buffer, 0, length))));
+                                }
+                                noteWrittenLocked(uid, length);
+                                this.mJournalBytes += (long) (RECORD_HEADER_SIZE + length);
+                            } catch (EOFException e) {
+                                break;
+                            }
+                        }
+                        this.mNeedsCompaction |= needsCompactionLocked();
+                        in.close();
+                        return true;
+                    }
+                }
+                Slog.w(TAG, "Unknown app ops journal header, ignoring " + this.mFile.getBaseFile());
+                in.close();
+                return false;
+            } catch (IOException | RuntimeException e2) {
+                Slog.w(TAG, "Failed replaying app ops journal", e2);
+                uidStates.clear();
+                resetLocked();
+                try {
+                    in.close();
+                } catch (IOException e3) {
+                }
+                return false;
+            }
+        } catch (FileNotFoundException e4) {
+            return false;
+        }
+    }
+
+    /**
+     * Encodes the uids to write: every uid for a snapshot, else the dirty ones. Uids that were
+     * written before and have no state any more get an empty record, whether or not the code
+     * path that dropped them marked them dirty.
+     */
+    Batch collectLocked(SparseArray<AppOpsService.UidState> uidStates) {
+        Batch batch = new Batch(this.mNeedsCompaction || needsCompactionLocked());
+        if (batch.compact) {
+            int uidStateCount = uidStates.size();
+            for (int i = 0; i < uidStateCount; i++) {
+                AppOpsService.UidState uidState = uidStates.valueAt(i);
+                if (uidState != null && !uidState.isDefault()) {
+                    batch.records.put(uidState.uid, encodeUid(uidState));
+                }
+            }
+        } else {
+            int dirtyCount = this.mDirtyUids.size();
+            for (int i2 = 0; i2 < dirtyCount; i2++) {
+                int uid = this.mDirtyUids.keyAt(i2);
+                AppOpsService.UidState uidState2 = uidStates.get(uid);
+                if (uidState2 != null && !uidState2.isDefault()) {
+                    batch.records.put(uid, encodeUid(uidState2));
+                }
+            }
+            for (int i3 = this.mWrittenSizes.size() - 1; i3 >= 0; i3--) {
+                int uid2 = this.mWrittenSizes.keyAt(i3);
+                AppOpsService.UidState uidState3 = uidStates.get(uid2);
+                if (uidState3 == null || uidState3.isDefault()) {
+                    batch.records.put(uid2, EmptyArray.BYTE);
+                }
+            }
+        }
+        this.mDirtyUids.clear();
+        return batch;
+    }
+
+    /**
+     * Writes the batch. Returns true if the journal now holds the complete state; on failure the
+     * next batch is a full snapshot.
+     */
+    synchronized boolean write(Batch batch) {
+        if (batch.compact) {
+            return writeSnapshot(batch);
+        }
+        if (batch.records.size() != 0) {
+            return append(batch);
+        }
+        return true;
+    }
+
+    private boolean writeSnapshot(Batch batch) {
+        FileOutputStream stream = null;
+        try {
+            stream = this.mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            resetLocked();
+            this.mJournalBytes = (long) FILE_HEADER_SIZE;
+            writeRecords(out, batch);
+            out.flush();
+            this.mFile.finishWrite(stream);
+            this.mNeedsCompaction = false;
+            return true;
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to write app ops journal snapshot", e);
+            this.mFile.failWrite(stream);
+            resetLocked();
+            return false;
+        }
+    }
+
+    private boolean append(Batch batch) {
+        try {
+            FileOutputStream stream = new FileOutputStream(this.mFile.getBaseFile(), true);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                writeRecords(out, batch);
+                out.flush();
+                FileUtils.sync(stream);
+            } finally {
+                stream.close();
+            }
+            return true;
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to append app ops journal", e);
+            resetLocked();
+            return false;
+        }
+    }
+
+    private void writeRecords(DataOutputStream out, Batch batch) throws IOException {
+        int count = batch.records.size();
+        for (int i = 0; i < count; i++) {
+            int uid = batch.records.keyAt(i);
+            byte[] record = batch.records.valueAt(i);
+            int crc = crcOf(record, record.length);
+            out.writeInt(uid);
+            out.writeInt(record.length);
+            out.writeInt(crc);
+            out.write(record);
+            noteWrittenLocked(uid, record.length);
+            this.mJournalBytes += (long) (RECORD_HEADER_SIZE + record.length);
+        }
+    }
+
+    private void noteWrittenLocked(int uid, int length) {
+        this.mLiveBytes -= (long) this.mWrittenSizes.get(uid, 0);
+        if (length == 0) {
+            this.mWrittenSizes.delete(uid);
+            return;
+        }
+        this.mWrittenSizes.put(uid, RECORD_HEADER_SIZE + length);
+        this.mLiveBytes += (long) (RECORD_HEADER_SIZE + length);
+    }
+
+    private void resetLocked() {
+        this.mWrittenSizes.clear();
+        this.mLiveBytes = 0;
+        this.mJournalBytes = 0;
+        this.mNeedsCompaction = true;
+    }
+
+    private boolean needsCompactionLocked() {
+        return this.mJournalBytes > ((long) COMPACT_MIN_BYTES) && this.mJournalBytes > this.mLiveBytes * 2;
+    }
+
+    private static int crcOf(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encodeUid(AppOpsService.UidState uidState) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            SparseIntArray opModes = uidState.opModes;
+            int opModeCount = opModes != null ? opModes.size() : 0;
+            out.writeInt(opModeCount);
+            for (int i = 0; i < opModeCount; i++) {
+                out.writeShort(opModes.keyAt(i));
+                out.writeByte(opModes.valueAt(i));
+            }
+            ArrayMap<String, AppOpsService.Ops> pkgOps = uidState.pkgOps;
+            int pkgCount = pkgOps != null ? pkgOps.size() : 0;
+            out.writeInt(pkgCount);
+            for (int i2 = 0; i2 < pkgCount; i2++) {
+                AppOpsService.Ops ops = pkgOps.valueAt(i2);
+                out.writeUTF(ops.packageName);
+                out.writeBoolean(ops.isPrivileged);
+                int opCount = ops.size();
+                out.writeInt(opCount);
+                for (int j = 0; j < opCount; j++) {
+                    AppOpsService.Op op = (AppOpsService.Op) ops.valueAt(j);
+                    out.writeShort(op.op);
+                    out.writeByte(op.mode);
+                    out.writeInt(op.duration);
+                    out.writeInt(op.proxyUid);
+                    out.writeBoolean(op.proxyPackageName != null);
+                    if (op.proxyPackageName != null) {
+                        out.writeUTF(op.proxyPackageName);
+                    }
+                    for (int k = 0; k < TIME_SLOTS; k++) {
+                        out.writeLong(op.time[k]);
+                    }
+                    for (int k2 = 0; k2 < TIME_SLOTS; k2++) {
+                        out.writeLong(op.rejectTime[k2]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static AppOpsService.UidState decodeUid(int uid, DataInputStream in) throws IOException {
+        AppOpsService.UidState uidState = new AppOpsService.UidState(uid);
+        int opModeCount = in.readInt();
+        if (opModeCount > 0) {
+            uidState.opModes = new SparseIntArray(opModeCount);
+            for (int i = 0; i < opModeCount; i++) {
+                uidState.opModes.put(in.readShort(), in.readByte());
+            }
+        }
+        int pkgCount = in.readInt();
+        if (pkgCount > 0) {
+            uidState.pkgOps = new ArrayMap<>(pkgCount);
+            for (int i2 = 0; i2 < pkgCount; i2++) {
+                String packageName = in.readUTF();
+                AppOpsService.Ops ops = new AppOpsService.Ops(packageName, uidState, in.readBoolean());
+                int opCount = in.readInt();
+                for (int j = 0; j < opCount; j++) {
+                    AppOpsService.Op op = new AppOpsService.Op(uidState, packageName, in.readShort());
+                    op.mode = in.readByte();
+                    op.duration = in.readInt();
+                    op.proxyUid = in.readInt();
+                    if (in.readBoolean()) {
+                        op.proxyPackageName = in.readUTF();
+                    }
+                    for (int k = 0; k < TIME_SLOTS; k++) {
+                        op.time[k] = in.readLong();
+                    }
+                    for (int k2 = 0; k2 < TIME_SLOTS; k2++) {
+                        op.rejectTime[k2] = in.readLong();
+                    }
+                    ops.put(op.op, op);
+                }
+                uidState.pkgOps.put(packageName, ops);
+            }
+        }
+        return uidState;
+    }
+}
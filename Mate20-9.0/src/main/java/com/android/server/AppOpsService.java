@@ -26,6 +26,7 @@ import android.os.ServiceManager;
 import android.os.ShellCallback;
 import android.os.ShellCommand;
 import android.os.SystemClock;
+import android.os.SystemProperties;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.os.storage.StorageManagerInternal;
@@ -99,6 +100,7 @@ public class AppOpsService extends IAppOpsService.Stub {
     boolean mFastWriteScheduled;
     final AtomicFile mFile;
     final Handler mHandler;
+    final AppOpsJournal mJournal;
     long mLastUptime;
     final ArrayMap<IBinder, ModeCallback> mModeWatchers = new ArrayMap<>();
     final SparseArray<ArraySet<ModeCallback>> mOpModeWatchers = new SparseArray<>();
@@ -815,6 +817,7 @@ public class AppOpsService extends IAppOpsService.Stub {
     public AppOpsService(File storagePath, Handler handler) {
         LockGuard.installLock((Object) this, 0);
         this.mFile = new AtomicFile(storagePath, "appops");
+        this.mJournal = SystemProperties.getBoolean("persist.sys.appops.journal", false) ? new AppOpsJournal(storagePath.getParentFile()) : null;
         this.mHandler = handler;
         this.mConstants = new Constants(this.mHandler);
         readState();
@@ -848,6 +851,7 @@ public class AppOpsService extends IAppOpsService.Stub {
                             } catch (RemoteException e) {
                             }
                             if (curUid != ops.uidState.uid) {
+                                noteUidChangedLocked(ops.uidState.uid);
                                 Slog.i(TAG, "Pruning old package " + ops.packageName + SliceClientPermissions.SliceAuthority.DELIMITER + ops.uidState + ": new uid=" + curUid);
                                 it.remove();
                                 changed = true;
@@ -904,6 +908,9 @@ public class AppOpsService extends IAppOpsService.Stub {
                 if (uidState.pkgOps != null) {
                     ops = uidState.pkgOps.remove(packageName);
                 }
+                if (ops != null) {
+                    noteUidChangedLocked(uid);
+                }
                 if (ops != null && uidState.pkgOps.isEmpty() && getPackagesForUid(uid).length <= 0) {
                     this.mUidStates.remove(uid);
                 }
@@ -1185,6 +1192,7 @@ public class AppOpsService extends IAppOpsService.Stub {
 
     private void pruneOp(Op op, int uid, String packageName) {
         if (!op.hasAnyTime()) {
+            noteUidChangedLocked(uid);
             Ops ops = getOpsRawLocked(uid, packageName, false, false);
             if (ops != null) {
                 ops.remove(op.op);
@@ -1393,6 +1401,7 @@ public class AppOpsService extends IAppOpsService.Stub {
         synchronized (this) {
             int defaultMode = AppOpsManager.opToDefaultMode(code2);
             int i3 = 0;
+            noteUidChangedLocked(i);
             UidState uidState = getUidStateLocked(i, false);
             String str = null;
             if (uidState == null) {
@@ -1608,6 +1617,7 @@ public class AppOpsService extends IAppOpsService.Stub {
                     }
                     try {
                         UidState uidState = this.mUidStates.valueAt(i3);
+                        noteUidChangedLocked(uidState.uid);
                         SparseIntArray opModes2 = uidState.opModes;
                         if (opModes2 != null) {
                             if (uidState.uid != reqUid2) {
@@ -2264,6 +2274,7 @@ public class AppOpsService extends IAppOpsService.Stub {
 
     /* access modifiers changed from: package-private */
     public void finishOperationLocked(Op op, boolean finishNested) {
+        noteUidChangedLocked(op.uid);
         if (op.startNesting <= 1 || finishNested) {
             if (op.startNesting == 1 || finishNested) {
                 op.duration = (int) (SystemClock.elapsedRealtime() - op.startRealtime);
@@ -2294,6 +2305,9 @@ public class AppOpsService extends IAppOpsService.Stub {
     }
 
     private UidState getUidStateLocked(int uid, boolean edit) {
+        if (edit) {
+            noteUidChangedLocked(uid);
+        }
         UidState uidState = this.mUidStates.get(uid);
         if (uidState == null) {
             if (!edit) {
@@ -2469,6 +2483,7 @@ public class AppOpsService extends IAppOpsService.Stub {
             ops.put(code, op);
         }
         if (edit) {
+            noteUidChangedLocked(ops.uidState.uid);
             scheduleWriteLocked();
         }
         return op;
@@ -2502,6 +2517,47 @@ public class AppOpsService extends IAppOpsService.Stub {
     /* JADX WARNING: Removed duplicated region for block: B:44:0x00a3 A[SYNTHETIC, Splitter:B:44:0x00a3] */
     /* JADX WARNING: Unknown top exception splitter block from list: {B:73:0x0111=Splitter:B:73:0x0111, B:82:0x0133=Splitter:B:82:0x0133, B:91:0x0156=Splitter:B:91:0x0156, B:100:0x0179=Splitter:B:100:0x0179, B:41:0x009b=Splitter:B:41:0x009b, B:55:0x00cd=Splitter:B:55:0x00cd, B:64:0x00ef=Splitter:B:64:0x00ef} */
     public void readState() {
+        if (this.mJournal != null) {
+            if (!replayJournal(this.mJournal)) {
+                readStateXml();
+            }
+            return;
+        }
+        AppOpsJournal journal = new AppOpsJournal(this.mFile.getBaseFile().getParentFile());
+        if (journal.exists()) {
+            Slog.i(TAG, "App ops journal turned off, exporting it to " + this.mFile.getBaseFile());
+            if (replayJournal(journal)) {
+                writeStateXml();
+            } else {
+                readStateXml();
+            }
+            journal.delete();
+            return;
+        }
+        readStateXml();
+    }
+
+    private boolean replayJournal(AppOpsJournal journal) {
+        synchronized (journal) {
+            synchronized (this) {
+                if (!journal.replayLocked(this.mUidStates)) {
+                    return false;
+                }
+                for (int i = this.mUidStates.size() - 1; i >= 0; i--) {
+                    this.mUidStates.valueAt(i).evalForegroundOps(this.mOpModeWatchers);
+                }
+                return true;
+            }
+        }
+    }
+
+    private void noteUidChangedLocked(int uid) {
+        if (this.mJournal != null) {
+            this.mJournal.markDirtyLocked(uid);
+        }
+    }
+
+    private void readStateXml() {
         int type;
         int oldVersion = -1;
         synchronized (this.mFile) {
@@ -3098,6 +3154,22 @@ public class AppOpsService extends IAppOpsService.Stub {
         r8 = r24;
      */
     public void writeState() {
+        if (this.mJournal != null) {
+            synchronized (this.mJournal) {
+                AppOpsJournal.Batch batch;
+                synchronized (this) {
+                    batch = this.mJournal.collectLocked(this.mUidStates);
+                }
+                if (this.mJournal.write(batch) && this.mFile.exists()) {
+                    this.mFile.delete();
+                }
+            }
+            return;
+        }
+        writeStateXml();
+    }
+
+    private void writeStateXml() {
         int uidStateCount;
         List<AppOpsManager.PackageOps> allOps;
         int i;
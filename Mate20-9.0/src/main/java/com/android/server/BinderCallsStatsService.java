@@ -9,7 +9,9 @@ import java.io.FileDescriptor;
 import java.io.PrintWriter;
 
 public class BinderCallsStatsService extends Binder {
+    private static final int DEFAULT_LATENCY_TOP_N = 20;
     private static final String PERSIST_SYS_BINDER_CALLS_DETAILED_TRACKING = "persist.sys.binder_calls_detailed_tracking";
+    private static final String PERSIST_SYS_BINDER_CALLS_LATENCY_SAMPLING = "persist.sys.binder_calls_latency_sampling";
     private static final String TAG = "BinderCallsStatsService";
 
     public static void start() {
@@ -18,6 +20,11 @@ public class BinderCallsStatsService extends Binder {
             Slog.i(TAG, "Enabled CPU usage tracking for binder calls. Controlled by persist.sys.binder_calls_detailed_tracking or via dumpsys binder_calls_stats --enable-detailed-tracking");
             BinderCallsStats.getInstance().setDetailedTracking(true);
         }
+        int samplingPeriod = SystemProperties.getInt(PERSIST_SYS_BINDER_CALLS_LATENCY_SAMPLING, 0);
+        if (samplingPeriod > 0) {
+            Slog.i(TAG, "Enabled latency sampling for binder calls, 1/" + samplingPeriod + ". Controlled by persist.sys.binder_calls_latency_sampling or via dumpsys binder_calls_stats --latency-sampling");
+            BinderCallsStats.getInstance().setLatencySamplingPeriod(samplingPeriod);
+        }
     }
 
     public static void reset() {
@@ -28,7 +35,9 @@ public class BinderCallsStatsService extends Binder {
     /* access modifiers changed from: protected */
     public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
         if (args != null) {
-            for (String arg : args) {
+            int i = 0;
+            while (i < args.length) {
+                String arg = args[i];
                 if (!"-a".equals(arg)) {
                     if ("--reset".equals(arg)) {
                         reset();
@@ -44,18 +53,45 @@ public class BinderCallsStatsService extends Binder {
                         BinderCallsStats.getInstance().setDetailedTracking(false);
                         pw.println("Detailed tracking disabled");
                         return;
+                    } else if ("--latency-sampling".equals(arg)) {
+                        int period = parseInt(args, i + 1, 0);
+                        SystemProperties.set(PERSIST_SYS_BINDER_CALLS_LATENCY_SAMPLING, String.valueOf(period));
+                        BinderCallsStats.getInstance().setLatencySamplingPeriod(period);
+                        pw.println(period > 0 ? "Latency sampling enabled, 1/" + period : "Latency sampling disabled");
+                        return;
+                    } else if ("--latency".equals(arg)) {
+                        BinderCallsStats.getInstance().dumpLatency(pw, parseInt(args, i + 1, DEFAULT_LATENCY_TOP_N));
+                        return;
                     } else if ("-h".equals(arg)) {
                         pw.println("binder_calls_stats commands:");
                         pw.println("  --reset: Reset stats");
                         pw.println("  --enable-detailed-tracking: Enables detailed tracking");
                         pw.println("  --disable-detailed-tracking: Disables detailed tracking");
+                        pw.println("  --latency-sampling N: Samples latency of 1 in N calls, 0 disables");
+                        pw.println("  --latency [N]: Dumps p50/p99/p99.9 latency of the N slowest calls and the per interface heatmap");
                         return;
                     } else {
                         pw.println("Unknown option: " + arg);
                     }
                 }
+                i++;
             }
         }
         BinderCallsStats.getInstance().dump(pw);
+        if (BinderCallsStats.getInstance().getLatencySamplingPeriod() > 0) {
+            pw.println();
+            BinderCallsStats.getInstance().dumpLatency(pw, DEFAULT_LATENCY_TOP_N);
+        }
+    }
+
+    private static int parseInt(String[] args, int index, int defaultValue) {
+        if (index >= args.length) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(args[index]);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 }
@@ -3,6 +3,7 @@ package com.android.server;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.Uri;
+import android.os.SystemProperties;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.FastImmutableArraySet;
@@ -23,12 +24,17 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 public abstract class IntentResolver<F extends IntentFilter, R> {
     private static final boolean DEBUG = false;
     private static final boolean HWFLOW = (Log.HWINFO || (Log.HWModuleLog && Log.isLoggable(TAG, 4)));
+    private static final boolean QUERY_CACHE_ENABLED = SystemProperties.getBoolean("ro.config.hw_intent_query_cache", false);
+    private static final int QUERY_CACHE_SIZE = 64;
     private static final String TAG = "IntentResolver";
     private static final boolean localLOGV = false;
     private static final boolean localVerificationLOGV = false;
@@ -49,6 +55,96 @@ public abstract class IntentResolver<F extends IntentFilter, R> {
     private final ArrayMap<String, F[]> mTypeToFilter = new ArrayMap<>();
     private final ArrayMap<String, F[]> mTypedActionToFilter = new ArrayMap<>();
     private final ArrayMap<String, F[]> mWildTypeToFilter = new ArrayMap<>();
+    private int mGeneration = 0;
+    private final LinkedHashMap<QueryKey, CachedQuery<F>> mQueryCache = new LinkedHashMap<QueryKey, CachedQuery<F>>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<QueryKey, CachedQuery<F>> entry) {
+            return size() > IntentResolver.QUERY_CACHE_SIZE;
+        }
+    };
+    private final boolean mQueryCacheEnabled;
+    private long mQueryCacheHits = 0;
+    private long mQueryCacheMisses = 0;
+    private final QueryKey mQueryProbe = new QueryKey();
+
+    private static final class QueryKey {
+        String action;
+        Set<String> categories;
+        Uri data;
+        boolean defaultOnly;
+        private int hashCode;
+        String resolvedType;
+        String scheme;
+
+        QueryKey() {
+        }
+
+        /**
+         * Points the key at the query, sharing the categories of the intent, so a cache lookup
+         * copies nothing.
+         */
+        void set(Intent intent, String resolvedType2, boolean defaultOnly2) {
+            this.action = intent.getAction();
+            this.resolvedType = resolvedType2;
+            this.scheme = intent.getScheme();
+            this.data = intent.getData();
+            this.categories = intent.getCategories();
+            this.defaultOnly = defaultOnly2;
+            this.hashCode = (31 * ((31 * ((31 * ((31 * ((31 * Objects.hashCode(this.action)) + Objects.hashCode(this.resolvedType))) + Objects.hashCode(this.scheme))) + Objects.hashCode(this.data))) + Objects.hashCode(this.categories))) + (this.defaultOnly ? 1 : 0);
+        }
+
+        void clear() {
+            this.action = null;
+            this.resolvedType = null;
+            this.scheme = null;
+            this.data = null;
+            this.categories = null;
+        }
+
+        /**
+         * Returns a copy that owns its categories, to be stored in the cache.
+         */
+        QueryKey copy() {
+            QueryKey key = new QueryKey();
+            key.action = this.action;
+            key.resolvedType = this.resolvedType;
+            key.scheme = this.scheme;
+            key.data = this.data;
+            key.categories = this.categories != null ? new ArraySet<>(this.categories) : null;
+            key.defaultOnly = this.defaultOnly;
+            key.hashCode = this.hashCode;
+            return key;
+        }
+
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey other = (QueryKey) o;
+            if (this.hashCode == other.hashCode && this.defaultOnly == other.defaultOnly && Objects.equals(this.action, other.action) && Objects.equals(this.resolvedType, other.resolvedType) && Objects.equals(this.scheme, other.scheme) && Objects.equals(this.data, other.data) && Objects.equals(this.categories, other.categories)) {
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class CachedQuery<F> {
+        final F[] filters;
+        final int generation;
+        final int[] matches;
+
+        CachedQuery(int generation2, F[] filters2, int[] matches2) {
+            this.generation = generation2;
+            this.filters = filters2;
+            this.matches = matches2;
+        }
+    }
 
     private class IteratorWrapper implements Iterator<F> {
         private F mCur;
@@ -82,7 +178,21 @@ public abstract class IntentResolver<F extends IntentFilter, R> {
     /* access modifiers changed from: protected */
     public abstract F[] newArray(int i);
 
+    public IntentResolver() {
+        this(false);
+    }
+
+    /**
+     * With {@code queryCacheEnabled}, and ro.config.hw_intent_query_cache set, queryIntent keeps
+     * the filters that matched recent queries. The cache is not synchronized: only pass true if
+     * every addFilter, removeFilter and queryIntent call on this resolver is made under one lock.
+     */
+    protected IntentResolver(boolean queryCacheEnabled) {
+        this.mQueryCacheEnabled = QUERY_CACHE_ENABLED && queryCacheEnabled;
+    }
+
     public void addFilter(F f) {
+        this.mGeneration++;
         this.mFilters.add(f);
         int numS = register_intent_filter(f, f.schemesIterator(), this.mSchemeToFilter, "      Scheme: ");
         int numT = register_mime_types(f, "      Type: ");
@@ -210,6 +320,7 @@ public abstract class IntentResolver<F extends IntentFilter, R> {
 
     /* access modifiers changed from: package-private */
     public void removeFilterInternal(F f) {
+        this.mGeneration++;
         int numS = unregister_intent_filter(f, f.schemesIterator(), this.mSchemeToFilter, "      Scheme: ");
         int numT = unregister_mime_types(f, "      Type: ");
         if (numS == 0 && numT == 0) {
@@ -464,6 +575,9 @@ public abstract class IntentResolver<F extends IntentFilter, R> {
     /* JADX WARNING: Removed duplicated region for block: B:70:0x023e  */
     /* JADX WARNING: Removed duplicated region for block: B:73:0x0258  */
     public List<R> queryIntent(Intent intent, String resolvedType, boolean defaultOnly, int userId) {
+        if (this.mQueryCacheEnabled && (intent.getFlags() & 8) == 0) {
+            return queryIntentCached(intent, resolvedType, defaultOnly, userId);
+        }
         boolean z;
         Intent intent2;
         F[] secondTypeCut;
@@ -677,6 +791,113 @@ public abstract class IntentResolver<F extends IntentFilter, R> {
         return finalList;
     }
 
+    public void dumpQueryCacheStats(PrintWriter out, String prefix) {
+        out.print(prefix);
+        out.print("Query cache: enabled=");
+        out.print(this.mQueryCacheEnabled);
+        out.print(" entries=");
+        out.print(this.mQueryCache.size());
+        out.print(" hits=");
+        out.print(this.mQueryCacheHits);
+        out.print(" misses=");
+        out.print(this.mQueryCacheMisses);
+        out.print(" generation=");
+        out.println(this.mGeneration);
+    }
+
+    private List<R> queryIntentCached(Intent intent, String resolvedType, boolean defaultOnly, int userId) {
+        QueryKey probe = this.mQueryProbe;
+        probe.set(intent, resolvedType, defaultOnly);
+        CachedQuery<F> cached = this.mQueryCache.get(probe);
+        if (cached == null || cached.generation != this.mGeneration) {
+            this.mQueryCacheMisses++;
+            cached = buildCachedQuery(intent, resolvedType, defaultOnly);
+            this.mQueryCache.put(probe.copy(), cached);
+        } else {
+            this.mQueryCacheHits++;
+        }
+        probe.clear();
+        ArrayList<R> finalList = new ArrayList<>(cached.filters.length);
+        String packageName = intent.getPackage();
+        boolean excludingStopped = intent.isExcludingStopped();
+        int N = cached.filters.length;
+        for (int i = 0; i < N; i++) {
+            F filter = cached.filters[i];
+            if ((!excludingStopped || !isFilterStopped(filter, userId)) && ((packageName == null || isPackageForFilter(packageName, filter)) && allowFilterResult(filter, finalList))) {
+                R oneResult = newResult(filter, cached.matches[i], userId);
+                if (oneResult != null) {
+                    finalList.add(oneResult);
+                }
+            }
+        }
+        filterResults(finalList);
+        sortResults(finalList);
+        return finalList;
+    }
+
+    private CachedQuery<F> buildCachedQuery(Intent intent, String resolvedType, boolean defaultOnly) {
+        F[] firstTypeCut = null;
+        F[] secondTypeCut = null;
+        F[] thirdTypeCut = null;
+        F[] schemeCut = null;
+        String action = intent.getAction();
+        String scheme = intent.getScheme();
+        if (resolvedType != null) {
+            int slashpos = resolvedType.indexOf(47);
+            if (slashpos > 0) {
+                String baseType = resolvedType.substring(0, slashpos);
+                if (!baseType.equals("*")) {
+                    if (resolvedType.length() == slashpos + 2 && resolvedType.charAt(slashpos + 1) == '*') {
+                        firstTypeCut = (IntentFilter[]) this.mBaseTypeToFilter.get(baseType);
+                    } else {
+                        firstTypeCut = (IntentFilter[]) this.mTypeToFilter.get(resolvedType);
+                    }
+                    secondTypeCut = (IntentFilter[]) this.mWildTypeToFilter.get(baseType);
+                    thirdTypeCut = (IntentFilter[]) this.mWildTypeToFilter.get("*");
+                } else if (action != null) {
+                    firstTypeCut = (IntentFilter[]) this.mTypedActionToFilter.get(action);
+                }
+            }
+        }
+        if (scheme != null) {
+            schemeCut = (IntentFilter[]) this.mSchemeToFilter.get(scheme);
+        }
+        if (resolvedType == null && scheme == null && action != null) {
+            firstTypeCut = (IntentFilter[]) this.mActionToFilter.get(action);
+        }
+        ArrayList<F> filters = new ArrayList<>();
+        ArrayList<Integer> matches = new ArrayList<>();
+        FastImmutableArraySet<String> categories = getFastIntentCategories(intent);
+        Uri data = intent.getData();
+        collectMatches(firstTypeCut, action, resolvedType, scheme, data, categories, defaultOnly, filters, matches);
+        collectMatches(secondTypeCut, action, resolvedType, scheme, data, categories, defaultOnly, filters, matches);
+        collectMatches(thirdTypeCut, action, resolvedType, scheme, data, categories, defaultOnly, filters, matches);
+        collectMatches(schemeCut, action, resolvedType, scheme, data, categories, defaultOnly, filters, matches);
+        int size = filters.size();
+        F[] filterArray = newArray(size);
+        int[] matchArray = new int[size];
+        for (int i = 0; i < size; i++) {
+            filterArray[i] = filters.get(i);
+            matchArray[i] = matches.get(i).intValue();
+        }
+        return new CachedQuery<>(this.mGeneration, filterArray, matchArray);
+    }
+
+    private void collectMatches(F[] src, String action, String resolvedType, String scheme, Uri data, FastImmutableArraySet<String> categories, boolean defaultOnly, ArrayList<F> filters, ArrayList<Integer> matches) {
+        if (src != null) {
+            for (F filter : src) {
+                if (filter == null) {
+                    break;
+                }
+                int match = filter.match(action, resolvedType, scheme, data, categories, TAG);
+                if (match >= 0 && (!defaultOnly || filter.hasCategory("android.intent.category.DEFAULT"))) {
+                    filters.add(filter);
+                    matches.add(Integer.valueOf(match));
+                }
+            }
+        }
+    }
+
     /* access modifiers changed from: protected */
     public boolean allowFilterResult(F f, List<R> list) {
         return true;
@@ -3236,7 +3236,8 @@ public class ActiveServices {
             bumpServiceExecutingLocked(serviceRecord, z2, "create");
             this.mAm.updateLruProcessLocked(processRecord, false, null);
             updateServiceForegroundLocked(serviceRecord.app, false);
-            this.mAm.updateOomAdjLocked();
+            this.mAm.enqueueOomAdjTargetLocked(processRecord);
+            this.mAm.updateOomAdjPendingTargetsLocked();
             try {
                 int lastPeriod = serviceRecord.shortName.lastIndexOf(46);
                 EventLogTags.writeAmCreateService(serviceRecord.userId, System.identityHashCode(r), lastPeriod >= 0 ? serviceRecord.shortName.substring(lastPeriod) : serviceRecord.shortName, serviceRecord.app.uid, serviceRecord.app.pid);
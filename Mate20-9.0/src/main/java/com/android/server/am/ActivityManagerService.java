@@ -355,6 +355,7 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
     static final int FIRST_SUPERVISOR_STACK_MSG = 100;
     static final int FORCE_GC_ALL_MSG = 418;
     static final int FREEZE_DELAY = 1000;
+    static final long FULL_OOM_ADJ_INTERVAL = 60000;
     static final int GC_BACKGROUND_PROCESSES_MSG = 5;
     static final int GC_DELAY = 210000;
     static final int HANDLE_TRUST_STORAGE_UPDATE_MSG = 63;
@@ -466,6 +467,7 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
     static final int UPDATE_HTTP_PROXY_MSG = 29;
     static final int UPDATE_TIME_PREFERENCE_MSG = 41;
     static final int UPDATE_TIME_ZONE = 13;
+    static final boolean USE_INCREMENTAL_OOM_ADJ = SystemProperties.getBoolean("persist.sys.am.incremental_oomadj", false);
     static final boolean VALIDATE_UID_STATES = true;
     static final int VR_MODE_CHANGE_MSG = 61;
     static final int WAIT_FOR_DEBUGGER_UI_MSG = 6;
@@ -590,6 +592,7 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
     private int mLastAppCrashedPid = -1;
     BroadcastStats mLastBroadcastStats;
     final AtomicLong mLastCpuTime;
+    long mLastFullOomAdjTime;
     long mLastFullPssTime;
     long mLastIdleTime;
     long mLastMemUsageReportTime;
@@ -618,6 +621,8 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
     String mMemWatchDumpProcName;
     int mMemWatchDumpUid;
     final ProcessMap<Pair<Long, String>> mMemWatchProcesses;
+    @GuardedBy("mPidsSelfLocked")
+    private final MemoryStatUtil.Reader mMemoryStatReader = new MemoryStatUtil.Reader();
     String mNativeDebuggingApp;
     int mNewNumAServiceProcs;
     int mNewNumServiceProcs;
@@ -626,10 +631,12 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
     int mNumNonCachedProcs;
     int mNumServiceProcs;
     volatile boolean mOnBattery;
+    final OomAdjStats mOomAdjStats = new OomAdjStats();
     String mOrigDebugApp;
     boolean mOrigWaitForDebugger;
     PackageManagerInternal mPackageManagerInt;
     final ArrayList<PendingAssistExtras> mPendingAssistExtras;
+    private final ArraySet<ProcessRecord> mPendingOomAdjTargets = new ArraySet<>();
     final ArrayList<ProcessChangeItem> mPendingProcessChanges;
     final ArrayList<ProcessRecord> mPendingPssProcesses;
     @GuardedBy("this")
@@ -704,6 +711,8 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
     int mThumbnailWidth;
     private final ArraySet<BroadcastQueue> mTmpBroadcastQueue;
     final long[] mTmpLong;
+    private final ArrayList<ProcessRecord> mTmpOomAdjProcs = new ArrayList<>();
+    private final ArraySet<ProcessRecord> mTmpOomAdjVisited = new ArraySet<>();
     private final UpdateConfigurationResult mTmpUpdateConfigurationResult;
     String mTopAction;
     ComponentName mTopComponent;
@@ -2312,12 +2321,13 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
             synchronized (sparseArray2) {
                 int i2 = 0;
                 try {
+                    MemoryStatUtil.MemoryStat recycledStat = new MemoryStatUtil.MemoryStat();
                     int size2 = ActivityManagerService.this.mPidsSelfLocked.size();
                     while (i2 < size2) {
                         ProcessRecord r = ActivityManagerService.this.mPidsSelfLocked.valueAt(i2);
                         int pid = r.pid;
                         int uid = r.uid;
-                        MemoryStatUtil.MemoryStat memoryStat = MemoryStatUtil.readMemoryStatFromFilesystem(uid, pid);
+                        MemoryStatUtil.MemoryStat memoryStat = ActivityManagerService.this.mMemoryStatReader.read(uid, pid, recycledStat);
                         if (memoryStat == null) {
                             i = i2;
                             processMemoryStates = processMemoryStates2;
@@ -3586,7 +3596,7 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
         this.mIntentSenderRecords = new HashMap<>();
         this.mAlreadyLoggedViolatedStacks = new HashSet<>();
         this.mRegisteredReceivers = new HashMap<>();
-        this.mReceiverResolver = new IntentResolver<BroadcastFilter, BroadcastFilter>() {
+        this.mReceiverResolver = new IntentResolver<BroadcastFilter, BroadcastFilter>(true) {
             /* access modifiers changed from: protected */
             public boolean allowFilterResult(BroadcastFilter filter, List<BroadcastFilter> dest) {
                 if (filter.receiverList.receiver == null) {
@@ -4020,7 +4030,7 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
         this.mIntentSenderRecords = new HashMap<>();
         this.mAlreadyLoggedViolatedStacks = new HashSet<>();
         this.mRegisteredReceivers = new HashMap<>();
-        this.mReceiverResolver = new IntentResolver<BroadcastFilter, BroadcastFilter>() {
+        this.mReceiverResolver = new IntentResolver<BroadcastFilter, BroadcastFilter>(true) {
             /* access modifiers changed from: protected */
             public boolean allowFilterResult(BroadcastFilter filter, List<BroadcastFilter> dest) {
                 if (filter.receiverList.receiver == null) {
@@ -11782,7 +11792,8 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
                     }
                     pr.forcingToImportant = null;
                     updateProcessForegroundLocked(pr, false, false);
-                    updateOomAdjLocked();
+                    enqueueOomAdjTargetLocked(pr);
+                    updateOomAdjPendingTargetsLocked();
                     resetPriorityAfterLockedSection();
                 }
             } catch (Throwable th) {
@@ -16743,7 +16754,8 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
                 if (conn == null) {
                     throw new NullPointerException("connection is null");
                 } else if (decProviderCountLocked(conn, null, null, stable)) {
-                    updateOomAdjLocked();
+                    enqueueOomAdjTargetLocked(conn.provider.proc);
+                    updateOomAdjPendingTargetsLocked();
                 }
             }
             resetPriorityAfterLockedSection();
@@ -16792,7 +16804,8 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
                     if (!localCpr.hasExternalProcessHandles()) {
                         Slog.e(TAG, "Attmpt to remove content provider: " + localCpr + " with no external references.");
                     } else if (localCpr.removeExternalProcessHandleLocked(token)) {
-                        updateOomAdjLocked();
+                        enqueueOomAdjTargetLocked(localCpr.proc);
+                        updateOomAdjPendingTargetsLocked();
                     } else {
                         Slog.e(TAG, "Attmpt to remove content provider " + localCpr + " with no external reference for token: " + token + ".");
                     }
@@ -23096,6 +23109,7 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
                 printWriter.println("  mGoingToSleep=" + this.mStackSupervisor.mGoingToSleep);
                 printWriter.println("  mLaunchingActivity=" + this.mStackSupervisor.mLaunchingActivity);
                 printWriter.println("  mAdjSeq=" + this.mAdjSeq + " mLruSeq=" + this.mLruSeq);
+                this.mOomAdjStats.dump(printWriter);
                 printWriter.println("  mNumNonCachedProcs=" + this.mNumNonCachedProcs + " (" + this.mLruProcesses.size() + " total) mNumCachedHiddenProcs=" + this.mNumCachedHiddenProcs + " mNumServiceProcs=" + this.mNumServiceProcs + " mNewNumServiceProcs=" + this.mNewNumServiceProcs);
                 StringBuilder sb5 = new StringBuilder();
                 sb5.append("  mAllowLowerMemLevel=");
@@ -23826,6 +23840,7 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
             boolean needSep2 = needSep;
             boolean printedAnything2 = printedAnything;
             if (this.mReceiverResolver.dump(printWriter, needSep2 ? "\n  Receiver Resolver Table:" : "  Receiver Resolver Table:", "    ", dumpPackage2, false, false)) {
+                this.mReceiverResolver.dumpQueryCacheStats(printWriter, "    ");
                 needSep = true;
                 printedAnything = true;
             } else {
@@ -34689,7 +34704,8 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
                 }
             }
             if (oomAdj) {
-                updateOomAdjLocked();
+                enqueueOomAdjTargetLocked(proc);
+                updateOomAdjPendingTargetsLocked();
             }
         }
     }
@@ -34732,9 +34748,121 @@ public class ActivityManagerService extends AbsActivityManager implements IHwAct
         return success;
     }
 
+    /**
+     * Marks the state of {@code app} as changed for the next
+     * {@link #updateOomAdjPendingTargetsLocked()}.
+     */
+    @GuardedBy("this")
+    final void enqueueOomAdjTargetLocked(ProcessRecord app) {
+        if (app != null) {
+            this.mPendingOomAdjTargets.add(app);
+        }
+    }
+
+    /**
+     * Brings the oom adj of the processes queued by {@link #enqueueOomAdjTargetLocked} up to date.
+     * With incremental oom adj on, only they and the processes depending on them are recomputed,
+     * and a full pass runs only if that cannot settle the change, or when the last one is more
+     * than {@link #FULL_OOM_ADJ_INTERVAL} old. Otherwise this is a full pass.
+     */
+    @GuardedBy("this")
+    final void updateOomAdjPendingTargetsLocked() {
+        long now = SystemClock.uptimeMillis();
+        if (!USE_INCREMENTAL_OOM_ADJ || this.mPendingOomAdjTargets.isEmpty() || now - this.mLastFullOomAdjTime >= FULL_OOM_ADJ_INTERVAL) {
+            updateOomAdjLocked();
+            return;
+        }
+        for (int i = this.mPendingOomAdjTargets.size() - 1; i >= 0; i--) {
+            if (this.mPendingOomAdjTargets.valueAt(i).thread == null) {
+                updateOomAdjLocked();
+                return;
+            }
+        }
+        ActivityRecord TOP_ACT = resumedAppLocked();
+        ProcessRecord TOP_APP = TOP_ACT != null ? TOP_ACT.app : null;
+        this.mAdjSeq++;
+        if (updateOomAdjIncrementalLocked(TOP_APP, now)) {
+            updateOomAdjLocked();
+        }
+    }
+
+    /**
+     * Recomputes the queued processes and every process whose adj depends on them, that is the
+     * hosts of the services and providers they are clients of, transitively. Returns true, and
+     * stops early, if one of them moves in or out of the cached range, changes its process state
+     * or sits in a cycle, since cached slots, uid states and cycles are only resolved by a full
+     * pass.
+     */
+    private final boolean updateOomAdjIncrementalLocked(ProcessRecord TOP_APP, long now) {
+        long startTime = System.nanoTime();
+        ArrayList<ProcessRecord> procs = this.mTmpOomAdjProcs;
+        collectOomAdjDependentsLocked(this.mPendingOomAdjTargets, procs);
+        this.mPendingOomAdjTargets.clear();
+        int N = procs.size();
+        for (int i = 0; i < N; i++) {
+            procs.get(i).containsCycle = false;
+        }
+        long nowElapsed = SystemClock.elapsedRealtime();
+        boolean needFull = false;
+        int computed = 0;
+        while (computed < N && !needFull) {
+            ProcessRecord proc = procs.get(computed);
+            boolean wasCached = proc.cached;
+            int procState = proc.curProcState;
+            computeOomAdjLocked(proc, proc.curRawAdj >= 900 ? proc.curRawAdj : 1001, TOP_APP, false, now);
+            applyOomAdjLocked(proc, false, now, nowElapsed);
+            if (wasCached != proc.cached || procState != proc.curProcState || proc.curRawAdj == 1001 || proc.containsCycle) {
+                needFull = true;
+            }
+            computed++;
+        }
+        procs.clear();
+        this.mOomAdjStats.noteIncremental(computed, System.nanoTime() - startTime, needFull);
+        return needFull;
+    }
+
+    /**
+     * Collects {@code targets} followed by the processes reachable from them through their service
+     * connections and provider connections, each once, skipping processes without a thread.
+     */
+    private final void collectOomAdjDependentsLocked(ArraySet<ProcessRecord> targets, ArrayList<ProcessRecord> procs) {
+        ArraySet<ProcessRecord> visited = this.mTmpOomAdjVisited;
+        for (int i = targets.size() - 1; i >= 0; i--) {
+            ProcessRecord app = targets.valueAt(i);
+            if (visited.add(app)) {
+                procs.add(app);
+            }
+        }
+        for (int i2 = 0; i2 < procs.size(); i2++) {
+            ProcessRecord proc = procs.get(i2);
+            for (int j = proc.connections.size() - 1; j >= 0; j--) {
+                ProcessRecord host = proc.connections.valueAt(j).binding.service.app;
+                if (host != null && host.thread != null && visited.add(host)) {
+                    procs.add(host);
+                }
+            }
+            for (int j2 = proc.conProviders.size() - 1; j2 >= 0; j2--) {
+                ProcessRecord host2 = proc.conProviders.get(j2).provider.proc;
+                if (host2 != null && host2.thread != null && visited.add(host2)) {
+                    procs.add(host2);
+                }
+            }
+        }
+        visited.clear();
+    }
+
     /* access modifiers changed from: package-private */
     @GuardedBy("this")
     public final void updateOomAdjLocked() {
+        long startTime = System.nanoTime();
+        int N = this.mLruProcesses.size();
+        this.mPendingOomAdjTargets.clear();
+        updateOomAdjFullLocked();
+        this.mLastFullOomAdjTime = SystemClock.uptimeMillis();
+        this.mOomAdjStats.noteFull(N, System.nanoTime() - startTime);
+    }
+
+    private final void updateOomAdjFullLocked() {
         int cycleCount;
         int memFactor;
         long nowElapsed;
@@ -42,6 +42,8 @@ class ActivityMetricsLogger {
     private long mLastTransitionStartTime = -1;
     private final SparseArray<WindowingModeTransitionInfo> mLastWindowingModeTransitionInfo = new SparseArray<>();
     private boolean mLoggedTransitionStarting;
+    private final MemoryStatUtil.MemoryStat mMemoryStat = new MemoryStatUtil.MemoryStat();
+    private final MemoryStatUtil.Reader mMemoryStatReader = new MemoryStatUtil.Reader();
     private final MetricsLogger mMetricsLogger = new MetricsLogger();
     private final ActivityStackSupervisor mSupervisor;
     private int mWindowState = 0;
@@ -543,7 +545,7 @@ class ActivityMetricsLogger {
         }
         int pid = info.processRecord.pid;
         int uid = info.applicationInfo.uid;
-        MemoryStatUtil.MemoryStat memoryStat = MemoryStatUtil.readMemoryStatFromFilesystem(uid, pid);
+        MemoryStatUtil.MemoryStat memoryStat = this.mMemoryStatReader.read(uid, pid, this.mMemoryStat);
         if (memoryStat == null) {
             if (ActivityManagerDebugConfig.DEBUG_METRICS) {
                 Slog.i("ActivityManager", "logAppStartMemoryStateCapture memoryStat null");
@@ -4188,7 +4188,8 @@ public class ActivityStack<T extends StackWindowController> extends AbsActivityS
                 if (r.app.activities.isEmpty()) {
                     this.mService.mServices.updateServiceConnectionActivitiesLocked(r.app);
                     this.mService.updateLruProcessLocked(r.app, false, null);
-                    this.mService.updateOomAdjLocked();
+                    this.mService.enqueueOomAdjTargetLocked(r.app);
+                    this.mService.updateOomAdjPendingTargetsLocked();
                 }
             }
             boolean skipDestroy = false;
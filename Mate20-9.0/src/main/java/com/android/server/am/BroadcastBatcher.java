@@ -0,0 +1,239 @@
+package com.android.server.am;
+
+import android.app.servertransaction.ClientTransaction;
+import android.app.servertransaction.RegisteredReceiverItem;
+import android.content.IIntentReceiver;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.os.SystemProperties;
+import android.os.TransactionTooLargeException;
+import android.util.ArrayMap;
+import android.util.Slog;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+
+/**
+ * Coalesces the registered receiver deliveries of a {@link BroadcastQueue} per target process
+ * and keeps per action dispatch statistics.
+ *
+ * While the queue drains its parallel broadcasts, deliveries to a process are parked in a deque
+ * of that process instead of each being a separate scheduleRegisteredReceiver call. Once the
+ * parallel broadcasts are done, every deque goes out as one {@link ClientTransaction} of
+ * {@link RegisteredReceiverItem}s, at most {@link #MAX_BATCH} per transaction, so a burst of
+ * implicit broadcasts to an app costs one binder transaction instead of one per receiver and
+ * broadcast. Order within a process is kept. A single delivery still takes the direct call.
+ */
+final class BroadcastBatcher {
+    static final boolean ENABLED = SystemProperties.getBoolean("persist.sys.am.broadcast_batching", false);
+    private static final int MAX_ACTIONS = 200;
+    private static final int MAX_BATCH = 8;
+    private static final String OTHER_ACTIONS = "(other)";
+    private static final String TAG = "BroadcastQueue";
+    private boolean mCollecting;
+    private final ArrayMap<ProcessRecord, ArrayDeque<PendingReceive>> mPending = new ArrayMap<>();
+    private final BroadcastQueue mQueue;
+    private final ArrayMap<String, ActionStats> mStats = new ArrayMap<>();
+
+    private static final class PendingReceive {
+        final String action;
+        final String data;
+        final Bundle extras;
+        final Intent intent;
+        final IIntentReceiver receiver;
+        final int resultCode;
+        final int sendingUser;
+        final boolean sticky;
+
+        PendingReceive(IIntentReceiver receiver2, Intent intent2, int resultCode2, String data2, Bundle extras2, boolean sticky2, int sendingUser2) {
+            this.receiver = receiver2;
+            this.intent = intent2;
+            this.action = intent2.getAction();
+            this.resultCode = resultCode2;
+            this.data = data2;
+            this.extras = extras2;
+            this.sticky = sticky2;
+            this.sendingUser = sendingUser2;
+        }
+    }
+
+    private static final class ActionStats {
+        int batchedReceives;
+        long depthSum;
+        int dispatched;
+        int enqueued;
+        long latencySum;
+        int maxDepth;
+        long maxLatency;
+        int transactions;
+
+        ActionStats() {
+        }
+    }
+
+    BroadcastBatcher(BroadcastQueue queue) {
+        this.mQueue = queue;
+    }
+
+    /**
+     * Starts parking the parallel deliveries, if batching is enabled.
+     */
+    void beginLocked() {
+        this.mCollecting = ENABLED;
+    }
+
+    /**
+     * Parks a non ordered delivery to {@code app}. Returns false if the delivery has to be made
+     * right away.
+     */
+    boolean addLocked(ProcessRecord app, IIntentReceiver receiver, Intent intent, int resultCode, String data, Bundle extras, boolean sticky, int sendingUser) {
+        if (!this.mCollecting || app == null || app.thread == null) {
+            return false;
+        }
+        ArrayDeque<PendingReceive> deque = this.mPending.get(app);
+        if (deque == null) {
+            deque = new ArrayDeque<>();
+            this.mPending.put(app, deque);
+        }
+        deque.add(new PendingReceive(receiver, intent, resultCode, data, extras, sticky, sendingUser));
+        return true;
+    }
+
+    /**
+     * Sends everything parked since {@link #beginLocked()}.
+     */
+    void flushLocked() {
+        this.mCollecting = false;
+        int size = this.mPending.size();
+        for (int i = 0; i < size; i++) {
+            ProcessRecord app = this.mPending.keyAt(i);
+            ArrayDeque<PendingReceive> deque = this.mPending.valueAt(i);
+            while (!deque.isEmpty()) {
+                if (deque.size() == 1) {
+                    performReceive(app, deque.poll());
+                } else if (!scheduleBatch(app, deque)) {
+                    deque.clear();
+                }
+            }
+        }
+        this.mPending.clear();
+    }
+
+    private void performReceive(ProcessRecord app, PendingReceive pending) {
+        try {
+            this.mQueue.performReceiveLocked(app, pending.receiver, pending.intent, pending.resultCode, pending.data, pending.extras, false, pending.sticky, pending.sendingUser);
+        } catch (RemoteException e) {
+            Slog.w(TAG, "Failure sending broadcast " + pending.intent, e);
+        }
+    }
+
+    /**
+     * Sends up to {@link #MAX_BATCH} deliveries of {@code deque} in one transaction. Returns
+     * false if the process is gone and the rest of its deliveries should be dropped.
+     */
+    private boolean scheduleBatch(ProcessRecord app, ArrayDeque<PendingReceive> deque) {
+        if (app.thread == null) {
+            Slog.w(TAG, "Dropping " + deque.size() + " broadcasts to " + app.processName + ": process gone");
+            return false;
+        }
+        int count = Math.min(deque.size(), MAX_BATCH);
+        PendingReceive[] batch = new PendingReceive[count];
+        ClientTransaction transaction = ClientTransaction.obtain(app.thread, null);
+        for (int i = 0; i < count; i++) {
+            PendingReceive pending = deque.poll();
+            batch[i] = pending;
+            this.mQueue.noteBehaviorLocked(app, pending.intent);
+            transaction.addCallback(RegisteredReceiverItem.obtain(pending.receiver, pending.intent, pending.resultCode, pending.data, pending.extras, false, pending.sticky, pending.sendingUser, app.repProcState));
+        }
+        try {
+            this.mQueue.mService.getLifecycleManager().scheduleTransaction(transaction);
+            for (PendingReceive pending2 : batch) {
+                ActionStats stats = getStatsLocked(pending2.action);
+                stats.batchedReceives++;
+            }
+            getStatsLocked(batch[0].action).transactions++;
+            return true;
+        } catch (TransactionTooLargeException e) {
+            Slog.w(TAG, "Broadcast batch to " + app.processName + " too large, delivering one by one");
+            for (PendingReceive pending3 : batch) {
+                performReceive(app, pending3);
+            }
+            return true;
+        } catch (RemoteException e2) {
+            Slog.w(TAG, "Can't deliver broadcast to " + app.processName + " (pid " + app.pid + "). Crashing it.");
+            app.scheduleCrash("can't deliver broadcast");
+            return false;
+        }
+    }
+
+    void noteEnqueuedLocked(BroadcastRecord r, int depth) {
+        ActionStats stats = getStatsLocked(r.intent.getAction());
+        stats.enqueued++;
+        stats.depthSum += (long) depth;
+        if (depth > stats.maxDepth) {
+            stats.maxDepth = depth;
+        }
+    }
+
+    void noteDispatchedLocked(BroadcastRecord r) {
+        ActionStats stats = getStatsLocked(r.intent.getAction());
+        long latency = r.dispatchClockTime - r.enqueueClockTime;
+        stats.dispatched++;
+        stats.latencySum += latency;
+        if (latency > stats.maxLatency) {
+            stats.maxLatency = latency;
+        }
+    }
+
+    private ActionStats getStatsLocked(String action) {
+        String key = action != null ? action : "(none)";
+        ActionStats stats = this.mStats.get(key);
+        if (stats == null) {
+            if (this.mStats.size() >= MAX_ACTIONS) {
+                key = OTHER_ACTIONS;
+                stats = this.mStats.get(key);
+            }
+            if (stats == null) {
+                stats = new ActionStats();
+                this.mStats.put(key, stats);
+            }
+        }
+        return stats;
+    }
+
+    boolean hasStatsLocked() {
+        return this.mStats.size() != 0;
+    }
+
+    void dumpLocked(PrintWriter pw, String queueName) {
+        if (this.mStats.size() != 0) {
+            pw.println("  Broadcast dispatch stats [" + queueName + "]:" + (ENABLED ? " (batching)" : ""));
+            int size = this.mStats.size();
+            for (int i = 0; i < size; i++) {
+                ActionStats stats = this.mStats.valueAt(i);
+                pw.print("    ");
+                pw.print(this.mStats.keyAt(i));
+                pw.print(": enqueued=");
+                pw.print(stats.enqueued);
+                pw.print(" depth avg=");
+                pw.print(stats.enqueued > 0 ? stats.depthSum / ((long) stats.enqueued) : 0);
+                pw.print(" max=");
+                pw.print(stats.maxDepth);
+                pw.print(" dispatched=");
+                pw.print(stats.dispatched);
+                pw.print(" latency avg=");
+                pw.print(stats.dispatched > 0 ? stats.latencySum / ((long) stats.dispatched) : 0);
+                pw.print("ms max=");
+                pw.print(stats.maxLatency);
+                pw.print("ms");
+                if (stats.batchedReceives > 0) {
+                    pw.print(" batched=");
+                    pw.print(stats.batchedReceives);
+                    pw.print(" transactions=");
+                    pw.print(stats.transactions);
+                }
+                pw.println();
+            }
+        }
+    }
+}
@@ -61,6 +61,7 @@ public class BroadcastQueue extends AbsBroadcastQueue {
     private static final String TAG_BROADCAST = "BroadcastQueue";
     private static final String TAG_MU = "BroadcastQueue_MU";
     private static final boolean mIsBetaUser;
+    final BroadcastBatcher mBatcher = new BroadcastBatcher(this);
     final BroadcastRecord[] mBroadcastHistory = new BroadcastRecord[MAX_BROADCAST_HISTORY];
     final Intent[] mBroadcastSummaryHistory = new Intent[MAX_BROADCAST_SUMMARY_HISTORY];
     boolean mBroadcastsScheduled = false;
@@ -247,6 +248,7 @@ public class BroadcastQueue extends AbsBroadcastQueue {
 
     private void enqueueBroadcastHelper(BroadcastRecord r) {
         r.enqueueClockTime = System.currentTimeMillis();
+        this.mBatcher.noteEnqueuedLocked(r, this.mParallelBroadcasts.size() + this.mOrderedBroadcasts.size());
         if (Trace.isTagEnabled(64)) {
             Trace.asyncTraceBegin(64, createBroadcastTraceTitle(r, 0), System.identityHashCode(r));
         }
@@ -296,7 +298,8 @@ public class BroadcastQueue extends AbsBroadcastQueue {
             processRecord.forceProcessStateUpTo(10);
             this.mService.updateLruProcessLocked(processRecord, false, null);
             if (!skipOomAdj) {
-                this.mService.updateOomAdjLocked();
+                this.mService.enqueueOomAdjTargetLocked(processRecord);
+                this.mService.updateOomAdjPendingTargetsLocked();
             }
             broadcastRecord.intent.setComponent(broadcastRecord.curComponent);
             try {
@@ -480,8 +483,11 @@ public class BroadcastQueue extends AbsBroadcastQueue {
     /* access modifiers changed from: package-private */
     public void performReceiveLocked(ProcessRecord app, IIntentReceiver receiver, Intent intent, int resultCode, String data, Bundle extras, boolean ordered, boolean sticky, int sendingUser) throws RemoteException {
         ProcessRecord processRecord = app;
+        if (!ordered && this.mBatcher.addLocked(processRecord, receiver, intent, resultCode, data, extras, sticky, sendingUser)) {
+            return;
+        }
         if (processRecord != null) {
-            HwFrameworkFactory.getHwBehaviorCollectManager().sendBehavior(processRecord.uid, processRecord.pid, IHwBehaviorCollectManager.BehaviorId.BROADCASTQUEUE_PERFORMRECEIVELOCKED, new Object[]{intent});
+            noteBehaviorLocked(processRecord, intent);
         }
         if (processRecord == null) {
             receiver.performReceive(intent, resultCode, data, extras, ordered, sticky, sendingUser);
@@ -508,6 +514,10 @@ public class BroadcastQueue extends AbsBroadcastQueue {
         }
     }
 
+    void noteBehaviorLocked(ProcessRecord app, Intent intent) {
+        HwFrameworkFactory.getHwBehaviorCollectManager().sendBehavior(app.uid, app.pid, IHwBehaviorCollectManager.BehaviorId.BROADCASTQUEUE_PERFORMRECEIVELOCKED, new Object[]{intent});
+    }
+
     private void deliverToRegisteredReceiverLocked(BroadcastRecord r, BroadcastFilter filter, boolean ordered, int index) {
         BroadcastRecord broadcastRecord = r;
         BroadcastFilter broadcastFilter = filter;
@@ -761,10 +771,12 @@ public class BroadcastQueue extends AbsBroadcastQueue {
             }
             this.mBroadcastsScheduled = false;
         }
+        this.mBatcher.beginLocked();
         while (this.mParallelBroadcasts.size() > 0) {
             BroadcastRecord r2 = this.mParallelBroadcasts.remove(0);
             r2.dispatchTime = SystemClock.uptimeMillis();
             r2.dispatchClockTime = System.currentTimeMillis();
+            this.mBatcher.noteDispatchedLocked(r2);
             if (Trace.isTagEnabled(64)) {
                 Trace.asyncTraceEnd(64, createBroadcastTraceTitle(r2, 0), System.identityHashCode(r2));
                 Trace.asyncTraceBegin(64, createBroadcastTraceTitle(r2, 1), System.identityHashCode(r2));
@@ -795,6 +807,7 @@ public class BroadcastQueue extends AbsBroadcastQueue {
                 Slog.v("BroadcastQueue", "Done with parallel broadcast [" + this.mQueueName + "] " + r2);
             }
         }
+        this.mBatcher.flushLocked();
         if (this.mPendingBroadcast != null) {
             if (ActivityManagerDebugConfig.DEBUG_BROADCAST_LIGHT) {
                 Slog.v("BroadcastQueue", "processNextBroadcast [" + this.mQueueName + "]: waiting for " + this.mPendingBroadcast.curApp);
@@ -943,6 +956,7 @@ public class BroadcastQueue extends AbsBroadcastQueue {
                 if (recIdx == 0) {
                     r3.dispatchTime = r3.receiverTime;
                     r3.dispatchClockTime = System.currentTimeMillis();
+                    this.mBatcher.noteDispatchedLocked(r3);
                     Flog.i(104, "dispatch ordered broadcast [" + this.mQueueName + "] " + r3 + " enqueued " + (r3.dispatchClockTime - r3.enqueueClockTime) + " ms ago, has " + r3.receivers.size() + " receivers");
                     updateSRMSStatisticsData(r3);
                     if (Trace.isTagEnabled(64)) {
@@ -1573,6 +1587,13 @@ public class BroadcastQueue extends AbsBroadcastQueue {
         } else {
             needSep2 = needSep;
         }
+        if (dumpAll && str == null && this.mBatcher.hasStatsLocked()) {
+            if (needSep2) {
+                printWriter.println();
+            }
+            needSep2 = true;
+            this.mBatcher.dumpLocked(printWriter, this.mQueueName);
+        }
         int i3 = -1;
         int lastIndex = this.mHistoryNext;
         boolean needSep4 = needSep2;
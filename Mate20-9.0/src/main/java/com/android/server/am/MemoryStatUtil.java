@@ -1,26 +1,29 @@
 package com.android.server.am;
 
-import android.os.FileUtils;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
 import android.util.Slog;
 import com.android.internal.annotations.VisibleForTesting;
 import java.io.File;
-import java.io.IOException;
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.FileDescriptor;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import libcore.io.IoUtils;
 
 final class MemoryStatUtil {
-    private static final Pattern CACHE_IN_BYTES = Pattern.compile("total_cache (\\d+)");
+    private static final int BUFFER_SIZE = 4096;
+    private static final byte[] CACHE_IN_BYTES = "total_cache".getBytes(StandardCharsets.US_ASCII);
     private static final String MEMCG_TEST_PATH = "/dev/memcg/apps/memory.stat";
-    private static final String MEMORY_STAT_FILE_FMT = "/dev/memcg/apps/uid_%d/pid_%d/memory.stat";
-    private static final Pattern PGFAULT = Pattern.compile("total_pgfault (\\d+)");
+    private static final String MEMORY_STAT_FILE_PREFIX = "/dev/memcg/apps/uid_";
+    private static final byte[] PGFAULT = "total_pgfault".getBytes(StandardCharsets.US_ASCII);
     private static final int PGFAULT_INDEX = 9;
-    private static final Pattern PGMAJFAULT = Pattern.compile("total_pgmajfault (\\d+)");
+    private static final byte[] PGMAJFAULT = "total_pgmajfault".getBytes(StandardCharsets.US_ASCII);
     private static final int PGMAJFAULT_INDEX = 11;
-    private static final String PROC_STAT_FILE_FMT = "/proc/%d/stat";
-    private static final Pattern RSS_IN_BYTES = Pattern.compile("total_rss (\\d+)");
+    private static final String PROC_STAT_FILE_PREFIX = "/proc/";
+    private static final byte[] RSS_IN_BYTES = "total_rss".getBytes(StandardCharsets.US_ASCII);
     private static final int RSS_IN_BYTES_INDEX = 23;
-    private static final Pattern SWAP_IN_BYTES = Pattern.compile("total_swap (\\d+)");
+    private static final byte[] SWAP_IN_BYTES = "total_swap".getBytes(StandardCharsets.US_ASCII);
     private static final String TAG = "ActivityManager";
     private static volatile Boolean sDeviceHasMemCg;
 
@@ -33,37 +36,114 @@ final class MemoryStatUtil {
 
         MemoryStat() {
         }
+
+        void reset() {
+            this.cacheInBytes = 0;
+            this.pgfault = 0;
+            this.pgmajfault = 0;
+            this.rssInBytes = 0;
+            this.swapInBytes = 0;
+        }
+    }
+
+    /**
+     * Reads memory stats into a caller owned {@link MemoryStat}, scanning the raw bytes of the
+     * file in one pass over a buffer that is kept between reads. Not thread safe: keep one per
+     * thread, or per lock, and reuse it for every pid of a batch.
+     */
+    static final class Reader {
+        private byte[] mBuffer = new byte[BUFFER_SIZE];
+        private final StringBuilder mPath = new StringBuilder(64);
+
+        Reader() {
+        }
+
+        /**
+         * Fills {@code stat} for the process from memcg if the device has it, else from procfs.
+         * Returns {@code stat}, or null if the stats could not be read.
+         */
+        MemoryStat read(int uid, int pid, MemoryStat stat) {
+            return hasMemcg() ? readFromMemcg(uid, pid, stat) : readFromProcfs(pid, stat);
+        }
+
+        MemoryStat readFromMemcg(int uid, int pid, MemoryStat stat) {
+            this.mPath.setLength(0);
+            this.mPath.append(MEMORY_STAT_FILE_PREFIX);
+            this.mPath.append(uid);
+            this.mPath.append("/pid_");
+            this.mPath.append(pid);
+            this.mPath.append("/memory.stat");
+            int len = readFile(this.mPath.toString());
+            if (len <= 0) {
+                return null;
+            }
+            parseMemoryStatFromMemcg(this.mBuffer, len, stat);
+            return stat;
+        }
+
+        MemoryStat readFromProcfs(int pid, MemoryStat stat) {
+            this.mPath.setLength(0);
+            this.mPath.append(PROC_STAT_FILE_PREFIX);
+            this.mPath.append(pid);
+            this.mPath.append("/stat");
+            int len = readFile(this.mPath.toString());
+            if (len <= 0 || !parseMemoryStatFromProcfs(this.mBuffer, len, stat)) {
+                return null;
+            }
+            return stat;
+        }
+
+        /**
+         * Reads the whole file into {@link #mBuffer}, growing it if needed. Returns the number of
+         * bytes read, or -1 if the file could not be read.
+         */
+        private int readFile(String path) {
+            try {
+                FileDescriptor fd = Os.open(path, OsConstants.O_RDONLY, 0);
+                try {
+                    int len = 0;
+                    while (true) {
+                        if (len == this.mBuffer.length) {
+                            byte[] buffer = new byte[(this.mBuffer.length * 2)];
+                            System.arraycopy(this.mBuffer, 0, buffer, 0, len);
+                            this.mBuffer = buffer;
+                        }
+                        int n = Os.read(fd, this.mBuffer, len, this.mBuffer.length - len);
+                        if (n <= 0) {
+                            return len;
+                        }
+                        len += n;
+                    }
+                } finally {
+                    IoUtils.closeQuietly(fd);
+                }
+            } catch (ErrnoException e) {
+                if (e.errno != OsConstants.ENOENT) {
+                    Slog.e("ActivityManager", "Failed to read file:", e);
+                } else if (ActivityManagerDebugConfig.DEBUG_METRICS) {
+                    Slog.i("ActivityManager", path + " not found");
+                }
+                return -1;
+            } catch (InterruptedIOException e2) {
+                Slog.e("ActivityManager", "Failed to read file:", e2);
+                return -1;
+            }
+        }
     }
 
     private MemoryStatUtil() {
     }
 
     static MemoryStat readMemoryStatFromFilesystem(int uid, int pid) {
-        return hasMemcg() ? readMemoryStatFromMemcg(uid, pid) : readMemoryStatFromProcfs(pid);
+        return new Reader().read(uid, pid, new MemoryStat());
     }
 
     static MemoryStat readMemoryStatFromMemcg(int uid, int pid) {
-        return parseMemoryStatFromMemcg(readFileContents(String.format(Locale.US, MEMORY_STAT_FILE_FMT, new Object[]{Integer.valueOf(uid), Integer.valueOf(pid)})));
+        return new Reader().readFromMemcg(uid, pid, new MemoryStat());
     }
 
     static MemoryStat readMemoryStatFromProcfs(int pid) {
-        return parseMemoryStatFromProcfs(readFileContents(String.format(Locale.US, PROC_STAT_FILE_FMT, new Object[]{Integer.valueOf(pid)})));
-    }
-
-    private static String readFileContents(String path) {
-        File file = new File(path);
-        if (!file.exists()) {
-            if (ActivityManagerDebugConfig.DEBUG_METRICS) {
-                Slog.i("ActivityManager", path + " not found");
-            }
-            return null;
-        }
-        try {
-            return FileUtils.readTextFile(file, 0, null);
-        } catch (IOException e) {
-            Slog.e("ActivityManager", "Failed to read file:", e);
-            return null;
-        }
+        return new Reader().readFromProcfs(pid, new MemoryStat());
     }
 
     @VisibleForTesting(visibility = VisibleForTesting.Visibility.PRIVATE)
@@ -71,21 +151,9 @@ final class MemoryStatUtil {
         if (memoryStatContents == null || memoryStatContents.isEmpty()) {
             return null;
         }
+        byte[] contents = memoryStatContents.getBytes(StandardCharsets.US_ASCII);
         MemoryStat memoryStat = new MemoryStat();
-        Matcher m = PGFAULT.matcher(memoryStatContents);
-        long j = 0;
-        memoryStat.pgfault = m.find() ? Long.valueOf(m.group(1)).longValue() : 0;
-        Matcher m2 = PGMAJFAULT.matcher(memoryStatContents);
-        memoryStat.pgmajfault = m2.find() ? Long.valueOf(m2.group(1)).longValue() : 0;
-        Matcher m3 = RSS_IN_BYTES.matcher(memoryStatContents);
-        memoryStat.rssInBytes = m3.find() ? Long.valueOf(m3.group(1)).longValue() : 0;
-        Matcher m4 = CACHE_IN_BYTES.matcher(memoryStatContents);
-        memoryStat.cacheInBytes = m4.find() ? Long.valueOf(m4.group(1)).longValue() : 0;
-        Matcher m5 = SWAP_IN_BYTES.matcher(memoryStatContents);
-        if (m5.find()) {
-            j = Long.valueOf(m5.group(1)).longValue();
-        }
-        memoryStat.swapInBytes = j;
+        parseMemoryStatFromMemcg(contents, contents.length, memoryStat);
         return memoryStat;
     }
 
@@ -94,17 +162,100 @@ final class MemoryStatUtil {
         if (procStatContents == null || procStatContents.isEmpty()) {
             return null;
         }
-        String[] splits = procStatContents.split(" ");
-        if (splits.length < 24) {
+        byte[] contents = procStatContents.getBytes(StandardCharsets.US_ASCII);
+        MemoryStat memoryStat = new MemoryStat();
+        if (!parseMemoryStatFromProcfs(contents, contents.length, memoryStat)) {
             return null;
         }
-        MemoryStat memoryStat = new MemoryStat();
-        memoryStat.pgfault = Long.valueOf(splits[9]).longValue();
-        memoryStat.pgmajfault = Long.valueOf(splits[11]).longValue();
-        memoryStat.rssInBytes = Long.valueOf(splits[23]).longValue();
         return memoryStat;
     }
 
+    /**
+     * Scans the "key value" lines of a memcg memory.stat file, keeping the hierarchical totals.
+     * Keys that are missing stay 0.
+     */
+    static void parseMemoryStatFromMemcg(byte[] buf, int len, MemoryStat stat) {
+        stat.reset();
+        int pos = 0;
+        while (pos < len) {
+            int keyEnd = pos;
+            while (keyEnd < len && buf[keyEnd] != 32 && buf[keyEnd] != 10) {
+                keyEnd++;
+            }
+            if (keyEnd < len && buf[keyEnd] == 32) {
+                if (keyEquals(buf, pos, keyEnd, PGFAULT)) {
+                    stat.pgfault = parseLong(buf, keyEnd + 1, len);
+                } else if (keyEquals(buf, pos, keyEnd, PGMAJFAULT)) {
+                    stat.pgmajfault = parseLong(buf, keyEnd + 1, len);
+                } else if (keyEquals(buf, pos, keyEnd, RSS_IN_BYTES)) {
+                    stat.rssInBytes = parseLong(buf, keyEnd + 1, len);
+                } else if (keyEquals(buf, pos, keyEnd, CACHE_IN_BYTES)) {
+                    stat.cacheInBytes = parseLong(buf, keyEnd + 1, len);
+                } else if (keyEquals(buf, pos, keyEnd, SWAP_IN_BYTES)) {
+                    stat.swapInBytes = parseLong(buf, keyEnd + 1, len);
+                }
+            }
+            pos = keyEnd;
+            while (pos < len && buf[pos] != 10) {
+                pos++;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Picks the fault counters and rss out of the space separated fields of /proc/pid/stat.
+     * Fields are counted from the closing parenthesis of the command name, which may itself
+     * contain spaces. Returns false if the line is too short.
+     */
+    static boolean parseMemoryStatFromProcfs(byte[] buf, int len, MemoryStat stat) {
+        int pos = len - 1;
+        while (pos >= 0 && buf[pos] != 41) {
+            pos--;
+        }
+        if (pos < 0) {
+            return false;
+        }
+        stat.reset();
+        int field = 1;
+        for (int i = pos + 1; i < len; i++) {
+            if (buf[i] == 32) {
+                field++;
+                if (field == PGFAULT_INDEX) {
+                    stat.pgfault = parseLong(buf, i + 1, len);
+                } else if (field == PGMAJFAULT_INDEX) {
+                    stat.pgmajfault = parseLong(buf, i + 1, len);
+                } else if (field == RSS_IN_BYTES_INDEX) {
+                    stat.rssInBytes = parseLong(buf, i + 1, len);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean keyEquals(byte[] buf, int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buf[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseLong(byte[] buf, int start, int len) {
+        long value = 0;
+        int i = start;
+        while (i < len && buf[i] >= 48 && buf[i] <= 57) {
+            value = (10 * value) + ((long) (buf[i] - 48));
+            i++;
+        }
+        return value;
+    }
+
     static boolean hasMemcg() {
         if (sDeviceHasMemCg == null) {
             sDeviceHasMemCg = Boolean.valueOf(new File(MEMCG_TEST_PATH).exists());
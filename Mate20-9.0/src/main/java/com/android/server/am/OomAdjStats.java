@@ -0,0 +1,61 @@
+package com.android.server.am;
+
+import java.io.PrintWriter;
+
+/**
+ * Counts the oom adj passes of {@link ActivityManagerService}, how many processes each of them
+ * recomputed and how long they took. Guarded by the ActivityManagerService lock.
+ */
+final class OomAdjStats {
+    private long mFullCount;
+    private long mFullNanos;
+    private long mFullProcs;
+    private long mIncrementalCount;
+    private long mIncrementalNanos;
+    private long mIncrementalProcs;
+    private int mMaxIncrementalProcs;
+    private long mSkippedFullCount;
+
+    OomAdjStats() {
+    }
+
+    void noteFull(int procs, long nanos) {
+        this.mFullCount++;
+        this.mFullProcs += (long) procs;
+        this.mFullNanos += nanos;
+    }
+
+    void noteIncremental(int procs, long nanos, boolean needFull) {
+        this.mIncrementalCount++;
+        this.mIncrementalProcs += (long) procs;
+        this.mIncrementalNanos += nanos;
+        if (procs > this.mMaxIncrementalProcs) {
+            this.mMaxIncrementalProcs = procs;
+        }
+        if (!needFull) {
+            this.mSkippedFullCount++;
+        }
+    }
+
+    void dump(PrintWriter pw) {
+        pw.print("  Oom adj: full=");
+        pw.print(this.mFullCount);
+        pw.print(" procs avg=");
+        pw.print(this.mFullCount > 0 ? this.mFullProcs / this.mFullCount : 0);
+        pw.print(" time avg=");
+        pw.print(this.mFullCount > 0 ? (this.mFullNanos / this.mFullCount) / 1000 : 0);
+        pw.println("us");
+        if (this.mIncrementalCount > 0) {
+            pw.print("    incremental=");
+            pw.print(this.mIncrementalCount);
+            pw.print(" procs avg=");
+            pw.print(this.mIncrementalProcs / this.mIncrementalCount);
+            pw.print(" max=");
+            pw.print(this.mMaxIncrementalProcs);
+            pw.print(" time avg=");
+            pw.print((this.mIncrementalNanos / this.mIncrementalCount) / 1000);
+            pw.print("us full passes avoided=");
+            pw.println(this.mSkippedFullCount);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.android.server.hidata.wavemapping.entity;
+
+import java.util.HashMap;
+
+/**
+ * Column inverted index over the training rows of a {@link ModelInfo}.
+ *
+ * Every bssid column keeps the rows it is non zero in, with the values, packed into int arrays.
+ * A test fingerprint then only visits the rows sharing one of its bssids instead of comparing
+ * every row column by column. Built once per model and read concurrently afterwards.
+ */
+public class FingerprintIndex {
+    private final int[] colRows;
+    private final int[] colStart;
+    private final int[] colVals;
+    private final HashMap<String, Integer> columns;
+    private final int[] noneZeroNums;
+    private final int[] preLabels;
+    private final int rowCnt;
+    private final int[] rowCnts;
+
+    public FingerprintIndex(String[] bssidLst, int[][] datas, int dataLen) {
+        int width = bssidLst.length;
+        this.rowCnt = Math.min(dataLen, datas.length);
+        this.columns = new HashMap<>(((width * 4) / 3) + 1);
+        for (int i = 0; i < width; i++) {
+            this.columns.put(bssidLst[i], Integer.valueOf(i));
+        }
+        this.noneZeroNums = new int[this.rowCnt];
+        this.preLabels = new int[this.rowCnt];
+        this.rowCnts = new int[this.rowCnt];
+        this.colStart = new int[(width + 1)];
+        int prelabelIndex = width - 2;
+        int cntIndex = width - 1;
+        for (int row = 0; row < this.rowCnt; row++) {
+            int[] words = datas[row];
+            int size = Math.min(width, words.length);
+            for (int i2 = 0; i2 < size; i2++) {
+                if (words[i2] != 0) {
+                    int[] iArr = this.noneZeroNums;
+                    iArr[row] = iArr[row] + 1;
+                    int[] iArr2 = this.colStart;
+                    int i3 = i2 + 1;
+                    iArr2[i3] = iArr2[i3] + 1;
+                }
+            }
+            if (prelabelIndex >= 0 && prelabelIndex < words.length) {
+                this.preLabels[row] = words[prelabelIndex];
+            }
+            if (cntIndex >= 0 && cntIndex < words.length) {
+                this.rowCnts[row] = words[cntIndex];
+            }
+        }
+        for (int i4 = 0; i4 < width; i4++) {
+            int[] iArr3 = this.colStart;
+            iArr3[i4 + 1] = iArr3[i4 + 1] + this.colStart[i4];
+        }
+        this.colRows = new int[this.colStart[width]];
+        this.colVals = new int[this.colStart[width]];
+        int[] fill = new int[width];
+        for (int row2 = 0; row2 < this.rowCnt; row2++) {
+            int[] words2 = datas[row2];
+            int size2 = Math.min(width, words2.length);
+            for (int i5 = 0; i5 < size2; i5++) {
+                if (words2[i5] != 0) {
+                    int pos = this.colStart[i5] + fill[i5];
+                    fill[i5] = fill[i5] + 1;
+                    this.colRows[pos] = row2;
+                    this.colVals[pos] = words2[i5];
+                }
+            }
+        }
+    }
+
+    public int getRowCnt() {
+        return this.rowCnt;
+    }
+
+    /**
+     * Returns the column of {@code bssid}, or -1 if the model does not know it.
+     */
+    public int getColumn(String bssid) {
+        Integer column = this.columns.get(bssid);
+        if (column == null) {
+            return -1;
+        }
+        return column.intValue();
+    }
+
+    /**
+     * Number of non zero columns of a row, the label and count columns included.
+     */
+    public int getNoneZeroNum(int row) {
+        return this.noneZeroNums[row];
+    }
+
+    public int getPreLabel(int row) {
+        return this.preLabels[row];
+    }
+
+    public int getCnt(int row) {
+        return this.rowCnts[row];
+    }
+
+    /**
+     * For every row, counts the test columns it shares with non zero values into {@code shareNums}
+     * and keeps the largest squared value difference over them in {@code maxDists}. Both arrays
+     * must hold {@link #getRowCnt()} zeroed entries.
+     */
+    public void accumulate(int[] testCols, int[] testVals, int testLen, int[] shareNums, int[] maxDists) {
+        for (int i = 0; i < testLen; i++) {
+            int col = testCols[i];
+            int val = testVals[i];
+            int end = this.colStart[col + 1];
+            for (int pos = this.colStart[col]; pos < end; pos++) {
+                int row = this.colRows[pos];
+                shareNums[row] = shareNums[row] + 1;
+                int diff = this.colVals[pos] - val;
+                int dist = diff * diff;
+                if (dist > maxDists[row]) {
+                    maxDists[row] = dist;
+                }
+            }
+        }
+    }
+}
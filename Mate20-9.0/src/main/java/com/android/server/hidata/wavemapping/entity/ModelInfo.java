@@ -8,6 +8,7 @@ public class ModelInfo {
     private String[] bssidLst;
     private int dataLen;
     private int[][] datas;
+    private FingerprintIndex fingerprintIndex;
     private ArrayList<HashMap<String, Integer>> hpDatas;
     private String modelName;
     private String place;
@@ -35,8 +36,9 @@ public class ModelInfo {
         return this.dataLen;
     }
 
-    public void setDataLen(int dataLen2) {
+    public synchronized void setDataLen(int dataLen2) {
         this.dataLen = dataLen2;
+        this.fingerprintIndex = null;
     }
 
     public HashSet<String> getSetBssids() {
@@ -47,6 +49,13 @@ public class ModelInfo {
         this.setBssids = setBssids2;
     }
 
+    public synchronized FingerprintIndex getFingerprintIndex() {
+        if (this.fingerprintIndex == null) {
+            this.fingerprintIndex = new FingerprintIndex(this.bssidLst != null ? this.bssidLst : new String[0], this.datas != null ? this.datas : new int[0][], this.dataLen);
+        }
+        return this.fingerprintIndex;
+    }
+
     public String[] getBssidLst() {
         if (this.bssidLst == null) {
             return new String[0];
@@ -54,7 +63,8 @@ public class ModelInfo {
         return (String[]) this.bssidLst.clone();
     }
 
-    public void setBssidLst(String[] bssidLst2) {
+    public synchronized void setBssidLst(String[] bssidLst2) {
+        this.fingerprintIndex = null;
         if (bssidLst2 == null) {
             this.bssidLst = null;
         } else {
@@ -69,7 +79,8 @@ public class ModelInfo {
         return (int[][]) this.datas.clone();
     }
 
-    public void setDatas(int[][] datas2) {
+    public synchronized void setDatas(int[][] datas2) {
+        this.fingerprintIndex = null;
         if (datas2 == null) {
             this.datas = null;
         } else {
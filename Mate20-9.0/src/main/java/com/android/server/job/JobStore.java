@@ -10,10 +10,12 @@ import android.os.Environment;
 import android.os.Handler;
 import android.os.PersistableBundle;
 import android.os.SystemClock;
+import android.os.SystemProperties;
 import android.os.UserHandle;
 import android.text.format.DateUtils;
 import android.util.ArraySet;
 import android.util.AtomicFile;
+import android.util.LongSparseLongArray;
 import android.util.Pair;
 import android.util.Slog;
 import android.util.SparseArray;
@@ -60,19 +62,25 @@ public final class JobStore {
     final Context mContext;
     /* access modifiers changed from: private */
     public int mDirtyOperations;
+    private final LongSparseLongArray mDirtyJobs = new LongSparseLongArray();
     private final Handler mIoHandler = IoThread.getHandler();
     final JobSet mJobSet;
     /* access modifiers changed from: private */
     public final AtomicFile mJobsFile;
+    private final JobStoreJournal mJournal;
     final Object mLock;
     /* access modifiers changed from: private */
     public JobSchedulerInternal.JobStorePersistStats mPersistInfo = new JobSchedulerInternal.JobStorePersistStats();
     private boolean mRtcGood;
+    private final boolean mUseJournal;
     private final Runnable mWriteRunnable = new Runnable() {
         public void run() {
             long startElapsed = JobSchedulerService.sElapsedRealtimeClock.millis();
             List<JobStatus> storeCopy = new ArrayList<>();
+            LongSparseLongArray changed;
             synchronized (JobStore.this.mLock) {
+                changed = JobStore.this.mDirtyJobs.clone();
+                JobStore.this.mDirtyJobs.clear();
                 JobStore.this.mJobSet.forEachJob((Predicate<JobStatus>) null, (Consumer<JobStatus>) new Consumer(storeCopy) {
                     private final /* synthetic */ List f$0;
 
@@ -85,7 +93,11 @@ public final class JobStore {
                     }
                 });
             }
-            writeJobsMapImpl(storeCopy);
+            if (JobStore.this.mUseJournal) {
+                writeJobsJournalImpl(storeCopy, changed);
+            } else {
+                writeJobsMapImpl(storeCopy);
+            }
             if (JobStore.DEBUG) {
                 Slog.v(JobStore.TAG, "Finished writing, took " + (JobSchedulerService.sElapsedRealtimeClock.millis() - startElapsed) + "ms");
             }
@@ -97,6 +109,29 @@ public final class JobStore {
             }
         }
 
+        private void writeJobsJournalImpl(List<JobStatus> jobList, LongSparseLongArray changed) {
+            int numSystemJobs = 0;
+            int numSyncJobs = 0;
+            for (int i = 0; i < jobList.size(); i++) {
+                JobStatus jobStatus = jobList.get(i);
+                if (jobStatus.getUid() == 1000) {
+                    numSystemJobs++;
+                    if (JobStore.isSyncJob(jobStatus)) {
+                        numSyncJobs++;
+                    }
+                }
+            }
+            if (JobStore.this.mJournal.write(jobList, changed)) {
+                JobStore.this.mDirtyOperations = 0;
+                if (JobStore.this.mJobsFile.exists()) {
+                    JobStore.this.mJobsFile.delete();
+                }
+            }
+            JobStore.this.mPersistInfo.countAllJobsSaved = jobList.size();
+            JobStore.this.mPersistInfo.countSystemServerJobsSaved = numSystemJobs;
+            JobStore.this.mPersistInfo.countSystemSyncManagerJobsSaved = numSyncJobs;
+        }
+
         /* JADX WARNING: Removed duplicated region for block: B:42:0x0114 A[Catch:{ IOException -> 0x011c, XmlPullParserException -> 0x010b, all -> 0x0104, all -> 0x0146 }] */
         /* JADX WARNING: Removed duplicated region for block: B:47:0x0125 A[Catch:{ IOException -> 0x011c, XmlPullParserException -> 0x010b, all -> 0x0104, all -> 0x0146 }] */
         private void writeJobsMapImpl(List<JobStatus> jobList) {
@@ -204,6 +239,9 @@ public final class JobStore {
                 FileOutputStream fos = JobStore.this.mJobsFile.startWrite(startTime);
                 fos.write(baos.toByteArray());
                 JobStore.this.mJobsFile.finishWrite(fos);
+                if (JobStore.this.mJournal.exists()) {
+                    JobStore.this.mJournal.delete();
+                }
                 int unused = JobStore.this.mDirtyOperations = 0;
                 JobStore.this.mPersistInfo.countAllJobsSaved = numJobs;
                 JobStore.this.mPersistInfo.countSystemServerJobsSaved = numSystemJobs;
@@ -576,6 +614,44 @@ public final class JobStore {
             this.rtcGood = rtcIsGood;
         }
 
+        public void run() {
+            if (!readJournal()) {
+                readXml();
+            }
+        }
+
+        private boolean readJournal() {
+            List<JobStatus> jobs = JobStore.this.mJournal.replay(this.rtcGood);
+            if (jobs == null) {
+                return false;
+            }
+            int numSystemJobs = 0;
+            int numSyncJobs = 0;
+            synchronized (JobStore.this.mLock) {
+                long now = JobSchedulerService.sElapsedRealtimeClock.millis();
+                IActivityManager am = ActivityManager.getService();
+                for (int i = 0; i < jobs.size(); i++) {
+                    JobStatus js = jobs.get(i);
+                    js.prepareLocked(am);
+                    js.enqueueTime = now;
+                    this.jobSet.add(js);
+                    if (js.getUid() == 1000) {
+                        numSystemJobs++;
+                        if (JobStore.isSyncJob(js)) {
+                            numSyncJobs++;
+                        }
+                    }
+                }
+            }
+            if (JobStore.this.mPersistInfo.countAllJobsLoaded < 0) {
+                JobStore.this.mPersistInfo.countAllJobsLoaded = jobs.size();
+                JobStore.this.mPersistInfo.countSystemServerJobsLoaded = numSystemJobs;
+                JobStore.this.mPersistInfo.countSystemSyncManagerJobsLoaded = numSyncJobs;
+            }
+            Slog.i(JobStore.TAG, "Read " + jobs.size() + " jobs from journal");
+            return true;
+        }
+
         /* JADX WARNING: Code restructure failed: missing block: B:21:0x0060, code lost:
             if (com.android.server.job.JobStore.access$400(r13.this$0).countAllJobsLoaded < 0) goto L_0x0062;
          */
@@ -596,7 +672,7 @@ public final class JobStore {
         /* JADX WARNING: Code restructure failed: missing block: B:43:0x00c7, code lost:
             return;
          */
-        public void run() {
+        private void readXml() {
             List<JobStatus> jobs;
             int numJobs = 0;
             int numSystemJobs = 0;
@@ -1133,10 +1209,16 @@ public final class JobStore {
         File jobDir = new File(new File(dataDir, "system"), "job");
         jobDir.mkdirs();
         this.mJobsFile = new AtomicFile(new File(jobDir, "jobs.xml"), "jobs");
+        this.mJournal = new JobStoreJournal(jobDir);
+        this.mUseJournal = SystemProperties.getBoolean("persist.sys.jobscheduler.journal", false);
         this.mJobSet = new JobSet();
-        this.mXmlTimestamp = this.mJobsFile.getLastModifiedTime();
+        boolean journaled = this.mJournal.exists();
+        this.mXmlTimestamp = journaled ? this.mJournal.getLastModifiedTime() : this.mJobsFile.getLastModifiedTime();
         this.mRtcGood = JobSchedulerService.sSystemClock.millis() > this.mXmlTimestamp ? true : z;
         readJobMapFromDisk(this.mJobSet, this.mRtcGood);
+        if (journaled != this.mUseJournal) {
+            maybeWriteStatusToDiskAsync();
+        }
     }
 
     public boolean jobTimesInflatedValid() {
@@ -1185,6 +1267,7 @@ public final class JobStore {
         boolean replaced = this.mJobSet.remove(jobStatus);
         this.mJobSet.add(jobStatus);
         if (jobStatus.isPersisted()) {
+            this.mDirtyJobs.put(JobStoreJournal.keyOf(jobStatus.getUid(), jobStatus.getJobId()), 1);
             maybeWriteStatusToDiskAsync();
         }
         if (DEBUG) {
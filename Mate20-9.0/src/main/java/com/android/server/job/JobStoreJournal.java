@@ -0,0 +1,640 @@
+package com.android.server.job;
+
+import android.app.job.JobInfo;
+import android.content.ComponentName;
+import android.net.NetworkRequest;
+import android.os.FileUtils;
+import android.os.PersistableBundle;
+import android.text.format.DateUtils;
+import android.util.AtomicFile;
+import android.util.LongSparseArray;
+import android.util.LongSparseLongArray;
+import android.util.Pair;
+import android.util.Slog;
+import com.android.internal.util.BitUtils;
+import com.android.server.LocalServices;
+import com.android.server.job.controllers.JobStatus;
+import com.android.server.pm.PackageManagerService;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import libcore.util.EmptyArray;
+
+/**
+ * Binary, append-only journal of the persisted jobs of {@link JobStore}.
+ *
+ * Every record holds one job as {@code int uid, int jobId, int length, int crc, byte[length]};
+ * a zero length record means the job was removed. {@link JobStore} tells a write which jobs it
+ * added or replaced since the last one; only those are encoded and appended, plus removals, so
+ * scheduling or cancelling a job costs one small append instead of rewriting jobs.xml. Once stale
+ * records outweigh the live ones the journal is rewritten as a snapshot through
+ * {@link AtomicFile}. Writes run on the I/O thread, so compaction never blocks the scheduler.
+ *
+ * Replay streams the records in order, later records replacing earlier ones, and stops at the
+ * first torn or corrupt record; the next write then compacts, so nothing is ever appended after
+ * a bad tail. Once a journal exists it is the only source of jobs: {@link JobStore} deletes
+ * jobs.xml after the first journal write, and deletes the journal again after rewriting jobs.xml
+ * when the journal is turned off.
+ *
+ * Wall clock times are stored relative to an elapsed-to-RTC offset that only moves when the clock
+ * is changed. Moving it compacts the journal, so no record keeps a stale offset.
+ */
+final class JobStoreJournal {
+    private static final int COMPACT_MIN_BYTES = 65536;
+    private static final int CONSTRAINT_BATTERY_NOT_LOW = 8;
+    private static final int CONSTRAINT_CHARGING = 4;
+    private static final int CONSTRAINT_IDLE = 2;
+    private static final int CONSTRAINT_NETWORK = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final String JOURNAL_NAME = "jobs.journal";
+    private static final int MAGIC = 1246972492;
+    private static final int MAX_BUNDLE_DEPTH = 10;
+    private static final int MAX_RECORD_SIZE = 1048576;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final long RTC_OFFSET_SLOP = 1000;
+    private static final String TAG = "JobStore";
+    private static final byte TYPE_BOOLEAN = 10;
+    private static final byte TYPE_BOOLEAN_ARRAY = 11;
+    private static final byte TYPE_BUNDLE = 9;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_DOUBLE_ARRAY = 7;
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_INT_ARRAY = 5;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_LONG_ARRAY = 6;
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 4;
+    private static final byte TYPE_STRING_ARRAY = 8;
+    private static final int VERSION = 1;
+    private final AtomicFile mFile;
+    private long mJournalBytes;
+    private long mLiveBytes;
+    private boolean mNeedsCompaction = true;
+    private long mRtcOffset = Long.MIN_VALUE;
+    private final LongSparseLongArray mWrittenSizes = new LongSparseLongArray();
+
+    JobStoreJournal(File dir) {
+        this.mFile = new AtomicFile(new File(dir, JOURNAL_NAME), "jobs");
+    }
+
+    boolean exists() {
+        return this.mFile.exists();
+    }
+
+    long getLastModifiedTime() {
+        return this.mFile.getLastModifiedTime();
+    }
+
+    /**
+     * Reads every job in the journal, or returns null if there is no journal. A journal that
+     * cannot be read, whole or in part, yields the jobs that could be recovered, never null, so
+     * the caller does not fall back to an older copy of the jobs.
+     */
+    synchronized List<JobStatus> replay(boolean rtcIsGood) {
+        try {
+            FileInputStream stream = this.mFile.openRead();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            LongSparseArray<byte[]> records = new LongSparseArray<>();
+            resetLocked();
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    Slog.w(TAG, "Unknown job journal header, dropping " + this.mFile.getBaseFile());
+                    return new ArrayList<>();
+                }
+                this.mJournalBytes = (long) FILE_HEADER_SIZE;
+                while (true) {
+                    int uid = in.readInt();
+                    int jobId = in.readInt();
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        Slog.w(TAG, "Bad job journal record for uid " + uid + "; truncating");
+                        break;
+                    }
+                    byte[] record = new byte[length];
+                    in.readFully(record);
+                    if (crcOf(record) != crc) {
+                        Slog.w(TAG, "Corrupt job journal record for uid " + uid + "; truncating");
+                        break;
+                    }
+                    long key = keyOf(uid, jobId);
+                    if (length > 0) {
+                        records.put(key, record);
+                    } else {
+                        records.remove(key);
+                    }
+                    noteWrittenLocked(key, length);
+                    this.mJournalBytes += (long) (RECORD_HEADER_SIZE + length);
+                }
+            } catch (EOFException e) {
+            } catch (IOException e2) {
+                Slog.w(TAG, "Failed replaying job journal; truncating", e2);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e3) {
+                }
+            }
+            this.mNeedsCompaction = this.mJournalBytes != this.mFile.getBaseFile().length() || needsCompactionLocked();
+            List<JobStatus> jobs = new ArrayList<>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                JobStatus job = decodeJob(records.valueAt(i), rtcIsGood);
+                if (job != null) {
+                    jobs.add(job);
+                } else {
+                    Slog.d(TAG, "Error reading job from journal.");
+                }
+            }
+            return jobs;
+        } catch (FileNotFoundException e4) {
+            return null;
+        }
+    }
+
+    /**
+     * Brings the journal up to date with {@code jobs}, the complete list of persisted jobs. Only
+     * the jobs whose {@link #keyOf} key is in {@code changed}, and jobs the journal does not hold
+     * yet, are encoded; journaled jobs missing from {@code jobs} are recorded as removed.
+     *
+     * @return true if the journal now matches {@code jobs}
+     */
+    synchronized boolean write(List<JobStatus> jobs, LongSparseLongArray changed) {
+        long offset = JobSchedulerService.sSystemClock.millis() - JobSchedulerService.sElapsedRealtimeClock.millis();
+        boolean compact = this.mNeedsCompaction || needsCompactionLocked();
+        if (Math.abs(offset - this.mRtcOffset) > RTC_OFFSET_SLOP) {
+            this.mRtcOffset = offset;
+            compact = true;
+        }
+        LongSparseArray<byte[]> records = new LongSparseArray<>();
+        LongSparseLongArray live = new LongSparseLongArray(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            JobStatus job = jobs.get(i);
+            long key = keyOf(job.getUid(), job.getJobId());
+            live.put(key, 1);
+            if (compact || changed.indexOfKey(key) >= 0 || this.mWrittenSizes.indexOfKey(key) < 0) {
+                try {
+                    records.put(key, encodeJob(job, this.mRtcOffset));
+                } catch (IOException | RuntimeException e) {
+                    Slog.w(TAG, "Failed to encode job " + job.toShortString(), e);
+                }
+            }
+        }
+        if (compact) {
+            return writeSnapshot(records);
+        }
+        for (int i2 = this.mWrittenSizes.size() - 1; i2 >= 0; i2--) {
+            long key2 = this.mWrittenSizes.keyAt(i2);
+            if (live.indexOfKey(key2) < 0) {
+                records.put(key2, EmptyArray.BYTE);
+            }
+        }
+        if (records.size() != 0) {
+            return append(records);
+        }
+        return true;
+    }
+
+    synchronized void delete() {
+        this.mFile.delete();
+        resetLocked();
+    }
+
+    private boolean writeSnapshot(LongSparseArray<byte[]> records) {
+        FileOutputStream stream = null;
+        try {
+            stream = this.mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            resetLocked();
+            this.mJournalBytes = (long) FILE_HEADER_SIZE;
+            writeRecords(out, records);
+            out.flush();
+            this.mFile.finishWrite(stream);
+            this.mNeedsCompaction = false;
+            return true;
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to write job journal snapshot", e);
+            this.mFile.failWrite(stream);
+            resetLocked();
+            return false;
+        }
+    }
+
+    private boolean append(LongSparseArray<byte[]> records) {
+        try {
+            FileOutputStream stream = new FileOutputStream(this.mFile.getBaseFile(), true);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                writeRecords(out, records);
+                out.flush();
+                FileUtils.sync(stream);
+                return true;
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to append job journal", e);
+            resetLocked();
+            return false;
+        }
+    }
+
+    private void writeRecords(DataOutputStream out, LongSparseArray<byte[]> records) throws IOException {
+        int count = records.size();
+        for (int i = 0; i < count; i++) {
+            long key = records.keyAt(i);
+            byte[] record = records.valueAt(i);
+            int crc = crcOf(record);
+            out.writeInt((int) (key >> 32));
+            out.writeInt((int) key);
+            out.writeInt(record.length);
+            out.writeInt(crc);
+            out.write(record);
+            noteWrittenLocked(key, record.length);
+            this.mJournalBytes += (long) (RECORD_HEADER_SIZE + record.length);
+        }
+    }
+
+    private void noteWrittenLocked(long key, int length) {
+        this.mLiveBytes -= this.mWrittenSizes.get(key, 0);
+        if (length == 0) {
+            this.mWrittenSizes.delete(key);
+            return;
+        }
+        this.mWrittenSizes.put(key, (long) (RECORD_HEADER_SIZE + length));
+        this.mLiveBytes += (long) (RECORD_HEADER_SIZE + length);
+    }
+
+    private void resetLocked() {
+        this.mWrittenSizes.clear();
+        this.mLiveBytes = 0;
+        this.mJournalBytes = 0;
+        this.mNeedsCompaction = true;
+    }
+
+    private boolean needsCompactionLocked() {
+        return this.mJournalBytes > ((long) COMPACT_MIN_BYTES) && this.mJournalBytes > this.mLiveBytes * 2;
+    }
+
+    static long keyOf(int uid, int jobId) {
+        return (((long) uid) << 32) | (((long) jobId) & 4294967295L);
+    }
+
+    private static int crcOf(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encodeJob(JobStatus jobStatus, long rtcOffset) throws IOException {
+        long delayWallclock;
+        long deadlineWallclock;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        JobInfo job = jobStatus.getJob();
+        out.writeInt(jobStatus.getJobId());
+        writeString(out, jobStatus.getServiceComponent().getPackageName());
+        writeString(out, jobStatus.getServiceComponent().getClassName());
+        writeString(out, jobStatus.getSourcePackageName());
+        writeString(out, jobStatus.getSourceTag());
+        out.writeInt(jobStatus.getSourceUserId());
+        out.writeInt(jobStatus.getUid());
+        out.writeInt(jobStatus.getPriority());
+        out.writeInt(jobStatus.getFlags());
+        out.writeInt(jobStatus.getInternalFlags());
+        out.writeLong(jobStatus.getLastSuccessfulRunTime());
+        out.writeLong(jobStatus.getLastFailedRunTime());
+        int constraints = 0;
+        if (jobStatus.hasConnectivityConstraint()) {
+            constraints = CONSTRAINT_NETWORK;
+        }
+        if (jobStatus.hasIdleConstraint()) {
+            constraints |= CONSTRAINT_IDLE;
+        }
+        if (jobStatus.hasChargingConstraint()) {
+            constraints |= CONSTRAINT_CHARGING;
+        }
+        if (jobStatus.hasBatteryNotLowConstraint()) {
+            constraints |= CONSTRAINT_BATTERY_NOT_LOW;
+        }
+        out.writeByte(constraints);
+        if ((constraints & CONSTRAINT_NETWORK) != 0) {
+            NetworkRequest network = job.getRequiredNetwork();
+            out.writeLong(BitUtils.packBits(network.networkCapabilities.getCapabilities()));
+            out.writeLong(BitUtils.packBits(network.networkCapabilities.getUnwantedCapabilities()));
+            out.writeLong(BitUtils.packBits(network.networkCapabilities.getTransportTypes()));
+        }
+        out.writeBoolean(job.isPeriodic());
+        if (job.isPeriodic()) {
+            out.writeLong(job.getIntervalMillis());
+            out.writeLong(job.getFlexMillis());
+        }
+        Pair<Long, Long> utcJobTimes = jobStatus.getPersistedUtcTimes();
+        if (!jobStatus.hasTimingDelayConstraint()) {
+            delayWallclock = 0;
+        } else if (utcJobTimes == null) {
+            delayWallclock = jobStatus.getEarliestRunTime() + rtcOffset;
+        } else {
+            delayWallclock = ((Long) utcJobTimes.first).longValue();
+        }
+        out.writeLong(delayWallclock);
+        if (!jobStatus.hasDeadlineConstraint()) {
+            deadlineWallclock = JobStatus.NO_LATEST_RUNTIME;
+        } else if (utcJobTimes == null) {
+            deadlineWallclock = jobStatus.getLatestRunTimeElapsed() + rtcOffset;
+        } else {
+            deadlineWallclock = ((Long) utcJobTimes.second).longValue();
+        }
+        out.writeLong(deadlineWallclock);
+        boolean defaultBackoff = job.getInitialBackoffMillis() == 30000 && job.getBackoffPolicy() == 1;
+        out.writeBoolean(!defaultBackoff);
+        if (!defaultBackoff) {
+            out.writeInt(job.getBackoffPolicy());
+            out.writeLong(job.getInitialBackoffMillis());
+        }
+        writeBundle(out, job.getExtras(), MAX_BUNDLE_DEPTH);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static JobStatus decodeJob(byte[] record, boolean rtcIsGood) {
+        long flexMillis;
+        long periodMillis;
+        Pair<Long, Long> pair;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        try {
+            int jobId = in.readInt();
+            JobInfo.Builder jobBuilder = new JobInfo.Builder(jobId, new ComponentName(readString(in), readString(in)));
+            jobBuilder.setPersisted(true);
+            String sourcePackageName = readString(in);
+            String sourceTag = readString(in);
+            int sourceUserId = in.readInt();
+            int uid = in.readInt();
+            jobBuilder.setPriority(in.readInt());
+            jobBuilder.setFlags(in.readInt());
+            int internalFlags = in.readInt();
+            long lastSuccessfulRunTime = in.readLong();
+            long lastFailedRunTime = in.readLong();
+            int constraints = in.readByte();
+            if ((constraints & CONSTRAINT_NETWORK) != 0) {
+                NetworkRequest request = new NetworkRequest.Builder().build();
+                long capabilities = in.readLong();
+                long unwantedCapabilities = in.readLong();
+                long transportTypes = in.readLong();
+                request.networkCapabilities.setCapabilities(BitUtils.unpackBits(capabilities), BitUtils.unpackBits(unwantedCapabilities));
+                request.networkCapabilities.setTransportTypes(BitUtils.unpackBits(transportTypes));
+                jobBuilder.setRequiredNetwork(request);
+            }
+            if ((constraints & CONSTRAINT_IDLE) != 0) {
+                jobBuilder.setRequiresDeviceIdle(true);
+            }
+            if ((constraints & CONSTRAINT_CHARGING) != 0) {
+                jobBuilder.setRequiresCharging(true);
+            }
+            if ((constraints & CONSTRAINT_BATTERY_NOT_LOW) != 0) {
+                jobBuilder.setRequiresBatteryNotLow(true);
+            }
+            boolean periodic = in.readBoolean();
+            if (periodic) {
+                periodMillis = in.readLong();
+                flexMillis = in.readLong();
+            } else {
+                periodMillis = 0;
+                flexMillis = 0;
+            }
+            Pair<Long, Long> rtcRuntimes = Pair.create(Long.valueOf(in.readLong()), Long.valueOf(in.readLong()));
+            if (in.readBoolean()) {
+                int backoffPolicy = in.readInt();
+                jobBuilder.setBackoffCriteria(in.readLong(), backoffPolicy);
+            }
+            PersistableBundle extras = readBundle(in, MAX_BUNDLE_DEPTH);
+            long elapsedNow = JobSchedulerService.sElapsedRealtimeClock.millis();
+            Pair<Long, Long> elapsedRuntimes = JobStore.convertRtcBoundsToElapsed(rtcRuntimes, elapsedNow);
+            if (periodic) {
+                jobBuilder.setPeriodic(periodMillis, flexMillis);
+                if (((Long) elapsedRuntimes.second).longValue() > elapsedNow + periodMillis + flexMillis) {
+                    long clampedLateRuntimeElapsed = elapsedNow + flexMillis + periodMillis;
+                    long clampedEarlyRuntimeElapsed = clampedLateRuntimeElapsed - flexMillis;
+                    Slog.w(TAG, String.format("Periodic job for uid='%d' persisted run-time is too big [%s, %s]. Clamping to [%s,%s]", new Object[]{Integer.valueOf(uid), DateUtils.formatElapsedTime(((Long) elapsedRuntimes.first).longValue() / 1000), DateUtils.formatElapsedTime(((Long) elapsedRuntimes.second).longValue() / 1000), DateUtils.formatElapsedTime(clampedEarlyRuntimeElapsed / 1000), DateUtils.formatElapsedTime(clampedLateRuntimeElapsed / 1000)}));
+                    pair = Pair.create(Long.valueOf(clampedEarlyRuntimeElapsed), Long.valueOf(clampedLateRuntimeElapsed));
+                } else {
+                    pair = elapsedRuntimes;
+                }
+                elapsedRuntimes = pair;
+            } else {
+                if (((Long) elapsedRuntimes.first).longValue() != 0) {
+                    jobBuilder.setMinimumLatency(((Long) elapsedRuntimes.first).longValue() - elapsedNow);
+                }
+                if (((Long) elapsedRuntimes.second).longValue() != JobStatus.NO_LATEST_RUNTIME) {
+                    jobBuilder.setOverrideDeadline(((Long) elapsedRuntimes.second).longValue() - elapsedNow);
+                }
+            }
+            if (extras != null) {
+                jobBuilder.setExtras(extras);
+                if (PackageManagerService.PLATFORM_PACKAGE_NAME.equals(sourcePackageName) && extras.getBoolean("SyncManagerJob", false)) {
+                    sourcePackageName = extras.getString("owningPackage", sourcePackageName);
+                }
+            }
+            JobSchedulerInternal service = (JobSchedulerInternal) LocalServices.getService(JobSchedulerInternal.class);
+            int appBucket = JobSchedulerService.standbyBucketForPackage(sourcePackageName, sourceUserId, elapsedNow);
+            long currentHeartbeat = service != null ? service.currentHeartbeat() : 0;
+            JobStatus jobStatus = new JobStatus(jobBuilder.build(), uid, sourcePackageName, sourceUserId, appBucket, currentHeartbeat, sourceTag, ((Long) elapsedRuntimes.first).longValue(), ((Long) elapsedRuntimes.second).longValue(), lastSuccessfulRunTime, lastFailedRunTime, rtcIsGood ? null : rtcRuntimes, internalFlags);
+            return jobStatus;
+        } catch (IOException | RuntimeException e) {
+            Slog.e(TAG, "Error decoding journaled job, skipping", e);
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length <= MAX_RECORD_SIZE) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        throw new IOException("string too long: " + length);
+    }
+
+    private static void writeBundle(DataOutputStream out, PersistableBundle bundle, int depth) throws IOException {
+        if (bundle == null || depth <= 0) {
+            out.writeInt(-1);
+            return;
+        }
+        PersistableBundle copy = (PersistableBundle) bundle.clone();
+        out.writeInt(copy.size());
+        for (String key : copy.keySet()) {
+            writeString(out, key);
+            Object value = copy.get(key);
+            if (value == null) {
+                out.writeByte(TYPE_NULL);
+            } else if (value instanceof Integer) {
+                out.writeByte(TYPE_INT);
+                out.writeInt(((Integer) value).intValue());
+            } else if (value instanceof Long) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(((Long) value).longValue());
+            } else if (value instanceof Double) {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble(((Double) value).doubleValue());
+            } else if (value instanceof String) {
+                out.writeByte(TYPE_STRING);
+                writeString(out, (String) value);
+            } else if (value instanceof int[]) {
+                int[] array = (int[]) value;
+                out.writeByte(TYPE_INT_ARRAY);
+                out.writeInt(array.length);
+                for (int v : array) {
+                    out.writeInt(v);
+                }
+            } else if (value instanceof long[]) {
+                long[] array2 = (long[]) value;
+                out.writeByte(TYPE_LONG_ARRAY);
+                out.writeInt(array2.length);
+                for (long v2 : array2) {
+                    out.writeLong(v2);
+                }
+            } else if (value instanceof double[]) {
+                double[] array3 = (double[]) value;
+                out.writeByte(TYPE_DOUBLE_ARRAY);
+                out.writeInt(array3.length);
+                for (double v3 : array3) {
+                    out.writeDouble(v3);
+                }
+            } else if (value instanceof String[]) {
+                String[] array4 = (String[]) value;
+                out.writeByte(TYPE_STRING_ARRAY);
+                out.writeInt(array4.length);
+                for (String v4 : array4) {
+                    writeString(out, v4);
+                }
+            } else if (value instanceof PersistableBundle) {
+                out.writeByte(TYPE_BUNDLE);
+                writeBundle(out, (PersistableBundle) value, depth - 1);
+            } else if (value instanceof Boolean) {
+                out.writeByte(TYPE_BOOLEAN);
+                out.writeBoolean(((Boolean) value).booleanValue());
+            } else if (value instanceof boolean[]) {
+                boolean[] array5 = (boolean[]) value;
+                out.writeByte(TYPE_BOOLEAN_ARRAY);
+                out.writeInt(array5.length);
+                for (boolean v5 : array5) {
+                    out.writeBoolean(v5);
+                }
+            } else {
+                throw new IOException("Unsupported extras value for key " + key);
+            }
+        }
+    }
+
+    private static PersistableBundle readBundle(DataInputStream in, int depth) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        if (depth > 0) {
+            PersistableBundle bundle = new PersistableBundle();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                byte type = in.readByte();
+                switch (type) {
+                    case TYPE_NULL:
+                        bundle.putString(key, null);
+                        break;
+                    case TYPE_INT:
+                        bundle.putInt(key, in.readInt());
+                        break;
+                    case TYPE_LONG:
+                        bundle.putLong(key, in.readLong());
+                        break;
+                    case TYPE_DOUBLE:
+                        bundle.putDouble(key, in.readDouble());
+                        break;
+                    case TYPE_STRING:
+                        bundle.putString(key, readString(in));
+                        break;
+                    case TYPE_INT_ARRAY:
+                        int[] ints = new int[readArrayLength(in)];
+                        for (int j = 0; j < ints.length; j++) {
+                            ints[j] = in.readInt();
+                        }
+                        bundle.putIntArray(key, ints);
+                        break;
+                    case TYPE_LONG_ARRAY:
+                        long[] longs = new long[readArrayLength(in)];
+                        for (int j2 = 0; j2 < longs.length; j2++) {
+                            longs[j2] = in.readLong();
+                        }
+                        bundle.putLongArray(key, longs);
+                        break;
+                    case TYPE_DOUBLE_ARRAY:
+                        double[] doubles = new double[readArrayLength(in)];
+                        for (int j3 = 0; j3 < doubles.length; j3++) {
+                            doubles[j3] = in.readDouble();
+                        }
+                        bundle.putDoubleArray(key, doubles);
+                        break;
+                    case TYPE_STRING_ARRAY:
+                        String[] strings = new String[readArrayLength(in)];
+                        for (int j4 = 0; j4 < strings.length; j4++) {
+                            strings[j4] = readString(in);
+                        }
+                        bundle.putStringArray(key, strings);
+                        break;
+                    case TYPE_BUNDLE:
+                        bundle.putPersistableBundle(key, readBundle(in, depth - 1));
+                        break;
+                    case TYPE_BOOLEAN:
+                        bundle.putBoolean(key, in.readBoolean());
+                        break;
+                    case TYPE_BOOLEAN_ARRAY:
+                        boolean[] booleans = new boolean[readArrayLength(in)];
+                        for (int j5 = 0; j5 < booleans.length; j5++) {
+                            booleans[j5] = in.readBoolean();
+                        }
+                        bundle.putBooleanArray(key, booleans);
+                        break;
+                    default:
+                        throw new IOException("Unknown extras type " + type);
+                }
+            }
+            return bundle;
+        }
+        throw new IOException("extras nested too deeply");
+    }
+
+    private static int readArrayLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length >= 0 && length <= MAX_RECORD_SIZE) {
+            return length;
+        }
+        throw new IOException("bad array length " + length);
+    }
+}
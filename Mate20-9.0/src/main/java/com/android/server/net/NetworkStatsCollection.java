@@ -5,6 +5,7 @@ import android.net.NetworkStats;
 import android.net.NetworkStatsHistory;
 import android.net.NetworkTemplate;
 import android.os.Binder;
+import android.os.SystemProperties;
 import android.telephony.SubscriptionPlan;
 import android.util.ArrayMap;
 import android.util.AtomicFile;
@@ -12,6 +13,7 @@ import android.util.IntArray;
 import android.util.MathUtils;
 import android.util.Range;
 import android.util.Slog;
+import android.util.SparseArray;
 import android.util.proto.ProtoOutputStream;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.util.ArrayUtils;
@@ -21,8 +23,11 @@ import com.android.server.job.controllers.JobStatus;
 import com.google.android.collect.Lists;
 import com.google.android.collect.Maps;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -35,13 +40,18 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Objects;
+import java.util.zip.CRC32;
 import libcore.io.IoUtils;
 
 public class NetworkStatsCollection implements FileRotator.Reader {
     private static final int FILE_MAGIC = 1095648596;
+    private static final int MAX_APPENDED_BLOCK_SIZE = 16777216;
+    private static final int MAX_CACHED_TEMPLATES = 32;
     private static final String TAG = "NetworkStatsCollection";
+    static final boolean USE_COLUMNAR_FORMAT = SystemProperties.getBoolean("persist.sys.netstats.columnar", false);
     private static final int VERSION_NETWORK_INIT = 1;
     private static final int VERSION_UID_INIT = 1;
+    private static final int VERSION_UID_PROC_COLUMNAR = 18;
     private static final int VERSION_UID_PROC_UNIFIED_INIT = 17;
     private static final int VERSION_UID_WITH_IDENT = 2;
     private static final int VERSION_UID_WITH_SET = 4;
@@ -50,9 +60,12 @@ public class NetworkStatsCollection implements FileRotator.Reader {
     private final long mBucketDuration;
     private boolean mDirty;
     private long mEndMillis;
+    private final ArrayMap<NetworkIdentitySet, ArrayList<Key>> mIdentIndex = new ArrayMap<>();
     private long mStartMillis;
     private ArrayMap<Key, NetworkStatsHistory> mStats = new ArrayMap<>();
+    private final ArrayMap<NetworkTemplate, ArrayList<NetworkIdentitySet>> mTemplateIdents = new ArrayMap<>();
     private long mTotalBytes;
+    private final SparseArray<ArrayList<Key>> mUidIndex = new SparseArray<>();
 
     private static class Key implements Comparable<Key> {
         public final int actUid;
@@ -132,6 +145,11 @@ public class NetworkStatsCollection implements FileRotator.Reader {
 
     public void reset() {
         this.mStats.clear();
+        this.mIdentIndex.clear();
+        this.mUidIndex.clear();
+        synchronized (this.mTemplateIdents) {
+            this.mTemplateIdents.clear();
+        }
         this.mStartMillis = JobStatus.NO_LATEST_RUNTIME;
         this.mEndMillis = Long.MIN_VALUE;
         this.mTotalBytes = 0;
@@ -295,28 +313,17 @@ public class NetworkStatsCollection implements FileRotator.Reader {
             long collectStart3 = collectStart;
             long collectEnd4 = collectEnd2;
             long augmentEnd3 = augmentEnd2;
-            int i5 = 0;
-            while (i5 < this.mStats.size()) {
-                Key key = this.mStats.keyAt(i5);
-                if (key.uid == i) {
-                    if (NetworkStats.setMatches(set, key.set) && key.tag == tag) {
-                        if (templateMatches(template, key.ident) && Objects.equals(key.proc, proc)) {
-                            if (key.actUid == actUid) {
-                                combined.recordHistory(this.mStats.valueAt(i5), collectStart3, collectEnd4);
-                            }
-                            i5++;
-                            i = uid;
-                        }
+            ArrayList<Key> uidKeys = this.mUidIndex.get(i);
+            int keyCount = uidKeys != null ? uidKeys.size() : 0;
+            for (int i5 = 0; i5 < keyCount; i5++) {
+                Key key = uidKeys.get(i5);
+                if (NetworkStats.setMatches(set, key.set) && key.tag == tag && key.actUid == actUid && Objects.equals(key.proc, proc) && templateMatches(template, key.ident)) {
+                    NetworkStatsHistory history = this.mStats.get(key);
+                    if (history.getStart() < collectEnd4 && history.getEnd() > collectStart3) {
+                        combined.recordHistory(history, collectStart3, collectEnd4);
                     }
-                } else {
-                    int i6 = set;
                 }
-                int i7 = actUid;
-                i5++;
-                i = uid;
             }
-            int i8 = set;
-            int i9 = actUid;
             if (collectEnd != -1) {
                 NetworkStatsHistory.Entry entry = combined.getValues(collectEnd, augmentEnd3, null);
                 if (entry.rxBytes == 0 || entry.txBytes == 0) {
@@ -377,61 +384,109 @@ public class NetworkStatsCollection implements FileRotator.Reader {
     }
 
     public NetworkStats getSummary(NetworkTemplate template, long start, long end, int accessLevel, int callerUid) {
-        int i;
-        NetworkStats.Entry entry;
-        NetworkStatsCollection networkStatsCollection = this;
         long now = System.currentTimeMillis();
         NetworkStats stats = new NetworkStats(end - start, 24);
         if (start == end) {
             return stats;
         }
-        NetworkStats.Entry entry2 = new NetworkStats.Entry();
+        NetworkStats.Entry entry = new NetworkStats.Entry();
         NetworkStatsHistory.Entry historyEntry = null;
-        int i2 = 0;
-        while (true) {
-            int i3 = i2;
-            if (i3 < networkStatsCollection.mStats.size()) {
-                Key key = networkStatsCollection.mStats.keyAt(i3);
-                if (templateMatches(template, key.ident)) {
-                    if (NetworkStatsAccess.isAccessibleToUser(key.uid, callerUid, accessLevel) && key.set < 1000) {
-                        i = i3;
-                        Key key2 = key;
-                        entry = entry2;
-                        NetworkStatsHistory.Entry historyEntry2 = networkStatsCollection.mStats.valueAt(i3).getValues(start, end, now, historyEntry);
+        ArrayList<NetworkIdentitySet> idents = getMatchingIdents(template);
+        for (int i = 0; i < idents.size(); i++) {
+            ArrayList<Key> keys = this.mIdentIndex.get(idents.get(i));
+            int keyCount = keys != null ? keys.size() : 0;
+            for (int j = 0; j < keyCount; j++) {
+                Key key = keys.get(j);
+                if (NetworkStatsAccess.isAccessibleToUser(key.uid, callerUid, accessLevel) && key.set < 1000) {
+                    NetworkStatsHistory history = this.mStats.get(key);
+                    if (history.getStart() < end && history.getEnd() > start) {
+                        historyEntry = history.getValues(start, end, now, historyEntry);
                         entry.iface = NetworkStats.IFACE_ALL;
-                        entry.uid = key2.uid;
-                        entry.set = key2.set;
-                        entry.tag = key2.tag;
-                        entry.defaultNetwork = key2.ident.areAllMembersOnDefaultNetwork() ? 1 : 0;
-                        entry.metered = key2.ident.isAnyMemberMetered() ? 1 : 0;
-                        entry.proc = key2.proc;
-                        entry.actUid = key2.actUid;
-                        entry.roaming = key2.ident.isAnyMemberRoaming() ? 1 : 0;
-                        entry.rxBytes = historyEntry2.rxBytes;
-                        entry.rxPackets = historyEntry2.rxPackets;
-                        entry.txBytes = historyEntry2.txBytes;
-                        entry.txPackets = historyEntry2.txPackets;
-                        entry.operations = historyEntry2.operations;
-                        entry.rxBytes_mp = historyEntry2.rxBytes_mp;
-                        entry.rxPackets_mp = historyEntry2.rxPackets_mp;
-                        entry.txBytes_mp = historyEntry2.txBytes_mp;
-                        entry.txPackets_mp = historyEntry2.txPackets_mp;
+                        entry.uid = key.uid;
+                        entry.set = key.set;
+                        entry.tag = key.tag;
+                        entry.defaultNetwork = key.ident.areAllMembersOnDefaultNetwork() ? 1 : 0;
+                        entry.metered = key.ident.isAnyMemberMetered() ? 1 : 0;
+                        entry.proc = key.proc;
+                        entry.actUid = key.actUid;
+                        entry.roaming = key.ident.isAnyMemberRoaming() ? 1 : 0;
+                        entry.rxBytes = historyEntry.rxBytes;
+                        entry.rxPackets = historyEntry.rxPackets;
+                        entry.txBytes = historyEntry.txBytes;
+                        entry.txPackets = historyEntry.txPackets;
+                        entry.operations = historyEntry.operations;
+                        entry.rxBytes_mp = historyEntry.rxBytes_mp;
+                        entry.rxPackets_mp = historyEntry.rxPackets_mp;
+                        entry.txBytes_mp = historyEntry.txBytes_mp;
+                        entry.txPackets_mp = historyEntry.txPackets_mp;
                         if (!entry.isEmpty()) {
                             stats.combineValues(entry);
                         }
-                        historyEntry = historyEntry2;
-                        i2 = i + 1;
-                        entry2 = entry;
-                        networkStatsCollection = this;
                     }
                 }
-                i = i3;
-                entry = entry2;
-                i2 = i + 1;
-                entry2 = entry;
-                networkStatsCollection = this;
-            } else {
-                return stats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the identity sets matching {@code template}. The result is cached per template until
+     * the set of known identities changes.
+     */
+    private ArrayList<NetworkIdentitySet> getMatchingIdents(NetworkTemplate template) {
+        synchronized (this.mTemplateIdents) {
+            ArrayList<NetworkIdentitySet> idents = this.mTemplateIdents.get(template);
+            if (idents != null) {
+                return idents;
+            }
+            ArrayList<NetworkIdentitySet> idents2 = new ArrayList<>();
+            for (int i = 0; i < this.mIdentIndex.size(); i++) {
+                if (templateMatches(template, this.mIdentIndex.keyAt(i))) {
+                    idents2.add(this.mIdentIndex.keyAt(i));
+                }
+            }
+            if (this.mTemplateIdents.size() >= MAX_CACHED_TEMPLATES) {
+                this.mTemplateIdents.clear();
+            }
+            this.mTemplateIdents.put(template, idents2);
+            return idents2;
+        }
+    }
+
+    private void indexKey(Key key) {
+        ArrayList<Key> uidKeys = this.mUidIndex.get(key.uid);
+        if (uidKeys == null) {
+            uidKeys = new ArrayList<>();
+            this.mUidIndex.put(key.uid, uidKeys);
+        }
+        uidKeys.add(key);
+        ArrayList<Key> identKeys = this.mIdentIndex.get(key.ident);
+        if (identKeys == null) {
+            identKeys = new ArrayList<>();
+            this.mIdentIndex.put(key.ident, identKeys);
+            synchronized (this.mTemplateIdents) {
+                this.mTemplateIdents.clear();
+            }
+        }
+        identKeys.add(key);
+    }
+
+    private void unindexKey(Key key) {
+        ArrayList<Key> uidKeys = this.mUidIndex.get(key.uid);
+        if (uidKeys != null) {
+            uidKeys.remove(key);
+            if (uidKeys.isEmpty()) {
+                this.mUidIndex.remove(key.uid);
+            }
+        }
+        ArrayList<Key> identKeys = this.mIdentIndex.get(key.ident);
+        if (identKeys != null) {
+            identKeys.remove(key);
+            if (identKeys.isEmpty()) {
+                this.mIdentIndex.remove(key.ident);
+                synchronized (this.mTemplateIdents) {
+                    this.mTemplateIdents.clear();
+                }
             }
         }
     }
@@ -451,6 +506,7 @@ public class NetworkStatsCollection implements FileRotator.Reader {
             if (target == null) {
                 target = new NetworkStatsHistory(history.getBucketDuration());
                 this.mStats.put(key, target);
+                indexKey(key);
             }
             target.recordEntireHistory(history);
         }
@@ -483,11 +539,51 @@ public class NetworkStatsCollection implements FileRotator.Reader {
             return existing;
         }
         this.mStats.put(key, updated);
+        if (existing == null) {
+            indexKey(key);
+        }
         return updated;
     }
 
     public void read(InputStream in) throws IOException {
-        read(new DataInputStream(in));
+        DataInputStream dataIn = new DataInputStream(in);
+        read(dataIn);
+        readAppendedBlocks(dataIn);
+    }
+
+    /**
+     * Merges the blocks appended after the first one by {@link #append}. Every block is read in
+     * full and checked against its length and CRC before it is parsed, so a block torn by a crash
+     * during append ends the file and a corrupt block is skipped.
+     */
+    private void readAppendedBlocks(DataInputStream in) {
+        CRC32 crc = new CRC32();
+        while (true) {
+            try {
+                int length = in.readInt();
+                int expectedCrc = in.readInt();
+                if (length < 0 || length > MAX_APPENDED_BLOCK_SIZE) {
+                    Slog.w(TAG, "dropping appended stats after block of bad length " + length);
+                    return;
+                }
+                byte[] block = new byte[length];
+                in.readFully(block);
+                crc.reset();
+                crc.update(block, 0, length);
+                if (((int) crc.getValue()) != expectedCrc) {
+                    Slog.w(TAG, "skipping corrupt appended stats block");
+                } else {
+                    NetworkStatsCollection collection = new NetworkStatsCollection(this.mBucketDuration);
+                    collection.read(new DataInputStream(new ByteArrayInputStream(block)));
+                    recordCollection(collection);
+                }
+            } catch (EOFException e) {
+                return;
+            } catch (IOException | RuntimeException e2) {
+                Slog.w(TAG, "dropping unreadable appended stats block: " + e2.getMessage());
+                return;
+            }
+        }
     }
 
     public void read(DataInputStream in) throws IOException {
@@ -500,6 +596,7 @@ public class NetworkStatsCollection implements FileRotator.Reader {
                     Slog.d(TAG, "read net data,  uidAndProcFlag= " + false);
                     break;
                 case 17:
+                case 18:
                     break;
                 default:
                     throw new ProtocolException("unexpected version: " + version);
@@ -549,7 +646,7 @@ public class NetworkStatsCollection implements FileRotator.Reader {
             keys.add(key);
         }
         out.writeInt(FILE_MAGIC);
-        out.writeInt(17);
+        out.writeInt(USE_COLUMNAR_FORMAT ? 18 : 17);
         out.writeInt(keysByIdent.size());
         for (NetworkIdentitySet ident : keysByIdent.keySet()) {
             ArrayList<Key> keys2 = keysByIdent.get(ident);
@@ -570,12 +667,34 @@ public class NetworkStatsCollection implements FileRotator.Reader {
                     out.writeUTF(proc);
                 }
                 out.writeInt(key2.actUid);
-                history.writeToStream(out);
+                if (USE_COLUMNAR_FORMAT) {
+                    history.writeDeltaColumnsToStream(out);
+                } else {
+                    history.writeToStream(out);
+                }
             }
         }
         out.flush();
     }
 
+    /**
+     * Writes this collection as a block to be appended to an existing stats file instead of
+     * rewriting it; {@link #read(InputStream)} merges appended blocks into the first one. The block
+     * is framed by its length and CRC32 so the reader can tell where it ends and whether it is
+     * intact.
+     */
+    public void append(DataOutputStream out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new DataOutputStream(bytes));
+        byte[] block = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(block, 0, block.length);
+        out.writeInt(block.length);
+        out.writeInt((int) crc.getValue());
+        out.write(block);
+        out.flush();
+    }
+
     @Deprecated
     public void readLegacyNetwork(File file) throws IOException {
         DataInputStream in = null;
@@ -683,6 +802,7 @@ public class NetworkStatsCollection implements FileRotator.Reader {
                     findOrCreateHistory(key.ident, -4, 0, 0).recordEntireHistory(this.mStats.get(key));
                 }
                 this.mStats.remove(key);
+                unindexKey(key);
                 this.mDirty = true;
             }
         }
@@ -33,6 +33,7 @@ public class NetworkStatsRecorder {
     private static final String TAG = "NetworkStatsRecorder";
     private static final String TAG_NETSTATS_DUMP = "netstats_dump";
     private static final int TEN_MINITES = 600000;
+    private static final int MAX_APPENDS_BEFORE_REWRITE = 16;
     private static HashSet<Integer> mMarkapp = new HashSet<>();
     private static HashSet<Integer> mSilentapp = new HashSet<>();
     private static HashSet<Integer> mWatchapp = new HashSet<>();
@@ -41,6 +42,8 @@ public class NetworkStatsRecorder {
     private final String mCookie;
     private final DropBoxManager mDropBox;
     private NetworkStats mLastSnapshot;
+    private long mActiveLength = -1;
+    private int mAppendsSinceRewrite;
     private final NetworkStats.NonMonotonicObserver<String> mObserver;
     private final boolean mOnlyTags;
     private final NetworkStatsCollection mPending;
@@ -341,8 +344,22 @@ public class NetworkStatsRecorder {
         Preconditions.checkNotNull(this.mRotator, "missing FileRotator");
         if (this.mPending.isDirty()) {
             try {
-                this.mRotator.rewriteActive(this.mPendingRewriter, currentTimeMillis);
+                long activeLength = this.mActiveLength;
+                this.mActiveLength = -1;
+                if (NetworkStatsCollection.USE_COLUMNAR_FORMAT && this.mAppendsSinceRewrite < MAX_APPENDS_BEFORE_REWRITE && this.mRotator.appendActive(new FileRotator.Writer() {
+                    public void write(OutputStream out) throws IOException {
+                        NetworkStatsRecorder.this.mPending.append(new DataOutputStream(out));
+                    }
+                }, currentTimeMillis, activeLength)) {
+                    this.mAppendsSinceRewrite++;
+                } else {
+                    this.mRotator.rewriteActive(this.mPendingRewriter, currentTimeMillis);
+                    this.mAppendsSinceRewrite = 0;
+                }
                 this.mRotator.maybeRotate(currentTimeMillis);
+                if (NetworkStatsCollection.USE_COLUMNAR_FORMAT) {
+                    this.mActiveLength = this.mRotator.getActiveLength(currentTimeMillis);
+                }
                 this.mPending.reset();
             } catch (IOException e) {
                 Log.wtf(TAG, "problem persisting pending stats", e);
@@ -355,6 +372,7 @@ public class NetworkStatsRecorder {
     }
 
     public void removeUidsLocked(int[] uids) {
+        this.mActiveLength = -1;
         if (this.mRotator != null) {
             try {
                 this.mRotator.rewriteAll(new RemoveUidRewriter(this.mBucketDuration, uids));
@@ -383,6 +401,7 @@ public class NetworkStatsRecorder {
 
     public void importLegacyNetworkLocked(File file) throws IOException {
         Preconditions.checkNotNull(this.mRotator, "missing FileRotator");
+        this.mActiveLength = -1;
         this.mRotator.deleteAll();
         NetworkStatsCollection collection = new NetworkStatsCollection(this.mBucketDuration);
         collection.readLegacyNetwork(file);
@@ -396,6 +415,7 @@ public class NetworkStatsRecorder {
 
     public void importLegacyUidLocked(File file) throws IOException {
         Preconditions.checkNotNull(this.mRotator, "missing FileRotator");
+        this.mActiveLength = -1;
         this.mRotator.deleteAll();
         NetworkStatsCollection collection = new NetworkStatsCollection(this.mBucketDuration);
         collection.readLegacyUid(file, this.mOnlyTags);
@@ -26217,6 +26217,7 @@ public class PackageManagerService extends AbsPackageManagerService implements P
                                     i = 8192;
                                     z = true;
                                     if (activityIntentResolver2.dump(printWriter, str7, "  ", packageName, dumpState.isOptionEnabled(1), true)) {
+                                        activityIntentResolver2.dumpQueryCacheStats(printWriter, "  ");
                                         dumpState.setTitlePrinted(true);
                                     }
                                     if (!checkin && dumpState.isDumping(16)) {
@@ -26238,6 +26239,7 @@ public class PackageManagerService extends AbsPackageManagerService implements P
                                             str4 = "Service Resolver Table:";
                                         }
                                         if (serviceIntentResolver.dump(printWriter, str4, "  ", packageName, dumpState.isOptionEnabled(z), true)) {
+                                            serviceIntentResolver.dumpQueryCacheStats(printWriter, "  ");
                                             dumpState.setTitlePrinted(z);
                                         }
                                     }
@@ -27149,6 +27151,7 @@ public class PackageManagerService extends AbsPackageManagerService implements P
                         if (!dumpState.getTitlePrinted()) {
                         }
                         if (serviceIntentResolver.dump(printWriter, str4, "  ", packageName, dumpState.isOptionEnabled(z), true)) {
+                            serviceIntentResolver.dumpQueryCacheStats(printWriter, "  ");
                         }
                         providerIntentResolver = this.mProviders;
                         if (!dumpState.getTitlePrinted()) {
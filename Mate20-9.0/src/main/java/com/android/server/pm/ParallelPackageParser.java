@@ -1,27 +1,50 @@
 package com.android.server.pm;
 
 import android.content.pm.PackageParser;
-import android.os.Trace;
+import android.os.Process;
 import android.util.DisplayMetrics;
+import android.util.TimingsTraceLog;
 import com.android.internal.annotations.VisibleForTesting;
-import com.android.internal.util.ConcurrentUtils;
 import java.io.File;
-import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
 
+/**
+ * Parses the packages of a scan on a work stealing pool sized to the number of cores.
+ *
+ * Every submitted file is measured and starts parsing right away. Idle workers always pick the
+ * largest file still waiting, so the long parses do not end up alone at the tail of the scan.
+ * {@link #take()} returns the results in completion order from a queue bounded to a few results
+ * per worker, so the buffered packages stay bounded while the scanner keeps up.
+ */
 class ParallelPackageParser implements AutoCloseable {
-    private static final int MAX_THREADS = 4;
-    private static final int QUEUE_CAPACITY = 10;
+    private static final int QUEUE_CAPACITY_PER_THREAD = 4;
+    private static final int THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final String TIMING_TAG = "PackageParserTiming";
     private final File mCacheDir;
     private volatile String mInterruptedInThread;
     private final DisplayMetrics mMetrics;
     private final boolean mOnlyCore;
     private final PackageParser.Callback mPackageParserCallback;
-    private final BlockingQueue<ParseResult> mQueue = new ArrayBlockingQueue(10);
+    private final Runnable mParseNext = new Runnable() {
+        public void run() {
+            ParseTask task = ParallelPackageParser.this.mPending.poll();
+            if (task != null) {
+                ParallelPackageParser.this.parse(task);
+            }
+        }
+    };
+    private final PriorityBlockingQueue<ParseTask> mPending = new PriorityBlockingQueue<>();
+    private final BlockingQueue<ParseResult> mQueue = new ArrayBlockingQueue(THREAD_COUNT * QUEUE_CAPACITY_PER_THREAD);
     private final String[] mSeparateProcesses;
-    private final ExecutorService mService = ConcurrentUtils.newFixedThreadPool(4, "package-parsing-thread", -2);
+    private final ForkJoinPool mService = new ForkJoinPool(THREAD_COUNT, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            return new ParsingThread(pool);
+        }
+    }, null, true);
 
     static class ParseResult {
         PackageParser.Package pkg;
@@ -36,6 +59,34 @@ class ParallelPackageParser implements AutoCloseable {
         }
     }
 
+    private static final class ParsingThread extends ForkJoinWorkerThread {
+        ParsingThread(ForkJoinPool pool) {
+            super(pool);
+            setName("package-parsing-thread" + getPoolIndex());
+        }
+
+        protected void onStart() {
+            super.onStart();
+            Process.setThreadPriority(-2);
+        }
+    }
+
+    private static final class ParseTask implements Comparable<ParseTask> {
+        final int parseFlags;
+        final File scanFile;
+        final long size;
+
+        ParseTask(File scanFile2, int parseFlags2, long size2) {
+            this.scanFile = scanFile2;
+            this.parseFlags = parseFlags2;
+            this.size = size2;
+        }
+
+        public int compareTo(ParseTask other) {
+            return Long.compare(other.size, this.size);
+        }
+    }
+
     ParallelPackageParser(String[] separateProcesses, boolean onlyCoreApps, DisplayMetrics metrics, File cacheDir, PackageParser.Callback callback) {
         this.mSeparateProcesses = separateProcesses;
         this.mOnlyCore = onlyCoreApps;
@@ -57,43 +108,49 @@ class ParallelPackageParser implements AutoCloseable {
     }
 
     public void submit(File scanFile, int parseFlags) {
-        this.mService.submit(new Runnable(scanFile, parseFlags) {
-            private final /* synthetic */ File f$1;
-            private final /* synthetic */ int f$2;
-
-            {
-                this.f$1 = r2;
-                this.f$2 = r3;
-            }
+        this.mPending.add(new ParseTask(scanFile, parseFlags, sizeOf(scanFile)));
+        this.mService.execute(this.mParseNext);
+    }
 
-            public final void run() {
-                ParallelPackageParser.lambda$submit$0(ParallelPackageParser.this, this.f$1, this.f$2);
+    private static long sizeOf(File scanFile) {
+        if (!scanFile.isDirectory()) {
+            return scanFile.length();
+        }
+        long size = 0;
+        File[] files = scanFile.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (PackageParser.isApkFile(file)) {
+                    size += file.length();
+                }
             }
-        });
+        }
+        return size;
     }
 
-    public static /* synthetic */ void lambda$submit$0(ParallelPackageParser parallelPackageParser, File scanFile, int parseFlags) {
+    private void parse(ParseTask task) {
         ParseResult pr = new ParseResult();
-        Trace.traceBegin(262144, "parallel parsePackage [" + scanFile + "]");
+        TimingsTraceLog log = new TimingsTraceLog(TIMING_TAG, 262144);
+        log.traceBegin("parallel parsePackage [" + task.scanFile + "]");
         try {
             PackageParser pp = new PackageParser();
-            pp.setSeparateProcesses(parallelPackageParser.mSeparateProcesses);
-            pp.setOnlyCoreApps(parallelPackageParser.mOnlyCore);
-            pp.setDisplayMetrics(parallelPackageParser.mMetrics);
-            pp.setCacheDir(parallelPackageParser.mCacheDir);
-            pp.setCallback(parallelPackageParser.mPackageParserCallback);
-            pr.scanFile = scanFile;
-            pr.pkg = parallelPackageParser.parsePackage(pp, scanFile, parseFlags);
-        } catch (Throwable th) {
-            Trace.traceEnd(262144);
-            throw th;
+            pp.setSeparateProcesses(this.mSeparateProcesses);
+            pp.setOnlyCoreApps(this.mOnlyCore);
+            pp.setDisplayMetrics(this.mMetrics);
+            pp.setCacheDir(this.mCacheDir);
+            pp.setCallback(this.mPackageParserCallback);
+            pr.scanFile = task.scanFile;
+            pr.pkg = parsePackage(pp, task.scanFile, task.parseFlags);
+        } catch (Throwable e) {
+            pr.throwable = e;
+        } finally {
+            log.traceEnd();
         }
-        Trace.traceEnd(262144);
         try {
-            parallelPackageParser.mQueue.put(pr);
-        } catch (InterruptedException e) {
+            this.mQueue.put(pr);
+        } catch (InterruptedException e2) {
             Thread.currentThread().interrupt();
-            parallelPackageParser.mInterruptedInThread = Thread.currentThread().getName();
+            this.mInterruptedInThread = Thread.currentThread().getName();
         }
     }
 
@@ -104,9 +161,9 @@ class ParallelPackageParser implements AutoCloseable {
     }
 
     public void close() {
-        List<Runnable> unfinishedTasks = this.mService.shutdownNow();
-        if (!unfinishedTasks.isEmpty()) {
-            throw new IllegalStateException("Not all tasks finished before calling close: " + unfinishedTasks);
+        this.mService.shutdownNow();
+        if (!this.mPending.isEmpty()) {
+            throw new IllegalStateException("Not all tasks finished before calling close: " + this.mPending.size() + " left");
         }
     }
 }
@@ -69,6 +69,8 @@ import huawei.cust.HwCustUtils;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -164,12 +166,14 @@ public final class Settings {
     public static final String TAG_ITEM = "item";
     private static final String TAG_PACKAGE = "pkg";
     private static final String TAG_PACKAGE_RESTRICTIONS = "package-restrictions";
+    private static final String TAG_PACKAGE_SHARDS = "package-shards";
     private static final String TAG_PERMISSIONS = "perms";
     private static final String TAG_PERMISSION_ENTRY = "perm";
     private static final String TAG_PERSISTENT_PREFERRED_ACTIVITIES = "persistent-preferred-activities";
     private static final String TAG_READ_EXTERNAL_STORAGE = "read-external-storage";
     private static final String TAG_RESTORED_RUNTIME_PERMISSIONS = "restored-perms";
     private static final String TAG_RUNTIME_PERMISSIONS = "runtime-permissions";
+    private static final String TAG_SHARD = "shard";
     private static final String TAG_SHARED_USER = "shared-user";
     private static final String TAG_SUSPENDED_APP_EXTRAS = "suspended-app-extras";
     private static final String TAG_SUSPENDED_LAUNCHER_EXTRAS = "suspended-launcher-extras";
@@ -197,6 +201,7 @@ public final class Settings {
     private final Object mLock;
     final SparseIntArray mNextAppLinkGeneration;
     private final SparseArray<Object> mOtherUserIds;
+    private String mPackageListContents;
     private final File mPackageListFilename;
     final ArrayMap<String, PackageSetting> mPackages;
     final ArrayList<PackageCleanItem> mPackagesToBeCleaned;
@@ -213,6 +218,7 @@ public final class Settings {
     public final SparseArray<ArrayMap<String, ArraySet<RestoredPermissionGrant>>> mRestoredUserGrants;
     private final RuntimePermissionPersistence mRuntimePermissionsPersistence;
     private final File mSettingsFilename;
+    private final SettingsShardStore mShardStore;
     final ArrayMap<String, SharedUserSetting> mSharedUsers;
     private final File mStoppedPackagesFilename;
     private final File mSystemDir;
@@ -937,6 +943,7 @@ public final class Settings {
         this.mKernelMappingFilename = kernelDir.exists() ? kernelDir : null;
         this.mStoppedPackagesFilename = new File(this.mSystemDir, "packages-stopped.xml");
         this.mBackupStoppedPackagesFilename = new File(this.mSystemDir, "packages-stopped-backup.xml");
+        this.mShardStore = SystemProperties.getBoolean("persist.sys.pm.sharded_settings", false) ? new SettingsShardStore(this.mSystemDir) : null;
     }
 
     /* access modifiers changed from: package-private */
@@ -3229,11 +3236,15 @@ public final class Settings {
             serializer.startTag(null, "permissions");
             this.mPermissions.writePermissions(serializer);
             serializer.endTag(null, "permissions");
-            for (PackageSetting pkg : this.mPackages.values()) {
-                writePackageLPr(serializer, pkg);
-            }
-            for (PackageSetting pkg2 : this.mDisabledSysPackages.values()) {
-                writeDisabledSysPackageLPr(serializer, pkg2);
+            if (this.mShardStore != null) {
+                writePackageShardsLPr(serializer);
+            } else {
+                for (PackageSetting pkg : this.mPackages.values()) {
+                    writePackageLPr(serializer, pkg);
+                }
+                for (PackageSetting pkg2 : this.mDisabledSysPackages.values()) {
+                    writeDisabledSysPackageLPr(serializer, pkg2);
+                }
             }
             for (SharedUserSetting usr : this.mSharedUsers.values()) {
                 serializer.startTag(null, TAG_SHARED_USER);
@@ -3283,6 +3294,11 @@ public final class Settings {
             FileUtils.sync(fstr);
             str.close();
             this.mBackupSettingsFilename.delete();
+            if (this.mShardStore != null) {
+                this.mShardStore.deleteUnreferenced();
+            } else {
+                SettingsShardStore.deleteAll(this.mSystemDir);
+            }
             FileUtils.setPermissions(this.mSettingsFilename.toString(), 432, -1, -1);
             writeKernelMappingLPr();
             writePackageListLPr();
@@ -3297,6 +3313,132 @@ public final class Settings {
         }
     }
 
+    /**
+     * Writes the package records into their shard files, rewriting only the shards whose content
+     * changed, and lists the shards in packages.xml.
+     */
+    private void writePackageShardsLPr(XmlSerializer serializer) throws IOException {
+        ArrayList<ArrayList<PackageSetting>> packages = new ArrayList<>(SettingsShardStore.SHARD_COUNT);
+        ArrayList<ArrayList<PackageSetting>> disabled = new ArrayList<>(SettingsShardStore.SHARD_COUNT);
+        for (int i = 0; i < SettingsShardStore.SHARD_COUNT; i++) {
+            packages.add(new ArrayList<>());
+            disabled.add(new ArrayList<>());
+        }
+        for (PackageSetting pkg : this.mPackages.values()) {
+            packages.get(SettingsShardStore.shardOf(pkg.name)).add(pkg);
+        }
+        for (PackageSetting pkg2 : this.mDisabledSysPackages.values()) {
+            disabled.get(SettingsShardStore.shardOf(pkg2.name)).add(pkg2);
+        }
+        serializer.startTag(null, TAG_PACKAGE_SHARDS);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(65536);
+        for (int i2 = 0; i2 < SettingsShardStore.SHARD_COUNT; i2++) {
+            this.mPastSignatures.clear();
+            bytes.reset();
+            XmlSerializer shard = new FastXmlSerializer();
+            shard.setOutput(bytes, StandardCharsets.UTF_8.name());
+            shard.startDocument(null, true);
+            shard.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
+            shard.startTag(null, "packages");
+            ArrayList<PackageSetting> shardPackages = packages.get(i2);
+            for (int j = 0; j < shardPackages.size(); j++) {
+                writePackageLPr(shard, shardPackages.get(j));
+            }
+            ArrayList<PackageSetting> shardDisabled = disabled.get(i2);
+            for (int j2 = 0; j2 < shardDisabled.size(); j2++) {
+                writeDisabledSysPackageLPr(shard, shardDisabled.get(j2));
+            }
+            shard.endTag(null, "packages");
+            shard.endDocument();
+            String file = this.mShardStore.commitShard(i2, bytes.toByteArray());
+            serializer.startTag(null, TAG_SHARD);
+            XmlUtils.writeIntAttribute(serializer, "index", i2);
+            serializer.attribute(null, "file", file);
+            serializer.endTag(null, TAG_SHARD);
+        }
+        this.mPastSignatures.clear();
+        serializer.endTag(null, TAG_PACKAGE_SHARDS);
+    }
+
+    /**
+     * Reads the shard files listed by a {@code package-shards} element. The files are loaded in
+     * parallel; the records are then parsed in order since they update the settings maps.
+     */
+    private void readPackageShardsLPw(XmlPullParser parser) throws XmlPullParserException, IOException {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<Integer> indexes = new ArrayList<>();
+        int outerDepth = parser.getDepth();
+        while (true) {
+            int next = parser.next();
+            int type = next;
+            if (next == 1 || (type == 3 && parser.getDepth() <= outerDepth)) {
+                break;
+            } else if (!(type == 3 || type == 4)) {
+                if (parser.getName().equals(TAG_SHARD)) {
+                    String file = parser.getAttributeValue(null, "file");
+                    if (file != null) {
+                        names.add(file);
+                        indexes.add(Integer.valueOf(XmlUtils.readIntAttribute(parser, "index", -1)));
+                    }
+                } else {
+                    Slog.w("PackageManager", "Unknown element under <package-shards>: " + parser.getName());
+                }
+                XmlUtils.skipCurrentTag(parser);
+            }
+        }
+        byte[][] shards = SettingsShardStore.readShards(this.mSystemDir, (String[]) names.toArray(new String[names.size()]));
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] == null) {
+                String msg = "Missing package settings shard " + names.get(i) + "\n";
+                this.mReadMessages.append(msg);
+                PackageManagerService.reportSettingsProblem(6, msg);
+            } else {
+                this.mPastSignatures.clear();
+                readPackageShardLPw(shards[i]);
+                if (this.mShardStore != null) {
+                    this.mShardStore.noteLoaded(indexes.get(i).intValue(), names.get(i), shards[i]);
+                }
+            }
+        }
+        this.mPastSignatures.clear();
+    }
+
+    private void readPackageShardLPw(byte[] data) throws XmlPullParserException, IOException {
+        int type;
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setInput(new ByteArrayInputStream(data), StandardCharsets.UTF_8.name());
+        do {
+            type = parser.next();
+            if (type == 2) {
+                break;
+            }
+        } while (type != 1);
+        if (type == 2) {
+            int outerDepth = parser.getDepth();
+            while (true) {
+                int next = parser.next();
+                int type2 = next;
+                if (next == 1) {
+                    return;
+                }
+                if (type2 == 3 && parser.getDepth() <= outerDepth) {
+                    return;
+                }
+                if (!(type2 == 3 || type2 == 4)) {
+                    String tagName = parser.getName();
+                    if (tagName.equals("package")) {
+                        readPackageLPw(parser);
+                    } else if (tagName.equals("updated-package")) {
+                        readDisabledSysPackageLPw(parser);
+                    } else {
+                        Slog.w("PackageManager", "Unknown element in package shard: " + tagName);
+                        XmlUtils.skipCurrentTag(parser);
+                    }
+                }
+            }
+        }
+    }
+
     private void writeKernelRemoveUserLPr(int userId) {
         if (this.mKernelMappingFilename != null) {
             writeIntToFile(new File(this.mKernelMappingFilename, "remove_userid"), userId);
@@ -3393,10 +3535,9 @@ public final class Settings {
         }
         int[] userIds2 = userIds;
         JournaledFile journal = new JournaledFile(this.mPackageListFilename, new File(this.mPackageListFilename.getAbsolutePath() + ".tmp"));
+        boolean writing = false;
         try {
-            FileOutputStream fstr = new FileOutputStream(journal.chooseForWrite());
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fstr, Charset.defaultCharset()));
-            FileUtils.setPermissions(fstr.getFD(), 416, 1000, 1032);
+            StringBuilder listing = new StringBuilder();
             StringBuilder sb = new StringBuilder();
             for (PackageSetting pkg : this.mPackages.values()) {
                 if (!(pkg.pkg == null || pkg.pkg.applicationInfo == null)) {
@@ -3425,7 +3566,7 @@ public final class Settings {
                                 }
                             }
                             sb.append("\n");
-                            writer.append(sb);
+                            listing.append(sb);
                             int i4 = creatingUserId;
                         }
                     }
@@ -3435,14 +3576,25 @@ public final class Settings {
                 }
                 int i42 = creatingUserId;
             }
-            writer.flush();
-            FileUtils.sync(fstr);
-            writer.close();
-            journal.commit();
+            String contents = listing.toString();
+            if (this.mShardStore == null || !contents.equals(this.mPackageListContents) || !this.mPackageListFilename.exists()) {
+                writing = true;
+                FileOutputStream fstr = new FileOutputStream(journal.chooseForWrite());
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fstr, Charset.defaultCharset()));
+                FileUtils.setPermissions(fstr.getFD(), 416, 1000, 1032);
+                writer.append(listing);
+                writer.flush();
+                FileUtils.sync(fstr);
+                writer.close();
+                journal.commit();
+                this.mPackageListContents = contents;
+            }
         } catch (Exception e) {
             Slog.wtf(TAG, "Failed to write packages.list", e);
             IoUtils.closeQuietly(null);
-            journal.rollback();
+            if (writing) {
+                journal.rollback();
+            }
         }
     }
 
@@ -3715,6 +3867,8 @@ public final class Settings {
                                 String tagName = parser.getName();
                                 if (tagName.equals("package")) {
                                     readPackageLPw(parser);
+                                } else if (tagName.equals(TAG_PACKAGE_SHARDS)) {
+                                    readPackageShardsLPw(parser);
                                 } else if (tagName.equals("permissions")) {
                                     this.mPermissions.readPermissions(parser);
                                 } else if (tagName.equals("permission-trees")) {
@@ -0,0 +1,196 @@
+package com.android.server.pm;
+
+import android.os.FileUtils;
+import android.os.Process;
+import android.util.Slog;
+import com.android.internal.util.ConcurrentUtils;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Package record shards of packages.xml.
+ *
+ * In sharded mode {@link Settings#writeLPr} splits the {@code package} and
+ * {@code updated-package} records by package name into {@link #SHARD_COUNT} small XML files and
+ * packages.xml only lists the shard files in a {@code package-shards} element, where the records
+ * used to be. The bytes each shard was last written or read with are kept in memory, and a shard
+ * is rewritten only when its serialized bytes differ from them, so installing one app rewrites
+ * one shard instead of every package record.
+ *
+ * Every rewrite goes to a new file name, and a file is deleted only once the packages.xml that
+ * stops referring to it has been committed. packages.xml and its backup therefore always refer to
+ * complete shards, and the existing backup handling in {@link Settings#readLPw} keeps working.
+ *
+ * Shards are self contained, each with its own past signature table, so they can be read in
+ * parallel at boot.
+ */
+final class SettingsShardStore {
+    private static final String DIR_NAME = "packages.d";
+    private static final int READ_THREADS = 4;
+    static final int SHARD_COUNT = 16;
+    private static final String SUFFIX = ".xml";
+    private static final String TAG = "SettingsShardStore";
+    private final byte[][] mContents = new byte[SHARD_COUNT][];
+    private final File mDir;
+    private final String[] mFiles = new String[SHARD_COUNT];
+    private long mGeneration;
+
+    SettingsShardStore(File systemDir) {
+        this.mDir = getDir(systemDir);
+        this.mDir.mkdirs();
+        FileUtils.setPermissions(this.mDir.toString(), 509, -1, -1);
+        String[] names = this.mDir.list();
+        if (names != null) {
+            for (String name : names) {
+                this.mGeneration = Math.max(this.mGeneration, generationOf(name));
+            }
+        }
+    }
+
+    static File getDir(File systemDir) {
+        return new File(systemDir, DIR_NAME);
+    }
+
+    /**
+     * Deletes every shard, once a packages.xml that holds all records inline has been committed.
+     */
+    static void deleteAll(File systemDir) {
+        File dir = getDir(systemDir);
+        if (dir.exists()) {
+            FileUtils.deleteContentsAndDir(dir);
+        }
+    }
+
+    static int shardOf(String packageName) {
+        return (packageName.hashCode() & Integer.MAX_VALUE) % SHARD_COUNT;
+    }
+
+    /**
+     * Returns the file name holding {@code data} for shard {@code index}, writing a new file only
+     * if the content differs from the current one.
+     */
+    String commitShard(int index, byte[] data) throws IOException {
+        if (this.mFiles[index] != null && Arrays.equals(this.mContents[index], data) && new File(this.mDir, this.mFiles[index]).exists()) {
+            return this.mFiles[index];
+        }
+        long j = this.mGeneration + 1;
+        this.mGeneration = j;
+        String name = index + "." + j + SUFFIX;
+        File file = new File(this.mDir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+            out.flush();
+            FileUtils.sync(out);
+            out.close();
+            FileUtils.setPermissions(file.toString(), 432, -1, -1);
+            this.mFiles[index] = name;
+            this.mContents[index] = data;
+            return name;
+        } catch (Throwable th) {
+            out.close();
+            file.delete();
+            throw th;
+        }
+    }
+
+    /**
+     * Records the content a shard was read with, so an unchanged shard is not rewritten by the
+     * first write after boot.
+     */
+    void noteLoaded(int index, String name, byte[] data) {
+        if (index >= 0 && index < SHARD_COUNT) {
+            this.mFiles[index] = name;
+            this.mContents[index] = data;
+        }
+    }
+
+    /**
+     * Deletes the shard files the committed packages.xml no longer refers to.
+     */
+    void deleteUnreferenced() {
+        String[] names = this.mDir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (!isReferenced(name)) {
+                    new File(this.mDir, name).delete();
+                }
+            }
+        }
+    }
+
+    private boolean isReferenced(String name) {
+        for (String file : this.mFiles) {
+            if (name.equals(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the named shard files in parallel. A shard that cannot be read is returned as null.
+     */
+    static byte[][] readShards(File systemDir, final String[] names) {
+        final File dir = getDir(systemDir);
+        byte[][] result = new byte[names.length][];
+        if (names.length == 0) {
+            return result;
+        }
+        ExecutorService executor = ConcurrentUtils.newFixedThreadPool(Math.min(READ_THREADS, names.length), "package-shard-reader", Process.THREAD_PRIORITY_FOREGROUND);
+        try {
+            ArrayList<Future<byte[]>> futures = new ArrayList<>(names.length);
+            for (final String name : names) {
+                futures.add(executor.submit(new Callable<byte[]>() {
+                    public byte[] call() {
+                        return SettingsShardStore.readFile(new File(dir, name));
+                    }
+                }));
+            }
+            for (int i = 0; i < names.length; i++) {
+                result[i] = ConcurrentUtils.waitForFutureNoInterrupt(futures.get(i), "read package shard");
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] readFile(File file) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                byte[] data = new byte[((int) raf.length())];
+                raf.readFully(data);
+                raf.close();
+                return data;
+            } catch (Throwable th) {
+                raf.close();
+                throw th;
+            }
+        } catch (IOException e) {
+            Slog.e(TAG, "Failed to read package shard " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static long generationOf(String name) {
+        int first = name.indexOf(46);
+        int last = name.lastIndexOf(46);
+        if (first < 0 || last <= first) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(name.substring(first + 1, last));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
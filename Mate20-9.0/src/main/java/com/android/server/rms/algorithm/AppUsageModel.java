@@ -0,0 +1,200 @@
+package com.android.server.rms.algorithm;
+
+import android.util.ArrayMap;
+import com.android.server.rms.algorithm.utils.IAwareHabitUtils;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Dense, int indexed usage counts of the habit algorithm.
+ *
+ * Every package gets a small id on first sight; total, day and night counts live in primitive
+ * arrays indexed by it. Each count also keeps a ranking, the ids ordered by count descending,
+ * which is maintained on every increment: a count only ever grows by one, so the id just swaps
+ * with the first id of its equal-count run. Callers that want the most used apps walk a ranking
+ * instead of copying and sorting the whole table.
+ *
+ * Not thread safe; guarded by the habit lock of {@link AwareUserHabitAlgorithm}.
+ */
+final class AppUsageModel {
+    private static final int INITIAL_CAPACITY = 64;
+    private final Ranking mDay = new Ranking();
+    private final ArrayMap<String, Integer> mIds = new ArrayMap<>();
+    private String[] mNames = new String[INITIAL_CAPACITY];
+    private final Ranking mNight = new Ranking();
+    private final Ranking mTotal = new Ranking();
+
+    /**
+     * Ids ordered by a per id count, highest first.
+     */
+    private static final class Ranking {
+        int[] counts = new int[INITIAL_CAPACITY];
+        int[] order = new int[INITIAL_CAPACITY];
+        int[] pos = new int[INITIAL_CAPACITY];
+        int size;
+
+        Ranking() {
+        }
+
+        void append(int id) {
+            if (this.size == this.order.length) {
+                int capacity = this.size * 2;
+                this.counts = Arrays.copyOf(this.counts, capacity);
+                this.order = Arrays.copyOf(this.order, capacity);
+                this.pos = Arrays.copyOf(this.pos, capacity);
+            }
+            this.counts[id] = 0;
+            this.order[this.size] = id;
+            this.pos[id] = this.size;
+            this.size++;
+        }
+
+        void increment(int id) {
+            int count = this.counts[id];
+            int p = this.pos[id];
+            int low = 0;
+            int high = p;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.counts[this.order[mid]] > count) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low != p) {
+                int other = this.order[low];
+                this.order[low] = id;
+                this.pos[id] = low;
+                this.order[p] = other;
+                this.pos[other] = p;
+            }
+            this.counts[id] = count + 1;
+        }
+
+        /**
+         * Re-sorts after counts were set directly; ties keep id order.
+         */
+        void rebuild() {
+            long[] keys = new long[this.size];
+            for (int i = 0; i < this.size; i++) {
+                keys[i] = (((long) (Integer.MAX_VALUE - Math.max(this.counts[i], 0))) << 32) | ((long) i);
+            }
+            Arrays.sort(keys);
+            for (int i2 = 0; i2 < this.size; i2++) {
+                int id = (int) keys[i2];
+                this.order[i2] = id;
+                this.pos[id] = i2;
+            }
+        }
+
+        void clear() {
+            this.size = 0;
+        }
+    }
+
+    AppUsageModel() {
+    }
+
+    void clear() {
+        this.mIds.clear();
+        Arrays.fill(this.mNames, null);
+        this.mTotal.clear();
+        this.mDay.clear();
+        this.mNight.clear();
+    }
+
+    /**
+     * Replaces the model with the counts loaded from the habit database.
+     */
+    void load(Map<String, Integer> usageCount, Map<String, IAwareHabitUtils.UsageDistribution> distribution) {
+        clear();
+        for (Map.Entry<String, Integer> entry : usageCount.entrySet()) {
+            Integer count = entry.getValue();
+            if (count != null) {
+                int id = obtainId(entry.getKey());
+                this.mTotal.counts[id] = count.intValue();
+            }
+        }
+        for (Map.Entry<String, IAwareHabitUtils.UsageDistribution> entry2 : distribution.entrySet()) {
+            IAwareHabitUtils.UsageDistribution usage = entry2.getValue();
+            if (usage != null) {
+                int id = obtainId(entry2.getKey());
+                this.mDay.counts[id] = usage.mDay;
+                this.mNight.counts[id] = usage.mNight;
+            }
+        }
+        this.mTotal.rebuild();
+        this.mDay.rebuild();
+        this.mNight.rebuild();
+    }
+
+    int size() {
+        return this.mTotal.size;
+    }
+
+    /**
+     * Records one launch of {@code pkg} in the total count and in the day or night count.
+     */
+    void noteUsage(String pkg, boolean day) {
+        int id = obtainId(pkg);
+        this.mTotal.increment(id);
+        (day ? this.mDay : this.mNight).increment(id);
+    }
+
+    int getCount(String pkg) {
+        Integer id = this.mIds.get(pkg);
+        if (id != null) {
+            return this.mTotal.counts[id.intValue()];
+        }
+        return 0;
+    }
+
+    int getTimeCount(String pkg, boolean day) {
+        Integer id = this.mIds.get(pkg);
+        if (id != null) {
+            return (day ? this.mDay : this.mNight).counts[id.intValue()];
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the package at {@code rank} of the total count ranking, 0 being the most used.
+     */
+    String getNameByCount(int rank) {
+        return this.mNames[this.mTotal.order[rank]];
+    }
+
+    int getCountByRank(int rank) {
+        return this.mTotal.counts[this.mTotal.order[rank]];
+    }
+
+    /**
+     * Returns the package at {@code rank} of the day or night count ranking.
+     */
+    String getNameByTimeCount(boolean day, int rank) {
+        return this.mNames[(day ? this.mDay : this.mNight).order[rank]];
+    }
+
+    int getTimeCountByRank(boolean day, int rank) {
+        Ranking ranking = day ? this.mDay : this.mNight;
+        return ranking.counts[ranking.order[rank]];
+    }
+
+    private int obtainId(String pkg) {
+        Integer id = this.mIds.get(pkg);
+        if (id != null) {
+            return id.intValue();
+        }
+        int newId = this.mTotal.size;
+        if (newId == this.mNames.length) {
+            this.mNames = (String[]) Arrays.copyOf(this.mNames, newId * 2);
+        }
+        this.mNames[newId] = pkg;
+        this.mIds.put(pkg, Integer.valueOf(newId));
+        this.mTotal.append(newId);
+        this.mDay.append(newId);
+        this.mNight.append(newId);
+        return newId;
+    }
+}
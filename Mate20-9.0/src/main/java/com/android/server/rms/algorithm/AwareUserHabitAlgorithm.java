@@ -62,22 +62,10 @@ public class AwareUserHabitAlgorithm {
     private ArraySet<String> mNoInterfaceFilterAppSet = new ArraySet<>();
     private LinkedHashMap<String, Integer> mPkgNameToIdMap = new LinkedHashMap<>();
     private ArrayList<ArrayList<Integer>> mTransProMatrix = new ArrayList<>();
-    private LinkedHashMap<String, Integer> mUsageCount = new LinkedHashMap<>();
-    private Map<String, IAwareHabitUtils.UsageDistribution> mUsageDistributionMap = new ArrayMap();
+    private final AppUsageModel mUsageModel = new AppUsageModel();
     private final AtomicInteger mUserId = new AtomicInteger(0);
     private LinkedHashMap<String, Integer> mUserTrackList = new LinkedHashMap<>();
 
-    private static class AppCountDescComparator implements Comparator<Map.Entry<String, Integer>>, Serializable {
-        private static final long serialVersionUID = 1;
-
-        private AppCountDescComparator() {
-        }
-
-        public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
-            return o2.getValue().compareTo(o1.getValue());
-        }
-    }
-
     private static class DoubleAscComparator implements Comparator<Map.Entry<Integer, Double>>, Serializable {
         private static final long serialVersionUID = 1;
 
@@ -153,32 +141,11 @@ public class AwareUserHabitAlgorithm {
 
     /* access modifiers changed from: package-private */
     public void updateAppUsage(String pkg) {
-        IAwareHabitUtils.UsageDistribution usageDistribution;
         int timeType = IAwareHabitUtils.getTimeType(System.currentTimeMillis());
         synchronized (this.mHabitLock) {
-            if (this.mUsageCount.containsKey(pkg)) {
-                this.mUsageCount.put(pkg, Integer.valueOf(this.mUsageCount.get(pkg).intValue() + 1));
-            } else {
-                this.mUsageCount.put(pkg, 1);
-            }
-            AwareLog.d(TAG, "updateAppUsage, pkg:" + pkg + ", usage total:" + this.mUsageCount.get(pkg));
-            IAwareHabitUtils.UsageDistribution historyDis = this.mUsageDistributionMap.get(pkg);
-            if (historyDis != null) {
-                if (timeType == 0) {
-                    historyDis.mDay++;
-                } else {
-                    historyDis.mNight++;
-                }
-                AwareLog.d(TAG, "updateAppUsage, pkg:" + pkg + " cur distribution day:" + historyDis.mDay + " night:" + historyDis.mNight);
-            } else {
-                if (timeType == 0) {
-                    usageDistribution = new IAwareHabitUtils.UsageDistribution(1, 0);
-                } else {
-                    usageDistribution = new IAwareHabitUtils.UsageDistribution(0, 1);
-                }
-                this.mUsageDistributionMap.put(pkg, usageDistribution);
-                AwareLog.d(TAG, "updateAppUsage, pkg:" + pkg + " new distribution day:" + usageDistribution.mDay + " night:" + usageDistribution.mNight);
-            }
+            this.mUsageModel.noteUsage(pkg, timeType == 0);
+            AwareLog.d(TAG, "updateAppUsage, pkg:" + pkg + ", usage total:" + this.mUsageModel.getCount(pkg));
+            AwareLog.d(TAG, "updateAppUsage, pkg:" + pkg + " cur distribution day:" + this.mUsageModel.getTimeCount(pkg, true) + " night:" + this.mUsageModel.getTimeCount(pkg, false));
         }
         int appType = AppTypeRecoManager.getInstance().convertType(AppTypeRecoManager.getInstance().getAppType(pkg));
         if (-1 != appType) {
@@ -397,8 +364,7 @@ public class AwareUserHabitAlgorithm {
     /* access modifiers changed from: package-private */
     public void init() {
         synchronized (this.mHabitLock) {
-            this.mUsageCount.clear();
-            this.mUsageDistributionMap.clear();
+            this.mUsageModel.clear();
             loadData();
         }
         loadAppTypeInfo();
@@ -417,14 +383,16 @@ public class AwareUserHabitAlgorithm {
         this.mPkgNameToIdMap.clear();
         this.mIdToPkgNameMap.clear();
         this.mTransProMatrix.clear();
-        this.mUsageCount.clear();
-        this.mUsageDistributionMap.clear();
+        this.mUsageModel.clear();
         clearFilterPkg();
     }
 
     private void loadData() {
         int userId = this.mUserId.get();
-        IAwareHabitUtils.loadPkgInfo(this.mContentResolver, this.mPkgNameToIdMap, this.mIdToPkgNameMap, this.mUsageCount, this.mUsageDistributionMap, userId);
+        LinkedHashMap<String, Integer> usageCount = new LinkedHashMap<>();
+        Map<String, IAwareHabitUtils.UsageDistribution> usageDistribution = new ArrayMap<>();
+        IAwareHabitUtils.loadPkgInfo(this.mContentResolver, this.mPkgNameToIdMap, this.mIdToPkgNameMap, usageCount, usageDistribution, userId);
+        this.mUsageModel.load(usageCount, usageDistribution);
         IAwareHabitUtils.loadAppAssociateInfo(this.mContentResolver, this.mPkgNameToIdMap, this.mTransProMatrix, userId);
         initFilterPkg();
     }
@@ -432,11 +400,10 @@ public class AwareUserHabitAlgorithm {
     private void loadAppTypeInfo() {
         Map<Integer, ArrayList<String>> tmpAppTypeInfo = new ArrayMap<>();
         synchronized (this.mHabitLock) {
-            if (this.mUsageCount.size() > 0) {
-                List<Map.Entry<String, Integer>> entries = new ArrayList<>(this.mUsageCount.entrySet());
-                Collections.sort(entries, new AppCountDescComparator());
-                for (Map.Entry<String, Integer> entry : entries) {
-                    String name = entry.getKey();
+            int size = this.mUsageModel.size();
+            if (size > 0) {
+                for (int i = 0; i < size; i++) {
+                    String name = this.mUsageModel.getNameByCount(i);
                     int appType = AppTypeRecoManager.getInstance().convertType(AppTypeRecoManager.getInstance().getAppType(name));
                     if (appType != -1) {
                         ArrayList<String> list = tmpAppTypeInfo.get(Integer.valueOf(appType));
@@ -514,53 +481,23 @@ public class AwareUserHabitAlgorithm {
     }
 
     /* access modifiers changed from: package-private */
-    /* JADX WARNING: Code restructure failed: missing block: B:33:0x0071, code lost:
-        return r1;
-     */
-    /* JADX WARNING: Removed duplicated region for block: B:26:0x0062  */
-    /* JADX WARNING: Removed duplicated region for block: B:27:0x0063  */
-    /* JADX WARNING: Removed duplicated region for block: B:30:0x006a  */
-    /* JADX WARNING: Removed duplicated region for block: B:43:0x006f A[SYNTHETIC] */
     public List<String> getMostFrequentUsedApp(int n, int minCount, Set<String> filterAppSet) {
-        boolean isFilted;
         if (n <= 0) {
             return null;
         }
         ArrayList<String> result = new ArrayList<>();
         int num = n;
         synchronized (this.mHabitLock) {
-            if (this.mUsageCount.isEmpty()) {
-                return result;
-            }
-            List<Map.Entry<String, Integer>> entries = new ArrayList<>(this.mUsageCount.entrySet());
-            Collections.sort(entries, new AppCountDescComparator());
-            for (Map.Entry<String, Integer> entry : entries) {
-                if (num > 0) {
-                    if (entry.getValue().intValue() > minCount) {
-                        String pkgName = entry.getKey();
-                        boolean z = false;
-                        if (!containsFilterPkg(pkgName)) {
-                            if (!containsFilter2Pkg(pkgName)) {
-                                isFilted = false;
-                                if (filterAppSet == null) {
-                                    z = filterAppSet.contains(pkgName);
-                                }
-                                if (isFilted || z) {
-                                    result.add(pkgName);
-                                    num--;
-                                }
-                            }
-                        }
-                        isFilted = true;
-                        if (filterAppSet == null) {
-                        }
-                        if (isFilted || z) {
-                        }
-                    }
+            int size = this.mUsageModel.size();
+            for (int i = 0; i < size && num > 0 && this.mUsageModel.getCountByRank(i) > minCount; i++) {
+                String pkgName = this.mUsageModel.getNameByCount(i);
+                if (!containsFilterPkg(pkgName) && !containsFilter2Pkg(pkgName) && (filterAppSet == null || !filterAppSet.contains(pkgName))) {
+                    result.add(pkgName);
+                    num--;
                 }
             }
-            return result;
         }
+        return result;
     }
 
     private List<PkgInfo> getTopMove(String lastPkgName, Set<Integer> topMoveSet) {
@@ -603,7 +540,7 @@ public class AwareUserHabitAlgorithm {
             return lrulist;
         }
         int lruMaxNums = 2;
-        if (this.mUsageCount.isEmpty()) {
+        if (this.mUsageModel.size() == 0) {
             lruMaxNums = sortedlru.size();
         }
         for (int i = sortedlru.size() - 1; i >= 0; i--) {
@@ -619,65 +556,43 @@ public class AwareUserHabitAlgorithm {
     }
 
     private List<PkgInfo> getUsePatternList(String lastPkgName, Map<String, Long> lruCache, long curTime, String realCurapp) {
-        int realCurappID;
-        int distributionType;
-        List<Integer> lrulist;
-        AwareUserHabitAlgorithm awareUserHabitAlgorithm = this;
-        Map<String, Long> map = lruCache;
-        String str = realCurapp;
         ArraySet<Integer> topMoveSet = new ArraySet<>();
-        List<PkgInfo> topList = awareUserHabitAlgorithm.getTopMove(lastPkgName, topMoveSet);
+        List<PkgInfo> topList = getTopMove(lastPkgName, topMoveSet);
         ArrayList<PkgInfo> patternList = new ArrayList<>();
         patternList.addAll(topList);
-        List<Integer> lrulist2 = awareUserHabitAlgorithm.getLRUAppList(map, curTime, str, topMoveSet);
-        ArrayList<Map.Entry<Integer, Double>> notinlrulist = new ArrayList<>();
-        int distributionType2 = IAwareHabitUtils.getTimeType(System.currentTimeMillis());
-        for (Integer appID : lrulist2) {
+        List<Integer> lrulist = getLRUAppList(lruCache, curTime, realCurapp, topMoveSet);
+        for (Integer appID : lrulist) {
             patternList.add(new PkgInfo(appID.intValue(), 2));
         }
-        int realCurappID2 = awareUserHabitAlgorithm.mPkgNameToIdMap.size();
-        if (awareUserHabitAlgorithm.mPkgNameToIdMap.containsKey(str)) {
-            realCurappID2 = awareUserHabitAlgorithm.mPkgNameToIdMap.get(str).intValue();
+        int count = this.mPkgNameToIdMap.size();
+        int realCurappID = count;
+        if (this.mPkgNameToIdMap.containsKey(realCurapp)) {
+            realCurappID = this.mPkgNameToIdMap.get(realCurapp).intValue();
+        }
+        boolean[] skip = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            skip[i] = topMoveSet.contains(Integer.valueOf(i)) || lrulist.contains(Integer.valueOf(i)) || i == realCurappID;
+        }
+        boolean day = IAwareHabitUtils.getTimeType(System.currentTimeMillis()) == 0;
+        int size = this.mUsageModel.size();
+        for (int rank = 0; rank < size && this.mUsageModel.getTimeCountByRank(day, rank) != 0; rank++) {
+            Integer appID2 = this.mPkgNameToIdMap.get(this.mUsageModel.getNameByTimeCount(day, rank));
+            if (appID2 != null && appID2.intValue() < count && !skip[appID2.intValue()]) {
+                skip[appID2.intValue()] = true;
+                patternList.add(new PkgInfo(appID2.intValue(), 3));
+            }
         }
-        int i = 0;
-        while (i < awareUserHabitAlgorithm.mPkgNameToIdMap.size()) {
-            if (topMoveSet.contains(Integer.valueOf(i)) || lrulist2.contains(Integer.valueOf(i)) || i == realCurappID2) {
-                lrulist = lrulist2;
-                distributionType = distributionType2;
-                realCurappID = realCurappID2;
-            } else {
-                String name = awareUserHabitAlgorithm.mIdToPkgNameMap.get(Integer.valueOf(i));
-                IAwareHabitUtils.UsageDistribution curDistribution = awareUserHabitAlgorithm.mUsageDistributionMap.get(name);
-                int curUsage = 0;
-                if (curDistribution != null) {
-                    curUsage = distributionType2 == 0 ? curDistribution.mDay : curDistribution.mNight;
-                }
-                if (curUsage != 0) {
-                    lrulist = lrulist2;
-                    distributionType = distributionType2;
-                    realCurappID = realCurappID2;
-                    notinlrulist.add(new AbstractMap.SimpleEntry(Integer.valueOf(i), Double.valueOf(0.0d - ((double) curUsage))));
-                } else {
-                    lrulist = lrulist2;
-                    distributionType = distributionType2;
-                    realCurappID = realCurappID2;
-                    long lastTime = MIN_THRESHOLD;
-                    if (map.containsKey(name)) {
-                        lastTime = map.get(name).longValue();
-                    }
-                    String str2 = name;
-                    long j = lastTime;
-                    notinlrulist.add(new AbstractMap.SimpleEntry(Integer.valueOf(i), Double.valueOf((double) Math.abs(curTime - lastTime))));
+        ArrayList<Map.Entry<Integer, Double>> notinlrulist = new ArrayList<>();
+        for (int i2 = 0; i2 < count; i2++) {
+            if (!skip[i2]) {
+                long lastTime = MIN_THRESHOLD;
+                Long time = lruCache.get(this.mIdToPkgNameMap.get(Integer.valueOf(i2)));
+                if (time != null) {
+                    lastTime = time.longValue();
                 }
+                notinlrulist.add(new AbstractMap.SimpleEntry(Integer.valueOf(i2), Double.valueOf((double) Math.abs(curTime - lastTime))));
             }
-            i++;
-            lrulist2 = lrulist;
-            distributionType2 = distributionType;
-            realCurappID2 = realCurappID;
-            awareUserHabitAlgorithm = this;
-        }
-        int i2 = distributionType2;
-        int i3 = realCurappID2;
+        }
         Collections.sort(notinlrulist, new DoubleAscComparator());
         Iterator<Map.Entry<Integer, Double>> it = notinlrulist.iterator();
         while (it.hasNext()) {
@@ -0,0 +1,245 @@
+package com.android.server.rms.iaware.appmng;
+
+import android.os.UserHandle;
+import android.util.SparseIntArray;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Immutable, int indexed copy of the process association graph of {@link AwareAppAssociate}.
+ *
+ * Callers are kept sorted by pid with their outgoing edges in one compressed row, and the bind
+ * service edges are also indexed by target pid for client lookups. A snapshot is built once per
+ * structural change of the association records, an edge added or removed or a pid moved, and then
+ * shared by every reader, so kill policy and memory reclaim walk a consistent view without holding
+ * the lock the AMS callbacks record into. The last use time of an edge is not copied: the edge
+ * refers to the {@link UseTime} of its live record, so the frequent refreshes of a known edge
+ * never invalidate the snapshot.
+ */
+final class AssocGraphSnapshot {
+    static final AssocGraphSnapshot EMPTY = new Builder().build(0);
+    private static final int FLAG_PROVIDER = 1;
+    private static final int FLAG_STRONG = 2;
+    private final int[] mBindClientStart;
+    private final int[] mBindClients;
+    private final int[] mBindTargets;
+    private final int[] mCallerPids;
+    private final int[] mCallerUids;
+    private final int[] mEdgeStart;
+    private final byte[] mFlags;
+    private final int[] mTargetPids;
+    private final int[] mTargetUids;
+    private final UseTime[] mUseTimes;
+    private final int mVersion;
+
+    /**
+     * Last use time of an association, updated in place under the {@link AwareAppAssociate} lock
+     * and read by snapshots without it.
+     */
+    static class UseTime {
+        volatile long miniTime;
+    }
+
+    /**
+     * Collects callers and their edges. Callers may come in any order, but each one must be
+     * directly followed by its edges.
+     */
+    static final class Builder {
+        private int mCallerCount;
+        private int[] mCallerPids = new int[16];
+        private int[] mCallerUids = new int[16];
+        private int mEdgeCount;
+        private int[] mEdgeStart = new int[17];
+        private byte[] mFlags = new byte[32];
+        private int[] mTargetPids = new int[32];
+        private int[] mTargetUids = new int[32];
+        private UseTime[] mUseTimes = new UseTime[32];
+
+        Builder() {
+        }
+
+        void addCaller(int pid, int uid) {
+            if (this.mCallerCount == this.mCallerPids.length) {
+                int size = this.mCallerCount * 2;
+                this.mCallerPids = Arrays.copyOf(this.mCallerPids, size);
+                this.mCallerUids = Arrays.copyOf(this.mCallerUids, size);
+                this.mEdgeStart = Arrays.copyOf(this.mEdgeStart, size + 1);
+            }
+            this.mCallerPids[this.mCallerCount] = pid;
+            this.mCallerUids[this.mCallerCount] = uid;
+            this.mEdgeStart[this.mCallerCount] = this.mEdgeCount;
+            this.mCallerCount++;
+        }
+
+        void addEdge(int targetPid, int targetUid, UseTime useTime, boolean provider, boolean strong) {
+            if (this.mEdgeCount == this.mTargetPids.length) {
+                int size = this.mEdgeCount * 2;
+                this.mTargetPids = Arrays.copyOf(this.mTargetPids, size);
+                this.mTargetUids = Arrays.copyOf(this.mTargetUids, size);
+                this.mUseTimes = Arrays.copyOf(this.mUseTimes, size);
+                this.mFlags = Arrays.copyOf(this.mFlags, size);
+            }
+            this.mTargetPids[this.mEdgeCount] = targetPid;
+            this.mTargetUids[this.mEdgeCount] = targetUid;
+            this.mUseTimes[this.mEdgeCount] = useTime;
+            int flags = provider ? FLAG_PROVIDER : 0;
+            if (strong) {
+                flags |= FLAG_STRONG;
+            }
+            this.mFlags[this.mEdgeCount] = (byte) flags;
+            this.mEdgeCount++;
+        }
+
+        AssocGraphSnapshot build(int version) {
+            return new AssocGraphSnapshot(this, version);
+        }
+    }
+
+    private AssocGraphSnapshot(Builder builder, int version) {
+        int callers = builder.mCallerCount;
+        int edges = builder.mEdgeCount;
+        builder.mEdgeStart[callers] = edges;
+        long[] order = new long[callers];
+        for (int i = 0; i < callers; i++) {
+            order[i] = (((long) builder.mCallerPids[i]) << 32) | ((long) i);
+        }
+        Arrays.sort(order);
+        this.mCallerPids = new int[callers];
+        this.mCallerUids = new int[callers];
+        this.mEdgeStart = new int[(callers + 1)];
+        this.mTargetPids = new int[edges];
+        this.mTargetUids = new int[edges];
+        this.mUseTimes = new UseTime[edges];
+        this.mFlags = new byte[edges];
+        int edge = 0;
+        int bindEdges = 0;
+        for (int i2 = 0; i2 < callers; i2++) {
+            int from = (int) order[i2];
+            this.mCallerPids[i2] = builder.mCallerPids[from];
+            this.mCallerUids[i2] = builder.mCallerUids[from];
+            this.mEdgeStart[i2] = edge;
+            for (int e = builder.mEdgeStart[from]; e < builder.mEdgeStart[from + 1]; e++) {
+                this.mTargetPids[edge] = builder.mTargetPids[e];
+                this.mTargetUids[edge] = builder.mTargetUids[e];
+                this.mUseTimes[edge] = builder.mUseTimes[e];
+                this.mFlags[edge] = builder.mFlags[e];
+                if ((builder.mFlags[e] & FLAG_PROVIDER) == 0) {
+                    bindEdges++;
+                }
+                edge++;
+            }
+        }
+        this.mEdgeStart[callers] = edge;
+        long[] pairs = new long[bindEdges];
+        int count = 0;
+        for (int i3 = 0; i3 < callers; i3++) {
+            for (int e2 = this.mEdgeStart[i3]; e2 < this.mEdgeStart[i3 + 1]; e2++) {
+                if ((this.mFlags[e2] & FLAG_PROVIDER) == 0) {
+                    pairs[count] = (((long) this.mTargetPids[e2]) << 32) | (((long) this.mCallerPids[i3]) & 4294967295L);
+                    count++;
+                }
+            }
+        }
+        Arrays.sort(pairs);
+        int targets = 0;
+        for (int i4 = 0; i4 < count; i4++) {
+            if (i4 == 0 || (pairs[i4] >> 32) != (pairs[i4 - 1] >> 32)) {
+                targets++;
+            }
+        }
+        this.mBindTargets = new int[targets];
+        this.mBindClientStart = new int[(targets + 1)];
+        this.mBindClients = new int[count];
+        int target = -1;
+        for (int i5 = 0; i5 < count; i5++) {
+            if (i5 == 0 || (pairs[i5] >> 32) != (pairs[i5 - 1] >> 32)) {
+                target++;
+                this.mBindTargets[target] = (int) (pairs[i5] >> 32);
+                this.mBindClientStart[target] = i5;
+            }
+            this.mBindClients[i5] = (int) pairs[i5];
+        }
+        this.mBindClientStart[targets] = count;
+        this.mVersion = version;
+    }
+
+    int getVersion() {
+        return this.mVersion;
+    }
+
+    int getCallerCount() {
+        return this.mCallerPids.length;
+    }
+
+    int getEdgeCount() {
+        return this.mTargetPids.length;
+    }
+
+    /**
+     * Adds the targets {@code pid} depends on: every bound service, and the providers it used
+     * strongly within {@code decayTime} before {@code now}.
+     */
+    void getStrongAssoc(int pid, long now, long decayTime, Set<Integer> out) {
+        int caller = Arrays.binarySearch(this.mCallerPids, pid);
+        if (caller >= 0) {
+            for (int e = this.mEdgeStart[caller]; e < this.mEdgeStart[caller + 1]; e++) {
+                int targetPid = this.mTargetPids[e];
+                if (targetPid != 0 && ((this.mFlags[e] & FLAG_PROVIDER) == 0 || isLiveProvider(e, now, decayTime))) {
+                    out.add(Integer.valueOf(targetPid));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the providers {@code pid} used strongly within {@code decayTime} before {@code now}.
+     */
+    void getAssocProvider(int pid, long now, long decayTime, Set<Integer> out) {
+        int caller = Arrays.binarySearch(this.mCallerPids, pid);
+        if (caller >= 0) {
+            for (int e = this.mEdgeStart[caller]; e < this.mEdgeStart[caller + 1]; e++) {
+                int targetPid = this.mTargetPids[e];
+                if (targetPid != 0 && (this.mFlags[e] & FLAG_PROVIDER) != 0 && isLiveProvider(e, now, decayTime)) {
+                    out.add(Integer.valueOf(targetPid));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the pids of the processes bound to a service running in {@code pid}.
+     */
+    void getBindClients(int pid, Set<Integer> out) {
+        int target = Arrays.binarySearch(this.mBindTargets, pid);
+        if (target >= 0) {
+            for (int i = this.mBindClientStart[target]; i < this.mBindClientStart[target + 1]; i++) {
+                out.add(Integer.valueOf(this.mBindClients[i]));
+            }
+        }
+    }
+
+    /**
+     * Fills {@code out} with pid to uid of the app callers bound to a service of {@code uid}.
+     */
+    void getAppBindClientsOfUid(int uid, SparseIntArray out) {
+        for (int i = 0; i < this.mCallerPids.length; i++) {
+            if (UserHandle.getAppId(this.mCallerUids[i]) >= 10000) {
+                int e = this.mEdgeStart[i];
+                while (true) {
+                    if (e >= this.mEdgeStart[i + 1]) {
+                        break;
+                    } else if ((this.mFlags[e] & FLAG_PROVIDER) == 0 && this.mTargetUids[e] == uid) {
+                        out.put(this.mCallerPids[i], this.mCallerUids[i]);
+                        break;
+                    } else {
+                        e++;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isLiveProvider(int edge, long now, long decayTime) {
+        return (this.mFlags[edge] & FLAG_STRONG) != 0 && now - this.mUseTimes[edge].miniTime < decayTime;
+    }
+}
@@ -23,6 +23,7 @@ import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.LruCache;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
 import com.android.internal.app.ProcessMap;
 import com.android.internal.os.BackgroundThread;
 import com.android.internal.util.MemInfoReader;
@@ -90,6 +91,8 @@ public final class AwareAppAssociate {
     private static boolean mEnabled = false;
     private final AwareAppLruBase mAmsPrevBase;
     private final ArrayMap<Integer, AssocPidRecord> mAssocRecordMap;
+    private volatile AssocGraphSnapshot mAssocSnapshot = AssocGraphSnapshot.EMPTY;
+    private volatile int mAssocVersion;
     /* access modifiers changed from: private */
     public ArrayMap<Integer, ProcessData> mBgRecentForcePids;
     private final ArraySet<IAwareVisibleCallback> mCallbacks;
@@ -165,10 +168,9 @@ public final class AwareAppAssociate {
         }
     }
 
-    private static final class AssocBaseRecord {
+    private static final class AssocBaseRecord extends AssocGraphSnapshot.UseTime {
         public boolean isStrong = true;
         public HashSet<String> mComponents = new HashSet<>();
-        public long miniTime;
         public int pid;
         public ArraySet<String> pkgList = new ArraySet<>();
         public String processName;
@@ -901,61 +903,17 @@ public final class AwareAppAssociate {
 
     private void getStrongAssocClient(int pid, Set<Integer> strong) {
         if (pid > 0 && strong != null) {
-            synchronized (this) {
-                for (Map.Entry<Integer, AssocPidRecord> map : this.mAssocRecordMap.entrySet()) {
-                    int clientPid = map.getKey().intValue();
-                    AssocPidRecord record = map.getValue();
-                    int NP = record.mAssocBindService.getMap().size();
-                    for (int i = 0; i < NP; i++) {
-                        SparseArray<AssocBaseRecord> brs = (SparseArray) record.mAssocBindService.getMap().valueAt(i);
-                        int NB = brs.size();
-                        for (int j = 0; j < NB; j++) {
-                            AssocBaseRecord br = brs.valueAt(j);
-                            if (br != null && br.pid == pid) {
-                                strong.add(Integer.valueOf(clientPid));
-                            }
-                        }
-                    }
-                }
-            }
+            getAssocSnapshot().getBindClients(pid, strong);
         }
     }
 
     public void getAssocClientListForUid(int uid, Set<String> strong) {
         if (mEnabled && uid > 0 && strong != null) {
-            synchronized (this) {
-                for (Map.Entry<Integer, AssocPidRecord> map : this.mAssocRecordMap.entrySet()) {
-                    AssocPidRecord record = map.getValue();
-                    if (UserHandle.getAppId(record.uid) >= 10000) {
-                        int NP = record.mAssocBindService.getMap().size();
-                        boolean bfound = false;
-                        int i = 0;
-                        while (true) {
-                            if (i >= NP) {
-                                break;
-                            }
-                            SparseArray<AssocBaseRecord> brs = (SparseArray) record.mAssocBindService.getMap().valueAt(i);
-                            int NB = brs.size();
-                            int j = 0;
-                            while (true) {
-                                if (j >= NB) {
-                                    break;
-                                }
-                                AssocBaseRecord br = brs.valueAt(j);
-                                if (br != null && br.uid == uid) {
-                                    strong.addAll(getPackageNameForUid(record.uid, record.pid));
-                                    bfound = true;
-                                    break;
-                                }
-                                j++;
-                            }
-                            if (bfound) {
-                                break;
-                            }
-                            i++;
-                        }
-                    }
-                }
+            SparseIntArray clients = new SparseIntArray();
+            getAssocSnapshot().getAppBindClientsOfUid(uid, clients);
+            int size = clients.size();
+            for (int i = 0; i < size; i++) {
+                strong.addAll(getPackageNameForUid(clients.valueAt(i), clients.keyAt(i)));
             }
             if (DEBUG) {
                 AwareLog.i(TAG, "[" + uid + "]strongList:" + strong);
@@ -1058,83 +1016,63 @@ public final class AwareAppAssociate {
     }
 
     private void getStrongAssoc(int pid, Set<Integer> strong) {
-        Set<Integer> set = strong;
-        if (pid > 0 && set != null) {
-            synchronized (this) {
-                long curElapse = SystemClock.elapsedRealtime();
-                AssocPidRecord record = this.mAssocRecordMap.get(Integer.valueOf(pid));
-                if (record != null) {
-                    int NP = record.mAssocBindService.getMap().size();
-                    AssocBaseRecord br = null;
-                    int targetPid = 0;
-                    int i = 0;
-                    while (i < NP) {
-                        SparseArray<AssocBaseRecord> brs = (SparseArray) record.mAssocBindService.getMap().valueAt(i);
-                        int NB = brs.size();
-                        int targetPid2 = targetPid;
-                        for (int j = 0; j < NB; j++) {
-                            br = brs.valueAt(j);
-                            targetPid2 = br.pid;
-                            if (targetPid2 != 0) {
-                                set.add(Integer.valueOf(targetPid2));
-                            }
-                        }
-                        i++;
-                        targetPid = targetPid2;
-                    }
-                    int NP2 = record.mAssocProvider.getMap().size();
-                    int targetPid3 = targetPid;
-                    int i2 = 0;
-                    while (i2 < NP2) {
-                        SparseArray<AssocBaseRecord> brs2 = (SparseArray) record.mAssocProvider.getMap().valueAt(i2);
-                        int NB2 = brs2.size();
-                        AssocBaseRecord br2 = br;
-                        int targetPid4 = targetPid3;
-                        for (int j2 = 0; j2 < NB2; j2++) {
-                            br2 = brs2.valueAt(j2);
-                            targetPid4 = br2.pid;
-                            if (targetPid4 != 0 && br2.isStrong && curElapse - br2.miniTime < 120000) {
-                                set.add(Integer.valueOf(targetPid4));
-                            }
-                        }
-                        i2++;
-                        targetPid3 = targetPid4;
-                        br = br2;
-                    }
-                }
-            }
+        if (pid > 0 && strong != null) {
+            getAssocSnapshot().getStrongAssoc(pid, SystemClock.elapsedRealtime(), 120000, strong);
         }
     }
 
     public void getAssocProvider(int pid, Set<Integer> assocProvider) {
-        Set<Integer> set = assocProvider;
-        if (pid > 0 && set != null) {
-            synchronized (this) {
-                long curElapse = SystemClock.elapsedRealtime();
-                AssocPidRecord record = this.mAssocRecordMap.get(Integer.valueOf(pid));
-                if (record != null) {
-                    AssocBaseRecord br = null;
-                    int NP = record.mAssocProvider.getMap().size();
-                    int i = 0;
-                    while (i < NP) {
-                        SparseArray<AssocBaseRecord> brs = (SparseArray) record.mAssocProvider.getMap().valueAt(i);
-                        int NB = brs.size();
-                        AssocBaseRecord br2 = br;
-                        for (int j = 0; j < NB; j++) {
-                            br2 = brs.valueAt(j);
-                            int targetPid = br2.pid;
-                            if (targetPid != 0 && br2.isStrong && curElapse - br2.miniTime < 120000) {
-                                set.add(Integer.valueOf(targetPid));
-                            }
-                        }
-                        i++;
-                        br = br2;
-                    }
-                }
+        if (pid > 0 && assocProvider != null) {
+            getAssocSnapshot().getAssocProvider(pid, SystemClock.elapsedRealtime(), 120000, assocProvider);
+        }
+    }
+
+    /**
+     * Returns the association graph as of the last structural change. The snapshot is rebuilt at
+     * most once per such change, by the first reader after it, so AMS callbacks only ever wait for
+     * a copy and readers traverse it without the lock. Refreshing the use time of a known edge is
+     * not a structural change; snapshots read it from the live record.
+     */
+    private AssocGraphSnapshot getAssocSnapshot() {
+        AssocGraphSnapshot snapshot = this.mAssocSnapshot;
+        if (snapshot.getVersion() == this.mAssocVersion) {
+            return snapshot;
+        }
+        synchronized (this) {
+            AssocGraphSnapshot snapshot2 = this.mAssocSnapshot;
+            if (snapshot2.getVersion() == this.mAssocVersion) {
+                return snapshot2;
+            }
+            AssocGraphSnapshot.Builder builder = new AssocGraphSnapshot.Builder();
+            int listSize = this.mAssocRecordMap.size();
+            for (int s = 0; s < listSize; s++) {
+                AssocPidRecord record = this.mAssocRecordMap.valueAt(s);
+                builder.addCaller(record.pid, record.uid);
+                addSnapshotEdges(builder, record.mAssocBindService, false);
+                addSnapshotEdges(builder, record.mAssocProvider, true);
             }
+            AssocGraphSnapshot snapshot3 = builder.build(this.mAssocVersion);
+            this.mAssocSnapshot = snapshot3;
+            return snapshot3;
         }
     }
 
+    private static void addSnapshotEdges(AssocGraphSnapshot.Builder builder, ProcessMap<AssocBaseRecord> relations, boolean provider) {
+        int NP = relations.getMap().size();
+        for (int i = 0; i < NP; i++) {
+            SparseArray<AssocBaseRecord> brs = (SparseArray) relations.getMap().valueAt(i);
+            int NB = brs.size();
+            for (int j = 0; j < NB; j++) {
+                AssocBaseRecord br = brs.valueAt(j);
+                builder.addEdge(br.pid, br.uid, br, provider, br.isStrong);
+            }
+        }
+    }
+
+    private void noteAssocChangedLocked() {
+        this.mAssocVersion++;
+    }
+
     private void addWidget(int userId, int widgetId, String pkgName, Bundle options) {
         if (pkgName != null) {
             if (DEBUG) {
@@ -1656,6 +1594,7 @@ public final class AwareAppAssociate {
                             baseRecord.mComponents.add(comp2);
                             ProcessMap<AssocBaseRecord> relations = pidRecord2.getMap(type);
                             if (relations != null) {
+                                noteAssocChangedLocked();
                                 relations.put(targetName, targetUid, baseRecord);
                                 this.mAssocRecordMap.put(Integer.valueOf(callerPid), pidRecord2);
                             } else if (DEBUG) {
@@ -1668,11 +1607,15 @@ public final class AwareAppAssociate {
                                 if (baseRecord2 == null) {
                                     AssocBaseRecord baseRecord3 = new AssocBaseRecord(targetName, targetUid, targetPid);
                                     baseRecord3.mComponents.add(comp2);
+                                    noteAssocChangedLocked();
                                     relations2.put(targetName, targetUid, baseRecord3);
                                     return;
                                 }
                                 baseRecord2.miniTime = SystemClock.elapsedRealtime();
-                                baseRecord2.isStrong = true;
+                                if (!baseRecord2.isStrong) {
+                                    noteAssocChangedLocked();
+                                    baseRecord2.isStrong = true;
+                                }
                                 baseRecord2.mComponents.add(comp2);
                             } else if (DEBUG) {
                                 AwareLog.e(TAG, "Error type:" + type);
@@ -1721,6 +1664,7 @@ public final class AwareAppAssociate {
                             if (br != null && br.mComponents.contains(comp2)) {
                                 br.mComponents.remove(comp2);
                                 if (br.mComponents.isEmpty()) {
+                                    noteAssocChangedLocked();
                                     relations.remove(targetName, targetUid);
                                     if (pr.isEmpty()) {
                                         this.mAssocRecordMap.remove(Integer.valueOf(pr.pid));
@@ -1748,6 +1692,7 @@ public final class AwareAppAssociate {
             AwareLog.i(TAG, "remove died. Pid:" + pid + " Uid:" + uid);
         }
         synchronized (this) {
+            noteAssocChangedLocked();
             AssocBaseRecord br = this.mProcPidMap.remove(Integer.valueOf(pid));
             if (br != null) {
                 this.mProcInfoMap.remove(br.processName, br.uid);
@@ -1869,6 +1814,7 @@ public final class AwareAppAssociate {
             }
             updateProcLaunchData(uid, name, pkgList);
             synchronized (this) {
+                noteAssocChangedLocked();
                 Iterator<Map.Entry<Integer, AssocPidRecord>> it = this.mAssocRecordMap.entrySet().iterator();
                 while (it.hasNext()) {
                     AssocPidRecord record = (AssocPidRecord) it.next().getValue();
@@ -2052,6 +1998,7 @@ public final class AwareAppAssociate {
             this.mBgRecentForcePids.clear();
         }
         synchronized (this) {
+            noteAssocChangedLocked();
             this.mAssocRecordMap.clear();
             this.mProcInfoMap.getMap().clear();
             this.mProcPidMap.clear();
@@ -2176,6 +2123,8 @@ public final class AwareAppAssociate {
                     }
                 }
             }
+            AssocGraphSnapshot snapshot = getAssocSnapshot();
+            pw.println("Assoc graph: version " + snapshot.getVersion() + ", callers " + snapshot.getCallerCount() + ", edges " + snapshot.getEdgeCount());
             dumpWidget(pw);
             dumpVisibleWindow(pw);
         }
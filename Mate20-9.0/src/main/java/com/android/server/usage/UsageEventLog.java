@@ -0,0 +1,539 @@
+package com.android.server.usage;
+
+import android.app.usage.EventList;
+import android.app.usage.UsageEvents;
+import android.content.res.Configuration;
+import android.os.FileUtils;
+import android.os.Parcel;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Slog;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary, block structured copy of the daily usage events of one user.
+ *
+ * When a daily {@link IntervalStats} leaves memory its events are appended as one segment file
+ * made of blocks of at most {@link #BLOCK_EVENTS} events. Each block header carries the first
+ * and last timestamp and the packages the block mentions, and only the headers are read when
+ * the log is opened. That gives a sparse timestamp index over the blocks and a per-package
+ * bitmap of blocks, so {@link #query} decodes only the blocks overlapping the time range, and
+ * only the ones mentioning the package for a package query, instead of parsing every daily XML
+ * file in the window. Pruning deletes whole segments.
+ *
+ * The log only answers for the time it covers, see {@link #getCoverageStart}; the XML files
+ * remain the source of truth and the log is reset whenever they are rewritten behind its back.
+ *
+ * Segment layout: {@code int magic, int version, long beginTime, long endTime, int blockCount},
+ * then per block {@code int length, int crc, long firstTime, long lastTime, int eventCount,
+ * int indexLength, byte[length] body}. The body starts with the package table, whose byte size
+ * is indexLength, followed by the class table and the events.
+ */
+final class UsageEventLog {
+    private static final int BLOCK_EVENTS = 512;
+    private static final int BLOCK_HEADER_SIZE = 32;
+    private static final String DIR_NAME = "events";
+    private static final int MAGIC = 1430607436;
+    private static final int SEGMENT_HEADER_SIZE = 28;
+    private static final String SUFFIX = ".ev";
+    private static final String TAG = "UsageEventLog";
+    private static final int VERSION = 1;
+    private final ArrayList<Block> mBlocks = new ArrayList<>();
+    private final File mDir;
+    private long mLastTimestamp = Long.MIN_VALUE;
+    private long mNextSeq;
+    private final ArrayMap<String, BitSet> mPackageBlocks = new ArrayMap<>();
+    private final ArrayList<Segment> mSegments = new ArrayList<>();
+
+    private static final class Segment {
+        final ArrayList<Block> blocks = new ArrayList<>();
+        final long beginTime;
+        final long endTime;
+        final File file;
+        final long seq;
+
+        Segment(long seq2, File file2, long beginTime2, long endTime2) {
+            this.seq = seq2;
+            this.file = file2;
+            this.beginTime = beginTime2;
+            this.endTime = endTime2;
+        }
+    }
+
+    private static final class Block {
+        final int crc;
+        final int eventCount;
+        final long firstTime;
+        final long lastTime;
+        final int length;
+        final long offset;
+        final String[] packages;
+        final Segment segment;
+
+        Block(Segment segment2, long offset2, int length2, int crc2, long firstTime2, long lastTime2, int eventCount2, String[] packages2) {
+            this.segment = segment2;
+            this.offset = offset2;
+            this.length = length2;
+            this.crc = crc2;
+            this.firstTime = firstTime2;
+            this.lastTime = lastTime2;
+            this.eventCount = eventCount2;
+            this.packages = packages2;
+        }
+    }
+
+    UsageEventLog(File usageStatsDir) {
+        this.mDir = new File(usageStatsDir, DIR_NAME);
+    }
+
+    /**
+     * Deletes the log of a user directory, used when the log is disabled so a later enable does
+     * not pick up a log with a gap in it.
+     */
+    static void delete(File usageStatsDir) {
+        File dir = new File(usageStatsDir, DIR_NAME);
+        if (dir.exists()) {
+            FileUtils.deleteContentsAndDir(dir);
+        }
+    }
+
+    void init() {
+        this.mDir.mkdirs();
+        File[] files = this.mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(SUFFIX)) {
+                    try {
+                        long seq = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                        Segment segment = readSegmentIndex(seq, file);
+                        if (segment != null) {
+                            this.mSegments.add(segment);
+                        } else {
+                            file.delete();
+                        }
+                        this.mNextSeq = Math.max(this.mNextSeq, seq + 1);
+                    } catch (NumberFormatException e) {
+                    }
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        this.mSegments.sort(new Comparator<Segment>() {
+            public int compare(Segment s1, Segment s2) {
+                return Long.compare(s1.beginTime, s2.beginTime);
+            }
+        });
+        rebuildIndex();
+    }
+
+    /**
+     * Drops every segment. Used when the XML files were shifted or replaced, so the log no
+     * longer matches them.
+     */
+    void reset() {
+        for (int i = 0; i < this.mSegments.size(); i++) {
+            this.mSegments.get(i).file.delete();
+        }
+        this.mSegments.clear();
+        rebuildIndex();
+    }
+
+    /**
+     * Returns the begin time of the oldest day held by the log, or -1 if the log is empty.
+     * Events from that time up to the end of the newest segment are all in the log.
+     */
+    long getCoverageStart() {
+        if (this.mSegments.isEmpty()) {
+            return -1;
+        }
+        return this.mSegments.get(0).beginTime;
+    }
+
+    /**
+     * Appends the events of a finished daily interval as a new segment. Events that are not
+     * newer than the newest logged event are skipped, so handing in the same day twice, e.g.
+     * after a crash between the append and the next XML write, does not duplicate them.
+     */
+    void append(IntervalStats stats) {
+        EventList events = stats.events;
+        if (events != null && events.size() != 0) {
+            int start = 0;
+            int size = events.size();
+            while (start < size && events.get(start).mTimeStamp <= this.mLastTimestamp) {
+                start++;
+            }
+            if (start != size) {
+                long seq = this.mNextSeq;
+                this.mNextSeq = 1 + seq;
+                Segment segment = new Segment(seq, new File(this.mDir, seq + SUFFIX), stats.beginTime, stats.endTime);
+                File tmp = new File(this.mDir, seq + SUFFIX + ".tmp");
+                try {
+                    writeSegment(segment, events, start, size, tmp);
+                    if (tmp.renameTo(segment.file)) {
+                        this.mSegments.add(segment);
+                        rebuildIndex();
+                        return;
+                    }
+                    throw new IOException("rename failed");
+                } catch (IOException e) {
+                    Slog.w(TAG, "Failed to append usage events, resetting log", e);
+                    tmp.delete();
+                    reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes every segment whose day began before {@code expiryTime}, mirroring how the daily
+     * XML files are pruned.
+     */
+    void prune(long expiryTime) {
+        boolean changed = false;
+        while (!this.mSegments.isEmpty() && this.mSegments.get(0).beginTime < expiryTime) {
+            this.mSegments.remove(0).file.delete();
+            changed = true;
+        }
+        if (changed) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Adds the logged events in {@code [beginTime, endTime)} to {@code results}, oldest first,
+     * restricted to {@code packageName} when it is not null. Package and class names of the
+     * returned events are added to {@code names}.
+     */
+    void query(long beginTime, long endTime, String packageName, boolean obfuscateInstantApps, ArraySet<String> names, List<UsageEvents.Event> results) {
+        if (endTime > beginTime) {
+            BitSet filter = null;
+            if (packageName != null) {
+                filter = this.mPackageBlocks.get(packageName);
+                if (filter == null) {
+                    return;
+                }
+            }
+            int index = firstBlockEndingOnOrAfter(beginTime);
+            if (filter != null) {
+                index = filter.nextSetBit(index);
+            }
+            RandomAccessFile raf = null;
+            Segment open = null;
+            while (index >= 0 && index < this.mBlocks.size()) {
+                try {
+                    Block block = this.mBlocks.get(index);
+                    if (block.firstTime >= endTime) {
+                        break;
+                    }
+                    if (open != block.segment) {
+                        closeQuietly(raf);
+                        raf = new RandomAccessFile(block.segment.file, "r");
+                        open = block.segment;
+                    }
+                    readBlock(raf, block, beginTime, endTime, packageName, obfuscateInstantApps, names, results);
+                    index = filter != null ? filter.nextSetBit(index + 1) : index + 1;
+                } catch (IOException e) {
+                    Slog.w(TAG, "Failed to read usage event block", e);
+                    index = filter != null ? filter.nextSetBit(index + 1) : index + 1;
+                }
+            }
+            closeQuietly(raf);
+        }
+    }
+
+    private int firstBlockEndingOnOrAfter(long time) {
+        int low = 0;
+        int high = this.mBlocks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (this.mBlocks.get(mid).lastTime < time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void rebuildIndex() {
+        this.mBlocks.clear();
+        this.mPackageBlocks.clear();
+        this.mLastTimestamp = Long.MIN_VALUE;
+        for (int i = 0; i < this.mSegments.size(); i++) {
+            ArrayList<Block> blocks = this.mSegments.get(i).blocks;
+            for (int j = 0; j < blocks.size(); j++) {
+                Block block = blocks.get(j);
+                int index = this.mBlocks.size();
+                this.mBlocks.add(block);
+                for (String pkg : block.packages) {
+                    BitSet bits = this.mPackageBlocks.get(pkg);
+                    if (bits == null) {
+                        bits = new BitSet();
+                        this.mPackageBlocks.put(pkg, bits);
+                    }
+                    bits.set(index);
+                }
+                this.mLastTimestamp = Math.max(this.mLastTimestamp, block.lastTime);
+            }
+        }
+    }
+
+    private Segment readSegmentIndex(long seq, File file) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                long fileLength = raf.length();
+                if (fileLength >= ((long) SEGMENT_HEADER_SIZE) && raf.readInt() == MAGIC) {
+                    if (raf.readInt() == VERSION) {
+                        Segment segment = new Segment(seq, file, raf.readLong(), raf.readLong());
+                        int blockCount = raf.readInt();
+                        long offset = (long) SEGMENT_HEADER_SIZE;
+                        for (int i = 0; i < blockCount; i++) {
+                            raf.seek(offset);
+                            int length = raf.readInt();
+                            int crc = raf.readInt();
+                            long firstTime = raf.readLong();
+                            long lastTime = raf.readLong();
+                            int eventCount = raf.readInt();
+                            int indexLength = raf.readInt();
+                            long bodyOffset = ((long) BLOCK_HEADER_SIZE) + offset;
+                            if (length < 0 || indexLength < 0 || indexLength > length || ((long) length) + bodyOffset > fileLength) {
+                                Slog.w(TAG, "Truncated usage event segment " + file);
+                                raf.close();
+                                return null;
+                            }
+                            byte[] index = new byte[indexLength];
+                            raf.readFully(index);
+                            segment.blocks.add(new Block(segment, bodyOffset, length, crc, firstTime, lastTime, eventCount, readStrings(new DataInputStream(new ByteArrayInputStream(index)))));
+                            offset = ((long) length) + bodyOffset;
+                        }
+                        raf.close();
+                        return segment;
+                    }
+                }
+                Slog.w(TAG, "Bad usage event segment header " + file);
+                raf.close();
+                return null;
+            } catch (Throwable th) {
+                raf.close();
+                throw th;
+            }
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to read usage event segment " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void readBlock(RandomAccessFile raf, Block block, long beginTime, long endTime, String packageName, boolean obfuscateInstantApps, ArraySet<String> names, List<UsageEvents.Event> results) throws IOException {
+        byte[] body = new byte[block.length];
+        raf.seek(block.offset);
+        raf.readFully(body);
+        if (crcOf(body) == block.crc) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            String[] packages = readStrings(in);
+            String[] classes = readStrings(in);
+            for (int i = 0; i < block.eventCount; i++) {
+                UsageEvents.Event event = readEvent(in, packages, classes);
+                if (event.mTimeStamp >= endTime) {
+                    return;
+                }
+                if (event.mTimeStamp >= beginTime && (packageName == null || packageName.equals(event.mPackage))) {
+                    if (obfuscateInstantApps) {
+                        event = event.getObfuscatedIfInstantApp();
+                    }
+                    names.add(event.mPackage);
+                    if (event.mClass != null) {
+                        names.add(event.mClass);
+                    }
+                    results.add(event);
+                }
+            }
+            return;
+        }
+        throw new IOException("crc mismatch in " + block.segment.file);
+    }
+
+    private static void writeSegment(Segment segment, EventList events, int start, int end, File tmp) throws IOException {
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            DataOutputStream out = new DataOutputStream(fos);
+            int blockCount = (((end - start) + BLOCK_EVENTS) - 1) / BLOCK_EVENTS;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment.beginTime);
+            out.writeLong(segment.endTime);
+            out.writeInt(blockCount);
+            long offset = (long) SEGMENT_HEADER_SIZE;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int i = start; i < end; i += BLOCK_EVENTS) {
+                int blockEnd = Math.min(end, i + BLOCK_EVENTS);
+                ArrayList<String> packages = new ArrayList<>();
+                ArrayList<String> classes = new ArrayList<>();
+                ArrayMap<String, Integer> packageIds = new ArrayMap<>();
+                ArrayMap<String, Integer> classIds = new ArrayMap<>();
+                for (int j = i; j < blockEnd; j++) {
+                    UsageEvents.Event event = events.get(j);
+                    intern(event.mPackage, packages, packageIds);
+                    if (event.mClass != null) {
+                        intern(event.mClass, classes, classIds);
+                    }
+                }
+                bytes.reset();
+                DataOutputStream body = new DataOutputStream(bytes);
+                writeStrings(body, packages);
+                body.flush();
+                int indexLength = bytes.size();
+                writeStrings(body, classes);
+                for (int j2 = i; j2 < blockEnd; j2++) {
+                    writeEvent(body, events.get(j2), packageIds, classIds);
+                }
+                body.flush();
+                byte[] data = bytes.toByteArray();
+                long firstTime = events.get(i).mTimeStamp;
+                long lastTime = events.get(blockEnd - 1).mTimeStamp;
+                int crc = crcOf(data);
+                out.writeInt(data.length);
+                out.writeInt(crc);
+                out.writeLong(firstTime);
+                out.writeLong(lastTime);
+                out.writeInt(blockEnd - i);
+                out.writeInt(indexLength);
+                out.write(data);
+                long bodyOffset = ((long) BLOCK_HEADER_SIZE) + offset;
+                segment.blocks.add(new Block(segment, bodyOffset, data.length, crc, firstTime, lastTime, blockEnd - i, (String[]) packages.toArray(new String[packages.size()])));
+                offset = ((long) data.length) + bodyOffset;
+            }
+            out.flush();
+            FileUtils.sync(fos);
+            fos.close();
+        } catch (Throwable th) {
+            fos.close();
+            throw th;
+        }
+    }
+
+    private static void intern(String value, ArrayList<String> table, ArrayMap<String, Integer> ids) {
+        if (!ids.containsKey(value)) {
+            ids.put(value, Integer.valueOf(table.size()));
+            table.add(value);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, ArrayList<String> table) throws IOException {
+        out.writeShort(table.size());
+        for (int i = 0; i < table.size(); i++) {
+            out.writeUTF(table.get(i));
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] table = new String[in.readUnsignedShort()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = in.readUTF().intern();
+        }
+        return table;
+    }
+
+    /**
+     * Writes the same fields {@link UsageStatsXmlV1} keeps for an event.
+     */
+    private static void writeEvent(DataOutputStream out, UsageEvents.Event event, ArrayMap<String, Integer> packageIds, ArrayMap<String, Integer> classIds) throws IOException {
+        out.writeLong(event.mTimeStamp);
+        out.writeShort(packageIds.get(event.mPackage).intValue());
+        out.writeShort(event.mClass != null ? classIds.get(event.mClass).intValue() : 65535);
+        out.writeInt(event.mFlags);
+        out.writeInt(event.mEventType);
+        int i = event.mEventType;
+        if (i == 5) {
+            if (event.mConfiguration != null) {
+                Parcel parcel = Parcel.obtain();
+                try {
+                    event.mConfiguration.writeToParcel(parcel, 0);
+                    byte[] data = parcel.marshall();
+                    out.writeInt(data.length);
+                    out.write(data);
+                } finally {
+                    parcel.recycle();
+                }
+            } else {
+                out.writeInt(-1);
+            }
+        } else if (i == 8) {
+            out.writeBoolean(event.mShortcutId != null);
+            if (event.mShortcutId != null) {
+                out.writeUTF(event.mShortcutId);
+            }
+        } else if (i == 11) {
+            out.writeInt(event.mBucketAndReason);
+        }
+    }
+
+    private static UsageEvents.Event readEvent(DataInputStream in, String[] packages, String[] classes) throws IOException {
+        UsageEvents.Event event = new UsageEvents.Event();
+        event.mTimeStamp = in.readLong();
+        int packageIndex = in.readUnsignedShort();
+        int classIndex = in.readUnsignedShort();
+        if (packageIndex >= packages.length || (classIndex != 65535 && classIndex >= classes.length)) {
+            throw new IOException("bad string index");
+        }
+        event.mPackage = packages[packageIndex];
+        if (classIndex != 65535) {
+            event.mClass = classes[classIndex];
+        }
+        event.mFlags = in.readInt();
+        event.mEventType = in.readInt();
+        int i = event.mEventType;
+        if (i == 5) {
+            int length = in.readInt();
+            if (length >= 0) {
+                byte[] data = new byte[length];
+                in.readFully(data);
+                Parcel parcel = Parcel.obtain();
+                try {
+                    parcel.unmarshall(data, 0, length);
+                    parcel.setDataPosition(0);
+                    event.mConfiguration = new Configuration();
+                    event.mConfiguration.readFromParcel(parcel);
+                } finally {
+                    parcel.recycle();
+                }
+            }
+        } else if (i == 8) {
+            if (in.readBoolean()) {
+                event.mShortcutId = in.readUTF().intern();
+            }
+        } else if (i == 11) {
+            event.mBucketAndReason = in.readInt();
+        }
+        return event;
+    }
+
+    private static int crcOf(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    private static void closeQuietly(RandomAccessFile raf) {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
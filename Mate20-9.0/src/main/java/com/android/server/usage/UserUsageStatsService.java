@@ -9,6 +9,7 @@ import android.app.usage.UsageStatsManager;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.os.SystemClock;
+import android.os.SystemProperties;
 import android.text.format.DateUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
@@ -69,6 +70,7 @@ class UserUsageStatsService {
     private final IntervalStats[] mCurrentStats;
     private final UnixCalendar mDailyExpiryDate;
     private final UsageStatsDatabase mDatabase;
+    private final UsageEventLog mEventLog;
     private String mLastBackgroundedPackage;
     public int mLastEvent;
     public String mLastForegroundedPackage;
@@ -90,6 +92,12 @@ class UserUsageStatsService {
         this.mContext = context;
         this.mDailyExpiryDate = new UnixCalendar(0);
         this.mDatabase = new UsageStatsDatabase(usageStatsDir);
+        if (SystemProperties.getBoolean("persist.sys.usagestats.event_log", false)) {
+            this.mEventLog = new UsageEventLog(usageStatsDir);
+        } else {
+            this.mEventLog = null;
+            UsageEventLog.delete(usageStatsDir);
+        }
         this.mCurrentStats = new IntervalStats[4];
         this.mListener = listener;
         this.mLogPrefix = "User[" + Integer.toString(userId) + "] ";
@@ -99,6 +107,12 @@ class UserUsageStatsService {
     /* access modifiers changed from: package-private */
     public void init(long currentTimeMillis) {
         this.mDatabase.init(currentTimeMillis);
+        if (this.mEventLog != null) {
+            this.mEventLog.init();
+            if (this.mDatabase.isNewUpdate()) {
+                this.mEventLog.reset();
+            }
+        }
         int nullCount = 0;
         for (int i = 0; i < this.mCurrentStats.length; i++) {
             this.mCurrentStats[i] = this.mDatabase.getLatestUsageStats(i);
@@ -138,6 +152,9 @@ class UserUsageStatsService {
         persistActiveStats();
         this.mDatabase.onTimeChanged(newTime - oldTime);
         loadActiveStats(newTime, true);
+        if (this.mEventLog != null) {
+            this.mEventLog.reset();
+        }
     }
 
     /* access modifiers changed from: package-private */
@@ -296,7 +313,7 @@ class UserUsageStatsService {
                 }
             }
         };
-        List<UsageEvents.Event> results = queryStats(0, j, j2, r1);
+        List<UsageEvents.Event> results = this.mEventLog != null ? queryEventsWithLog(j, j2, null, z, names, r1) : queryStats(0, j, j2, r1);
         if (results == null || results.isEmpty()) {
             return null;
         }
@@ -326,7 +343,7 @@ class UserUsageStatsService {
                 UserUsageStatsService.lambda$queryEventsForPackage$0(this.f$0, this.f$1, this.f$2, this.f$3, intervalStats, z, list);
             }
         };
-        List<UsageEvents.Event> results = queryStats(0, beginTime, endTime, r1);
+        List<UsageEvents.Event> results = this.mEventLog != null ? queryEventsWithLog(beginTime, endTime, packageName, false, names, r1) : queryStats(0, beginTime, endTime, r1);
         if (results == null || results.isEmpty()) {
             return null;
         }
@@ -335,6 +352,34 @@ class UserUsageStatsService {
         return new UsageEvents(results, table);
     }
 
+    /**
+     * Daily events query that reads finished days from the event log and falls back to the XML
+     * files only for the part of the range before the log coverage.
+     */
+    private List<UsageEvents.Event> queryEventsWithLog(long beginTime, long endTime, String packageName, boolean obfuscateInstantApps, ArraySet<String> names, UsageStatsDatabase.StatCombiner<UsageEvents.Event> combiner) {
+        IntervalStats currentStats = this.mCurrentStats[0];
+        long coverageStart = this.mEventLog.getCoverageStart();
+        if (coverageStart < 0) {
+            return queryStats(0, beginTime, endTime, combiner);
+        }
+        if (beginTime >= currentStats.endTime) {
+            return null;
+        }
+        long logEnd = Math.min(currentStats.beginTime, endTime);
+        List<UsageEvents.Event> results = null;
+        if (beginTime < coverageStart) {
+            results = this.mDatabase.queryUsageStats(0, beginTime, Math.min(coverageStart, logEnd), combiner);
+        }
+        if (results == null) {
+            results = new ArrayList<>();
+        }
+        this.mEventLog.query(Math.max(beginTime, coverageStart), logEnd, packageName, obfuscateInstantApps, names, results);
+        if (endTime > currentStats.beginTime) {
+            combiner.combine(currentStats, true, results);
+        }
+        return results;
+    }
+
     static /* synthetic */ void lambda$queryEventsForPackage$0(long beginTime, long endTime, String packageName, ArraySet names, IntervalStats stats, boolean mutable, List accumulatedResult) {
         if (stats.events != null) {
             int startIndex = stats.events.firstIndexOnOrAfter(beginTime);
@@ -418,6 +463,11 @@ class UserUsageStatsService {
         }
         persistActiveStats();
         this.mDatabase.prune(j);
+        if (this.mEventLog != null) {
+            UnixCalendar expiry = new UnixCalendar(j);
+            expiry.addDays(-10);
+            this.mEventLog.prune(expiry.getTimeInMillis());
+        }
         loadActiveStats(j, false);
         int continueCount = continuePreviousDay.size();
         int i5 = 0;
@@ -461,6 +511,9 @@ class UserUsageStatsService {
             tempCal.setTimeInMillis(currentTimeMillis);
             UnixCalendar.truncateTo(tempCal, intervalType);
             if (force || this.mCurrentStats[intervalType] == null || this.mCurrentStats[intervalType].beginTime != tempCal.getTimeInMillis()) {
+                if (intervalType == 0 && this.mEventLog != null && this.mCurrentStats[0] != null && this.mCurrentStats[0].beginTime != tempCal.getTimeInMillis()) {
+                    this.mEventLog.append(this.mCurrentStats[0]);
+                }
                 IntervalStats stats = this.mDatabase.getLatestUsageStats(intervalType);
                 this.mCurrentStats[intervalType] = null;
                 if (stats != null) {
@@ -819,5 +872,8 @@ class UserUsageStatsService {
     /* access modifiers changed from: package-private */
     public void applyRestoredPayload(String key, byte[] payload) {
         this.mDatabase.applyRestoredPayload(key, payload);
+        if (this.mEventLog != null) {
+            this.mEventLog.reset();
+        }
     }
 }
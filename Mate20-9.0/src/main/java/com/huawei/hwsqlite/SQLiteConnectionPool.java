@@ -8,12 +8,18 @@ import android.util.Log;
 import android.util.Printer;
 import com.huawei.hwsqlite.SQLiteDebug;
 import java.io.Closeable;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
 
 public final class SQLiteConnectionPool implements Closeable {
     static final /* synthetic */ boolean $assertionsDisabled = false;
@@ -21,7 +27,9 @@ public final class SQLiteConnectionPool implements Closeable {
     public static final int CONNECTION_FLAG_PRIMARY_CONNECTION_AFFINITY = 2;
     public static final int CONNECTION_FLAG_READ_ONLY = 1;
     private static final long CONNECTION_POOL_BUSY_MILLIS = 30000;
+    private static final int MAX_SQL_AFFINITY_SIZE = 256;
     private static final String TAG = "SQLiteConnectionPool";
+    private static final int WAIT_HISTOGRAM_BUCKETS = 22;
     private final WeakHashMap<SQLiteConnection, AcquiredConnectionStatus> mAcquiredConnections = new WeakHashMap<>();
     private final ArrayList<SQLiteConnection> mAvailableNonPrimaryConnections = new ArrayList<>();
     private SQLiteConnection mAvailablePrimaryConnection;
@@ -30,11 +38,20 @@ public final class SQLiteConnectionPool implements Closeable {
     private final AtomicBoolean mConnectionLeaked = new AtomicBoolean();
     private ConnectionWaiter mConnectionWaiterPool;
     private ConnectionWaiter mConnectionWaiterQueue;
+    private final Map<SQLiteConnection, AcquiredConnectionStatus> mFastLeases = Collections.synchronizedMap(new WeakHashMap<SQLiteConnection, AcquiredConnectionStatus>());
+    private final StampedLock mFastPathGate = new StampedLock();
+    private volatile boolean mFastPathOpen;
+    private volatile boolean mHasWaiters;
+    private final Set<SQLiteConnection> mIdleReaders = ConcurrentHashMap.newKeySet();
     private boolean mIsOpen;
     /* access modifiers changed from: private */
     public final Object mLock = new Object();
     private int mMaxConnectionPoolSize;
     private int mNextConnectionId;
+    private boolean mScalableMode;
+    private final ConcurrentHashMap<String, WeakReference<SQLiteConnection>> mSqlAffinity = new ConcurrentHashMap<>();
+    private final ThreadLocal<WeakReference<SQLiteConnection>> mThreadAffinity = new ThreadLocal<>();
+    private final AtomicLongArray mWaitHistogram = new AtomicLongArray(WAIT_HISTOGRAM_BUCKETS);
 
     enum AcquiredConnectionStatus {
         NORMAL,
@@ -84,6 +101,7 @@ public final class SQLiteConnectionPool implements Closeable {
     private void open() {
         this.mAvailablePrimaryConnection = openConnectionLocked(this.mConfiguration, true);
         this.mIsOpen = true;
+        updateFastPathLocked();
         this.mCloseGuard.open("close");
     }
 
@@ -102,8 +120,9 @@ public final class SQLiteConnectionPool implements Closeable {
             synchronized (this.mLock) {
                 throwIfClosedLocked();
                 this.mIsOpen = false;
+                updateFastPathLocked();
                 closeAvailableConnectionsAndLogExceptionsLocked();
-                int pendingCount = this.mAcquiredConnections.size();
+                int pendingCount = this.mAcquiredConnections.size() + this.mFastLeases.size();
                 if (pendingCount != 0) {
                     Log.i(TAG, "The connection pool for " + this.mConfiguration.label + " has been closed but there are still " + pendingCount + " connections in use.  They will be closed as they are released back to the pool.");
                 }
@@ -116,59 +135,73 @@ public final class SQLiteConnectionPool implements Closeable {
         if (configuration != null) {
             synchronized (this.mLock) {
                 throwIfClosedLocked();
-                boolean foreignKeyModeChanged = false;
-                boolean walModeChanged = ((configuration.openFlags ^ this.mConfiguration.openFlags) & 536870912) != 0;
-                if (walModeChanged) {
-                    if (this.mAcquiredConnections.isEmpty()) {
-                        closeAvailableNonPrimaryConnectionsAndLogExceptionsLocked();
-                    } else {
-                        throw new IllegalStateException("Write Ahead Logging (WAL) mode cannot be enabled or disabled while there are transactions in progress.  Finish all transactions and release all active database connections first.");
-                    }
-                }
-                if (configuration.foreignKeyConstraintsEnabled != this.mConfiguration.foreignKeyConstraintsEnabled) {
-                    foreignKeyModeChanged = true;
-                }
-                if (foreignKeyModeChanged) {
-                    if (!this.mAcquiredConnections.isEmpty()) {
-                        throw new IllegalStateException("Foreign Key Constraints cannot be enabled or disabled while there are transactions in progress.  Finish all transactions and release all active database connections first.");
-                    }
-                }
-                if (this.mConfiguration.openFlags != configuration.openFlags) {
-                    if (walModeChanged) {
-                        closeAvailableConnectionsAndLogExceptionsLocked();
-                    }
-                    SQLiteConnection newPrimaryConnection = openConnectionLocked(configuration, true);
-                    closeAvailableConnectionsAndLogExceptionsLocked();
-                    discardAcquiredConnectionsLocked();
-                    this.mAvailablePrimaryConnection = newPrimaryConnection;
-                    this.mConfiguration.updateParametersFrom(configuration);
-                    setMaxConnectionPoolSizeLocked();
-                } else {
-                    this.mConfiguration.updateParametersFrom(configuration);
-                    setMaxConnectionPoolSizeLocked();
-                    closeExcessConnectionsAndLogExceptionsLocked();
-                    reconfigureAllConnectionsLocked();
+                suspendFastPathLocked();
+                try {
+                    reconfigureLocked(configuration);
+                } finally {
+                    updateFastPathLocked();
                 }
-                wakeConnectionWaitersLocked();
             }
             return;
         }
         throw new IllegalArgumentException("configuration must not be null.");
     }
 
+    private void reconfigureLocked(SQLiteDatabaseConfiguration configuration) {
+        boolean foreignKeyModeChanged = false;
+        boolean walModeChanged = ((configuration.openFlags ^ this.mConfiguration.openFlags) & 536870912) != 0;
+        if (walModeChanged) {
+            if (this.mAcquiredConnections.isEmpty() && this.mFastLeases.isEmpty()) {
+                closeAvailableNonPrimaryConnectionsAndLogExceptionsLocked();
+            } else {
+                throw new IllegalStateException("Write Ahead Logging (WAL) mode cannot be enabled or disabled while there are transactions in progress.  Finish all transactions and release all active database connections first.");
+            }
+        }
+        if (configuration.foreignKeyConstraintsEnabled != this.mConfiguration.foreignKeyConstraintsEnabled) {
+            foreignKeyModeChanged = true;
+        }
+        if (foreignKeyModeChanged) {
+            if (!this.mAcquiredConnections.isEmpty() || !this.mFastLeases.isEmpty()) {
+                throw new IllegalStateException("Foreign Key Constraints cannot be enabled or disabled while there are transactions in progress.  Finish all transactions and release all active database connections first.");
+            }
+        }
+        if (this.mConfiguration.openFlags != configuration.openFlags) {
+            if (walModeChanged) {
+                closeAvailableConnectionsAndLogExceptionsLocked();
+            }
+            SQLiteConnection newPrimaryConnection = openConnectionLocked(configuration, true);
+            closeAvailableConnectionsAndLogExceptionsLocked();
+            discardAcquiredConnectionsLocked();
+            this.mAvailablePrimaryConnection = newPrimaryConnection;
+            this.mConfiguration.updateParametersFrom(configuration);
+            setMaxConnectionPoolSizeLocked();
+        } else {
+            this.mConfiguration.updateParametersFrom(configuration);
+            setMaxConnectionPoolSizeLocked();
+            closeExcessConnectionsAndLogExceptionsLocked();
+            reconfigureAllConnectionsLocked();
+        }
+        wakeConnectionWaitersLocked();
+    }
+
     public void changeEncryptKey(SQLiteEncryptKeyLoader newKeyLoader) throws SQLiteException {
         synchronized (this.mLock) {
             throwIfClosedLocked();
-            if (this.mAcquiredConnections.isEmpty()) {
-                closeAvailableNonPrimaryConnectionsAndLogExceptionsLocked();
-                if (this.mAvailablePrimaryConnection == null) {
-                    this.mAvailablePrimaryConnection = openConnectionLocked(this.mConfiguration, true);
+            suspendFastPathLocked();
+            try {
+                if (this.mAcquiredConnections.isEmpty() && this.mFastLeases.isEmpty()) {
+                    closeAvailableNonPrimaryConnectionsAndLogExceptionsLocked();
+                    if (this.mAvailablePrimaryConnection == null) {
+                        this.mAvailablePrimaryConnection = openConnectionLocked(this.mConfiguration, true);
+                    }
+                    this.mAvailablePrimaryConnection.changeEncryptKey(newKeyLoader);
+                    this.mConfiguration.updateEncryptKeyLoader(newKeyLoader);
+                    wakeConnectionWaitersLocked();
+                } else {
+                    throw new SQLiteBusyException("The encryptKey cannot be changed while there are transactions in progress.Finish all transactions and release all active database connections first.");
                 }
-                this.mAvailablePrimaryConnection.changeEncryptKey(newKeyLoader);
-                this.mConfiguration.updateEncryptKeyLoader(newKeyLoader);
-                wakeConnectionWaitersLocked();
-            } else {
-                throw new SQLiteBusyException("The encryptKey cannot be changed while there are transactions in progress.Finish all transactions and release all active database connections first.");
+            } finally {
+                updateFastPathLocked();
             }
         }
     }
@@ -177,16 +210,21 @@ public final class SQLiteConnectionPool implements Closeable {
         if (attached != null) {
             synchronized (this.mLock) {
                 throwIfClosedLocked();
-                if (this.mAcquiredConnections.isEmpty()) {
-                    closeAvailableNonPrimaryConnectionsAndLogExceptionsLocked();
-                    if (this.mAvailablePrimaryConnection == null) {
-                        this.mAvailablePrimaryConnection = openConnectionLocked(this.mConfiguration, true);
+                suspendFastPathLocked();
+                try {
+                    if (this.mAcquiredConnections.isEmpty() && this.mFastLeases.isEmpty()) {
+                        closeAvailableNonPrimaryConnectionsAndLogExceptionsLocked();
+                        if (this.mAvailablePrimaryConnection == null) {
+                            this.mAvailablePrimaryConnection = openConnectionLocked(this.mConfiguration, true);
+                        }
+                        this.mAvailablePrimaryConnection.addAttachAlias(attached);
+                        this.mConfiguration.addAttachAlias(attached);
+                        wakeConnectionWaitersLocked();
+                    } else {
+                        throw new SQLiteBusyException("Attached alias cannot be added while there are transactions in progress. Finish all transactions and release all active database connections first.");
                     }
-                    this.mAvailablePrimaryConnection.addAttachAlias(attached);
-                    this.mConfiguration.addAttachAlias(attached);
-                    wakeConnectionWaitersLocked();
-                } else {
-                    throw new SQLiteBusyException("Attached alias cannot be added while there are transactions in progress. Finish all transactions and release all active database connections first.");
+                } finally {
+                    updateFastPathLocked();
                 }
             }
             return;
@@ -200,27 +238,50 @@ public final class SQLiteConnectionPool implements Closeable {
         }
         synchronized (this.mLock) {
             throwIfClosedLocked();
-            if (this.mAcquiredConnections.isEmpty()) {
-                closeAvailableNonPrimaryConnectionsAndLogExceptionsLocked();
-                if (this.mAvailablePrimaryConnection == null) {
-                    this.mAvailablePrimaryConnection = openConnectionLocked(this.mConfiguration, true);
+            suspendFastPathLocked();
+            try {
+                if (this.mAcquiredConnections.isEmpty() && this.mFastLeases.isEmpty()) {
+                    closeAvailableNonPrimaryConnectionsAndLogExceptionsLocked();
+                    if (this.mAvailablePrimaryConnection == null) {
+                        this.mAvailablePrimaryConnection = openConnectionLocked(this.mConfiguration, true);
+                    }
+                    this.mAvailablePrimaryConnection.removeAttachAlias(alias);
+                    this.mConfiguration.removeAttachAlias(alias);
+                    wakeConnectionWaitersLocked();
+                } else {
+                    throw new SQLiteBusyException("Detach cannot be done while there are transactions in progress. Finish all transactions and release all active database connections first.");
                 }
-                this.mAvailablePrimaryConnection.removeAttachAlias(alias);
-                this.mConfiguration.removeAttachAlias(alias);
-                wakeConnectionWaitersLocked();
-            } else {
-                throw new SQLiteBusyException("Detach cannot be done while there are transactions in progress. Finish all transactions and release all active database connections first.");
+            } finally {
+                updateFastPathLocked();
             }
         }
     }
 
     public SQLiteConnection acquireConnection(String sql, int connectionFlags, CancellationSignal cancellationSignal) {
-        return waitForConnection(sql, connectionFlags, cancellationSignal);
+        long startNanos = System.nanoTime();
+        SQLiteConnection connection = null;
+        if ((connectionFlags & 2) == 0 && this.mFastPathOpen && !this.mHasWaiters) {
+            if (cancellationSignal != null) {
+                cancellationSignal.throwIfCanceled();
+            }
+            connection = tryAcquireIdleReader(sql, connectionFlags);
+        }
+        if (connection == null) {
+            connection = waitForConnection(sql, connectionFlags, cancellationSignal);
+        }
+        recordWait(System.nanoTime() - startNanos);
+        return connection;
     }
 
     public void releaseConnection(SQLiteConnection connection) {
+        if (!this.mFastLeases.isEmpty() && tryReleaseIdleReader(connection)) {
+            return;
+        }
         synchronized (this.mLock) {
             AcquiredConnectionStatus status = this.mAcquiredConnections.remove(connection);
+            if (status == null) {
+                status = this.mFastLeases.remove(connection);
+            }
             if (status == null) {
                 throw new IllegalStateException("Cannot perform this operation because the specified connection was not acquired from this pool or has already been released.");
             } else if (!this.mIsOpen) {
@@ -230,11 +291,15 @@ public final class SQLiteConnectionPool implements Closeable {
                     this.mAvailablePrimaryConnection = connection;
                 }
                 wakeConnectionWaitersLocked();
-            } else if (this.mAvailableNonPrimaryConnections.size() >= this.mMaxConnectionPoolSize - 1) {
+            } else if (this.mAvailableNonPrimaryConnections.size() + this.mIdleReaders.size() >= this.mMaxConnectionPoolSize - 1) {
                 closeConnectionAndLogExceptionsLocked(connection);
             } else {
                 if (recycleConnectionLocked(connection, status)) {
-                    this.mAvailableNonPrimaryConnections.add(connection);
+                    if (!this.mFastPathOpen || this.mConnectionWaiterQueue != null) {
+                        this.mAvailableNonPrimaryConnections.add(connection);
+                    } else {
+                        this.mIdleReaders.add(connection);
+                    }
                 }
                 wakeConnectionWaitersLocked();
             }
@@ -259,7 +324,7 @@ public final class SQLiteConnectionPool implements Closeable {
 
     public boolean shouldYieldConnection(SQLiteConnection connection, int connectionFlags) {
         synchronized (this.mLock) {
-            if (!this.mAcquiredConnections.containsKey(connection)) {
+            if (!this.mAcquiredConnections.containsKey(connection) && !this.mFastLeases.containsKey(connection)) {
                 throw new IllegalStateException("Cannot perform this operation because the specified connection was not acquired from this pool or has already been released.");
             } else if (!this.mIsOpen) {
                 return false;
@@ -282,9 +347,161 @@ public final class SQLiteConnectionPool implements Closeable {
             for (SQLiteConnection connection : this.mAcquiredConnections.keySet()) {
                 connection.collectDbStatsUnsafe(dbStatsList);
             }
+            synchronized (this.mFastLeases) {
+                for (SQLiteConnection connection2 : this.mFastLeases.keySet()) {
+                    connection2.collectDbStatsUnsafe(dbStatsList);
+                }
+            }
+            for (SQLiteConnection connection3 : this.mIdleReaders) {
+                connection3.collectDbStatsUnsafe(dbStatsList);
+            }
+        }
+    }
+
+    private SQLiteConnection tryAcquireIdleReader(String sql, int connectionFlags) {
+        SQLiteConnection connection;
+        RuntimeException failure;
+        long stamp = this.mFastPathGate.tryReadLock();
+        if (stamp == 0) {
+            return null;
+        }
+        try {
+            if (!this.mFastPathOpen) {
+                return null;
+            }
+            connection = claimIdleReader(sql);
+            if (connection == null) {
+                return null;
+            }
+            try {
+                connection.setOnlyAllowReadOnlyOperations((connectionFlags & 1) != 0);
+                this.mFastLeases.put(connection, AcquiredConnectionStatus.NORMAL);
+                noteAffinity(sql, connection);
+                return connection;
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+        } finally {
+            this.mFastPathGate.unlockRead(stamp);
+        }
+        Log.e(TAG, "Failed to prepare idle reader connection for session, closing it: " + connection + ", connectionFlags=" + connectionFlags);
+        synchronized (this.mLock) {
+            closeConnectionAndLogExceptionsLocked(connection);
+        }
+        throw failure;
+    }
+
+    /**
+     * The affinity hints only hold weak references, so a leased connection that is never
+     * released can still be collected and reported by the leak detection of SQLiteConnection.
+     */
+    private void noteAffinity(String sql, SQLiteConnection connection) {
+        WeakReference<SQLiteConnection> ref = this.mThreadAffinity.get();
+        if (ref == null || ref.get() != connection) {
+            ref = new WeakReference<>(connection);
+            this.mThreadAffinity.set(ref);
+        }
+        if (sql != null) {
+            WeakReference<SQLiteConnection> sqlRef = this.mSqlAffinity.get(sql);
+            if (sqlRef == null || sqlRef.get() != connection) {
+                if (this.mSqlAffinity.size() >= MAX_SQL_AFFINITY_SIZE) {
+                    this.mSqlAffinity.clear();
+                }
+                this.mSqlAffinity.put(sql, ref);
+            }
+        }
+    }
+
+    private SQLiteConnection claimIdleReader(String sql) {
+        if (sql != null) {
+            WeakReference<SQLiteConnection> ref = this.mSqlAffinity.get(sql);
+            SQLiteConnection connection = ref != null ? ref.get() : null;
+            if (connection != null && this.mIdleReaders.remove(connection)) {
+                return connection;
+            }
+        }
+        WeakReference<SQLiteConnection> ref2 = this.mThreadAffinity.get();
+        SQLiteConnection connection2 = ref2 != null ? ref2.get() : null;
+        if (connection2 != null && this.mIdleReaders.remove(connection2)) {
+            return connection2;
+        }
+        for (SQLiteConnection connection3 : this.mIdleReaders) {
+            if (this.mIdleReaders.remove(connection3)) {
+                return connection3;
+            }
+        }
+        return null;
+    }
+
+    private boolean tryReleaseIdleReader(SQLiteConnection connection) {
+        long stamp = this.mFastPathGate.tryReadLock();
+        if (stamp == 0) {
+            return false;
+        }
+        try {
+            if (!this.mFastPathOpen || this.mHasWaiters || this.mFastLeases.get(connection) != AcquiredConnectionStatus.NORMAL) {
+                return false;
+            }
+            this.mFastLeases.remove(connection);
+            this.mIdleReaders.add(connection);
+        } finally {
+            this.mFastPathGate.unlockRead(stamp);
+        }
+        if (this.mHasWaiters) {
+            synchronized (this.mLock) {
+                wakeConnectionWaitersLocked();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Closes the fast path and pulls the idle readers back into the pool before a pool wide
+     * change. Once this returns, fast leases can only come back through the locked path of
+     * releaseConnection(), so marking them and reconfiguring the pool cannot race with them.
+     * The caller reopens it with updateFastPathLocked() when the change is complete.
+     */
+    private void suspendFastPathLocked() {
+        if (this.mFastPathOpen || !this.mIdleReaders.isEmpty()) {
+            long stamp = this.mFastPathGate.writeLock();
+            try {
+                this.mFastPathOpen = false;
+                moveIdleReadersLocked();
+            } finally {
+                this.mFastPathGate.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private void updateFastPathLocked() {
+        boolean open = this.mIsOpen && this.mScalableMode;
+        if (open != this.mFastPathOpen) {
+            long stamp = this.mFastPathGate.writeLock();
+            try {
+                this.mFastPathOpen = open;
+                if (!open) {
+                    moveIdleReadersLocked();
+                }
+            } finally {
+                this.mFastPathGate.unlockWrite(stamp);
+            }
         }
     }
 
+    private void moveIdleReadersLocked() {
+        for (SQLiteConnection connection : this.mIdleReaders) {
+            if (this.mIdleReaders.remove(connection)) {
+                this.mAvailableNonPrimaryConnections.add(connection);
+            }
+        }
+        this.mSqlAffinity.clear();
+    }
+
+    private void recordWait(long waitNanos) {
+        long micros = waitNanos / 1000;
+        this.mWaitHistogram.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(micros), WAIT_HISTOGRAM_BUCKETS - 1));
+    }
+
     private SQLiteConnection openConnectionLocked(SQLiteDatabaseConfiguration configuration, boolean primaryConnection) {
         int connectionId = this.mNextConnectionId;
         this.mNextConnectionId = connectionId + 1;
@@ -380,6 +597,20 @@ public final class SQLiteConnectionPool implements Closeable {
                 this.mAcquiredConnections.put(keysToUpdate.get(i), status);
             }
         }
+        if (!this.mFastLeases.isEmpty()) {
+            long stamp = this.mFastPathGate.writeLock();
+            try {
+                synchronized (this.mFastLeases) {
+                    for (Map.Entry<SQLiteConnection, AcquiredConnectionStatus> entry2 : this.mFastLeases.entrySet()) {
+                        if (entry2.getValue() != AcquiredConnectionStatus.DISCARD) {
+                            entry2.setValue(status);
+                        }
+                    }
+                }
+            } finally {
+                this.mFastPathGate.unlockWrite(stamp);
+            }
+        }
     }
 
     /* JADX WARNING: Code restructure failed: missing block: B:35:0x0067, code lost:
@@ -584,6 +815,12 @@ public final class SQLiteConnectionPool implements Closeable {
                 } else {
                     this.mConnectionWaiterQueue = waiter;
                 }
+                if (this.mScalableMode) {
+                    this.mHasWaiters = true;
+                    if (!this.mIdleReaders.isEmpty()) {
+                        wakeConnectionWaitersLocked();
+                    }
+                }
                 final int nonce = waiter.mNonce;
             } catch (Throwable th3) {
                 th = th3;
@@ -695,6 +932,7 @@ public final class SQLiteConnectionPool implements Closeable {
                         waiter.mAssignedConnection = connection;
                         unpark = true;
                     } else if (nonPrimaryConnectionNotAvailable && primaryConnectionNotAvailable) {
+                        this.mHasWaiters = this.mConnectionWaiterQueue != null;
                         return;
                     }
                 } catch (RuntimeException ex) {
@@ -716,6 +954,7 @@ public final class SQLiteConnectionPool implements Closeable {
             }
             waiter = successor;
         }
+        this.mHasWaiters = this.mConnectionWaiterQueue != null;
     }
 
     private SQLiteConnection tryAcquirePrimaryConnectionLocked(int connectionFlags) {
@@ -752,7 +991,12 @@ public final class SQLiteConnectionPool implements Closeable {
             finishAcquireConnectionLocked(connection2, connectionFlags);
             return connection2;
         }
-        int openConnections = this.mAcquiredConnections.size();
+        SQLiteConnection idleReader = claimIdleReader(sql);
+        if (idleReader != null) {
+            finishAcquireConnectionLocked(idleReader, connectionFlags);
+            return idleReader;
+        }
+        int openConnections = this.mAcquiredConnections.size() + this.mFastLeases.size() + this.mIdleReaders.size();
         if (this.mAvailablePrimaryConnection != null) {
             openConnections++;
         }
@@ -798,12 +1042,15 @@ public final class SQLiteConnectionPool implements Closeable {
     }
 
     private void setMaxConnectionPoolSizeLocked() {
+        this.mScalableMode = (this.mConfiguration.openFlags & 536870912) != 0 && (this.mConfiguration.openFlags & SQLiteDatabase.ENABLE_SCALABLE_CONNECTION_POOL) != 0;
         if ((this.mConfiguration.openFlags & 536870912) == 0) {
             this.mMaxConnectionPoolSize = 1;
-        } else if (this.mConfiguration.maxConnectionCount == 0) {
-            this.mMaxConnectionPoolSize = SQLiteGlobal.getWALConnectionPoolSize();
-        } else {
+        } else if (this.mConfiguration.maxConnectionCount != 0) {
             this.mMaxConnectionPoolSize = this.mConfiguration.maxConnectionCount;
+        } else if (this.mScalableMode) {
+            this.mMaxConnectionPoolSize = SQLiteGlobal.getScalableConnectionPoolSize();
+        } else {
+            this.mMaxConnectionPoolSize = SQLiteGlobal.getWALConnectionPoolSize();
         }
     }
 
@@ -841,6 +1088,46 @@ public final class SQLiteConnectionPool implements Closeable {
     }
 
     public void dump(Printer printer, boolean verbose) {
+        long[] counts = new long[WAIT_HISTOGRAM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < WAIT_HISTOGRAM_BUCKETS; i++) {
+            counts[i] = this.mWaitHistogram.get(i);
+            total += counts[i];
+        }
+        synchronized (this.mLock) {
+            printer.println("Connection pool for " + this.mConfiguration.label + ":");
+            printer.println("  Open: " + this.mIsOpen);
+            printer.println("  Max connections: " + this.mMaxConnectionPoolSize);
+            printer.println("  Scalable readers: " + this.mScalableMode + ", idle=" + this.mIdleReaders.size() + ", leased=" + this.mFastLeases.size());
+        }
+        printer.println("  Acquisitions: " + total + ", wait p50=" + waitPercentile(counts, total, 0.5d) + "us, p99=" + waitPercentile(counts, total, 0.99d) + "us, p99.9=" + waitPercentile(counts, total, 0.999d) + "us");
+        if (verbose) {
+            StringBuilder sb = new StringBuilder("  Wait histogram (us):");
+            for (int i2 = 0; i2 < WAIT_HISTOGRAM_BUCKETS; i2++) {
+                if (counts[i2] != 0) {
+                    sb.append(" <");
+                    sb.append(1 << i2);
+                    sb.append('=');
+                    sb.append(counts[i2]);
+                }
+            }
+            printer.println(sb.toString());
+        }
+    }
+
+    private static long waitPercentile(long[] counts, long total, double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(((double) total) * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (long) (1 << i);
+            }
+        }
+        return (long) (1 << (counts.length - 1));
     }
 
     public String toString() {
@@ -38,6 +38,7 @@ public final class SQLiteDatabase extends SQLiteClosable {
     public static final int CREATE_IF_NECESSARY = 268435456;
     public static final int DETECT_DATABASE_FILE_DELETION = 16777216;
     public static final int ENABLE_DATABASE_ENCRYPTION = 1073741824;
+    public static final int ENABLE_SCALABLE_CONNECTION_POOL = 33554432;
     public static final int ENABLE_WRITE_AHEAD_LOGGING = 536870912;
     private static final int EVENT_DB_CORRUPT = 75004;
     public static final int MAX_SQL_CACHE_SIZE = 100;
@@ -107,6 +108,9 @@ public final class SQLiteDatabase extends SQLiteClosable {
     private SQLiteDatabase(String path, int openFlags, CursorFactory cursorFactory, SQLiteErrorHandler errorHandler, byte[] encryptKey) {
         this.mCursorFactory = cursorFactory;
         this.mErrorHandler = errorHandler != null ? errorHandler : new SQLiteDefaultErrorHandler();
+        if ((openFlags & ENABLE_SCALABLE_CONNECTION_POOL) != 0) {
+            openFlags |= ENABLE_WRITE_AHEAD_LOGGING;
+        }
         this.mConfigurationLocked = new SQLiteDatabaseConfiguration(path, openFlags);
         if ((1073741824 & openFlags) == 0) {
             return;
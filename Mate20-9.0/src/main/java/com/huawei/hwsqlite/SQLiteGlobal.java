@@ -50,6 +50,11 @@ public final class SQLiteGlobal {
         return Math.max(2, 4);
     }
 
+    @SuppressLint({"AvoidMax/Min"})
+    public static int getScalableConnectionPoolSize() {
+        return Math.min(Math.max(Runtime.getRuntime().availableProcessors(), 2), 8) + 1;
+    }
+
     public static int getSlowQueryThreshold() {
         return SLOW_QUERY_THRESHOLD;
     }
@@ -55,6 +55,10 @@ public class HwKVConnectionPool {
         }
     }
 
+    String getPath() {
+        return this.mPath;
+    }
+
     /* access modifiers changed from: package-private */
     public void closeConnection() {
         synchronized (this.writeConnectionLock) {
@@ -3,16 +3,23 @@ package com.huawei.kvdb;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.os.SystemProperties;
 import java.util.Hashtable;
 
 public class HwKVDatabase {
     public static final int IMAGE = 1;
     private static final long INITIALCRC = -1;
+    private static final int LEGACY_DRAINED = 2;
+    private static final int LEGACY_PRESENT = 1;
+    private static final int LEGACY_UNKNOWN = 0;
+    private static final String MEDIA_PROVIDER = "com.android.providers.media";
     private static final long POLY64REV = -7661587058870466123L;
     public static final int VIDEO = 3;
     private static HwKVDatabase database = null;
     private static long[] sCrcTable = new long[256];
     private HwKVConnectionPool kvConnectionPool;
+    private volatile int legacyState = LEGACY_UNKNOWN;
+    private HwKVMappedStore mappedStore = null;
 
     static {
         for (int i = 0; i < 256; i++) {
@@ -58,6 +65,31 @@ public class HwKVDatabase {
 
     private HwKVDatabase(Context context) {
         this.kvConnectionPool = new HwKVConnectionPool(context);
+        if (SystemProperties.getBoolean("persist.sys.kvdb.mapped_engine", false)) {
+            this.mappedStore = new HwKVMappedStore(this.kvConnectionPool.getPath(), !MEDIA_PROVIDER.equals(context.getPackageName()));
+        }
+    }
+
+    private HwKVMappedStore getMappedStore() {
+        if (this.mappedStore == null || !this.mappedStore.open()) {
+            return null;
+        }
+        return this.mappedStore;
+    }
+
+    /**
+     * Whether thumbnail.db may still hold keys written before the mapped engine was turned on.
+     * Those stay readable from there, and removing them removes them from there, until it is
+     * drained. Nothing is written to it while the mapped engine is on, so once it is seen empty
+     * it stays empty.
+     */
+    private boolean hasLegacyKeys() {
+        int state = this.legacyState;
+        if (state == LEGACY_UNKNOWN) {
+            state = getKeyNumFromConnection() > 0 ? LEGACY_PRESENT : LEGACY_DRAINED;
+            this.legacyState = state;
+        }
+        return state == LEGACY_PRESENT;
     }
 
     public static synchronized HwKVDatabase getInstance(Context context) {
@@ -75,6 +107,9 @@ public class HwKVDatabase {
     public void finalize() throws Throwable {
         super.finalize();
         this.kvConnectionPool.closeConnection();
+        if (this.mappedStore != null) {
+            this.mappedStore.close();
+        }
     }
 
     /* JADX WARNING: Code restructure failed: missing block: B:12:0x001a, code lost:
@@ -94,6 +129,10 @@ public class HwKVDatabase {
         if (value == null || value.length == 0 || value.length != size) {
             return false;
         }
+        HwKVMappedStore store = getMappedStore();
+        if (store != null) {
+            return store.put(key, value, size);
+        }
         HwKVConnection kvConnection = this.kvConnectionPool.getWriteConnection();
         if (kvConnection == null) {
             return false;
@@ -113,6 +152,22 @@ public class HwKVDatabase {
         }
     }
 
+    public boolean remove(long key) throws HwKVFullException {
+        HwKVMappedStore store = getMappedStore();
+        if (store == null) {
+            return removeFromConnection(key);
+        }
+        boolean res = store.remove(key);
+        if (!hasLegacyKeys()) {
+            return res;
+        }
+        boolean legacyRes = removeFromConnection(key);
+        if (legacyRes) {
+            this.legacyState = LEGACY_UNKNOWN;
+        }
+        return res || legacyRes;
+    }
+
     /* JADX WARNING: Code restructure failed: missing block: B:16:0x002b, code lost:
         if (1 != 0) goto L_0x002e;
      */
@@ -125,7 +180,7 @@ public class HwKVDatabase {
     /* JADX WARNING: Code restructure failed: missing block: B:7:0x0013, code lost:
         r6.kvConnectionPool.releaseWriteConnection(r1);
      */
-    public boolean remove(long key) throws HwKVFullException {
+    private boolean removeFromConnection(long key) throws HwKVFullException {
         boolean res;
         HwKVConnection kvConnection = this.kvConnectionPool.getWriteConnection();
         if (kvConnection == null) {
@@ -147,6 +202,18 @@ public class HwKVDatabase {
     }
 
     public Bitmap getBitmap(long key, BitmapFactory.Options options) {
+        HwKVMappedStore store = getMappedStore();
+        if (store == null) {
+            return getBitmapFromConnection(key, options);
+        }
+        Bitmap bitmap = store.getBitmap(key, options);
+        if (bitmap != null || !hasLegacyKeys()) {
+            return bitmap;
+        }
+        return getBitmapFromConnection(key, options);
+    }
+
+    private Bitmap getBitmapFromConnection(long key, BitmapFactory.Options options) {
         HwKVData res;
         HwKVConnection kvConnection = this.kvConnectionPool.getReadOnlyConnection();
         Bitmap bitmap = null;
@@ -177,6 +244,17 @@ public class HwKVDatabase {
         return bitmap;
     }
 
+    public boolean hasKey(long key) {
+        HwKVMappedStore store = getMappedStore();
+        if (store == null) {
+            return hasKeyFromConnection(key);
+        }
+        if (store.hasKey(key)) {
+            return true;
+        }
+        return hasLegacyKeys() && hasKeyFromConnection(key);
+    }
+
     /* JADX WARNING: Code restructure failed: missing block: B:14:0x0023, code lost:
         if (1 != 0) goto L_0x0026;
      */
@@ -189,7 +267,7 @@ public class HwKVDatabase {
     /* JADX WARNING: Code restructure failed: missing block: B:8:0x0013, code lost:
         r6.kvConnectionPool.releaseReadOnlyConnection(r0);
      */
-    public boolean hasKey(long key) {
+    private boolean hasKeyFromConnection(long key) {
         boolean res;
         HwKVConnection kvConnection = this.kvConnectionPool.getReadOnlyConnection();
         if (kvConnection == null) {
@@ -221,6 +299,21 @@ public class HwKVDatabase {
     }
 
     public int getKeyNum() {
+        HwKVMappedStore store = getMappedStore();
+        if (store == null) {
+            return getKeyNumFromConnection();
+        }
+        if (!hasLegacyKeys()) {
+            return store.getKeyNum();
+        }
+        Hashtable<Long, Long> hashTable = getAllKeys();
+        if (hashTable == null) {
+            return 0;
+        }
+        return hashTable.size();
+    }
+
+    private int getKeyNumFromConnection() {
         int res;
         HwKVConnection kvConnection = this.kvConnectionPool.getReadOnlyConnection();
         if (kvConnection == null) {
@@ -246,6 +339,22 @@ public class HwKVDatabase {
         return res;
     }
 
+    public Hashtable<Long, Long> getAllKeys() {
+        HwKVMappedStore store = getMappedStore();
+        if (store == null) {
+            return getAllKeysFromConnection();
+        }
+        Hashtable<Long, Long> hashTable = store.getAllKeys();
+        if (hashTable == null || !hasLegacyKeys()) {
+            return hashTable;
+        }
+        Hashtable<Long, Long> legacyTable = getAllKeysFromConnection();
+        if (legacyTable != null) {
+            hashTable.putAll(legacyTable);
+        }
+        return hashTable;
+    }
+
     /* JADX WARNING: Code restructure failed: missing block: B:16:0x0024, code lost:
         if (1 != 0) goto L_0x0027;
      */
@@ -258,7 +367,7 @@ public class HwKVDatabase {
     /* JADX WARNING: Code restructure failed: missing block: B:9:0x0014, code lost:
         r6.kvConnectionPool.releaseReadOnlyConnection(r0);
      */
-    public Hashtable<Long, Long> getAllKeys() {
+    private Hashtable<Long, Long> getAllKeysFromConnection() {
         Hashtable<Long, Long> hashTable;
         HwKVConnection kvConnection = this.kvConnectionPool.getReadOnlyConnection();
         if (kvConnection == null) {
@@ -277,6 +386,24 @@ public class HwKVDatabase {
         }
     }
 
+    public long[] getAllKeysArray() {
+        HwKVMappedStore store = getMappedStore();
+        if (store != null && !hasLegacyKeys()) {
+            return store.getKeys();
+        }
+        Hashtable<Long, Long> hashTable = getAllKeys();
+        if (hashTable == null) {
+            return null;
+        }
+        long[] keys = new long[hashTable.size()];
+        int index = 0;
+        for (Long key : hashTable.keySet()) {
+            keys[index] = key.longValue();
+            index++;
+        }
+        return keys;
+    }
+
     public HwKVConnectionPool getKVConnectionPool() {
         return this.kvConnectionPool;
     }
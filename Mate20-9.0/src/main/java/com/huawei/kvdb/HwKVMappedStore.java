@@ -0,0 +1,656 @@
+package com.huawei.kvdb;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Hashtable;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory mapped storage engine for {@link HwKVDatabase}.
+ *
+ * Records are appended to a single log file as
+ * {@code long key, int size, int valueCrc, int headerCrc, byte[size] value}; a negative size
+ * marks a removed key. Every process keeps its own open addressing {@code long -> offset} index
+ * which is caught up lazily by scanning the records appended since the last lookup, so readers
+ * never check out a connection and values are decoded straight from the mapping.
+ *
+ * A scan stops at the first record whose header crc does not match, and a value is only handed
+ * out if its crc matches, so a torn write is never parsed. Once superseded records outnumber the
+ * live ones, or the log would outgrow the 2GB a mapping can cover, the writer copies the live
+ * records to a new log and renames it over the old one, then flags the old one retired so
+ * readers reopen. The same happens when the writer finds a torn tail, as the log is never
+ * truncated in place: other processes may have the tail mapped and would fault on pages cut off
+ * under them. Appends, compaction and that repair are serialised across processes by a lock on
+ * a separate file, since the log itself is replaced on compaction.
+ */
+final class HwKVMappedStore {
+    private static final int COMPACT_MIN_DEAD = 1024;
+    private static final int FILE_HEADER_SIZE = 12;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final String LOCK_NAME = "thumbnail.kvlog.lock";
+    private static final String LOG_NAME = "thumbnail.kvlog";
+    private static final int MAGIC = 1263946828;
+    private static final long MAX_FILE_SIZE = 2147483647L;
+    private static final int MAX_VALUE_SIZE = 16777216;
+    private static final int RECORD_HEADER_SIZE = 20;
+    private static final int RECORD_HEADER_CRC_OFFSET = 16;
+    private static final long REMOVED = -1;
+    private static final int RETIRED_OFFSET = 8;
+    private static final String TAG = "kvdb_thumbnail";
+    private static final int TOMBSTONE = -1;
+    private static final int VERSION = 2;
+    private FileChannel mChannel;
+    private int mCount = 0;
+    private final CRC32 mCrc = new CRC32();
+    private int mDeadRecords = 0;
+    private final File mFile;
+    private long[] mKeys = new long[INITIAL_CAPACITY];
+    private FileChannel mLockChannel;
+    private final File mLockFile;
+    private MappedByteBuffer mMapped;
+    private long mMappedSize = 0;
+    private long[] mOffsets = new long[INITIAL_CAPACITY];
+    private final boolean mReadOnly;
+    private final ByteBuffer mRecordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    private long mScannedSize = 0;
+    private int mUsed = 0;
+
+    private static final class MappedInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+
+        MappedInputStream(ByteBuffer buffer) {
+            this.mBuffer = buffer;
+        }
+
+        public int read() {
+            if (this.mBuffer.hasRemaining()) {
+                return this.mBuffer.get() & 255;
+            }
+            return -1;
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (!this.mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, this.mBuffer.remaining());
+            this.mBuffer.get(b, off, count);
+            return count;
+        }
+
+        public int available() {
+            return this.mBuffer.remaining();
+        }
+
+        public long skip(long n) {
+            int count = (int) Math.min(n, (long) this.mBuffer.remaining());
+            this.mBuffer.position(this.mBuffer.position() + count);
+            return (long) count;
+        }
+    }
+
+    HwKVMappedStore(String path, boolean readOnly) {
+        this.mFile = new File(path, LOG_NAME);
+        this.mLockFile = new File(path, LOCK_NAME);
+        this.mReadOnly = readOnly;
+    }
+
+    synchronized boolean open() {
+        if (this.mChannel != null) {
+            return true;
+        }
+        return openLocked(true);
+    }
+
+    private boolean openLocked(boolean retry) {
+        if (this.mReadOnly && !this.mFile.exists()) {
+            return false;
+        }
+        FileLock lock = null;
+        try {
+            lock = lockLocked();
+            return loadLocked(retry);
+        } catch (IOException e) {
+            Log.e(TAG, "lock kv log failed: " + e.getMessage());
+            return false;
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    /**
+     * Opens and indexes the log. A writer, which holds the lock here, first replaces a log with a
+     * bad header by an empty one and compacts away a torn tail.
+     */
+    private boolean loadLocked(boolean retry) {
+        resetIndexLocked();
+        try {
+            this.mChannel = new RandomAccessFile(this.mFile, this.mReadOnly ? "r" : "rw").getChannel();
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            boolean valid = this.mChannel.read(header, 0) == FILE_HEADER_SIZE && header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+            if (!valid) {
+                if (this.mReadOnly) {
+                    Log.e(TAG, "invalid kv log header, closing mapped store.");
+                    closeLocked();
+                    return false;
+                }
+                if (this.mChannel.size() > 0) {
+                    Log.w(TAG, "invalid kv log header, starting a new log.");
+                    if (!replaceLocked(createLogLocked())) {
+                        closeLocked();
+                        return false;
+                    }
+                } else {
+                    writeFileHeader(this.mChannel);
+                    this.mChannel.force(true);
+                }
+            } else if (header.getInt(RETIRED_OFFSET) != 0) {
+                closeLocked();
+                if (retry) {
+                    return loadLocked(false);
+                }
+                Log.e(TAG, "kv log retired while opening it.");
+                return false;
+            }
+            this.mScannedSize = FILE_HEADER_SIZE;
+            ensureMappedLocked(FILE_HEADER_SIZE);
+            long last = catchUpLocked();
+            if (!this.mReadOnly) {
+                repairTornTailLocked(last);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "open kv log failed: " + e.getMessage());
+            closeLocked();
+            return false;
+        }
+    }
+
+    /**
+     * Takes the lock that serialises writers across processes, or returns null for a reader.
+     */
+    private FileLock lockLocked() throws IOException {
+        if (this.mReadOnly) {
+            return null;
+        }
+        if (this.mLockChannel == null || !this.mLockChannel.isOpen()) {
+            this.mLockChannel = new RandomAccessFile(this.mLockFile, "rw").getChannel();
+        }
+        return this.mLockChannel.lock();
+    }
+
+    private static void unlock(FileLock lock) {
+        if (lock != null) {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                Log.w(TAG, "release kv log lock failed.");
+            }
+        }
+    }
+
+    private static void writeFileHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(0).flip();
+        channel.write(header, 0);
+    }
+
+    /**
+     * Compacts the log if it ends in something that does not check out, which only a writer that
+     * died mid-append leaves behind: bytes a scan stops at, or a last record whose value does not
+     * match its crc. Appends never land behind such a tail, where no scan would reach them.
+     */
+    private void repairTornTailLocked(long last) throws IOException {
+        boolean torn = this.mChannel.size() > this.mScannedSize;
+        if (last > 0 && !valueValidLocked(last)) {
+            Log.w(TAG, "dropping torn kv record at " + last);
+            resetIndexLocked();
+            this.mScannedSize = FILE_HEADER_SIZE;
+            scanLocked(last);
+            torn = true;
+        }
+        if (torn) {
+            Log.w(TAG, "compacting kv log with a torn tail at " + this.mScannedSize);
+            compactLocked();
+        }
+    }
+
+    synchronized void close() {
+        closeLocked();
+        if (this.mLockChannel != null) {
+            try {
+                this.mLockChannel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close kv log lock failed.");
+            }
+            this.mLockChannel = null;
+        }
+    }
+
+    private void closeLocked() {
+        if (this.mChannel != null) {
+            try {
+                this.mChannel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close kv log failed.");
+            }
+            this.mChannel = null;
+        }
+        this.mMapped = null;
+        this.mMappedSize = 0;
+    }
+
+    private void resetIndexLocked() {
+        this.mKeys = new long[INITIAL_CAPACITY];
+        this.mOffsets = new long[INITIAL_CAPACITY];
+        this.mCount = 0;
+        this.mDeadRecords = 0;
+        this.mUsed = 0;
+    }
+
+    /**
+     * Reopens the log if the writer has compacted it into a new file since it was opened.
+     * Returns false if the store is closed.
+     */
+    private boolean checkOpenLocked() {
+        if (this.mChannel == null) {
+            return false;
+        }
+        if (this.mMapped.getInt(RETIRED_OFFSET) == 0) {
+            return true;
+        }
+        closeLocked();
+        return openLocked(true);
+    }
+
+    boolean put(long key, byte[] value, int size) throws HwKVFullException {
+        if (this.mReadOnly || value == null || value.length == 0 || value.length != size || size > MAX_VALUE_SIZE) {
+            return false;
+        }
+        return append(key, value, size);
+    }
+
+    boolean remove(long key) throws HwKVFullException {
+        if (this.mReadOnly || !hasKey(key)) {
+            return false;
+        }
+        return append(key, null, TOMBSTONE);
+    }
+
+    private synchronized boolean append(long key, byte[] value, int size) throws HwKVFullException {
+        if (this.mChannel == null) {
+            return false;
+        }
+        int length = size > 0 ? size : 0;
+        if (this.mFile.getUsableSpace() < ((long) (RECORD_HEADER_SIZE + length))) {
+            throw new HwKVFullException();
+        }
+        FileLock lock = null;
+        try {
+            lock = lockLocked();
+            if (this.mMapped.getInt(RETIRED_OFFSET) != 0) {
+                closeLocked();
+                if (!loadLocked(true)) {
+                    return false;
+                }
+            }
+            catchUpLocked();
+            repairTornTailLocked(0);
+            if (this.mChannel.size() > this.mScannedSize) {
+                Log.e(TAG, "kv log still has a torn tail, dropping append.");
+                return false;
+            }
+            boolean full = this.mScannedSize + ((long) (RECORD_HEADER_SIZE + length)) > MAX_FILE_SIZE;
+            if (full || this.mDeadRecords > this.mCount + COMPACT_MIN_DEAD) {
+                compactLocked();
+                if (this.mScannedSize + ((long) (RECORD_HEADER_SIZE + length)) > MAX_FILE_SIZE) {
+                    throw new HwKVFullException();
+                }
+            }
+            long offset = this.mScannedSize;
+            this.mCrc.reset();
+            if (length > 0) {
+                this.mCrc.update(value, 0, length);
+            }
+            this.mRecordHeader.clear();
+            this.mRecordHeader.putLong(key).putInt(size).putInt((int) this.mCrc.getValue());
+            this.mCrc.reset();
+            this.mCrc.update(this.mRecordHeader.array(), 0, RECORD_HEADER_CRC_OFFSET);
+            this.mRecordHeader.putInt((int) this.mCrc.getValue()).flip();
+            this.mChannel.write(this.mRecordHeader, offset);
+            if (length > 0) {
+                ByteBuffer data = ByteBuffer.wrap(value, 0, length);
+                long position = ((long) RECORD_HEADER_SIZE) + offset;
+                while (data.hasRemaining()) {
+                    position += (long) this.mChannel.write(data, position);
+                }
+            }
+            this.mScannedSize = ((long) (RECORD_HEADER_SIZE + length)) + offset;
+            indexPut(key, size < 0 ? REMOVED : offset);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "append to kv log failed: " + e.getMessage());
+            return false;
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    /**
+     * Copies the live records into a new log and renames it over the current one.
+     */
+    private void compactLocked() throws IOException {
+        File tmp = createLogLocked();
+        ensureMappedLocked(this.mScannedSize);
+        long[] offsets = new long[this.mOffsets.length];
+        long position = FILE_HEADER_SIZE;
+        FileChannel out = new RandomAccessFile(tmp, "rw").getChannel();
+        try {
+            ByteBuffer view = this.mMapped.duplicate();
+            for (int i = 0; i < this.mOffsets.length; i++) {
+                long offset = this.mOffsets[i];
+                if (offset <= 0) {
+                    offsets[i] = offset;
+                } else {
+                    long end = ((long) (RECORD_HEADER_SIZE + this.mMapped.getInt(((int) offset) + 8))) + offset;
+                    if ((position + end) - offset > MAX_FILE_SIZE) {
+                        Log.e(TAG, "live kv records exceed the log size limit.");
+                        out.close();
+                        tmp.delete();
+                        return;
+                    }
+                    view.limit((int) end);
+                    view.position((int) offset);
+                    offsets[i] = position;
+                    while (view.hasRemaining()) {
+                        position += (long) out.write(view, position);
+                    }
+                }
+            }
+            out.force(true);
+        } finally {
+            out.close();
+        }
+        long size = this.mScannedSize;
+        if (replaceLocked(tmp)) {
+            Log.i(TAG, "compacted kv log from " + size + " to " + position + " bytes.");
+            this.mOffsets = offsets;
+            this.mScannedSize = position;
+            ensureMappedLocked(FILE_HEADER_SIZE);
+        }
+        this.mDeadRecords = 0;
+    }
+
+    /**
+     * Creates an empty log next to the current one, to be renamed over it.
+     */
+    private File createLogLocked() throws IOException {
+        File tmp = new File(this.mFile.getPath() + ".compact");
+        FileChannel out = new RandomAccessFile(tmp, "rw").getChannel();
+        try {
+            out.truncate(0);
+            writeFileHeader(out);
+            out.force(true);
+        } finally {
+            out.close();
+        }
+        return tmp;
+    }
+
+    /**
+     * Renames the new log over the current one and reopens it. The old file is then flagged
+     * retired, which readers still mapping it check before every lookup.
+     */
+    private boolean replaceLocked(File tmp) throws IOException {
+        if (!tmp.renameTo(this.mFile)) {
+            Log.e(TAG, "rename new kv log failed.");
+            tmp.delete();
+            return false;
+        }
+        ByteBuffer retired = ByteBuffer.allocate(4);
+        retired.putInt(1).flip();
+        this.mChannel.write(retired, RETIRED_OFFSET);
+        closeLocked();
+        this.mChannel = new RandomAccessFile(this.mFile, "rw").getChannel();
+        return true;
+    }
+
+    synchronized boolean hasKey(long key) {
+        if (!checkOpenLocked()) {
+            return false;
+        }
+        if (indexGet(key) > 0) {
+            return true;
+        }
+        catchUpLocked();
+        return indexGet(key) > 0;
+    }
+
+    Bitmap getBitmap(long key, BitmapFactory.Options options) {
+        ByteBuffer value = getValue(key);
+        if (value == null) {
+            return null;
+        }
+        return BitmapFactory.decodeStream(new MappedInputStream(value), null, options);
+    }
+
+    private synchronized ByteBuffer getValue(long key) {
+        if (!checkOpenLocked()) {
+            return null;
+        }
+        long offset = indexGet(key);
+        if (offset <= 0) {
+            catchUpLocked();
+            offset = indexGet(key);
+            if (offset <= 0) {
+                return null;
+            }
+        }
+        try {
+            ensureMappedLocked(((long) RECORD_HEADER_SIZE) + offset);
+            long end = ((long) (RECORD_HEADER_SIZE + this.mMapped.getInt(((int) offset) + 8))) + offset;
+            ensureMappedLocked(end);
+            if (!valueValidLocked(offset)) {
+                Log.w(TAG, "kv record crc mismatch at " + offset);
+                return null;
+            }
+            ByteBuffer value = this.mMapped.duplicate();
+            value.limit((int) end);
+            value.position(((int) offset) + RECORD_HEADER_SIZE);
+            return value.slice();
+        } catch (IOException e) {
+            Log.e(TAG, "map kv log failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean valueValidLocked(long offset) {
+        int start = ((int) offset) + RECORD_HEADER_SIZE;
+        int size = this.mMapped.getInt(((int) offset) + 8);
+        if (size < 0) {
+            return true;
+        }
+        ByteBuffer value = this.mMapped.duplicate();
+        value.limit(start + size);
+        value.position(start);
+        this.mCrc.reset();
+        this.mCrc.update(value);
+        return ((int) this.mCrc.getValue()) == this.mMapped.getInt(((int) offset) + 12);
+    }
+
+    synchronized int getKeyNum() {
+        if (!checkOpenLocked()) {
+            return 0;
+        }
+        catchUpLocked();
+        return this.mCount;
+    }
+
+    synchronized long[] getKeys() {
+        if (!checkOpenLocked()) {
+            return null;
+        }
+        catchUpLocked();
+        long[] keys = new long[this.mCount];
+        int index = 0;
+        for (int i = 0; i < this.mOffsets.length; i++) {
+            if (this.mOffsets[i] > 0) {
+                keys[index] = this.mKeys[i];
+                index++;
+            }
+        }
+        return keys;
+    }
+
+    Hashtable<Long, Long> getAllKeys() {
+        long[] keys = getKeys();
+        if (keys == null) {
+            return null;
+        }
+        Hashtable<Long, Long> hashTable = new Hashtable<>(keys.length * 2);
+        for (long key : keys) {
+            hashTable.put(Long.valueOf(key), Long.valueOf(key));
+        }
+        return hashTable;
+    }
+
+    private void ensureMappedLocked(long end) throws IOException {
+        if (end > this.mMappedSize) {
+            long size = this.mChannel.size();
+            if (end > size || size > MAX_FILE_SIZE) {
+                throw new IOException("record out of range: " + end);
+            }
+            this.mMapped = this.mChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.mMappedSize = size;
+        }
+    }
+
+    /**
+     * Indexes the records appended since the last scan. Returns the offset of the last record
+     * indexed, or 0 if there was none.
+     */
+    private long catchUpLocked() {
+        try {
+            long size = this.mChannel.size();
+            if (size < this.mScannedSize) {
+                Log.w(TAG, "kv log shrank, rescanning.");
+                resetIndexLocked();
+                this.mScannedSize = FILE_HEADER_SIZE;
+            }
+            if (size > this.mScannedSize) {
+                ensureMappedLocked(size);
+                return scanLocked(size);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "scan kv log failed: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    private long scanLocked(long size) {
+        ByteBuffer view = this.mMapped.duplicate();
+        long offset = this.mScannedSize;
+        long last = 0;
+        while (((long) RECORD_HEADER_SIZE) + offset <= size) {
+            int start = (int) offset;
+            view.limit(start + RECORD_HEADER_CRC_OFFSET);
+            view.position(start);
+            this.mCrc.reset();
+            this.mCrc.update(view);
+            if (((int) this.mCrc.getValue()) != this.mMapped.getInt(start + RECORD_HEADER_CRC_OFFSET)) {
+                break;
+            }
+            int valueSize = this.mMapped.getInt(start + 8);
+            if (valueSize > MAX_VALUE_SIZE) {
+                break;
+            }
+            long next = ((long) (RECORD_HEADER_SIZE + (valueSize > 0 ? valueSize : 0))) + offset;
+            if (next > size) {
+                break;
+            }
+            indexPut(this.mMapped.getLong(start), valueSize < 0 ? REMOVED : offset);
+            last = offset;
+            offset = next;
+        }
+        this.mScannedSize = offset;
+        return last;
+    }
+
+    private static int slotOf(long key, int mask) {
+        long h = -7046029254386353131L * key;
+        return ((int) ((h >>> 32) ^ h)) & mask;
+    }
+
+    private long indexGet(long key) {
+        int mask = this.mKeys.length - 1;
+        int slot = slotOf(key, mask);
+        while (this.mOffsets[slot] != 0) {
+            if (this.mKeys[slot] == key) {
+                return this.mOffsets[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    private void indexPut(long key, long offset) {
+        if (offset == REMOVED) {
+            this.mDeadRecords++;
+        }
+        if ((this.mUsed + 1) * 4 > this.mKeys.length * 3) {
+            rehash();
+        }
+        int mask = this.mKeys.length - 1;
+        int slot = slotOf(key, mask);
+        while (this.mOffsets[slot] != 0) {
+            if (this.mKeys[slot] == key) {
+                if (this.mOffsets[slot] > 0) {
+                    this.mDeadRecords++;
+                    if (offset == REMOVED) {
+                        this.mCount--;
+                    }
+                } else if (offset > 0) {
+                    this.mCount++;
+                }
+                this.mOffsets[slot] = offset;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (offset != REMOVED) {
+            this.mKeys[slot] = key;
+            this.mOffsets[slot] = offset;
+            this.mUsed++;
+            this.mCount++;
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = this.mKeys;
+        long[] oldOffsets = this.mOffsets;
+        int capacity = oldKeys.length;
+        if (this.mCount * 2 >= capacity) {
+            capacity *= 2;
+        }
+        int dead = this.mDeadRecords;
+        this.mKeys = new long[capacity];
+        this.mOffsets = new long[capacity];
+        this.mUsed = 0;
+        this.mCount = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldOffsets[i] > 0) {
+                indexPut(oldKeys[i], oldOffsets[i]);
+            }
+        }
+        this.mDeadRecords = dead;
+    }
+}
@@ -19,6 +19,7 @@ import com.huawei.odmf.utils.LOG;
 import com.huawei.odmf.utils.ODMFCache;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class AObjectContext implements ObjectContext {
     private static PersistentStoreCoordinator defaultCoordinator = PersistentStoreCoordinator.getDefault();
@@ -226,6 +227,14 @@ public class AObjectContext implements ObjectContext {
         throw new ODMFIllegalArgumentException("Execute get failed : The parameter objectID is null.");
     }
 
+    Map<ObjectId, ManagedObject> getObjects(List<ObjectId> objectIDs) {
+        if (objectIDs != null) {
+            return defaultCoordinator.getObjectsValues(objectIDs, this);
+        }
+        LOG.logE("Execute getObjects failed : The parameter objectIDs is null.");
+        throw new ODMFIllegalArgumentException("Execute getObjects failed : The parameter objectIDs is null.");
+    }
+
     public void deleteEntityData(Class clz) {
         if (clz == null) {
             LOG.logE("Execute deleteTableData failed : The parameter clz is null.");
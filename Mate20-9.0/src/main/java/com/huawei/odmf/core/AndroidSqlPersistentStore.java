@@ -41,11 +41,13 @@ import com.huawei.odmf.store.DatabaseHelper;
 import com.huawei.odmf.store.DatabaseTableHelper;
 import com.huawei.odmf.store.ODMFDatabaseHelper;
 import com.huawei.odmf.user.api.ObjectContext;
+import com.huawei.odmf.utils.Cache;
 import com.huawei.odmf.utils.CursorUtils;
 import com.huawei.odmf.utils.LOG;
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -415,11 +417,11 @@ class AndroidSqlPersistentStore extends PersistentStore {
     }
 
     private <T extends ManagedObject> void loadManagedObjectFromCursor(AEntityHelper helper, Entity entity, Cursor cursor, List<T> results, ObjectContext context2) {
-        boolean existCache = CacheConfig.getDefault().isOpenObjectCache();
+        Cache<ObjectId, ManagedObject> objectsCache = PersistentStoreCoordinator.getDefault().getObjectsCache();
         do {
             long id = cursor.getLong(DatabaseQueryService.getOdmfRowidIndex());
-            if (existCache) {
-                ManagedObject cacheObject = PersistentStoreCoordinator.getDefault().getObjectsCache().get(new AObjectId(entity.getEntityName(), Long.valueOf(id), getUriString()));
+            if (objectsCache != null) {
+                ManagedObject cacheObject = objectsCache.get(new AObjectId(entity.getEntityName(), Long.valueOf(id), getUriString()));
                 if (cacheObject != null) {
                     if (!cacheObject.isDirty()) {
                         results.add(cacheObject);
@@ -932,6 +934,41 @@ class AndroidSqlPersistentStore extends PersistentStore {
         }
     }
 
+    protected Map<ObjectId, ManagedObject> getObjectsValues(List<ObjectId> objectIds) {
+        Map<String, Map<Long, ObjectId>> entities = new HashMap<>();
+        for (ObjectId objectId : objectIds) {
+            Map<Long, ObjectId> rowIds = entities.get(objectId.getEntityName());
+            if (rowIds == null) {
+                rowIds = new HashMap<>();
+                entities.put(objectId.getEntityName(), rowIds);
+            }
+            rowIds.put((Long) objectId.getId(), objectId);
+        }
+        Map<ObjectId, ManagedObject> results = new HashMap<>(objectIds.size() * 2);
+        for (Map.Entry<String, Map<Long, ObjectId>> entry : entities.entrySet()) {
+            Map<Long, ObjectId> rowIds = entry.getValue();
+            AEntityHelper entityHelper = getHelper(entry.getKey());
+            Cursor cursor = null;
+            try {
+                cursor = DatabaseQueryService.queryByRowIds(this.db, getModel().getEntity(entry.getKey()).getTableName(), new ArrayList(rowIds.keySet()));
+                while (cursor.moveToNext()) {
+                    ObjectId objectId = rowIds.get(Long.valueOf(cursor.getLong(0)));
+                    if (objectId != null) {
+                        ManagedObject managedObject = entityHelper.readObject(cursor, 0);
+                        managedObject.setObjectId(objectId);
+                        managedObject.setRowId((Long) objectId.getId());
+                        results.put(objectId, managedObject);
+                    }
+                }
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+        return results;
+    }
+
     /* access modifiers changed from: protected */
     public List<ObjectId> getRelationshipObjectId(ObjectId objectId, Relationship relationship) {
         SQLException e;
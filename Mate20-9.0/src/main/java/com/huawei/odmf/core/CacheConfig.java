@@ -1,7 +1,10 @@
 package com.huawei.odmf.core;
 
+import com.huawei.odmf.utils.Cache;
 import com.huawei.odmf.utils.ODMFCache;
+import com.huawei.odmf.utils.ODMFConcurrentCache;
 import com.huawei.odmf.utils.Singleton;
+import com.huawei.odmf.utils.Weigher;
 
 public class CacheConfig {
     private static final Singleton<CacheConfig> gDefault = new Singleton<CacheConfig>() {
@@ -9,9 +12,12 @@ public class CacheConfig {
             return new CacheConfig();
         }
     };
+    private boolean isConcurrentObjectCache;
     private boolean isOpenObjectCache;
     private final Object lock;
+    private long objectCacheMaxWeight;
     private int objectCacheNum;
+    private Weigher<ObjectId, ManagedObject> objectCacheWeigher;
 
     public boolean isOpenObjectCache() {
         boolean z;
@@ -32,12 +38,10 @@ public class CacheConfig {
                 return;
             }
             if (!current || !this.isOpenObjectCache) {
-                ODMFCache cache = PersistentStoreCoordinator.getDefault().getObjectsCache();
-                if (cache != null) {
-                    cache.clear();
-                }
                 if (this.isOpenObjectCache) {
-                    PersistentStoreCoordinator.getDefault().createObjectsCache();
+                    PersistentStoreCoordinator.getDefault().recreateObjectsCache();
+                } else {
+                    PersistentStoreCoordinator.getDefault().closeObjectsCache();
                 }
             }
         }
@@ -51,13 +55,11 @@ public class CacheConfig {
             boolean current = this.isOpenObjectCache;
             this.isOpenObjectCache = openObjectCache;
             if (current || this.isOpenObjectCache) {
-                ODMFCache cache = PersistentStoreCoordinator.getDefault().getObjectsCache();
-                if (cache != null) {
-                    cache.clear();
-                }
                 if (this.isOpenObjectCache) {
                     setObjectCacheNum(objectCacheNum2);
-                    PersistentStoreCoordinator.getDefault().createObjectsCache();
+                    PersistentStoreCoordinator.getDefault().recreateObjectsCache();
+                } else {
+                    PersistentStoreCoordinator.getDefault().closeObjectsCache();
                 }
             }
         }
@@ -77,10 +79,75 @@ public class CacheConfig {
         }
     }
 
+    public boolean isConcurrentObjectCache() {
+        boolean z;
+        synchronized (this.lock) {
+            z = this.isConcurrentObjectCache;
+        }
+        return z;
+    }
+
+    public void setConcurrentObjectCache(boolean concurrentObjectCache) {
+        setConcurrentObjectCache(concurrentObjectCache, 0, null);
+    }
+
+    public void setConcurrentObjectCache(boolean concurrentObjectCache, long maxWeight, Weigher<ObjectId, ManagedObject> weigher) {
+        if (maxWeight < 0 || (weigher != null && maxWeight == 0)) {
+            throw new IllegalArgumentException("maxWeight must be positive when a weigher is set.");
+        }
+        synchronized (this.lock) {
+            this.isConcurrentObjectCache = concurrentObjectCache;
+            this.objectCacheMaxWeight = maxWeight;
+            this.objectCacheWeigher = weigher;
+            if (this.isOpenObjectCache) {
+                PersistentStoreCoordinator.getDefault().recreateObjectsCache();
+            }
+        }
+    }
+
+    Cache<ObjectId, ManagedObject> newObjectsCache() {
+        synchronized (this.lock) {
+            if (!this.isConcurrentObjectCache) {
+                return new ODMFCache(this.objectCacheNum);
+            } else if (this.objectCacheWeigher != null) {
+                return new ODMFConcurrentCache(this.objectCacheMaxWeight, this.objectCacheWeigher);
+            } else {
+                return new ODMFConcurrentCache(this.objectCacheNum);
+            }
+        }
+    }
+
+    public long getObjectCacheHitCount() {
+        Cache cache = PersistentStoreCoordinator.getDefault().getObjectsCache();
+        if (cache != null) {
+            return cache.getHitCount();
+        }
+        return 0;
+    }
+
+    public long getObjectCacheMissCount() {
+        Cache cache = PersistentStoreCoordinator.getDefault().getObjectsCache();
+        if (cache != null) {
+            return cache.getMissCount();
+        }
+        return 0;
+    }
+
+    public long getObjectCacheEvictionCount() {
+        Cache cache = PersistentStoreCoordinator.getDefault().getObjectsCache();
+        if (cache != null) {
+            return cache.getEvictionCount();
+        }
+        return 0;
+    }
+
     private CacheConfig() {
         this.lock = new Object();
         this.isOpenObjectCache = false;
+        this.isConcurrentObjectCache = false;
         this.objectCacheNum = 100;
+        this.objectCacheMaxWeight = 0;
+        this.objectCacheWeigher = null;
     }
 
     public static CacheConfig getDefault() {
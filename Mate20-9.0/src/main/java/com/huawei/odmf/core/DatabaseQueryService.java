@@ -5,6 +5,7 @@ import com.huawei.odmf.database.DataBase;
 import com.huawei.odmf.exception.ODMFIllegalArgumentException;
 import com.huawei.odmf.exception.ODMFIllegalStateException;
 import com.huawei.odmf.predicate.FetchRequest;
+import java.util.List;
 
 public class DatabaseQueryService {
     private static final int ODMF_ROWID_INDEX = 0;
@@ -42,6 +43,27 @@ public class DatabaseQueryService {
         return db.commonquery(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
     }
 
+    public static Cursor queryByRowIds(DataBase db, String tableName, List<Long> rowIds) {
+        if (db == null || tableName == null || tableName.equals("") || rowIds == null || rowIds.isEmpty()) {
+            throw new ODMFIllegalArgumentException("Some parameter is null");
+        } else if (!db.isOpen()) {
+            throw new ODMFIllegalStateException("The database has been closed");
+        } else {
+            int size = rowIds.size();
+            StringBuilder selection = new StringBuilder(getRowidColumnName()).append(" IN (");
+            String[] selectionArgs = new String[size];
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    selection.append(',');
+                }
+                selection.append('?');
+                selectionArgs[i] = String.valueOf(rowIds.get(i));
+            }
+            selection.append(')');
+            return db.query(tableName, new String[]{getRowidColumnName() + " AS " + getRowidColumnName(), "*"}, selection.toString(), selectionArgs, null, null, null, null);
+        }
+    }
+
     public static Cursor queryRowID(DataBase db, String tableName, FetchRequest request) {
         checkParam(db, tableName, request);
         return db.query(false, tableName, request.getIsJoined() ? new String[]{(tableName.split("\\s+")[0] + "." + getRowidColumnName()) + " AS " + getRowidColumnName()} : new String[]{getRowidColumnName() + " AS " + getRowidColumnName()}, request.getSqlRequest() == null ? null : request.getSqlRequest().toString(), request.getSelectionArgs() == null ? null : request.getSelectionArgs(), null, null, (request.getOrder() == null || request.getOrder().toString().equals("")) ? null : request.getOrder().toString(), (request.getLimit() == null || request.getLimit().equals("")) ? null : request.getLimit());
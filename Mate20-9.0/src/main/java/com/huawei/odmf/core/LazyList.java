@@ -14,12 +14,17 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 public class LazyList<E> implements List<E> {
+    private static final int DEFAULT_PREFETCH_WINDOW = 32;
+    private static final int MAX_PREFETCH_WINDOW = 256;
+    private static final int MIN_PREFETCH_WINDOW = 8;
     private int arraySize;
     private ManagedObject baseObj;
     private String entityName;
+    private int lastAccessIndex;
     private List<E> lazyInsertList;
     private List<E> lazyRemoveList;
     /* access modifiers changed from: private */
@@ -28,7 +33,12 @@ public class LazyList<E> implements List<E> {
     public transient int modCount;
     private AObjectContext objectContext;
     private List<ObjectId> objectIDList;
+    private boolean prefetchEnabled;
+    private int prefetchWindow;
     private int relationshipIndex;
+    private ManagedObject[] window;
+    private int windowModCount;
+    private int windowStart;
 
     private class LazyIterator implements Iterator<E> {
         int cursor;
@@ -159,6 +169,12 @@ public class LazyList<E> implements List<E> {
         this.modCount = 0;
         this.baseObj = null;
         this.relationshipIndex = -1;
+        this.prefetchEnabled = false;
+        this.prefetchWindow = DEFAULT_PREFETCH_WINDOW;
+        this.lastAccessIndex = -1;
+        this.window = null;
+        this.windowStart = -1;
+        this.windowModCount = -1;
         if (objectContext2 == null || objectIDList2 == null || entityName2 == null) {
             throw new ODMFIllegalArgumentException("When new LazyList, at least one parameter is null");
         }
@@ -181,11 +197,66 @@ public class LazyList<E> implements List<E> {
         this.relationshipIndex = relationshipIndex2;
     }
 
+    public boolean isPrefetchEnabled() {
+        return this.prefetchEnabled;
+    }
+
+    public void setPrefetchEnabled(boolean prefetchEnabled2) {
+        this.prefetchEnabled = prefetchEnabled2;
+        this.prefetchWindow = DEFAULT_PREFETCH_WINDOW;
+        this.lastAccessIndex = -1;
+        invalidateWindow();
+    }
+
     public E get(int index) {
-        if (index >= 0 && index < this.listSize) {
+        if (index < 0 || index >= this.listSize) {
+            throw new IndexOutOfBoundsException("index < 0 || index >= listSize");
+        } else if (!this.prefetchEnabled) {
             return getObject(this.objectIDList.get(index));
+        } else {
+            if (!isInWindow(index)) {
+                fillWindow(index);
+            }
+            ManagedObject object = this.window[index - this.windowStart];
+            if (object == null) {
+                object = getObject(this.objectIDList.get(index));
+            }
+            this.lastAccessIndex = index;
+            return (E) object;
         }
-        throw new IndexOutOfBoundsException("index < 0 || index >= listSize");
+    }
+
+    private boolean isInWindow(int index) {
+        return this.window != null && this.windowModCount == this.modCount && index >= this.windowStart && index < this.windowStart + this.window.length;
+    }
+
+    private void fillWindow(int index) {
+        int start;
+        if (this.lastAccessIndex < 0 || Math.abs(index - this.lastAccessIndex) != 1) {
+            this.prefetchWindow = Math.max(this.prefetchWindow / 2, MIN_PREFETCH_WINDOW);
+        } else {
+            this.prefetchWindow = Math.min(this.prefetchWindow * 2, MAX_PREFETCH_WINDOW);
+        }
+        if (index == this.lastAccessIndex - 1) {
+            start = Math.max(0, (index - this.prefetchWindow) + 1);
+        } else {
+            start = index;
+        }
+        int end = Math.min(this.listSize, this.prefetchWindow + start);
+        Map<ObjectId, ManagedObject> objects = this.objectContext.getObjects(new ArrayList(this.objectIDList.subList(start, end)));
+        ManagedObject[] window2 = new ManagedObject[(end - start)];
+        for (int i = 0; i < window2.length; i++) {
+            window2[i] = objects.get(this.objectIDList.get(start + i));
+        }
+        this.window = window2;
+        this.windowStart = start;
+        this.windowModCount = this.modCount;
+    }
+
+    private void invalidateWindow() {
+        this.window = null;
+        this.windowStart = -1;
+        this.windowModCount = -1;
     }
 
     public int size() {
@@ -371,6 +442,7 @@ public class LazyList<E> implements List<E> {
         }
         checkValue(o);
         addUpdate();
+        invalidateWindow();
         E object = getObject(this.objectIDList.set(index, ((ManagedObject) o).getObjectId()));
         insertRemove(object);
         insertAdd(o);
@@ -176,6 +176,17 @@ public class PersistentStore {
         throw new ODMFUnsupportedOperationException("The persistentStore not support the method getObjectValues ");
     }
 
+    protected Map<ObjectId, ManagedObject> getObjectsValues(List<ObjectId> objectIds) {
+        Map<ObjectId, ManagedObject> results = new HashMap<>(objectIds.size() * 2);
+        for (ObjectId objectId : objectIds) {
+            ManagedObject object = getObjectValues(objectId);
+            if (object != null) {
+                results.put(objectId, object);
+            }
+        }
+        return results;
+    }
+
     /* access modifiers changed from: protected */
     public List<ObjectId> getRelationshipObjectId(ObjectId objectId, Relationship relationship) {
         throw new ODMFUnsupportedOperationException("The persistentStore not support the method getRelationshipObjectId ");
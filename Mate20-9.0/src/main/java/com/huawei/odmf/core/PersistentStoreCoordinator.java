@@ -10,9 +10,11 @@ import com.huawei.odmf.model.api.Attribute;
 import com.huawei.odmf.predicate.FetchRequest;
 import com.huawei.odmf.predicate.SaveRequest;
 import com.huawei.odmf.user.api.ObjectContext;
+import com.huawei.odmf.utils.Cache;
 import com.huawei.odmf.utils.LOG;
-import com.huawei.odmf.utils.ODMFCache;
 import com.huawei.odmf.utils.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +33,7 @@ public final class PersistentStoreCoordinator {
     private final ConcurrentHashMap<ObjectContext, PersistentStore> mapContextToPersistentStore;
     private final ConcurrentHashMap<String, PersistentStore> mapUriToPersistentStore;
     private NotifyManager notifyManager;
-    private ODMFCache<ObjectId, ManagedObject> objectsCache;
+    private volatile Cache<ObjectId, ManagedObject> objectsCache;
     private final Object persistentStoreLock;
 
     /* access modifiers changed from: protected */
@@ -52,7 +54,7 @@ public final class PersistentStoreCoordinator {
         this.cacheLock = new Object();
         CacheConfig cacheConfig = CacheConfig.getDefault();
         if (cacheConfig.isOpenObjectCache()) {
-            this.objectsCache = new ODMFCache<>(cacheConfig.getObjectCacheNum());
+            this.objectsCache = cacheConfig.newObjectsCache();
         }
         this.notifyManager = new NotifyManager();
     }
@@ -402,7 +404,7 @@ public final class PersistentStoreCoordinator {
     }
 
     private void successFinishWork(SaveRequest saveRequest) {
-        if (CacheConfig.getDefault().isOpenObjectCache()) {
+        if (this.objectsCache != null) {
             for (ManagedObject tItDeleted : saveRequest.getDeletedObjects()) {
                 removeObjectIntoCache(tItDeleted);
             }
@@ -439,6 +441,35 @@ public final class PersistentStoreCoordinator {
         return object;
     }
 
+    Map<ObjectId, ManagedObject> getObjectsValues(List<ObjectId> objectIDs, ObjectContext objectContext) {
+        Map<ObjectId, ManagedObject> results = new HashMap<>(objectIDs.size() * 2);
+        List<ObjectId> missIDs = new ArrayList<>();
+        PersistentStore ps = getPersistentStore(objectContext);
+        for (ObjectId objectID : objectIDs) {
+            if (objectID != null) {
+                ManagedObject cacheObject = getObjectFromCache(objectID);
+                if (cacheObject == null || (cacheObject.isDirty() && cacheObject.getLastObjectContext() != objectContext)) {
+                    if (!objectID.getUriString().equals(ps.getUriString())) {
+                        objectID.setUriString(ps.getUriString());
+                    }
+                    missIDs.add(objectID);
+                } else {
+                    results.put(objectID, cacheObject);
+                }
+            }
+        }
+        if (missIDs.isEmpty()) {
+            return results;
+        }
+        for (Map.Entry<ObjectId, ManagedObject> entry : ps.getObjectsValues(missIDs).entrySet()) {
+            ManagedObject object = entry.getValue();
+            object.setState(4);
+            object.setObjectContext(objectContext);
+            results.put(entry.getKey(), object);
+        }
+        return results;
+    }
+
     /* access modifiers changed from: protected */
     public void beginTransaction(ObjectContext context) {
         getPersistentStore(context).beginTransaction();
@@ -537,7 +568,7 @@ public final class PersistentStoreCoordinator {
     }
 
     /* access modifiers changed from: package-private */
-    public ODMFCache<ObjectId, ManagedObject> getObjectsCache() {
+    public Cache<ObjectId, ManagedObject> getObjectsCache() {
         return this.objectsCache;
     }
 
@@ -550,18 +581,36 @@ public final class PersistentStoreCoordinator {
             if (this.objectsCache == null) {
                 CacheConfig cacheConfig = CacheConfig.getDefault();
                 if (cacheConfig.isOpenObjectCache()) {
-                    this.objectsCache = new ODMFCache<>(cacheConfig.getObjectCacheNum());
+                    this.objectsCache = cacheConfig.newObjectsCache();
                 }
             }
         }
     }
 
+    /**
+     * Swaps in a new, empty cache built from the current {@link CacheConfig}. The new cache is
+     * built first, so readers never see a null cache while it is open.
+     */
+    void recreateObjectsCache() {
+        Cache<ObjectId, ManagedObject> cache = CacheConfig.getDefault().newObjectsCache();
+        synchronized (this.cacheLock) {
+            this.objectsCache = cache;
+        }
+    }
+
+    void closeObjectsCache() {
+        synchronized (this.cacheLock) {
+            this.objectsCache = null;
+        }
+    }
+
     /* access modifiers changed from: package-private */
     public void putObjectIntoCache(ManagedObject managedObject) {
-        if (CacheConfig.getDefault().isOpenObjectCache()) {
-            ManagedObject temp = this.objectsCache.get(managedObject.getObjectId());
+        Cache<ObjectId, ManagedObject> cache = this.objectsCache;
+        if (cache != null) {
+            ManagedObject temp = cache.get(managedObject.getObjectId());
             if (temp == null || !temp.isDirty()) {
-                this.objectsCache.put(managedObject.getObjectId(), managedObject);
+                cache.put(managedObject.getObjectId(), managedObject);
                 managedObject.setDirty(1);
             }
         }
@@ -569,16 +618,18 @@ public final class PersistentStoreCoordinator {
 
     /* access modifiers changed from: package-private */
     public ManagedObject getObjectFromCache(ObjectId objectId) {
-        if (CacheConfig.getDefault().isOpenObjectCache()) {
-            return this.objectsCache.get(objectId);
+        Cache<ObjectId, ManagedObject> cache = this.objectsCache;
+        if (cache != null) {
+            return cache.get(objectId);
         }
         return null;
     }
 
     /* access modifiers changed from: package-private */
     public void removeObjectIntoCache(ManagedObject managedObject) {
-        if (CacheConfig.getDefault().isOpenObjectCache()) {
-            this.objectsCache.remove(managedObject.getObjectId());
+        Cache<ObjectId, ManagedObject> cache = this.objectsCache;
+        if (cache != null) {
+            cache.remove(managedObject.getObjectId());
         }
     }
 
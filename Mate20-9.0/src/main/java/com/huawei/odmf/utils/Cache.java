@@ -9,6 +9,12 @@ public interface Cache<K, V> {
 
     V get(K k);
 
+    long getEvictionCount();
+
+    long getHitCount();
+
+    long getMissCount();
+
     V put(K k, V v);
 
     V remove(K k);
@@ -8,6 +8,7 @@ public class ODMFCache<K, V> implements Cache<K, V> {
     private int DEFAULT_TABLE_SIZE;
     /* access modifiers changed from: private */
     public int currentNum;
+    private int evictionCount;
     private int hitCount;
     private final Object lock;
     private LinkedHashMap<K, V> map;
@@ -33,6 +34,7 @@ public class ODMFCache<K, V> implements Cache<K, V> {
                 boolean b = ODMFCache.this.currentNum >= ODMFCache.this.maxNum;
                 if (b) {
                     ODMFCache.access$010(ODMFCache.this);
+                    ODMFCache.this.evictionCount++;
                 }
                 return b;
             }
@@ -56,6 +58,7 @@ public class ODMFCache<K, V> implements Cache<K, V> {
                 boolean b = ODMFCache.this.currentNum >= i;
                 if (b) {
                     ODMFCache.access$010(ODMFCache.this);
+                    ODMFCache.this.evictionCount++;
                 }
                 return b;
             }
@@ -109,6 +112,7 @@ public class ODMFCache<K, V> implements Cache<K, V> {
     public boolean clear() {
         synchronized (this.lock) {
             this.currentNum = 0;
+            this.evictionCount = 0;
             this.hitCount = 0;
             this.missCount = 0;
             this.map.clear();
@@ -154,6 +158,30 @@ public class ODMFCache<K, V> implements Cache<K, V> {
         return contains;
     }
 
+    public long getHitCount() {
+        long j;
+        synchronized (this.lock) {
+            j = (long) this.hitCount;
+        }
+        return j;
+    }
+
+    public long getMissCount() {
+        long j;
+        synchronized (this.lock) {
+            j = (long) this.missCount;
+        }
+        return j;
+    }
+
+    public long getEvictionCount() {
+        long j;
+        synchronized (this.lock) {
+            j = (long) this.evictionCount;
+        }
+        return j;
+    }
+
     public int getHitRate() {
         int hitPercent;
         synchronized (this.lock) {
@@ -0,0 +1,371 @@
+package com.huawei.odmf.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Striped cache with W-TinyLFU admission.
+ *
+ * Keys are spread over independently locked segments. Each segment keeps a small LRU admission
+ * window in front of a main LRU region; an entry leaving the window only replaces the main
+ * region's eldest entry when a per segment count-min sketch says it is accessed more often.
+ * Capacity is measured in weight units, one per entry unless a {@link Weigher} is supplied.
+ * The sketch is sized by entry count: up front when every entry weighs one, and grown with the
+ * number of entries a segment actually holds when they are weighed.
+ */
+public class ODMFConcurrentCache<K, V> implements Cache<K, V> {
+    private static final int MAX_SEGMENTS = 8;
+    private static final int MIN_SKETCH_ENTRIES = 16;
+    private static final int WINDOW_PERCENT = 1;
+    private final AtomicLong evictionCount;
+    private final AtomicLong hitCount;
+    private final long maxWeight;
+    private final AtomicLong missCount;
+    private final int segmentMask;
+    private final Segment<K, V>[] segments;
+    private final Weigher<? super K, ? super V> weigher;
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        int weight;
+
+        Node(K key2, V value2, int weight2) {
+            this.key = key2;
+            this.value = value2;
+            this.weight = weight2;
+        }
+    }
+
+    private static final class FrequencySketch {
+        private static final long RESET_MASK = 8608480567731124087L;
+        private static final long[] SEED = {-4348849565147123417L, -5435081209227447693L, -7286425919675154353L, -3750763034362895579L};
+        private int additions;
+        private int sampleSize;
+        private long[] table;
+        private int tableMask;
+
+        FrequencySketch(long maxEntries) {
+            ensureCapacity(maxEntries);
+        }
+
+        /**
+         * Grows the table so it holds {@code maxEntries} without saturating. The counts are
+         * dropped when it does, they have to be rebuilt from fresh accesses anyway.
+         */
+        void ensureCapacity(long maxEntries) {
+            int capacity = (int) Math.min(Math.max(maxEntries, (long) MIN_SKETCH_ENTRIES), 1073741824);
+            if (this.table == null || this.table.length < capacity) {
+                this.table = new long[Integer.highestOneBit(capacity - 1) << 1];
+                this.tableMask = this.table.length - 1;
+                this.sampleSize = capacity * 10;
+                this.additions = 0;
+            }
+        }
+
+        int frequency(Object e) {
+            int hash = ODMFConcurrentCache.spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, (int) ((this.table[indexOf(hash, i)] >>> ((start + i) << 2)) & 15));
+            }
+            return frequency;
+        }
+
+        void increment(Object e) {
+            int hash = ODMFConcurrentCache.spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                long mask = 15L << ((start + i) << 2);
+                if ((this.table[index] & mask) != mask) {
+                    long[] jArr = this.table;
+                    jArr[index] = jArr[index] + (1L << ((start + i) << 2));
+                    added = true;
+                }
+            }
+            if (added) {
+                int i2 = this.additions + 1;
+                this.additions = i2;
+                if (i2 >= this.sampleSize) {
+                    for (int i3 = 0; i3 < this.table.length; i3++) {
+                        this.table[i3] = (this.table[i3] >>> 1) & RESET_MASK;
+                    }
+                    this.additions /= 2;
+                }
+            }
+        }
+
+        private int indexOf(int item, int i) {
+            long hash = (((long) item) + SEED[i]) * SEED[i];
+            return ((int) ((hash >>> 32) + hash)) & this.tableMask;
+        }
+    }
+
+    private static final class Segment<K, V> {
+        private final ODMFConcurrentCache<K, V> cache;
+        private final LinkedHashMap<K, Node<K, V>> main = new LinkedHashMap<>(16, 0.75f, true);
+        private final long mainMax;
+        private long mainWeight;
+        private final FrequencySketch sketch;
+        private final LinkedHashMap<K, Node<K, V>> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final long windowMax;
+        private long windowWeight;
+
+        Segment(ODMFConcurrentCache<K, V> cache2, long maxWeight, long expectedEntries) {
+            this.cache = cache2;
+            this.windowMax = Math.max(1, (((long) WINDOW_PERCENT) * maxWeight) / 100);
+            this.mainMax = Math.max(0, maxWeight - this.windowMax);
+            this.sketch = new FrequencySketch(expectedEntries);
+        }
+
+        synchronized V get(K key) {
+            this.sketch.increment(key);
+            Node<K, V> node = this.window.get(key);
+            if (node == null) {
+                node = this.main.get(key);
+            }
+            if (node != null) {
+                return node.value;
+            }
+            return null;
+        }
+
+        synchronized V put(K key, V value, int weight) {
+            this.sketch.increment(key);
+            Node<K, V> old = removeNode(key);
+            V previous = old != null ? old.value : null;
+            if (((long) weight) > this.windowMax + this.mainMax) {
+                this.cache.evictionCount.incrementAndGet();
+                return previous;
+            }
+            this.window.put(key, new Node<>(key, value, weight));
+            this.windowWeight += (long) weight;
+            this.sketch.ensureCapacity((long) (this.window.size() + this.main.size()));
+            while (this.windowWeight > this.windowMax && !this.window.isEmpty()) {
+                Iterator<Node<K, V>> it = this.window.values().iterator();
+                Node<K, V> candidate = it.next();
+                it.remove();
+                this.windowWeight -= (long) candidate.weight;
+                admit(candidate);
+            }
+            return previous;
+        }
+
+        private void admit(Node<K, V> candidate) {
+            int candidateFrequency = this.sketch.frequency(candidate.key);
+            while (this.mainWeight + ((long) candidate.weight) > this.mainMax) {
+                if (this.main.isEmpty()) {
+                    this.cache.evictionCount.incrementAndGet();
+                    return;
+                }
+                Iterator<Node<K, V>> it = this.main.values().iterator();
+                Node<K, V> victim = it.next();
+                if (candidateFrequency <= this.sketch.frequency(victim.key)) {
+                    this.cache.evictionCount.incrementAndGet();
+                    return;
+                }
+                it.remove();
+                this.mainWeight -= (long) victim.weight;
+                this.cache.evictionCount.incrementAndGet();
+            }
+            this.main.put(candidate.key, candidate);
+            this.mainWeight += (long) candidate.weight;
+        }
+
+        private Node<K, V> removeNode(K key) {
+            Node<K, V> node = this.window.remove(key);
+            if (node != null) {
+                this.windowWeight -= (long) node.weight;
+                return node;
+            }
+            Node<K, V> node2 = this.main.remove(key);
+            if (node2 != null) {
+                this.mainWeight -= (long) node2.weight;
+            }
+            return node2;
+        }
+
+        synchronized V remove(K key) {
+            Node<K, V> node = removeNode(key);
+            if (node != null) {
+                return node.value;
+            }
+            return null;
+        }
+
+        synchronized void clear() {
+            this.window.clear();
+            this.main.clear();
+            this.windowWeight = 0;
+            this.mainWeight = 0;
+        }
+
+        synchronized boolean containsKey(K key) {
+            return this.window.containsKey(key) || this.main.containsKey(key);
+        }
+
+        synchronized boolean containsValue(V value) {
+            if (containsValue(this.window, value) || containsValue(this.main, value)) {
+                return true;
+            }
+            return false;
+        }
+
+        private static <K, V> boolean containsValue(Map<K, Node<K, V>> map, V value) {
+            for (Node<K, V> node : map.values()) {
+                if (value.equals(node.value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int size() {
+            return this.window.size() + this.main.size();
+        }
+
+        synchronized long weight() {
+            return this.windowWeight + this.mainWeight;
+        }
+    }
+
+    public ODMFConcurrentCache(int maxNum) {
+        this((long) maxNum, null);
+    }
+
+    public ODMFConcurrentCache(long maxWeight2, Weigher<? super K, ? super V> weigher2) {
+        this.evictionCount = new AtomicLong();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        if (maxWeight2 <= 0) {
+            throw new IllegalArgumentException("maxNum<=0||maxSize <= 0");
+        }
+        this.maxWeight = maxWeight2;
+        this.weigher = weigher2;
+        int segmentCount = (int) Math.min(Long.highestOneBit(maxWeight2), (long) MAX_SEGMENTS);
+        this.segmentMask = segmentCount - 1;
+        this.segments = new Segment[segmentCount];
+        long segmentWeight = maxWeight2 / ((long) segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>(this, segmentWeight, weigher2 == null ? segmentWeight : (long) MIN_SKETCH_ENTRIES);
+        }
+    }
+
+    static int spread(int hash) {
+        int h = -1640531527 * hash;
+        return (h >>> 16) ^ h;
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        return this.segments[spread(key.hashCode()) & this.segmentMask];
+    }
+
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("key == null || value == null");
+        }
+        int weight = 1;
+        if (this.weigher != null) {
+            weight = this.weigher.weigh(key, value);
+            if (weight < 0) {
+                throw new IllegalArgumentException("weight < 0");
+            }
+        }
+        return segmentFor(key).put(key, value, weight);
+    }
+
+    public V get(K key) {
+        if (key != null) {
+            V value = segmentFor(key).get(key);
+            if (value != null) {
+                this.hitCount.incrementAndGet();
+            } else {
+                this.missCount.incrementAndGet();
+            }
+            return value;
+        }
+        throw new IllegalArgumentException("key == null");
+    }
+
+    public final V remove(K key) {
+        if (key != null) {
+            return segmentFor(key).remove(key);
+        }
+        throw new NullPointerException("key == null");
+    }
+
+    public boolean clear() {
+        for (Segment<K, V> segment : this.segments) {
+            segment.clear();
+        }
+        this.hitCount.set(0);
+        this.missCount.set(0);
+        this.evictionCount.set(0);
+        return true;
+    }
+
+    public int capacity() {
+        return (int) Math.min(this.maxWeight, 2147483647L);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long weight() {
+        long weight = 0;
+        for (Segment<K, V> segment : this.segments) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    public boolean containsKey(K key) {
+        if (key != null) {
+            return segmentFor(key).containsKey(key);
+        }
+        throw new IllegalArgumentException("key == null || value == null");
+    }
+
+    public boolean containsValue(V value) {
+        if (value != null) {
+            for (Segment<K, V> segment : this.segments) {
+                if (segment.containsValue(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        throw new IllegalArgumentException("key == null || value == null");
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    public int getHitRate() {
+        long hits = this.hitCount.get();
+        long accesses = this.missCount.get() + hits;
+        if (accesses != 0) {
+            return (int) ((100 * hits) / accesses);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,5 @@
+package com.huawei.odmf.utils;
+
+public interface Weigher<K, V> {
+    int weigh(K k, V v);
+}
@@ -0,0 +1,31 @@
+#!/bin/sh
+#
+# Regenerates the binary tables under data/etc from the framework sources they are derived
+# from. The generators use package private hooks of the classes they read, so they are run
+# against the framework classes of a build.
+#
+# usage: tools/gen_etc_assets.sh <framework classes.jar>
+
+set -e
+
+if [ $# -ne 1 ]; then
+    echo "usage: $0 <framework classes.jar>" >&2
+    exit 2
+fi
+
+FRAMEWORK_JAR="$1"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+SRC="$ROOT/src/main/java"
+OUT="$(mktemp -d)"
+trap 'rm -rf "$OUT"' EXIT
+
+javac -nowarn -cp "$FRAMEWORK_JAR" -d "$OUT" \
+    "$ROOT/tools/timezonegrid/src/com/android/internal/telephony/latlongtotimezone/TimezoneGridGenerator.java"
+java -cp "$OUT:$FRAMEWORK_JAR" com.android.internal.telephony.latlongtotimezone.TimezoneGridGenerator \
+    "$SRC/com/android/internal/telephony/latlongtotimezone/TimezoneMapper.java" \
+    "$ROOT/data/etc/timezone_grid.bin"
+
+javac -nowarn -cp "$FRAMEWORK_JAR" -d "$OUT" \
+    "$ROOT/tools/imonitorschema/src/android/util/IMonitorSchemaGenerator.java"
+java -cp "$OUT:$FRAMEWORK_JAR" android.util.IMonitorSchemaGenerator \
+    "$ROOT/data/etc/imonitor_schema.bin"
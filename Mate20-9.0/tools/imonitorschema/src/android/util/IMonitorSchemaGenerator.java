@@ -0,0 +1,142 @@
+package android.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the {@link IMonitorSchema} asset, data/etc/imonitor_schema.bin, from the generated
+ * {@link IMonitorKeys} constants.
+ *
+ * Every constant is named E&lt;eventId&gt;_&lt;FIELD&gt;_&lt;TYPE&gt;, so the event id and
+ * the upper cased field name are recovered from the name and the parameter id is its value. A
+ * field that appears twice in one event with different ids is left out of the table, so lookups
+ * of it keep failing instead of returning the wrong id. Every other constant is then looked up
+ * again through the encoded table, in upper and lower case, and the generator fails if any of
+ * them does not resolve to its own value.
+ *
+ * Run on the host through tools/gen_etc_assets.sh.
+ */
+public final class IMonitorSchemaGenerator {
+    private static final Pattern KEY = Pattern.compile("E([0-9]+)_([A-Z0-9_]+)_(?:INT|VARCHAR|SMALLINT|TINYINT|CLASS|DATETIME|BIT|FLOAT)");
+
+    private IMonitorSchemaGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException, IllegalAccessException {
+        if (args.length != 1) {
+            System.err.println("usage: IMonitorSchemaGenerator <output file>");
+            System.exit(2);
+        }
+        TreeMap<Integer, TreeMap<String, Short>> events = new TreeMap<>();
+        ArrayList<String> conflicts = new ArrayList<>();
+        int skipped = 0;
+        for (Field field : IMonitorKeys.class.getDeclaredFields()) {
+            Matcher m = KEY.matcher(field.getName());
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != Short.TYPE || !m.matches()) {
+                skipped++;
+                continue;
+            }
+            long eventId = Long.parseLong(m.group(1));
+            if (eventId > 2147483647L) {
+                skipped++;
+                continue;
+            }
+            Integer event = Integer.valueOf((int) eventId);
+            TreeMap<String, Short> fields = events.get(event);
+            if (fields == null) {
+                fields = new TreeMap<>();
+                events.put(event, fields);
+            }
+            String name = m.group(2);
+            Short paramId = Short.valueOf(field.getShort(null));
+            Short previous = fields.put(name, paramId);
+            if (previous != null && !previous.equals(paramId)) {
+                conflicts.add(field.getName());
+            }
+        }
+        for (String key : conflicts) {
+            Matcher m = KEY.matcher(key);
+            m.matches();
+            events.get(Integer.valueOf(m.group(1))).remove(m.group(2));
+        }
+        int fieldCount = 0;
+        for (TreeMap<String, Short> fields : events.values()) {
+            fieldCount += fields.size();
+        }
+        byte[] asset = encode(events, fieldCount);
+        int mismatches = verify(new IMonitorSchema(ByteBuffer.wrap(asset)), events);
+        if (mismatches > 0) {
+            System.err.println(mismatches + " of " + fieldCount + " keys do not resolve to their id");
+            System.exit(1);
+        }
+        FileOutputStream out = new FileOutputStream(args[0]);
+        try {
+            out.write(asset);
+        } finally {
+            out.close();
+        }
+        System.out.println("wrote " + asset.length + " bytes, " + events.size() + " events, " + fieldCount + " fields, " + conflicts.size() + " conflicting and " + skipped + " unparsable keys left out");
+    }
+
+    /**
+     * Field names are sorted by their ASCII bytes, which is the String order for them, so the
+     * per event binary search of {@link IMonitorSchema} can run over them.
+     */
+    private static byte[] encode(TreeMap<Integer, TreeMap<String, Short>> events, int fieldCount) throws IOException {
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ArrayList<int[]> fields = new ArrayList<>();
+        out.writeInt(IMonitorSchema.MAGIC);
+        out.writeInt(IMonitorSchema.VERSION);
+        out.writeInt(events.size());
+        out.writeInt(fieldCount);
+        int nameBytesPos = out.size();
+        out.writeInt(0);
+        for (Map.Entry<Integer, TreeMap<String, Short>> event : events.entrySet()) {
+            out.writeInt(event.getKey().intValue());
+            out.writeInt(fields.size());
+            out.writeInt(event.getValue().size());
+            for (Map.Entry<String, Short> field : event.getValue().entrySet()) {
+                byte[] name = field.getKey().getBytes(StandardCharsets.US_ASCII);
+                fields.add(new int[]{names.size(), name.length, field.getValue().shortValue()});
+                names.write(name);
+            }
+        }
+        for (int[] field : fields) {
+            out.writeInt(field[0]);
+            out.writeShort(field[1]);
+            out.writeShort(field[2]);
+        }
+        names.writeTo(out);
+        out.flush();
+        byte[] asset = bytes.toByteArray();
+        ByteBuffer.wrap(asset).putInt(nameBytesPos, names.size());
+        return asset;
+    }
+
+    private static int verify(IMonitorSchema schema, TreeMap<Integer, TreeMap<String, Short>> events) {
+        int mismatches = 0;
+        for (Map.Entry<Integer, TreeMap<String, Short>> event : events.entrySet()) {
+            int eventId = event.getKey().intValue();
+            for (Map.Entry<String, Short> field : event.getValue().entrySet()) {
+                short paramId = field.getValue().shortValue();
+                if (schema.find(eventId, field.getKey()) != paramId || schema.find(eventId, field.getKey().toLowerCase()) != paramId) {
+                    mismatches++;
+                }
+            }
+        }
+        return mismatches;
+    }
+}
@@ -0,0 +1,776 @@
+package com.android.internal.telephony.latlongtotimezone;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the {@link TimezoneGridIndex} asset, data/etc/timezone_grid.bin, from
+ * {@link TimezoneMapper}.
+ *
+ * The decision trees of TimezoneMapper.java, the main one and the dependency table it falls
+ * back to for unknown zones, are parsed into one graph of latitude, longitude and polygon
+ * tests. For every cell the tests that cannot change inside it are folded away: thresholds
+ * outside the cell, and polygons none of whose edges come near it, which are evaluated once at
+ * the cell centre. A cell left with a single zone resolves to it directly; any other cell gets
+ * a bucket with the remaining tests and the polygons they use clipped to the cell. The result is
+ * checked against the mapper at random points and around every polygon vertex, and the
+ * generator fails if any point differs or any cell defers.
+ *
+ * Run on the host through tools/gen_etc_assets.sh.
+ */
+public final class TimezoneGridGenerator {
+    private static final int AND = 4;
+    private static final float CELL_SIZE = 1.0f;
+    private static final float CLIP_MARGIN = 0.01f;
+    private static final int COLS = 360;
+    private static final Pattern IMPORT = Pattern.compile("^import ([\\w.]+);", Pattern.MULTILINE);
+    private static final float[] INSIDE = new float[0];
+    private static final String[] LEGACY_ZONES = {"unknown", "unusedtimezone"};
+    private static final Pattern METHOD = Pattern.compile("static int (\\w+)\\(float lat, float lng\\) \\{");
+    private static final float MIN_LAT = -90.0f;
+    private static final float MIN_LNG = -180.0f;
+    private static final int NOT = 3;
+    private static final int OR = 5;
+    private static final float[] OUTSIDE = new float[0];
+    private static final int ROWS = 180;
+    private static final Pattern TOKEN = Pattern.compile("\\s*(-?[0-9][0-9.]*(?:E-?[0-9]+)?f?|[A-Za-z_][\\w.]*|&&|\\|\\||>=|<=|[<>!?:;(){}\\[\\],.])");
+    private static final float[] VERTEX_OFFSETS = {-1.0E-5f, 0.0f, 1.0E-5f};
+    private static final int VERIFY_POINTS = 2000000;
+    private final ByteArrayOutputStream mBuckets = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream mCoords = new ByteArrayOutputStream();
+    private final HashMap<String, Node> mLeaves = new HashMap<>();
+    private final ByteArrayOutputStream mPolys = new ByteArrayOutputStream();
+    private final HashMap<String, Integer> mZoneIds = new HashMap<>();
+    private final ArrayList<String> mZones = new ArrayList<>();
+
+    /**
+     * A condition of the mapper source: a test with the op of the node it compiles to, or a
+     * NOT, AND or OR of conditions.
+     */
+    private static final class Cond {
+        final Cond left;
+        final int op;
+        final float[] points;
+        final Cond right;
+        final float threshold;
+
+        Cond(int op, float threshold, float[] points, Cond left, Cond right) {
+            this.op = op;
+            this.threshold = threshold;
+            this.points = points;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * A returned value of the mapper source: a zone index, a call, or a conditional expression.
+     */
+    private static final class Expr {
+        final String call;
+        final Cond cond;
+        final Expr ifFalse;
+        final Expr ifTrue;
+        final int zone;
+
+        Expr(int zone, String call, Cond cond, Expr ifTrue, Expr ifFalse) {
+            this.zone = zone;
+            this.call = call;
+            this.cond = cond;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+        }
+    }
+
+    /**
+     * A statement of the mapper source: an if statement, or a return if {@code cond} is null.
+     */
+    private static final class Stmt {
+        final Cond cond;
+        final List<Stmt> otherwise;
+        final List<Stmt> then;
+        final Expr value;
+
+        Stmt(Cond cond, List<Stmt> then, List<Stmt> otherwise, Expr value) {
+            this.cond = cond;
+            this.then = then;
+            this.otherwise = otherwise;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A node of the decision graph: a leaf if {@code zone} is set, otherwise a test with the
+     * op of {@link TimezoneGridIndex} and the nodes to continue at.
+     */
+    private static final class Node {
+        final Node ifFalse;
+        final Node ifTrue;
+        final int op;
+        final float[] points;
+        final float threshold;
+        final String zone;
+
+        Node(String zone) {
+            this.zone = zone;
+            this.op = -1;
+            this.threshold = 0.0f;
+            this.points = null;
+            this.ifTrue = null;
+            this.ifFalse = null;
+        }
+
+        Node(int op, float threshold, float[] points, Node ifTrue, Node ifFalse) {
+            this.zone = null;
+            this.op = op;
+            this.threshold = threshold;
+            this.points = points;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+        }
+    }
+
+    /**
+     * The methods of one decision tree in the mapper source and the polygons they test.
+     */
+    private final class Tree {
+        final HashMap<String, Integer> mBodies = new HashMap<>();
+        final HashMap<String, Node> mCompiled = new HashMap<>();
+        final Node mFallback;
+        final HashMap<String, String> mImports;
+        final float[][] mPolygons;
+        final String mSource;
+        final String[] mZones;
+        Matcher mTokens;
+
+        Tree(String source, int start, int end, HashMap<String, String> imports, float[][] polygons, String[] zones, Node fallback) {
+            this.mSource = source;
+            this.mImports = imports;
+            this.mPolygons = polygons;
+            this.mZones = zones;
+            this.mFallback = fallback;
+            Matcher m = METHOD.matcher(source);
+            m.region(start, end);
+            while (m.find()) {
+                this.mBodies.put(m.group(1), Integer.valueOf(m.end()));
+            }
+        }
+
+        Node method(String name) {
+            Node node = this.mCompiled.get(name);
+            if (node == null) {
+                Integer body = this.mBodies.get(name);
+                if (body == null) {
+                    throw new IllegalArgumentException("no method " + name);
+                }
+                this.mTokens = TOKEN.matcher(this.mSource);
+                this.mTokens.region(body.intValue(), this.mSource.length());
+                node = compileBlock(parseBlock(), 0, null);
+                this.mCompiled.put(name, node);
+            }
+            return node;
+        }
+
+        private Node compileBlock(List<Stmt> stmts, int i, Node next) {
+            if (i == stmts.size()) {
+                return next;
+            }
+            Stmt stmt = stmts.get(i);
+            if (stmt.cond == null) {
+                return compileExpr(stmt.value);
+            }
+            Node rest = compileBlock(stmts, i + 1, next);
+            return compileCond(stmt.cond, compileBlock(stmt.then, 0, rest), stmt.otherwise == null ? rest : compileBlock(stmt.otherwise, 0, rest));
+        }
+
+        private Node compileExpr(Expr expr) {
+            if (expr.cond != null) {
+                return compileCond(expr.cond, compileExpr(expr.ifTrue), compileExpr(expr.ifFalse));
+            }
+            if (expr.call != null) {
+                return method(expr.call);
+            }
+            String zone = this.mZones[expr.zone];
+            if (this.mFallback != null && (zone == null || Arrays.asList(LEGACY_ZONES).contains(zone))) {
+                return this.mFallback;
+            }
+            return leaf(zone);
+        }
+
+        private List<Stmt> parseBlock() {
+            ArrayList<Stmt> stmts = new ArrayList<>();
+            while (!"}".equals(peek())) {
+                stmts.add(parseStmt());
+            }
+            expect("}");
+            return stmts;
+        }
+
+        private List<Stmt> parseBody() {
+            if (!"{".equals(peek())) {
+                return Collections.singletonList(parseStmt());
+            }
+            expect("{");
+            return parseBlock();
+        }
+
+        private Stmt parseStmt() {
+            if ("return".equals(peek())) {
+                next();
+                Expr value = parseExpr();
+                expect(";");
+                return new Stmt(null, null, null, value);
+            }
+            expect("if");
+            expect("(");
+            Cond cond = parseOr();
+            expect(")");
+            List<Stmt> then = parseBody();
+            List<Stmt> otherwise = null;
+            if ("else".equals(peek())) {
+                next();
+                otherwise = parseBody();
+            }
+            return new Stmt(cond, then, otherwise, null);
+        }
+
+        private Expr parseExpr() {
+            String token = peek();
+            if (Character.isDigit(token.charAt(0))) {
+                return new Expr(Integer.parseInt(next()), null, null, null, null);
+            }
+            if (token.startsWith("call")) {
+                next();
+                expectArguments();
+                return new Expr(0, token, null, null, null);
+            }
+            if (token.indexOf('.') > 0) {
+                return new Expr(constant(next()), null, null, null, null);
+            }
+            Cond cond = parseOr();
+            expect("?");
+            Expr ifTrue = parseExpr();
+            expect(":");
+            return new Expr(0, null, cond, ifTrue, parseExpr());
+        }
+
+        private Cond parseOr() {
+            Cond cond = parseAnd();
+            while ("||".equals(peek())) {
+                next();
+                cond = new Cond(OR, 0.0f, null, cond, parseAnd());
+            }
+            return cond;
+        }
+
+        private Cond parseAnd() {
+            Cond cond = parseUnary();
+            while ("&&".equals(peek())) {
+                next();
+                cond = new Cond(AND, 0.0f, null, cond, parseUnary());
+            }
+            return cond;
+        }
+
+        private Cond parseUnary() {
+            String token = next();
+            if ("!".equals(token)) {
+                return new Cond(NOT, 0.0f, null, parseUnary(), null);
+            }
+            if ("(".equals(token)) {
+                Cond cond = parseOr();
+                expect(")");
+                return cond;
+            }
+            if ("poly".equals(token)) {
+                expect("[");
+                float[] points = this.mPolygons[Integer.parseInt(next())];
+                expect("]");
+                expect(".");
+                expect("contains");
+                expectArguments();
+                return new Cond(TimezoneGridIndex.NODE_POLY, 0.0f, points, null, null);
+            }
+            int op;
+            if ("lat".equals(token)) {
+                op = TimezoneGridIndex.NODE_LAT_BELOW;
+            } else if ("lng".equals(token)) {
+                op = TimezoneGridIndex.NODE_LNG_BELOW;
+            } else {
+                throw new IllegalArgumentException("unexpected " + token);
+            }
+            String comparison = next();
+            Cond below = new Cond(op, Float.parseFloat(next()), null, null, null);
+            if ("<".equals(comparison)) {
+                return below;
+            }
+            if (">=".equals(comparison)) {
+                return new Cond(NOT, 0.0f, null, below, null);
+            }
+            throw new IllegalArgumentException("unsupported comparison " + comparison);
+        }
+
+        /**
+         * Resolves a constant the decompiler substituted for a zone index, such as
+         * {@code HwHiCureDetection.CHINA_MCC}, through the imports of the source.
+         */
+        private int constant(String name) {
+            int field = name.lastIndexOf('.');
+            String[] classes = name.substring(0, field).split("\\.");
+            String className = this.mImports.get(classes[0]);
+            if (className == null) {
+                throw new IllegalArgumentException("unresolved constant " + name);
+            }
+            for (int i = 1; i < classes.length; i++) {
+                className = className + "$" + classes[i];
+            }
+            try {
+                return Class.forName(className).getField(name.substring(field + 1)).getInt(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("unresolved constant " + name, e);
+            }
+        }
+
+        private void expectArguments() {
+            expect("(");
+            expect("lat");
+            expect(",");
+            expect("lng");
+            expect(")");
+        }
+
+        private void expect(String token) {
+            String actual = next();
+            if (!token.equals(actual)) {
+                throw new IllegalArgumentException("expected " + token + " but got " + actual);
+            }
+        }
+
+        private String next() {
+            String token = peek();
+            this.mTokens.region(this.mTokens.end(), this.mSource.length());
+            return token;
+        }
+
+        private String peek() {
+            if (!this.mTokens.lookingAt()) {
+                throw new IllegalArgumentException("cannot parse at " + this.mTokens.regionStart());
+            }
+            return this.mTokens.group(1);
+        }
+    }
+
+    /**
+     * One cell and the polygons clipped to it so far.
+     */
+    private static final class Cell {
+        final IdentityHashMap<float[], float[]> mClipped = new IdentityHashMap<>();
+        final float mEast;
+        final IdentityHashMap<Node, Node> mFolded = new IdentityHashMap<>();
+        final float mNorth;
+        final float mSouth;
+        final float mWest;
+
+        Cell(int row, int col) {
+            this.mSouth = MIN_LAT + (((float) row) * CELL_SIZE);
+            this.mWest = MIN_LNG + (((float) col) * CELL_SIZE);
+            this.mNorth = this.mSouth + CELL_SIZE;
+            this.mEast = this.mWest + CELL_SIZE;
+        }
+    }
+
+    private TimezoneGridGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: TimezoneGridGenerator <TimezoneMapper.java> <output file>");
+            System.exit(2);
+        }
+        String source = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+        HashMap<String, String> imports = new HashMap<>();
+        Matcher m = IMPORT.matcher(source);
+        while (m.find()) {
+            imports.put(m.group(1).substring(m.group(1).lastIndexOf('.') + 1), m.group(1));
+        }
+        int dependencies = source.indexOf("private static class TimezoneMapperDependencies {");
+        if (dependencies < 0) {
+            System.err.println("no dependency table in " + args[0]);
+            System.exit(2);
+        }
+        int dependenciesEnd = source.indexOf('{', dependencies) + 1;
+        int depth = 1;
+        while (depth > 0) {
+            char c = source.charAt(dependenciesEnd);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+            dependenciesEnd++;
+        }
+        TimezoneGridGenerator generator = new TimezoneGridGenerator();
+        Node fallback = generator.new Tree(source, dependencies, dependenciesEnd, imports, TimezoneMapper.getDependencyPolygonPoints(), TimezoneGridIndex.DEPENDENCY_ZONES, null).method("getTzInt");
+        Node root = generator.new Tree(source, dependenciesEnd, source.length(), imports, TimezoneMapper.getPolygonPoints(), TimezoneMapper.timezoneStrings, fallback).method("getTzInt");
+        int[] cells = new int[(ROWS * COLS)];
+        int direct = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                Node node = fold(root, new Cell(row, col));
+                if (node.zone != null) {
+                    cells[(row * COLS) + col] = generator.zoneId(node.zone);
+                    direct++;
+                } else {
+                    cells[(row * COLS) + col] = -(generator.writeBucket(node) + 2);
+                }
+            }
+        }
+        byte[] asset = generator.encode(cells);
+        int mismatches = verify(new TimezoneGridIndex(ByteBuffer.wrap(asset)));
+        if (mismatches > 0) {
+            System.err.println(mismatches + " points differ from TimezoneMapper");
+            System.exit(1);
+        }
+        FileOutputStream out = new FileOutputStream(args[1]);
+        try {
+            out.write(asset);
+        } finally {
+            out.close();
+        }
+        System.out.println("wrote " + asset.length + " bytes, " + direct + " of " + cells.length + " cells resolve directly");
+    }
+
+    private Node leaf(String zone) {
+        Node node = this.mLeaves.get(zone);
+        if (node == null) {
+            node = new Node(zone);
+            this.mLeaves.put(zone, node);
+        }
+        return node;
+    }
+
+    private static Node compileCond(Cond cond, Node ifTrue, Node ifFalse) {
+        switch (cond.op) {
+            case NOT:
+                return compileCond(cond.left, ifFalse, ifTrue);
+            case AND:
+                return compileCond(cond.left, compileCond(cond.right, ifTrue, ifFalse), ifFalse);
+            case OR:
+                return compileCond(cond.left, ifTrue, compileCond(cond.right, ifTrue, ifFalse));
+            default:
+                return new Node(cond.op, cond.threshold, cond.points, ifTrue, ifFalse);
+        }
+    }
+
+    /**
+     * Returns the node with every test that has the same outcome anywhere in the cell replaced
+     * by that outcome, and every polygon it still tests clipped to the cell.
+     */
+    private static Node fold(Node node, Cell cell) {
+        if (node == null) {
+            throw new IllegalStateException("a method of the mapper can end without a return");
+        }
+        if (node.zone != null) {
+            return node;
+        }
+        Node folded = cell.mFolded.get(node);
+        if (folded != null) {
+            return folded;
+        }
+        float[] points = null;
+        Boolean outcome;
+        if (node.op == TimezoneGridIndex.NODE_POLY) {
+            points = clip(node.points, cell);
+            outcome = points == INSIDE ? Boolean.TRUE : points == OUTSIDE ? Boolean.FALSE : null;
+        } else if (node.op == TimezoneGridIndex.NODE_LAT_BELOW) {
+            outcome = below(node.threshold, cell.mSouth, cell.mNorth);
+        } else {
+            outcome = below(node.threshold, cell.mWest, cell.mEast);
+        }
+        if (outcome != null) {
+            folded = fold(outcome.booleanValue() ? node.ifTrue : node.ifFalse, cell);
+        } else {
+            Node ifTrue = fold(node.ifTrue, cell);
+            Node ifFalse = fold(node.ifFalse, cell);
+            folded = ifTrue == ifFalse ? ifTrue : new Node(node.op, node.threshold, points, ifTrue, ifFalse);
+        }
+        cell.mFolded.put(node, folded);
+        return folded;
+    }
+
+    /**
+     * Returns whether every coordinate between low and high, with a margin for the rounding of
+     * the cell lookup, is below the threshold, or null if that depends on the coordinate.
+     */
+    private static Boolean below(float threshold, float low, float high) {
+        if (threshold >= high + CLIP_MARGIN) {
+            return Boolean.TRUE;
+        }
+        if (threshold <= low - CLIP_MARGIN) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * Clips the polygon to the cell, or returns {@link #INSIDE} or {@link #OUTSIDE} if none of
+     * its edges come near the cell.
+     *
+     * The even-odd test only counts edges east of the point that span its latitude. Edges that
+     * are north or south of the cell, or west of it, therefore never count, and edges east of it
+     * count exactly when they span the latitude, so they only matter through how many of them
+     * span each latitude. Those are replaced by a few vertical edges east of the cell that span
+     * the latitudes where that number is odd. The remaining edges are kept as they are, so the
+     * test computes the same crossings as TzPolygon.contains.
+     */
+    private static float[] clip(float[] points, Cell cell) {
+        float[] clipped = cell.mClipped.get(points);
+        if (clipped != null) {
+            return clipped;
+        }
+        float bottom = cell.mSouth - CLIP_MARGIN;
+        float top = cell.mNorth + CLIP_MARGIN;
+        float left = cell.mWest - CLIP_MARGIN;
+        float right = cell.mEast + CLIP_MARGIN;
+        int n = points.length;
+        float[] edges = new float[(n * 2)];
+        int edgeLength = 0;
+        float[] ends = new float[n];
+        int endCount = 0;
+        float yj = points[n - 2];
+        float xj = points[n - 1];
+        for (int i = 0; i < n; i += 2) {
+            float yi = points[i];
+            float xi = points[i + 1];
+            if (Math.max(yi, yj) >= bottom && Math.min(yi, yj) <= top) {
+                if (Math.min(xi, xj) > right) {
+                    ends[endCount] = yi;
+                    ends[endCount + 1] = yj;
+                    endCount += 2;
+                } else if (Math.max(xi, xj) >= left) {
+                    edges[edgeLength] = yi;
+                    edges[edgeLength + 1] = xi;
+                    edges[edgeLength + 2] = yj;
+                    edges[edgeLength + 3] = xj;
+                    edgeLength += 4;
+                }
+            }
+            yj = yi;
+            xj = xi;
+        }
+        if (edgeLength == 0) {
+            clipped = contains(points, (cell.mSouth + cell.mNorth) / 2.0f, (cell.mWest + cell.mEast) / 2.0f) ? INSIDE : OUTSIDE;
+        } else {
+            Arrays.sort(ends, 0, endCount);
+            float east = cell.mEast + CELL_SIZE;
+            float start = 0.0f;
+            boolean odd = false;
+            int i = 0;
+            while (i < endCount) {
+                float y = ends[i];
+                int count = 0;
+                while (i < endCount && ends[i] == y) {
+                    count++;
+                    i++;
+                }
+                if (count % 2 != 0) {
+                    odd = !odd;
+                    if (odd) {
+                        start = y;
+                    } else {
+                        if (edgeLength + 4 > edges.length) {
+                            edges = Arrays.copyOf(edges, edges.length * 2);
+                        }
+                        edges[edgeLength] = start;
+                        edges[edgeLength + 1] = east;
+                        edges[edgeLength + 2] = y;
+                        edges[edgeLength + 3] = east;
+                        edgeLength += 4;
+                    }
+                }
+            }
+            clipped = Arrays.copyOf(edges, edgeLength);
+        }
+        cell.mClipped.put(points, clipped);
+        return clipped;
+    }
+
+    /**
+     * TzPolygon.contains on a whole polygon.
+     */
+    private static boolean contains(float[] points, float testy, float testx) {
+        int n = points.length;
+        float yj = points[n - 2];
+        float xj = points[n - 1];
+        boolean inside = false;
+        for (int i = 0; i < n; i += 2) {
+            float yi = points[i];
+            float xi = points[i + 1];
+            if ((yi > testy) != (yj > testy) && testx < ((((xj - xi) * (testy - yi)) / (yj - yi)) + xi) - 1.0E-4f) {
+                inside = !inside;
+            }
+            xj = xi;
+            yj = yi;
+        }
+        return inside;
+    }
+
+    private int zoneId(String zone) {
+        Integer id = this.mZoneIds.get(zone);
+        if (id == null) {
+            id = Integer.valueOf(this.mZones.size());
+            this.mZones.add(zone);
+            this.mZoneIds.put(zone, id);
+        }
+        return id.intValue();
+    }
+
+    /**
+     * Writes the nodes reachable from the root, parents before children, and returns the word
+     * offset of the root.
+     */
+    private int writeBucket(Node root) throws IOException {
+        ArrayList<Node> nodes = new ArrayList<>();
+        postOrder(root, new IdentityHashMap<Node, Boolean>(), nodes);
+        Collections.reverse(nodes);
+        int base = this.mBuckets.size() / 4;
+        IdentityHashMap<Node, Integer> offsets = new IdentityHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            offsets.put(nodes.get(i), Integer.valueOf((i * TimezoneGridIndex.NODE_STRIDE) + base));
+        }
+        IdentityHashMap<float[], Integer> polys = new IdentityHashMap<>();
+        DataOutputStream out = new DataOutputStream(this.mBuckets);
+        for (Node node : nodes) {
+            out.writeInt(node.op);
+            if (node.op == TimezoneGridIndex.NODE_POLY) {
+                Integer poly = polys.get(node.points);
+                if (poly == null) {
+                    poly = Integer.valueOf(writePoly(node.points));
+                    polys.put(node.points, poly);
+                }
+                out.writeInt(poly.intValue());
+            } else {
+                out.writeInt(Float.floatToIntBits(node.threshold));
+            }
+            out.writeInt(node.ifTrue.zone != null ? zoneId(node.ifTrue.zone) : -(offsets.get(node.ifTrue).intValue() + 1));
+            out.writeInt(node.ifFalse.zone != null ? zoneId(node.ifFalse.zone) : -(offsets.get(node.ifFalse).intValue() + 1));
+        }
+        out.flush();
+        return base;
+    }
+
+    private static void postOrder(Node node, IdentityHashMap<Node, Boolean> visited, List<Node> nodes) {
+        if (node.zone != null || visited.put(node, Boolean.TRUE) != null) {
+            return;
+        }
+        postOrder(node.ifTrue, visited, nodes);
+        postOrder(node.ifFalse, visited, nodes);
+        nodes.add(node);
+    }
+
+    private int writePoly(float[] edges) throws IOException {
+        int poly = this.mPolys.size() / (TimezoneGridIndex.POLY_STRIDE * 4);
+        DataOutputStream polys = new DataOutputStream(this.mPolys);
+        polys.writeInt(this.mCoords.size() / 4);
+        polys.writeInt(edges.length / TimezoneGridIndex.EDGE_STRIDE);
+        polys.flush();
+        DataOutputStream coords = new DataOutputStream(this.mCoords);
+        for (float coord : edges) {
+            coords.writeFloat(coord);
+        }
+        coords.flush();
+        return poly;
+    }
+
+    private byte[] encode(int[] cells) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(TimezoneGridIndex.MAGIC);
+        out.writeInt(TimezoneGridIndex.VERSION);
+        out.writeFloat(MIN_LAT);
+        out.writeFloat(MIN_LNG);
+        out.writeFloat(CELL_SIZE);
+        out.writeInt(ROWS);
+        out.writeInt(COLS);
+        out.writeInt(this.mZones.size());
+        for (String zone : this.mZones) {
+            byte[] name = zone.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+        }
+        out.writeInt(this.mPolys.size() / (TimezoneGridIndex.POLY_STRIDE * 4));
+        this.mPolys.writeTo(out);
+        out.writeInt(cells.length);
+        for (int cell : cells) {
+            out.writeInt(cell);
+        }
+        out.writeInt(this.mBuckets.size() / 4);
+        this.mBuckets.writeTo(out);
+        out.writeInt(this.mCoords.size() / 4);
+        this.mCoords.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns how many cell centres, random points and points around the polygon vertices, where
+     * the clipped polygons matter most, resolve differently than in the mapper or not at all.
+     */
+    private static int verify(TimezoneGridIndex index) {
+        int mismatches = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                if (differs(index, MIN_LAT + ((((float) row) + 0.5f) * CELL_SIZE), MIN_LNG + ((((float) col) + 0.5f) * CELL_SIZE))) {
+                    mismatches++;
+                }
+            }
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < VERIFY_POINTS; i++) {
+            if (differs(index, (random.nextFloat() * 180.0f) + MIN_LAT, (random.nextFloat() * 360.0f) + MIN_LNG)) {
+                mismatches++;
+            }
+        }
+        float maxLat = MIN_LAT + (((float) ROWS) * CELL_SIZE);
+        float maxLng = MIN_LNG + (((float) COLS) * CELL_SIZE);
+        ArrayList<float[]> polygons = new ArrayList<>(Arrays.asList(TimezoneMapper.getPolygonPoints()));
+        polygons.addAll(Arrays.asList(TimezoneMapper.getDependencyPolygonPoints()));
+        for (float[] points : polygons) {
+            if (points == null) {
+                continue;
+            }
+            for (int i = 0; i < points.length; i += 2) {
+                for (float dy : VERTEX_OFFSETS) {
+                    for (float dx : VERTEX_OFFSETS) {
+                        float lat = points[i] + dy;
+                        float lng = points[i + 1] + dx;
+                        if (lat >= MIN_LAT && lat < maxLat && lng >= MIN_LNG && lng < maxLng && differs(index, lat, lng)) {
+                            mismatches++;
+                        }
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    private static boolean differs(TimezoneGridIndex index, float lat, float lng) {
+        String zone = index.lookupZone(lat, lng);
+        return zone == null || !zone.equals(TimezoneMapper.latLngToTimezoneString((double) lat, (double) lng));
+    }
+}